@@ -0,0 +1,278 @@
+package com.company.Benchmarks;
+
+import com.company.Controller.CommandDispatcher;
+import com.company.Controller.CommandModels;
+import com.company.Controller.CommandTokenizer;
+import com.company.Database.QueryCache;
+import com.company.Database.QueryCatalog;
+import com.company.Database.QueryStats;
+import com.company.Database.RowListResultSet;
+import com.company.Database.StubConnection;
+import com.company.Metrics.CommandMetrics;
+import com.company.Model.Admin;
+import com.company.Model.CrossStoreBrowse;
+import com.company.Model.Money;
+import com.company.Model.Product;
+import com.company.Model.ShoppingCart;
+import com.company.Model.Store;
+import com.company.Model.StoreCatalog;
+import com.company.Model.User;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.tools.ant.types.Commandline;
+import picocli.CommandLine;
+import picocli.CommandLine.RunAll;
+
+/**
+ * Benchmarks for the model and rendering hot paths:
+ * <ul>
+ *     <li>Product.returnDatabaseResults and Store.returnListOfStores over in-memory result sets</li>
+ *     <li>Product.toString and Store.toString formatting</li>
+ *     <li>ShoppingCart add, remove and total, reading stock and prices from the store catalog</li>
+ *     <li>loading a store catalog against reading the loaded one, and merging catalogs in a cross-store browse</li>
+ *     <li>a query answered by the stub driver against the same query answered by the query cache</li>
+ *     <li>tokenizing, parsing and dispatching a command line, one at a time and as a script, through
+ *     CommandDispatcher and through the double parse it replaced</li>
+ *     <li>building the command model cold against taking the cached one, the work before the first prompt</li>
+ * </ul>
+ *
+ * Run with an optional name filter:
+ * java -cp out/bench:lib/* com.company.Benchmarks.Benchmarks [filter]
+ */
+public class Benchmarks {
+
+    private static final String[] PRODUCT_COLUMNS = {"upc", "brand", "name", "type", "size", "price"};
+    private static final String[] STORE_COLUMNS = {"id", "address", "state", "opentime", "closetime"};
+    private static final String[] BRANDS = {"ACME", "Atlantis Beverage", "Doctor Bird's", "Squeaky Clean", "Moo Moo Farms"};
+    private static final String[] STATES = {"NY", "MA", "VA", "MN", "CA", "TX"};
+    private static final int[] SIZES = {10, 1_000, 100_000};
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        Harness harness = new Harness(3, 5, 500);
+        PrintStream console = System.out;
+
+        addTranslationBenchmarks(harness);
+        addFormattingBenchmarks(harness);
+        addCartBenchmarks(harness);
+        addCatalogBenchmarks(harness);
+        addQueryCacheBenchmarks(harness);
+        addParsingBenchmarks(harness);
+
+        // the model prints as it goes; keep that out of the results
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            console.println("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", " + Runtime.getRuntime().availableProcessors() + " cpus");
+            harness.run(filter, console);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void addTranslationBenchmarks(Harness harness) {
+        for (int size : SIZES) {
+            List<Object[]> products = productRows(size);
+            harness.add("Product.returnDatabaseResults rows=" + size,
+                () -> Product.returnDatabaseResults(RowListResultSet.of(PRODUCT_COLUMNS, products)));
+            List<Object[]> stores = storeRows(size);
+            harness.add("Store.returnListOfStores rows=" + size,
+                () -> Store.returnListOfStores(RowListResultSet.of(STORE_COLUMNS, stores)));
+        }
+    }
+
+    private static void addFormattingBenchmarks(Harness harness) {
+        Product product = new Product("Heirloom Tomato", "ACME", "877194198700", 502);
+        Store store = new Store("1       ", "MA", "812 4th Parkway", 317, 1824);
+        harness.add("Product.toString", product::toString);
+        harness.add("Store.toString", store::toString);
+    }
+
+    private static void addCartBenchmarks(Harness harness) {
+        List<Object[]> rows = productRows(20);
+        Connection con = new StubConnection(1_000_000, "ACME", "Potato", "Vegetables", "Large", 2.49)
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "CATALOG_QUERY"), catalogRows(rows))
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "VENDOR_QUERY"), new ArrayList<>()).connect();
+        // catalogs are shared by store id, so not "1" which the parsing benchmarks use
+        Store store = new Store("10", "MA", "812 4th Parkway", 317, 1824);
+        store.setCon(con);
+        List<Product> products = new ArrayList<>();
+        for (Object[] row : rows) {
+            products.add(new Product((String) row[2], (String) row[1], (String) row[0], Money.of((Double) row[5])));
+        }
+
+        harness.add("ShoppingCart.addItem", () -> {
+            ShoppingCart cart = new ShoppingCart(store, con, "5019312140");
+            for (Product p : products) {
+                cart.addItem(p, 1);
+            }
+            return cart;
+        });
+        harness.add("ShoppingCart.removeItem", () -> {
+            ShoppingCart cart = new ShoppingCart(store, con, "5019312140");
+            for (Product p : products) {
+                cart.addItem(p, 2);
+            }
+            for (Product p : products) {
+                cart.removeItem(p.getName(), 1);
+            }
+            return cart;
+        });
+        ShoppingCart full = new ShoppingCart(store, con, "5019312140");
+        for (Product p : products) {
+            full.addItem(p, 3);
+        }
+        harness.add("ShoppingCart.getTotal items=20", full::getTotal);
+    }
+
+    private static void addCatalogBenchmarks(Harness harness) {
+        Connection con = new StubConnection()
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "CATALOG_QUERY"), catalogRows(productRows(1_000)))
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "VENDOR_QUERY"), new ArrayList<>()).connect();
+        // what the first command after store set used to pay, and now pays only if the warm-up hasn't finished
+        harness.add("StoreCatalog load products=1000", () -> {
+            StoreCatalog.invalidate("2");
+            return StoreCatalog.get("2", con);
+        });
+        StoreCatalog.get("3", con);
+        harness.add("StoreCatalog.get (loaded)", () -> StoreCatalog.get("3", con));
+
+        // every store sells the same 1000 products, the worst case for the dedupe
+        List<String> stores = new ArrayList<>();
+        for (int i = 20; i < 40; i++) {
+            stores.add(Integer.toString(i));
+        }
+        List<StoreCatalog> catalogs = StoreCatalog.getAll(stores, con);
+        for (CrossStoreBrowse.Order order : CrossStoreBrowse.Order.values()) {
+            CrossStoreBrowse browse = new CrossStoreBrowse(stores, catalogs, order);
+            harness.add("browse stores=20 products=1000 order=" + order, () -> browse.print((catalog, p) -> true));
+        }
+    }
+
+    private static void addQueryCacheBenchmarks(Harness harness) throws SQLException {
+        String sql = QueryCatalog.sqlOf(User.class, "PRODUCT_BY_TYPE");
+        StubConnection stub = new StubConnection().answer(sql, productRows(20));
+        Connection driver = stub.connect();
+        Connection cached = QueryCache.wrap(stub.connect());
+        QueryCache.enable(1_000);
+        // the stub hands over rows it already holds, so this is the cache's overhead, not a round trip saved
+        harness.add("User.queryProductByType rows=20 (stub driver)", () -> productsByType(driver, sql));
+        harness.add("User.queryProductByType rows=20 (query cache hit)", () -> productsByType(cached, sql));
+    }
+
+    private static List<Product> productsByType(Connection con, String sql) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(sql)) {
+            stmt.setString(1, "1");
+            stmt.setString(2, "Snacks");
+            return Product.returnDatabaseResults(stmt.executeQuery());
+        }
+    }
+
+    private static void addParsingBenchmarks(Harness harness) {
+        // one product, like the single default row browse used to print
+        Connection con = new StubConnection("1", "812 4th Parkway", "MA", 317, 1824, 2.49)
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "CATALOG_QUERY"), catalogRows(productRows(1)))
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "VENDOR_QUERY"), new ArrayList<>()).connect();
+        Admin admin = new Admin(con, "admin", "admin");
+        admin.selectMainStore("1");
+        CommandLine legacy = admin.initCLI();
+        CommandMetrics legacyMetrics = new CommandMetrics();
+        CommandLine cmdLine = CommandModels.forUser(admin);
+        CommandDispatcher dispatcher = new CommandDispatcher(cmdLine, new CommandMetrics());
+        String[] lines = {"browse -t Snacks", "store search -s NY", "stats store-sales --rank TOP -s NY",
+            "store update-price -u 877194198700 3.99"};
+
+        // time to first prompt: the tree was built after login, now it is cached per user type
+        harness.add("first prompt Admin.buildCLI (cold model)", Admin::buildCLI);
+        harness.add("first prompt CommandModels.forUser (cached model)", () -> CommandModels.forUser(admin));
+        for (String line : lines) {
+            harness.add("tokenize Commandline.translateCommandline '" + line + "'",
+                () -> Commandline.translateCommandline(line));
+            harness.add("tokenize CommandTokenizer '" + line + "'", () -> CommandTokenizer.tokenize(line));
+            harness.add("dispatch legacy double parse '" + line + "'", () -> legacyDispatch(legacy, legacyMetrics, line));
+            harness.add("dispatch CommandDispatcher '" + line + "'", () -> {
+                dispatcher.dispatch(line);
+                return null;
+            });
+        }
+        harness.add("script legacy double parse lines=" + lines.length, () -> {
+            for (String line : lines) {
+                legacyDispatch(legacy, legacyMetrics, line);
+            }
+            return null;
+        });
+        harness.add("script CommandDispatcher lines=" + lines.length, () -> {
+            for (String line : lines) {
+                dispatcher.dispatch(line);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The dispatch loop as it was: tokenize with Ant, parse to find the
+     * command name, then let parseWithHandler parse the same arguments again
+     */
+    private static Object legacyDispatch(CommandLine cmdLine, CommandMetrics metrics, String line) {
+        String[] args = Commandline.translateCommandline(line);
+        List<CommandLine> parsed = cmdLine.parse(args);
+        if (cmdLine.isUsageHelpRequested())
+            return null;
+        long start = System.nanoTime();
+        QueryStats.reset();
+        Object result = cmdLine.parseWithHandler(new RunAll(), args);
+        QueryStats stats = QueryStats.current();
+        metrics.record(parsed.get(parsed.size() - 1).getCommandName(), System.nanoTime() - start,
+            stats.getRoundTrips(), stats.getRowsRead());
+        return result;
+    }
+
+    private static List<Object[]> productRows(int count) {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{String.format("%012d", Math.abs(random.nextLong()) % 1_000_000_000_000L),
+                BRANDS[random.nextInt(BRANDS.length)], "Product " + i, "Snacks", "Large",
+                Math.round(random.nextDouble() * 5000) / 100.0});
+        }
+        return rows;
+    }
+
+    /**
+     * @return the product rows with plenty of stock, as the catalog query returns them
+     */
+    private static List<Object[]> catalogRows(List<Object[]> products) {
+        List<Object[]> rows = new ArrayList<>(products.size());
+        for (Object[] product : products) {
+            Object[] row = new Object[product.length + 1];
+            System.arraycopy(product, 0, row, 0, product.length);
+            row[product.length] = 1_000_000;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<Object[]> storeRows(int count) {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{String.format("%-8d", i + 1), random.nextInt(99999) + " Main Street",
+                STATES[random.nextInt(STATES.length)], 300 + random.nextInt(300), 1600 + random.nextInt(600)});
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,114 @@
+package com.company.Benchmarks;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small JMH-style harness: each benchmark gets timed warmup iterations,
+ * then timed measurement iterations, and is reported as the average time
+ * per operation with its standard deviation and the bytes it allocated
+ * per operation.
+ *
+ * Every operation's result is consumed by a sink so the JIT can't remove
+ * the work being measured.
+ */
+public class Harness {
+
+    /**
+     * One measured operation
+     */
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    private static final String ROW_FORMAT = "%-68s %14s %12s %14s%n";
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationNanos;
+    private final List<String> names = new ArrayList<>();
+    private final List<Op> ops = new ArrayList<>();
+    private volatile int sink;
+
+    public Harness(int warmupIterations, int measureIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    public void add(String name, Op op) {
+        names.add(name);
+        ops.add(op);
+    }
+
+    /**
+     * Runs every benchmark whose name contains the filter
+     * @param filter a substring of the benchmark names to run, or "" for all
+     * @param out where the results table is printed
+     */
+    public void run(String filter, PrintStream out) throws Exception {
+        out.printf(ROW_FORMAT, "Benchmark", "ns/op", "+/-", "B/op");
+        for (int i = 0; i < ops.size(); i++) {
+            if (!names.get(i).contains(filter))
+                continue;
+            double[] result = measure(ops.get(i));
+            out.printf(ROW_FORMAT, names.get(i), String.format("%.1f", result[0]),
+                String.format("%.1f", result[1]), result[2] < 0 ? "n/a" : String.format("%.0f", result[2]));
+        }
+    }
+
+    private double[] measure(Op op) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+        double[] scores = new double[measureIterations];
+        long allocated = 0;
+        long operations = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            long before = allocatedBytes();
+            long[] iteration = iteration(op);
+            allocated += allocatedBytes() - before;
+            operations += iteration[0];
+            scores[i] = (double) iteration[1] / iteration[0];
+        }
+        double mean = 0;
+        for (double s : scores) {
+            mean += s;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double s : scores) {
+            variance += (s - mean) * (s - mean);
+        }
+        double stddev = Math.sqrt(variance / Math.max(1, scores.length - 1));
+        return new double[]{mean, stddev, allocatedBytes() < 0 ? -1 : (double) allocated / operations};
+    }
+
+    /**
+     * @return {operations run, nanoseconds taken}
+     */
+    private long[] iteration(Op op) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 16; i++) {
+                Object result = op.run();
+                sink += result == null ? 0 : result.hashCode();
+            }
+            operations += 16;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[]{operations, elapsed};
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -2,6 +2,7 @@ package com.company.Controller.CommandDefinitions;
 
 import com.company.Controller.CommandService;
 import com.company.Model.Admin;
+import com.company.Model.Money;
 import java.util.Map;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -14,10 +15,8 @@ public class AdminStoreCommand implements Runnable{
     @ParentCommand
     private CommandService parent;
 
-    Admin admin;
-
-    public AdminStoreCommand(Admin admin) {
-        this.admin = admin;
+    private Admin admin() {
+        return (Admin) parent.getUser();
     }
 
     @Option(names = {"-h", "--help"}, usageHelp = true)
@@ -29,7 +28,7 @@ public class AdminStoreCommand implements Runnable{
         @Parameters(paramLabel = "<id>") String id)
     {
         if (id.matches("\\d+"))
-            admin.selectMainStore(id);
+            admin().selectMainStore(id);
         else {
             System.out.println("<id> must be integer.");
         }
@@ -37,7 +36,7 @@ public class AdminStoreCommand implements Runnable{
 
     @Command(name = "show",  description = "show your current store")
     void show(@Option(names = {"-h","--help"}, usageHelp = true) boolean help) {
-        admin.printCurrentStore();
+        admin().printCurrentStore();
     }
 
     @Command(name = "search", description = "search for active stores")
@@ -50,14 +49,14 @@ public class AdminStoreCommand implements Runnable{
     {
         // TODO: add options being exclusive
         if(!state.isEmpty()) {
-            admin.queryStoreByState(state);
+            admin().queryStoreByState(state);
         } else if (!itemName.isEmpty()) {
-            admin.queryStoreByProduct(itemName);
+            admin().queryStoreByProduct(itemName);
         } else if (times.size() > 0) {
             for(int start : times.keySet()) {
                 int end = times.get(start);
                 System.out.println(String.format("====== Time Range [%d - %d] ======",start, end));
-                admin.queryStoreByTime(start, end);
+                admin().queryStoreByTime(start, end);
                 System.out.println("=======================================\n");
             }
         }
@@ -71,14 +70,14 @@ public class AdminStoreCommand implements Runnable{
         @Parameters(index = "1", paramLabel = "<product-name>") String productName,
         @Parameters(index = "2", paramLabel = "<quantity>") int quantity)
     {
-        admin.requestReorder(id, productName, quantity);
+        admin().requestReorder(id, productName, quantity);
     }
 
     @Command(name = "fulfill-reorder", description = "fulfull a store's need for an item")
     void fulfullReorder(
         @Option(names = {"-h", "--help"}, usageHelp = true) boolean help)
     {
-        admin.fulfillReorders();
+        admin().fulfillReorders();
     }
 
     @Command(name = "update-price", description = "update a price for the entire wegmans2 chain")
@@ -86,14 +85,59 @@ public class AdminStoreCommand implements Runnable{
         @Option(names = {"-h", "--help"}, usageHelp = true) boolean help,
         @Option(names = {"-n", "--name"}, defaultValue = "", paramLabel = "<name>", description = "set a price by name") String name,
         @Option(names = {"-u", "--upc"}, defaultValue = "", paramLabel = "<upc>", description = "set a price by upc") String upc,
-        @Parameters(paramLabel = "price") double price)
+        @Option(names = {"-f", "--file"}, defaultValue = "", paramLabel = "<file>", description = "set the prices in a file of <upc>,<price> lines") String file,
+        @Option(names = {"-b", "--brand"}, defaultValue = "", paramLabel = "<brand>", description = "change the price of every product of a brand") String brand,
+        @Option(names = {"-t", "--type"}, defaultValue = "", paramLabel = "<type>", description = "change the price of every product of a type") String type,
+        @Option(names = {"--pct"}, defaultValue = "NaN", paramLabel = "<percent>", description = "raise those prices by a percentage, lower them with -") double percent,
+        @Option(names = {"--set"}, defaultValue = "NaN", paramLabel = "<price>", description = "give those products one price") double set,
+        @Option(names = {"--dry-run"}, defaultValue = "false", description = "print the changes without making them") boolean dryRun,
+        @Parameters(paramLabel = "price", arity = "0..1", defaultValue = "NaN") double price)
     {
+        // unset numbers are NaN, since a parsed command is reused for the next line
+        boolean rule = !brand.isEmpty() || !type.isEmpty();
+        boolean byPercent = !Double.isNaN(percent);
+        boolean toPrice = !Double.isNaN(set);
+        if (!file.isEmpty()) {
+            if (rule || !name.isEmpty() || !upc.isEmpty() || byPercent || toPrice || !Double.isNaN(price)) {
+                System.out.println("--file takes the prices from the file alone");
+                return;
+            }
+            admin().updatePricesFromFile(file, dryRun);
+            return;
+        }
+        if (rule) {
+            if (!name.isEmpty() || !upc.isEmpty() || !Double.isNaN(price) || byPercent == toPrice) {
+                System.out.println("--brand and --type take either --pct <percent> or --set <price>");
+            } else if (Double.isInfinite(percent) || Double.isInfinite(set)) {
+                System.out.println("--pct and --set must be finite numbers");
+            } else if (byPercent && percent <= -100) {
+                System.out.println("--pct can't lower a price by 100% or more");
+            } else if (toPrice && set < 0) {
+                System.out.println("--set can't be negative");
+            } else {
+                admin().updatePricesByRule(brand.isEmpty() ? null : brand, type.isEmpty() ? null : type,
+                    byPercent ? percent : null, toPrice ? Money.of(set) : 0, dryRun);
+            }
+            return;
+        }
+        if (byPercent || toPrice) {
+            System.out.println("--pct and --set need --brand or --type");
+            return;
+        }
         if(!checkExclusive(name, upc)) return;
+        if (Double.isNaN(price)) {
+            System.out.println("Please give the new price");
+            return;
+        }
+        if (Double.isInfinite(price)) {
+            System.out.println("A price must be a finite number");
+            return;
+        }
 
         if (!name.isEmpty()) {
-            admin.updatePriceByName(name, price);
+            admin().updatePriceByName(name, Money.of(price));
         } else if (!upc.isEmpty()) {
-            admin.updatePriceByUPC(upc, price);
+            admin().updatePriceByUPC(upc, Money.of(price));
         }
     }
 
@@ -106,9 +150,9 @@ public class AdminStoreCommand implements Runnable{
         if(!checkExclusive(name, upc)) return;
 
         if (!name.isEmpty()) {
-            admin.addProductToStoreByName(name);
+            admin().addProductToStoreByName(name);
         } else if (!upc.isEmpty()) {
-            admin.addProductToStoreByUPC(upc);
+            admin().addProductToStoreByUPC(upc);
         }
     }
 
@@ -121,26 +165,42 @@ public class AdminStoreCommand implements Runnable{
         if(!checkExclusive(name, upc)) return;
 
         if (!name.isEmpty()) {
-            admin.removeProductFromStorebyName(name);
+            admin().removeProductFromStorebyName(name);
         } else if (!upc.isEmpty()) {
-            admin.removeProductFromStoreByUPC(upc);
+            admin().removeProductFromStoreByUPC(upc);
         }
     }
 
 
+    @Command(name = "sync-assortment", description = "make the products stores sell, and their stock, match a file")
+    void syncAssortment(
+        @Option(names = {"-h", "--help"}, usageHelp = true) boolean help,
+        @Option(names = {"-f", "--file"}, defaultValue = "", paramLabel = "<file>", description = "lines of <store-id>,<upc>,<stock>, or <upc>,<stock> for one store") String file,
+        @Option(names = {"--dry-run"}, defaultValue = "false", description = "count the changes without keeping them") boolean dryRun,
+        @Parameters(paramLabel = "<store-id>", arity = "0..1", defaultValue = "", description = "the store to sync, every store in the file if left out") String id)
+    {
+        if (file.isEmpty()) {
+            System.out.println("Please give the --file to sync to");
+        } else if (!id.isEmpty() && !id.matches("\\d+")) {
+            System.out.println("<store-id> must be integer.");
+        } else {
+            admin().syncAssortment(id.isEmpty() ? null : id, file, dryRun);
+        }
+    }
+
     @Command(name = "view-inventory", description = "view your current store's inventory")
     void viewInventory(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
-        admin.getStoreInventory();
+        admin().getStoreInventory();
     }
 
     @Command(name = "view-vendors", description = "view vendors for your current store")
     void viewVendors(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
-        admin.viewAllVendorNames();
+        admin().viewAllVendorNames();
     }
 
     @Command(name = "view-brands", description = "view brands for your current store")
     void viewBrands(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
-        admin.viewAllBrandNames();
+        admin().viewAllBrandNames();
     }
 
     private boolean checkExclusive(String name, String upc) {
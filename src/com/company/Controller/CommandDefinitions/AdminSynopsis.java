@@ -18,6 +18,17 @@ public class AdminSynopsis implements Runnable{
             String[] synopsis = {
                 "help    Displays help information about the specified command",
                 "quit    quit the application",
+                "begin   run the commands up to commit in one transaction (separate commands with ;)",
+                "commit  commit the open transaction",
+                "rollback  discard the open transaction",
+                "<command> &   run a command in the background (or job <command>)",
+                "jobs    list background jobs",
+                "fg      <id>   show a job's output, waiting for it to finish",
+                "cancel  <id>   cancel a job and the statement it is running",
+                "timeout [<seconds>]   limit how long each command's statements may run, 0 for no limit",
+                "metrics show latency and SQL work for each command run this session",
+                "       -d, --dump=<file>                              write the metrics to a file instead",
+                "           --reset                                    clear all recorded metrics",
                 "store   allows the user to do store related actions",
                 "   search                                      search for active stores",
                 "       -i, --item-name=<item_name>                    search stores that have a particular item",
@@ -28,16 +39,29 @@ public class AdminSynopsis implements Runnable{
                 "   view-brands      view brands for your current store",
                 "   view-inventory   view your current store's inventory",
                 "   view-vendors     view vendors for your current store",
-                "   update-price  <price>   update a price for the entire wegmans2 chain",
+                "   update-price  [<price>] update a price for the entire wegmans2 chain",
                 "       -u, --upc=<upc>    set a price by upc",
                 "       -n, --name=<name>   set a price by name",
+                "       -f, --file=<file>   set the prices in a file of <upc>,<price> lines",
+                "       -b, --brand=<brand> change the price of every product of a brand",
+                "       -t, --type=<type>   change the price of every product of a type",
+                "           --pct=<percent> raise those prices by a percentage, lower them with -",
+                "           --set=<price>   give those products one price",
+                "           --dry-run       print the changes without making them",
                 "   request-reorder <store-id> <product-name> <quantity> request a reorder for an item in a store",
                 "   fulfill-reorder  fulfill a store's need for an item",
+                "   sync-assortment [<store-id>] make the products stores sell, and their stock, match a file",
+                "       -f, --file=<file>   lines of <store-id>,<upc>,<stock>, or <upc>,<stock> for one store",
+                "           --dry-run       count the changes without keeping them",
                 "browse     allows the user to browse wegmans inventory",
                 "   -b, --brand=<brand>                                 query by brand name",
                 "   -n, --name=<name>                                   search a product by name",
+                "   -u, --upc=<upc>                                     check a product's price by upc, at any store",
                 "   -r, --price-range=<start>=<end>[|<start>=<end>...]  A double representing 24-hr time",
                 "   -t, --type=<type>                                   the type of product you want to search for",
+                "       --stores=<id>[,<id>...]                         browse these stores instead of your current one",
+                "   -s, --state=<state_abbr>                            browse every store in a state (i.e NY)",
+                "   -o, --order=name|price                              order of a browse across stores",
                 "statistics, stats  get statistics about how wegmans2 is doing",
                 "   customer-mvp  gets the customer who has spent the most money",
                 "   item-sales    get first 3 best or worst items sold",
@@ -48,8 +72,29 @@ public class AdminSynopsis implements Runnable{
                 "       -s, --state=<state_abbr>                        narrow sales search to a specific state",
                 "update     update certain aspects of the database",
                 "   add-customer <firstname> <lastname> <phonenumber>   add a customer to the database",
+                "   import-customers                add the customers in a file, updating the names of existing ones",
+                "       -f, --file=<file>           lines of <firstname>,<lastname>,<phonenumber>, or the columns a header names",
+                "           --rejects=<file>        where rows that can't be imported go (default <file>.rejects)",
+                "           --copy                  load the rows with COPY and merge them, for large files",
                 "   remove-customer <phonenumber>   remove a customer from the database",
-                "   remove-location <store-id>      remove a store from the database"
+                "   remove-location <store-id>      remove a store from the database",
+                "migrate    apply and verify performance migrations to the database schema",
+                "   status                          list the migrations that have not been applied",
+                "   apply                           apply all pending migrations in version order",
+                "           --dry-run               print the pending statements without running them",
+                "   check                           EXPLAIN each known query and report the ones not using an index",
+                "snapshot   write the stores, products and stock to a file CLIs can start from offline",
+                "   build                           read everything the snapshot holds and write it to a file",
+                "       -f, --file=<file>           the file to write (default wegmans2.snapshot)",
+                "   refresh                         read again what changed since the open snapshot was read",
+                "loadgen    simulate many customers and admins using the store at once",
+                "   -c, --customers=<n>  -a, --admins=<n>               number of virtual customers and admins",
+                "   -d, --duration=<s>   -w, --warmup=<s>               seconds to measure, after a warm-up",
+                "   -t, --think-ms=<ms>                                 mean pause between a user's operations",
+                "   -r, --rate=<ops/s>                                  open loop arrival rate instead of think time",
+                "   -m, --mix=<op>=<weight>[,...]                       store-set, browse, cart-add, cart-show, checkout, stats",
+                "       --ramp=<customers>[,...]  --slo-ms=<ms>         find where checkout p99 breaks down",
+                "       --in-memory  --latency-us=<us>                  run against an in-memory stand-in"
             };
 
             for(String s : synopsis) {
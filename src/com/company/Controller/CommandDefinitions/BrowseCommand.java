@@ -1,9 +1,18 @@
 package com.company.Controller.CommandDefinitions;
 
 import com.company.Controller.CommandService;
+import com.company.Model.CrossStoreBrowse;
+import com.company.Model.Money;
+import com.company.Model.Product;
+import com.company.Model.StoreCatalog;
 import com.company.Model.User;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.ParentCommand;
@@ -13,15 +22,17 @@ public class BrowseCommand implements Runnable{
 
     @ParentCommand
     private CommandService parent;
-    private User user;
 
-    public BrowseCommand(User user){
-        this.user = user;
+    private User user() {
+        return parent.getUser();
     }
 
     @Option(names = {"-n", "--name"}, defaultValue = "", description = "search a product by name")
     String name;
 
+    @Option(names = {"-u", "--upc"}, defaultValue = "", description = "check a product's price by upc, at any store")
+    String upc;
+
     @Option(names = {"-r", "--price-range"}, split = "\\|", paramLabel = "<start>=<end>", description = "A list of key=value pairs in form <XX.XX>=<XX.XX>")
     Map<Double, Double> priceRanges = new HashMap<>();
 
@@ -31,39 +42,119 @@ public class BrowseCommand implements Runnable{
     @Option(names = {"-b", "--brand"}, defaultValue = "",  description = "query by brand name")
     String brand;
 
+    @Option(names = {"--stores"}, split = ",", paramLabel = "<id>", description = "browse these stores instead of your current one")
+    List<String> stores = new ArrayList<>();
+
+    @Option(names = {"-s", "--state"}, defaultValue = "", paramLabel = "<state_abbr>", description = "browse every store in a state (i.e NY)")
+    String state;
+
+    @Option(names = {"-o", "--order"}, defaultValue = "name", paramLabel = "name|price", description = "order of a browse across stores")
+    CrossStoreBrowse.Order order;
+
     /**
      * Note these can be run by all users
      */
     @Override
     public void run() {
+        if (!stores.isEmpty() || !state.isEmpty()) {
+            browseStores();
+            return;
+        }
+
+        if (!upc.isEmpty()) {
+            user().queryProductByUPC(upc);
+            return;
+        }
+
+        if (!name.isEmpty()) {
+            user().queryProductByName(name);
+            return;
+        }
+
+        if (priceRanges.size() > 0) {
+            for(Double low : priceRanges.keySet()) {
+                long start = Money.of(low);
+                long end = Money.of(priceRanges.get(low));
+                printRangeHeader(start, end);
+                if(!type.isEmpty())
+                    user().queryProductByTypeAndRange(type, start, end);
+                else
+                    user().queryProductByPriceRange(start, end);
+                System.out.println("=======================================\n");
+            }
+            return;
+        }
+
+        if (!type.isEmpty()){
+            user().queryProductByType(type);
+            return;
+        }
+
+        if (!brand.isEmpty()) {
+            user().queryProductByBrand(brand);
+            return;
+        }
+
+        user().queryAllProducts();
+    }
+
+    /**
+     * The same searches over several stores, each product shown once with
+     * the stores carrying it
+     */
+    private void browseStores() {
+        Set<String> ids = new LinkedHashSet<>();
+        for (String id : stores) {
+            ids.add(id.trim());
+        }
+        if (!state.isEmpty()) {
+            List<String> inState = user().queryStoreIdsByState(state);
+            if (inState.isEmpty())
+                System.out.println("No stores found in " + state + ".");
+            ids.addAll(inState);
+        }
+        if (ids.isEmpty())
+            return;
+        List<String> storeIds = new ArrayList<>(ids);
+
         if (!name.isEmpty()) {
-            user.queryProductByName(name);
+            user().browseStores(storeIds, (catalog, p) -> p.getName().equals(name), order);
             return;
         }
 
         if (priceRanges.size() > 0) {
-            for(Double start : priceRanges.keySet()) {
-                double end = priceRanges.get(start);
-                System.out.println(String.format("====== Price Range [%.2f - %.2f] ======",start, end));
+            for(Double low : priceRanges.keySet()) {
+                long start = Money.of(low);
+                long end = Money.of(priceRanges.get(low));
+                printRangeHeader(start, end);
+                BiPredicate<StoreCatalog, Product> inRange = (catalog, p) -> p.getPriceCents() > start
+                    && p.getPriceCents() < end;
                 if(!type.isEmpty())
-                    user.queryProductByTypeAndRange(type, start, end);
+                    user().browseStores(storeIds, inRange.and((catalog, p) -> type.equals(catalog.typeOf(p))), order);
                 else
-                    user.queryProductByPriceRange(start, end);
+                    user().browseStores(storeIds, inRange, order);
                 System.out.println("=======================================\n");
             }
             return;
         }
 
         if (!type.isEmpty()){
-            user.queryProductByType(type);
+            user().browseStores(storeIds, (catalog, p) -> type.equals(catalog.typeOf(p)), order);
             return;
         }
 
         if (!brand.isEmpty()) {
-            user.queryProductByBrand(brand);
+            user().browseStores(storeIds, (catalog, p) -> brand.equals(p.getBrand()), order);
             return;
         }
 
-        user.queryAllProducts();
+        user().browseStores(storeIds, (catalog, p) -> true, order);
+    }
+
+    private static void printRangeHeader(long start, long end) {
+        StringBuilder header = new StringBuilder("====== Price Range [");
+        Money.appendTo(header, start).append(" - ");
+        Money.appendTo(header, end).append("] ======");
+        System.out.println(header);
     }
 }
@@ -14,10 +14,8 @@ public class CartCommand implements Runnable {
     @ParentCommand
     private CommandService parent;
 
-    private Customer customer;
-
-    public CartCommand(Customer customer) {
-        this.customer= customer;
+    private Customer customer() {
+        return (Customer) parent.getUser();
     }
 
     @Option(names = {"-h", "--help"}, usageHelp = true, description = "display this help and exit")
@@ -29,12 +27,12 @@ public class CartCommand implements Runnable {
         @Option(names = {"-p", "--price"}, defaultValue = "true", description = "Only show total price of items in your cart") Boolean price,
         @Option(names = {"-i", "--items"}, defaultValue = "true", description = "Only show items in your cart") Boolean items)
     {
-        if (!customer.checkStoreSet()) return;
+        if (!customer().checkStoreSet()) return;
         if(price) {
-            customer.printCartItems();
+            customer().printCartItems();
         }
         if(items) {
-            customer.getCartTotal();
+            customer().getCartTotal();
         }
     }
 
@@ -44,9 +42,9 @@ public class CartCommand implements Runnable {
         @Parameters(paramLabel = "<item_name>", description = "Add product by name. Multiple word items must be surrounded by \"\"") String name,
         @Parameters(paramLabel = "<count>", defaultValue = "1", description = "Number of items to add") int count)
     {
-        if (!customer.checkStoreSet()) return;
+        if (!customer().checkStoreSet()) return;
         if(!name.isEmpty()) {
-            if(customer.addItemToCart(name, count)){
+            if(customer().addItemToCart(name, count)){
                 System.out.println(count + " " + name + "(s) added to your cart.");
             }else{
                 System.out.println("Item not added to cart.");
@@ -60,9 +58,9 @@ public class CartCommand implements Runnable {
         @Parameters(paramLabel = "<item_name>", description = "Add product by name. Multiple word items must be surrounded by \"\"") String name,
         @Parameters(paramLabel = "<count>", defaultValue = "1", description = "Number of items to add") int count)
     {
-        if (!customer.checkStoreSet()) return;
+        if (!customer().checkStoreSet()) return;
         if(!name.isEmpty()) {
-            customer.removeItemFromCart(name, count);
+            customer().removeItemFromCart(name, count);
         }
         System.out.println(count + " " + name + "(s) removed from your cart.");
     }
@@ -70,8 +68,8 @@ public class CartCommand implements Runnable {
     @Command(name = "checkout", description = "finalize your purchase")
     void checkout(@Option(names = {"-h","--help"}, usageHelp = true) boolean help)
     {
-        if (!customer.checkStoreSet()) return;
-        customer.checkout();
+        if (!customer().checkStoreSet()) return;
+        customer().checkout();
     }
 
     @Override
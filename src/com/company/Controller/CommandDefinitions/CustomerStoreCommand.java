@@ -14,10 +14,8 @@ public class CustomerStoreCommand implements Runnable{
     @ParentCommand
     private CommandService parent;
 
-    Customer user;
-
-    public CustomerStoreCommand(Customer user) {
-        this.user = user;
+    private Customer user() {
+        return (Customer) parent.getUser();
     }
 
     @Option(names = {"-h", "--help"}, usageHelp = true)
@@ -29,7 +27,7 @@ public class CustomerStoreCommand implements Runnable{
         @Parameters(paramLabel = "<id>") String id)
     {
         if (id.matches("\\d+"))
-            user.selectMainStore(id);
+            user().selectMainStore(id);
         else {
             System.out.println("<id> must be integer.");
         }
@@ -37,7 +35,7 @@ public class CustomerStoreCommand implements Runnable{
 
     @Command(name = "show",  description = "show your current store")
     void show(@Option(names = {"-h","--help"}, usageHelp = true) boolean help) {
-        user.printCurrentStore();
+        user().printCurrentStore();
     }
 
     @Command(name = "search", description = "search for active stores")
@@ -50,14 +48,14 @@ public class CustomerStoreCommand implements Runnable{
     {
         // TODO: add options being exclusive
         if(!state.isEmpty()) {
-            user.queryStoreByState(state);
+            user().queryStoreByState(state);
         } else if (!itemName.isEmpty()) {
-            user.queryStoreByProduct(itemName);
+            user().queryStoreByProduct(itemName);
         } else if (times.size() > 0) {
             for(int start : times.keySet()) {
                 int end = times.get(start);
                 System.out.println(String.format("====== Time Range [%d - %d] ======",start, end));
-                user.queryStoreByTime(start, end);
+                user().queryStoreByTime(start, end);
                 System.out.println("=======================================\n");
             }
         }
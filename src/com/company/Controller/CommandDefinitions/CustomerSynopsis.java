@@ -18,11 +18,23 @@ public class CustomerSynopsis implements Runnable{
         String[] synopsis = {
             "help    Displays help information about the specified command",
             "quit    quit the application",
+            "begin   run the commands up to commit in one transaction (separate commands with ;)",
+            "commit  commit the open transaction",
+            "rollback  discard the open transaction",
+            "metrics show latency and SQL work for each command run this session",
+            "       -d, --dump=<file>                              write the metrics to a file instead",
+            "           --reset                                    clear all recorded metrics",
             "cart    allows the user to do cart based actions",
             "   add       <item_name> <count>               Add an item to your cart",
             "   remove    <item_name> <count>               remove an item from your cart",
             "   checkout                                    finalize your purchase",
             "   show      Show the contents of your cart",
+            "orders  look through the orders you have placed",
+            "   history                                     show your orders a page at a time, newest first",
+            "       -n, --page-size=<count>                        orders shown per page (default 20)",
+            "       -p, --period=day|month|year                    the periods spending is totalled over (default month)",
+            "           --all                                      show every page at once",
+            "   next                                        show the next page of your orders",
             "store   allows the user to do store related actions",
             "   search                                      search for active stores",
             "       -i, --item-name=<item_name>                    search stores that have a particular item",
@@ -33,8 +45,12 @@ public class CustomerSynopsis implements Runnable{
             "browse     allows the user to browse wegmans inventory",
             "   -b, --brand=<brand>   query by brand name",
             "   -n, --name=<name>     search a product by name",
+            "   -u, --upc=<upc>       check a product's price by upc, at any store",
             "   -r, --price-range=<start>=<end>[|<start>=<end>...] A double representing 24-hr time",
-            "   -t, --type=<type>     the type of product you want to search for"
+            "   -t, --type=<type>     the type of product you want to search for",
+            "       --stores=<id>[,<id>...]  browse these stores instead of your current one",
+            "   -s, --state=<state_abbr>     browse every store in a state (i.e NY)",
+            "   -o, --order=name|price       order of a browse across stores"
         };
 
         for(String s : synopsis) {
@@ -0,0 +1,137 @@
+package com.company.Controller.CommandDefinitions;
+
+import com.company.Controller.CommandService;
+import com.company.Database.ConnectionFactory;
+import com.company.Database.InstrumentedConnection;
+import com.company.Database.StubConnection;
+import com.company.LoadGen.Fixtures;
+import com.company.LoadGen.LoadGenerator;
+import com.company.LoadGen.LoadReport;
+import com.company.LoadGen.Operation;
+import com.company.LoadGen.Workload;
+import com.company.Model.Admin;
+import com.company.Model.StoreCatalog;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+@Command(name = "loadgen", description = "simulate many customers and admins using the store at once")
+public class LoadGenCommand implements Runnable{
+
+    @ParentCommand
+    private CommandService parent;
+
+    @Option(names = {"-h", "--help"}, usageHelp = true)
+    boolean help;
+
+    @Option(names = {"-c", "--customers"}, defaultValue = "10", description = "number of virtual customers")
+    int customers;
+
+    @Option(names = {"-a", "--admins"}, defaultValue = "1", description = "number of virtual admins")
+    int admins;
+
+    @Option(names = {"-d", "--duration"}, defaultValue = "30", description = "seconds to measure for")
+    long duration;
+
+    @Option(names = {"-w", "--warmup"}, defaultValue = "5", description = "seconds to run before measuring")
+    long warmup;
+
+    @Option(names = {"-t", "--think-ms"}, defaultValue = "0", description = "mean pause between a user's operations")
+    long think;
+
+    @Option(names = {"-r", "--rate"}, defaultValue = "0", description = "operations per second for an open loop, 0 for a closed loop")
+    double rate;
+
+    @Option(names = {"-m", "--mix"}, defaultValue = Workload.DEFAULT_MIX, paramLabel = "<op>=<weight>[,...]",
+        description = "weights of store-set, browse, cart-add, cart-show, checkout and stats")
+    String mix;
+
+    @Option(names = {"--ramp"}, split = ",", paramLabel = "<customers>[,...]",
+        description = "run one stage per customer count and report checkout latency for each")
+    List<Integer> ramp;
+
+    @Option(names = {"--slo-ms"}, defaultValue = "250", description = "checkout p99 above this counts as broken down when ramping")
+    double slo;
+
+    @Option(names = {"--in-memory"}, defaultValue = "false", description = "run against an in-memory stand-in instead of the database")
+    boolean inMemory;
+
+    @Option(names = {"--latency-us"}, defaultValue = "200", description = "round trip time of the in-memory stand-in")
+    long latency;
+
+    @Option(names = {"--seed"}, defaultValue = "42", description = "seed for the users' choices")
+    long seed;
+
+    @Override
+    public void run() {
+        Admin admin = (Admin) parent.getUser();
+        ConnectionFactory connections = parent.getConnections();
+        Workload workload;
+        try {
+            workload = Workload.parse(mix);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        ConnectionFactory users = connections;
+        Fixtures fixtures;
+        if (inMemory) {
+            StubConnection stub = StubConnection.standard().latency(latency);
+            users = () -> InstrumentedConnection.wrap(stub.connect());
+            fixtures = Fixtures.stub();
+        } else {
+            int needed = ramp == null ? customers : Collections.max(ramp);
+            try (Connection con = connections.connect()) {
+                fixtures = Fixtures.load(con, needed);
+            } catch (SQLException e) {
+                System.out.println("SQL Error loading load test data");
+                System.out.println(e.getMessage());
+                return;
+            }
+        }
+
+        LoadGenerator generator = new LoadGenerator(users, fixtures, admin.getUsername())
+            .workload(workload).admins(admins).warmup(warmup).duration(duration).think(think).rate(rate).seed(seed);
+        if (!inMemory)
+            generator.monitorContention(connections);
+        // the stand-in's stores get catalogs of their own, so the session's aren't touched
+        if (inMemory)
+            StoreCatalog.isolate(users);
+        List<Integer> stages = ramp == null ? Collections.singletonList(customers) : ramp;
+        System.out.println(String.format("Running %s for %d s per stage after a %d s warm-up (%s)", workload,
+            duration, warmup, rate > 0 ? String.format("open loop at %.1f ops/s", rate) : "closed loop"));
+        try {
+            if (stages.size() == 1) {
+                generator.customers(stages.get(0)).run().print(System.out);
+                return;
+            }
+            LoadReport.printStageHeader(System.out);
+            Integer brokenAt = null;
+            for (int stage : stages) {
+                LoadReport report = generator.customers(stage).run();
+                report.printStage(System.out);
+                long p99 = report.get(Operation.CHECKOUT).getLatency().percentile(99);
+                if (brokenAt == null && p99 > slo * TimeUnit.MILLISECONDS.toMicros(1))
+                    brokenAt = stage;
+            }
+            if (brokenAt != null)
+                System.out.println(String.format("Checkout p99 first exceeded %.0f ms at %d customers.", slo, brokenAt));
+            else
+                System.out.println(String.format("Checkout p99 stayed under %.0f ms at every stage.", slo));
+        } catch (SQLException e) {
+            System.out.println("SQL Error starting virtual users");
+            System.out.println(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Load test interrupted.");
+        } finally {
+            if (inMemory)
+                StoreCatalog.isolate(null);
+        }
+    }
+}
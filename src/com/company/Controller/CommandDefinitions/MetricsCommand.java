@@ -0,0 +1,62 @@
+package com.company.Controller.CommandDefinitions;
+
+import com.company.Controller.CommandService;
+import com.company.Database.ChangeListener;
+import com.company.Database.QueryCache;
+import com.company.Database.ReadRouting;
+import com.company.Database.Sharding;
+import com.company.Metrics.CommandMetrics;
+import com.company.Model.ReadModel;
+import com.company.Model.Snapshot;
+import java.io.FileNotFoundException;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+@Command(name = "metrics", description = "show latency and SQL work for each command run this session")
+public class MetricsCommand implements Runnable{
+
+    @ParentCommand
+    private CommandService parent;
+
+    @Option(names = {"-h", "--help"}, usageHelp = true)
+    boolean help;
+
+    @Option(names = {"-d", "--dump"}, defaultValue = "", paramLabel = "<file>", description = "write the metrics to a file instead")
+    String file;
+
+    @Option(names = {"--reset"}, defaultValue = "false", description = "clear all recorded metrics")
+    boolean reset;
+
+    @Override
+    public void run() {
+        CommandMetrics metrics = parent.getMetrics();
+        if (reset) {
+            metrics.reset();
+            System.out.println("Metrics cleared.");
+            return;
+        }
+        if (!file.isEmpty()) {
+            try {
+                metrics.dump(file);
+                System.out.println("Metrics written to " + file);
+            } catch (FileNotFoundException e) {
+                System.out.println("Could not write metrics to " + file);
+            }
+            return;
+        }
+        metrics.print(System.out);
+        if (QueryCache.isEnabled())
+            System.out.println(QueryCache.summary());
+        if (ChangeListener.isStarted())
+            System.out.println(ChangeListener.summary());
+        if (ReadModel.isStarted())
+            System.out.println(ReadModel.summary());
+        if (ReadRouting.isEnabled())
+            System.out.println(ReadRouting.summary());
+        if (Sharding.isEnabled())
+            System.out.println(Sharding.summary());
+        if (Snapshot.isOpen())
+            System.out.println(Snapshot.summary());
+    }
+}
@@ -0,0 +1,43 @@
+package com.company.Controller.CommandDefinitions;
+
+import com.company.Controller.CommandService;
+import com.company.Model.Admin;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+@Command(name = "migrate", description = "apply and verify performance migrations to the database schema")
+public class MigrateCommand implements Runnable{
+
+    @ParentCommand
+    private CommandService parent;
+
+    private Admin admin() {
+        return (Admin) parent.getUser();
+    }
+
+    @Option(names = {"-h", "--help"}, usageHelp = true)
+    boolean help;
+
+    @Command(name = "status", description = "list the migrations that have not been applied")
+    void status(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
+        admin().printMigrationStatus();
+    }
+
+    @Command(name = "apply", description = "apply all pending migrations in version order")
+    void apply(
+        @Option(names = {"-h", "--help"}, usageHelp = true) boolean help,
+        @Option(names = {"--dry-run"}, defaultValue = "false", description = "print the pending statements without running them") boolean dryRun)
+    {
+        admin().migrate(dryRun);
+    }
+
+    @Command(name = "check", description = "EXPLAIN each known query and report the ones not using an index")
+    void check(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
+        admin().checkIndexUsage();
+    }
+
+    @Override
+    public void run() {
+    }
+}
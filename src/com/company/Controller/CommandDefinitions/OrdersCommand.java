@@ -0,0 +1,41 @@
+package com.company.Controller.CommandDefinitions;
+
+import com.company.Controller.CommandService;
+import com.company.Model.Customer;
+import com.company.Model.OrderHistory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+@Command(name = "orders", description = "look through the orders you have placed")
+public class OrdersCommand implements Runnable {
+
+    @ParentCommand
+    private CommandService parent;
+
+    private Customer customer() {
+        return (Customer) parent.getUser();
+    }
+
+    @Option(names = {"-h", "--help"}, usageHelp = true, description = "display this help and exit")
+    boolean help;
+
+    @Command(name = "history", description = "show your orders a page at a time, newest first, then what you spent")
+    void history(
+        @Option(names = {"-h", "--help"}, usageHelp = true) boolean help,
+        @Option(names = {"-n", "--page-size"}, defaultValue = "20", paramLabel = "<count>", description = "orders shown per page") int pageSize,
+        @Option(names = {"-p", "--period"}, defaultValue = "month", paramLabel = "day|month|year", description = "the periods spending is totalled over") OrderHistory.Period period,
+        @Option(names = {"--all"}, defaultValue = "false", description = "show every page at once") boolean all)
+    {
+        customer().showOrderHistory(pageSize, period, all);
+    }
+
+    @Command(name = "next", description = "show the next page of your orders")
+    void next(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
+        customer().showMoreOrders();
+    }
+
+    @Override
+    public void run() {
+    }
+}
@@ -0,0 +1,39 @@
+package com.company.Controller.CommandDefinitions;
+
+import com.company.Controller.CommandService;
+import com.company.Model.Admin;
+import com.company.Model.Snapshot;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+@Command(name = "snapshot", description = "write the stores, products and stock to a file CLIs can start from offline")
+public class SnapshotCommand implements Runnable{
+
+    @ParentCommand
+    private CommandService parent;
+
+    private Admin admin() {
+        return (Admin) parent.getUser();
+    }
+
+    @Option(names = {"-h", "--help"}, usageHelp = true)
+    boolean help;
+
+    @Command(name = "build", description = "read everything the snapshot holds and write it to a file")
+    void build(
+        @Option(names = {"-h", "--help"}, usageHelp = true) boolean help,
+        @Option(names = {"-f", "--file"}, defaultValue = Snapshot.DEFAULT_FILE, paramLabel = "<file>", description = "the file to write") String file)
+    {
+        admin().buildSnapshot(file);
+    }
+
+    @Command(name = "refresh", description = "read again what changed since the open snapshot was read, and rewrite it")
+    void refresh(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
+        admin().refreshSnapshot();
+    }
+
+    @Override
+    public void run() {
+    }
+}
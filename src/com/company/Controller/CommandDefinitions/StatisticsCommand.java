@@ -13,17 +13,16 @@ public class StatisticsCommand implements Runnable{
 
     @ParentCommand
     private CommandService parent;
-    Admin admin;
 
-    public StatisticsCommand(Admin admin) {
-        this.admin = admin;
+    private Admin admin() {
+        return (Admin) parent.getUser();
     }
 
     @Command(name = "customer-mvp", description = "gets the customer who has spent the most money")
     void getCustomerMVP(
         @Option(names = {"-h", "--help"}, usageHelp = true) boolean help)
     {
-        admin.getCustomerMVP();
+        admin().getCustomerMVP();
     }
 
     @Command(name = "store-sales", description = "gets the customer who has spent the most money")
@@ -35,16 +34,16 @@ public class StatisticsCommand implements Runnable{
     {
         if(!state.isEmpty()) {
             if (rank.equals("BOT"))
-                admin.getBestAndWorstStoreSalesbyState(false, state);
+                admin().getBestAndWorstStoreSalesbyState(false, state);
             else if (rank.equals("TOP"))
-                admin.getBestAndWorstStoreSalesbyState(true, state);
+                admin().getBestAndWorstStoreSalesbyState(true, state);
             else
                 System.out.println("Please enter \"TOP\" or \"BOT\" for --rank");
         } else {
             if (rank.equals("BOT"))
-                admin.getBestAndWorstStoreSales(false);
+                admin().getBestAndWorstStoreSales(false);
             else if (rank.equals("TOP"))
-                admin.getBestAndWorstStoreSales(true);
+                admin().getBestAndWorstStoreSales(true);
             else
                 System.out.println("Please enter \"TOP\" or \"BOT\" for --rank");
         }
@@ -61,13 +60,13 @@ public class StatisticsCommand implements Runnable{
             desc = false;
 
         if(all) {
-            admin.getItemsRanked(desc);
+            admin().getItemsRanked(desc);
         } else {
-            if(!admin.checkStoreSet()) {
+            if(!admin().checkStoreSet()) {
                 System.out.print(" Or use \"--all\" to show products across all stores");
                 return;
             }
-            admin.getItemsByStoreRanked(desc);
+            admin().getItemsByStoreRanked(desc);
 
         }
 
@@ -12,10 +12,9 @@ public class UpdateCommand implements Runnable{
 
     @ParentCommand
     private CommandService parent;
-    Admin admin;
 
-    public UpdateCommand(Admin admin) {
-        this.admin = admin;
+    private Admin admin() {
+        return (Admin) parent.getUser();
     }
 
     @Command(name = "add-customer", description = "add a customer to the database")
@@ -25,20 +24,34 @@ public class UpdateCommand implements Runnable{
         @Parameters(index = "0", paramLabel = "<firstname>", description = "the first name of the user you want to add") String firstname,
         @Parameters(index = "2", paramLabel = "<phonenumber>", description = "the 10-digit phone number of the user you want to add") String phonenumber)
     {
-        admin.addCustomer(phonenumber, firstname, lastname);
+        admin().addCustomer(phonenumber, firstname, lastname);
     }
+    @Command(name = "import-customers", description = "add the customers in a file, updating the names of existing ones")
+    void importUsers(
+        @Option(names = {"-h", "--help"}, usageHelp = true) boolean help,
+        @Option(names = {"-f", "--file"}, defaultValue = "", paramLabel = "<file>", description = "lines of <firstname>,<lastname>,<phonenumber>, or the columns a header names; fields may be double quoted") String file,
+        @Option(names = {"--rejects"}, defaultValue = "", paramLabel = "<file>", description = "where rows that can't be imported go (default <file>.rejects)") String rejects,
+        @Option(names = {"--copy"}, defaultValue = "false", description = "load the rows with COPY and merge them, for large files") boolean copy)
+    {
+        if (file.isEmpty()) {
+            System.out.println("Please give the --file to import");
+            return;
+        }
+        admin().importCustomers(file, rejects.isEmpty() ? file + ".rejects" : rejects, copy);
+    }
+
     @Command(name = "remove-customer", description = "remove a customer to the database")
     void removeUser(
         @Option(names = {"-h", "--help"}) boolean help,
         @Parameters(index = "0", paramLabel = "<phonenumber>") String phonenumber)
     {
-        admin.removeCustomer(phonenumber);
+        admin().removeCustomer(phonenumber);
     }
 
     @Command(name = "remove-location", description = "remove a store from the wegmans2 chain")
     void removeStore(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help,
         @Parameters(paramLabel = "<store-id>") String storeid) {
-        admin.dropStore(storeid);
+        admin().dropStore(storeid);
     }
 
     @Override
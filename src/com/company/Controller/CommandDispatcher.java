@@ -0,0 +1,399 @@
+package com.company.Controller;
+
+import com.company.Database.CancellableConnection;
+import com.company.Database.Pipeline;
+import com.company.Database.QueryStats;
+import com.company.Database.SlowQueryLog;
+import com.company.Database.SqlTrace;
+import com.company.Metrics.CommandEvent;
+import com.company.Metrics.CommandMetrics;
+import com.company.Model.StoreCatalog;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.util.List;
+import picocli.CommandLine;
+import picocli.CommandLine.ExecutionException;
+import picocli.CommandLine.MissingParameterException;
+import picocli.CommandLine.Model.ArgSpec;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.ParseResult;
+import picocli.CommandLine.RunAll;
+import picocli.CommandLine.UnmatchedArgumentException;
+
+/**
+ * Runs the lines typed at the prompt, or read from a script, against a
+ * command tree. Each line is tokenized and parsed once and the parse result
+ * is handed straight to the handler, then the command's latency and SQL
+ * work are filed under its name.
+ *
+ * A line can hold several commands separated by semicolons. The commands
+ * between begin and commit, on one line or over several, run in a single
+ * transaction; the first one that fails rolls the whole block back and
+ * the rest of its line is skipped.
+ *
+ * A command ending in & (or following job) runs in the background instead,
+ * see Jobs; jobs, fg and cancel manage those. timeout limits how long the
+ * statements of each command started afterwards may run in total.
+ */
+public class CommandDispatcher {
+
+    private static final String BEGIN = "begin";
+    private static final String COMMIT = "commit";
+    private static final String ROLLBACK = "rollback";
+    private static final String BACKGROUND = "&";
+    private static final String JOB = "job";
+    private static final String JOBS = "jobs";
+    private static final String FG = "fg";
+    private static final String CANCEL = "cancel";
+    private static final String TIMEOUT = "timeout";
+
+    private final CommandLine cmdLine;
+    private final CommandMetrics metrics;
+    private boolean traceSql = false;
+    private Pipeline pipeline;
+    private int pipelined;
+    private Jobs jobs;
+    private CancellableConnection control;
+    private int timeoutSeconds = 0;
+
+    public CommandDispatcher(CommandLine cmdLine, CommandMetrics metrics) {
+        this.cmdLine = cmdLine;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Prints a statement breakdown after every command
+     */
+    public void setTraceSql(boolean traceSql) {
+        this.traceSql = traceSql;
+    }
+
+    /**
+     * Lets begin and commit run commands in one transaction on the
+     * pipeline's connection
+     */
+    public void setPipeline(Pipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Lets commands run in the background
+     */
+    public void setJobs(Jobs jobs) {
+        this.jobs = jobs;
+    }
+
+    /**
+     * Lets timeout limit the commands run on the control's connection
+     */
+    public void setControl(CancellableConnection control) {
+        this.control = control;
+    }
+
+    /**
+     * @param timeoutSeconds how long the statements of each command may run in total, 0 for no limit
+     */
+    public void setTimeout(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * @return whether a begin is waiting for its commit
+     */
+    public boolean inTransaction() {
+        return pipeline != null && pipeline.isActive();
+    }
+
+    /**
+     * Runs each command on a line in turn
+     */
+    public void dispatch(String line) {
+        for (String command : CommandTokenizer.split(line)) {
+            if (!run(command))
+                return;
+        }
+    }
+
+    /**
+     * @return false if the rest of the line should be skipped
+     */
+    private boolean run(String command) {
+        if (command.endsWith(BACKGROUND))
+            return background(command.substring(0, command.length() - BACKGROUND.length()).trim());
+        String[] words = command.split("\\s+", 2);
+        String rest = words.length > 1 ? words[1] : "";
+        switch (words[0].toLowerCase()) {
+            case BEGIN:
+                return begin();
+            case COMMIT:
+                return commit();
+            case ROLLBACK:
+                rollback("Rolled back " + pipelined + " commands.");
+                return true;
+            case JOB:
+                return background(rest);
+            case JOBS:
+                return listJobs();
+            case FG:
+                return foreground(rest);
+            case CANCEL:
+                return cancel(rest);
+            case TIMEOUT:
+                return timeout(rest);
+            default:
+                break;
+        }
+        boolean ran = execute(command);
+        if (!inTransaction())
+            return true;
+        pipelined++;
+        if (ran && !pipeline.isFailed() && QueryStats.current().getErrors() == 0)
+            return true;
+        rollback("`" + command + "` failed, rolled back " + pipelined + " commands.");
+        return false;
+    }
+
+    private boolean background(String command) {
+        if (jobs == null) {
+            System.out.println("Background jobs aren't available here.");
+            return false;
+        }
+        if (inTransaction()) {
+            System.out.println("Background jobs run outside the transaction, commit or roll back first.");
+            return false;
+        }
+        if (command.isEmpty()) {
+            System.out.println("Usage: <command> & or job <command>");
+            return false;
+        }
+        System.out.println("[" + jobs.start(command, timeoutSeconds).getId() + "] " + command);
+        return true;
+    }
+
+    private boolean listJobs() {
+        if (jobs == null) {
+            System.out.println("Background jobs aren't available here.");
+            return false;
+        }
+        for (Jobs.Job job : jobs.list()) {
+            System.out.println(job.summary());
+        }
+        return true;
+    }
+
+    private boolean foreground(String id) {
+        Jobs.Job job = job(id);
+        if (job == null)
+            return false;
+        try {
+            jobs.follow(job, System.out);
+            System.out.println(job);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean cancel(String id) {
+        Jobs.Job job = job(id);
+        if (job == null)
+            return false;
+        try {
+            jobs.cancel(job);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("SQL Error. Cannot cancel job " + job.getId());
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return the job with the id given to fg or cancel, or null after saying why not
+     */
+    private Jobs.Job job(String id) {
+        if (jobs == null) {
+            System.out.println("Background jobs aren't available here.");
+            return null;
+        }
+        if (!id.matches("\\d+")) {
+            System.out.println("<id> must be integer. Use `jobs` to list them.");
+            return null;
+        }
+        Jobs.Job job = jobs.get(Integer.parseInt(id));
+        if (job == null)
+            System.out.println("No job " + id + ". Use `jobs` to list them.");
+        return job;
+    }
+
+    private boolean timeout(String seconds) {
+        if (seconds.isEmpty()) {
+            if (timeoutSeconds > 0)
+                System.out.println("Commands time out after " + timeoutSeconds + "s.");
+            else
+                System.out.println("Commands don't time out.");
+            return true;
+        }
+        if (!seconds.matches("\\d+")) {
+            System.out.println("<seconds> must be integer, 0 for no timeout.");
+            return false;
+        }
+        timeoutSeconds = Integer.parseInt(seconds);
+        return true;
+    }
+
+    private boolean begin() {
+        if (pipeline == null) {
+            System.out.println("Transactions aren't available here.");
+            return false;
+        }
+        try {
+            pipeline.begin();
+            pipelined = 0;
+            return true;
+        } catch (SQLException e) {
+            System.out.println("SQL Error. Cannot begin transaction");
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean commit() {
+        if (!inTransaction()) {
+            System.out.println("No transaction to commit.");
+            return false;
+        }
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        long start = System.nanoTime();
+        QueryStats.reset();
+        String error = null;
+        try {
+            pipeline.commit();
+        } catch (SQLException e) {
+            error = e.getMessage();
+            System.out.println("SQL Error. Commit failed, rolled back " + pipelined + " commands.");
+            System.out.println(e.getMessage());
+            return false;
+        } finally {
+            commandFinished(COMMIT, event, System.nanoTime() - start, error);
+        }
+        // a catalog loaded while the block was open can't have seen its writes
+        if (pipeline.getWrites() > 0)
+            StoreCatalog.invalidateAll();
+        System.out.println(String.format("Committed %d commands, %d writes in %d round trips.", pipelined,
+            pipeline.getWrites(), pipeline.getRoundTrips()));
+        return true;
+    }
+
+    private void rollback(String message) {
+        if (!inTransaction()) {
+            System.out.println("No transaction to roll back.");
+            return;
+        }
+        try {
+            pipeline.rollback();
+            System.out.println(message);
+        } catch (SQLException e) {
+            System.out.println("SQL Error. Rollback failed");
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses and runs one command, printing usage when it doesn't parse
+     * @return false if it didn't parse
+     */
+    private boolean execute(String command) {
+        String[] args;
+        try {
+            args = CommandTokenizer.tokenize(command);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+
+        try {
+            ParseResult parsed = cmdLine.parseArgs(args);
+            String name = commandName(parsed.asCommandLineList());
+            CommandEvent event = new CommandEvent();
+            event.begin();
+            long start = System.nanoTime();
+            QueryStats.reset();
+            if (control != null)
+                control.start(timeoutSeconds);
+            String error = null;
+            try {
+                new RunAll().handleParseResult(parsed);
+            } catch (ExecutionException e) {
+                error = String.valueOf(cause(e));
+                throw e;
+            } finally {
+                // a failed command still spent its time and round trips
+                SlowQueryLog.flush();
+                if (error == null && control != null && control.isTimedOut())
+                    error = "timed out after " + timeoutSeconds + "s";
+                commandFinished(name, event, System.nanoTime() - start, error);
+            }
+            if (control != null && control.isTimedOut()) {
+                System.out.println("`" + command + "` timed out after " + timeoutSeconds + "s.");
+                return false;
+            }
+            return true;
+        } catch (UnmatchedArgumentException e) {
+            System.out.println("Unrecognized Command. Use `help` for help.");
+        } catch (MissingParameterException e) {
+            for(ArgSpec s : e.getMissing()) {
+                System.out.println(e.getCommandLine().getUsageMessage());
+                System.out.println("Missing following parameters: " + s.paramLabel());
+            }
+        } catch (ParameterException e) {
+            System.out.println("Incorrect Parameters. \n" + e.getCommandLine().getUsageMessage());
+        } catch (ExecutionException e) {
+            // keep the prompt alive and let an open transaction roll back
+            System.out.println("Error running `" + command + "`: " + cause(e));
+        }
+        return false;
+    }
+
+    private static Throwable cause(ExecutionException e) {
+        return e.getCause() instanceof InvocationTargetException ? e.getCause().getCause() : e.getCause();
+    }
+
+    /**
+     * @return the full name of the parsed command, i.e "cart add" or
+     * "statistics store-sales", or null if only the top level was parsed
+     */
+    private static String commandName(List<CommandLine> parsed) {
+        if (parsed.size() < 2)
+            return null;
+        StringBuilder name = new StringBuilder(parsed.get(1).getCommandName());
+        for (int i = 2; i < parsed.size(); i++) {
+            name.append(' ').append(parsed.get(i).getCommandName());
+        }
+        return name.toString();
+    }
+
+    /**
+     * Files the latency and SQL work of a finished command under its name,
+     * emits its flight recorder event and prints the SQL trace when it is
+     * turned on
+     */
+    private void commandFinished(String name, CommandEvent event, long nanos, String error) {
+        if (name == null)
+            return;
+        QueryStats stats = QueryStats.current();
+        metrics.record(name, nanos, stats.getRoundTrips(), stats.getRowsRead());
+        if (event.shouldCommit()) {
+            event.command = name;
+            event.roundTrips = stats.getRoundTrips();
+            event.rowsRead = stats.getRowsRead();
+            event.failed = error != null;
+            event.error = error;
+            event.commit();
+        }
+        if (traceSql)
+            SqlTrace.print(System.out, name, stats, nanos);
+    }
+}
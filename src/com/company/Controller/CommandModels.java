@@ -0,0 +1,80 @@
+package com.company.Controller;
+
+import com.company.Model.Admin;
+import com.company.Model.Customer;
+import com.company.Model.User;
+import com.company.Model.User.UserType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import picocli.CommandLine;
+
+/**
+ * One command tree per kind of user, built once from the command
+ * annotations and reused for the rest of the session.
+ *
+ * Reflecting over the annotations takes a few milliseconds, so the tree is
+ * built on a background thread as soon as the user type is known and is
+ * usually ready by the time the credentials have been typed in. The trees
+ * are shared, so they serve one session at a time.
+ */
+public final class CommandModels {
+
+    private static final Map<UserType, Future<CommandLine>> MODELS = new ConcurrentHashMap<>();
+    private static final ExecutorService BUILDER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "command-model");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CommandModels() {
+    }
+
+    /**
+     * Starts building the command tree for a type of user, if it isn't already
+     */
+    public static void prebuild(UserType type) {
+        MODELS.computeIfAbsent(type, t -> BUILDER.submit(() -> build(t)));
+    }
+
+    /**
+     * @return the command tree for the user's type, waiting for it to be
+     * built if needed, with the user set as the one it acts on
+     */
+    public static CommandLine forUser(User user) {
+        CommandLine cli = model(user.getType());
+        ((CommandService) cli.getCommand()).setUser(user);
+        return cli;
+    }
+
+    private static CommandLine model(UserType type) {
+        prebuild(type);
+        try {
+            return MODELS.get(type).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return build(type);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return a new command tree for a type of user, bound to no user
+     */
+    public static CommandLine build(UserType type) {
+        switch (type) {
+            case admin:
+                return Admin.buildCLI();
+            case customer:
+                return Customer.buildCLI();
+            default:
+                throw new IllegalArgumentException("No commands for " + type);
+        }
+    }
+}
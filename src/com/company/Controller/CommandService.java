@@ -1,21 +1,56 @@
 package com.company.Controller;
 
+import com.company.Database.ConnectionFactory;
+import com.company.Metrics.CommandMetrics;
 import com.company.Model.User;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.HelpCommand;
 import picocli.CommandLine.Option;
 
+/**
+ * The root of every user's command tree. It holds the session the
+ * commands act on, reached through their @ParentCommand, so the command
+ * model itself holds no user and can be built once and reused.
+ */
 @Command(
     name = "wegmans2",
     subcommands = {HelpCommand.class})
 public class CommandService implements Runnable{
 
-    User user;
+    private User user;
+    private CommandMetrics metrics;
+    private ConnectionFactory connections;
 
-    public CommandService(User user) {
+    public CommandService() {
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
         this.user = user;
     }
 
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(CommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return opens extra connections for commands that need their own
+     */
+    public ConnectionFactory getConnections() {
+        return connections;
+    }
+
+    public void setConnections(ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
     // TODO fix quitting
     @Command(name = "quit", description = "quit the application")
     void quit(@Option(names = {"-h", "--help"}, usageHelp = true) boolean help) {
@@ -0,0 +1,83 @@
+package com.company.Controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a line typed at the prompt into arguments. Whitespace separates
+ * arguments, and single or double quotes keep whitespace inside one, so
+ * `browse -n "Peanut Butter"` gives three arguments. Quotes can't be
+ * escaped, a quote of the other kind is taken literally instead.
+ *
+ * A line can hold several commands separated by semicolons, which are
+ * also taken literally inside quotes.
+ */
+public final class CommandTokenizer {
+
+    private CommandTokenizer() {
+    }
+
+    /**
+     * @return each command on the line, trimmed, leaving out empty ones
+     */
+    public static List<String> split(String line) {
+        List<String> commands = new ArrayList<>();
+        char quote = 0;
+        int from = 0;
+        for (int i = 0; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : ';';
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == ';') {
+                String command = line.substring(from, Math.min(i, line.length())).trim();
+                if (!command.isEmpty())
+                    commands.add(command);
+                from = i + 1;
+            }
+        }
+        // an open quote runs to the end, and tokenize will reject it
+        if (quote != 0)
+            commands.add(line.substring(from).trim());
+        return commands;
+    }
+
+    /**
+     * @return the arguments of the line, empty for a blank line
+     * @throws IllegalArgumentException when a quote is left open
+     */
+    public static String[] tokenize(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        // true once the current argument has a quote, so "" is an argument
+        boolean started = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+                else
+                    current.append(c);
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                started = true;
+            } else if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                if (started || current.length() > 0) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    started = false;
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (quote != 0)
+            throw new IllegalArgumentException("Unbalanced quotes in " + line);
+        if (started || current.length() > 0)
+            args.add(current.toString());
+        return args.toArray(new String[0]);
+    }
+}
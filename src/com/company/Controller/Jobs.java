@@ -0,0 +1,253 @@
+package com.company.Controller;
+
+import com.company.Database.CancellableConnection;
+import com.company.Database.ConnectionFactory;
+import com.company.Metrics.CommandMetrics;
+import com.company.Model.Admin;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import picocli.CommandLine;
+
+/**
+ * Commands an admin runs in the background so the prompt stays free, such
+ * as a long statistics report or a large fulfill-reorder.
+ *
+ * Each job runs on its own thread with its own connection, a copy of the
+ * admin (same account and store) and its own command tree, so it shares no
+ * JDBC or model state with the prompt. What it prints is kept in a buffer
+ * until it is brought to the foreground. Cancelling a job cancels the
+ * statement it is running on the server.
+ */
+public class Jobs {
+
+    private static final long FOLLOW_INTERVAL_MS = 50;
+
+    public enum State {
+        RUNNING("Running"), DONE("Done"), CANCELLED("Cancelled"), TIMED_OUT("Timed out"), FAILED("Failed");
+
+        private final String label;
+
+        State(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * The output of a job, which fg copies out as it grows
+     */
+    private static class JobOutput extends ByteArrayOutputStream {
+
+        /**
+         * Prints what was written after a point
+         * @return the point up to which it has now been printed
+         */
+        synchronized int printFrom(int from, PrintStream out) {
+            out.write(buf, from, count - from);
+            out.flush();
+            return count;
+        }
+    }
+
+    public static class Job {
+        private final int id;
+        private final String command;
+        private final JobOutput output = new JobOutput();
+        private final PrintStream out = new PrintStream(output, true);
+        private final long startNanos = System.nanoTime();
+        private volatile long endNanos;
+        private volatile State state = State.RUNNING;
+        private volatile CancellableConnection control;
+        private volatile boolean cancelRequested = false;
+        private volatile boolean started = false;
+        private Future<?> future;
+        private boolean reported = false;
+
+        private Job(int id, String command) {
+            this.id = id;
+            this.command = command;
+        }
+
+        private synchronized void finish(State result) {
+            if (state != State.RUNNING)
+                return;
+            state = result;
+            endNanos = System.nanoTime();
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return how long it has run, or ran for
+         */
+        public long getElapsedMillis() {
+            long end = state == State.RUNNING ? System.nanoTime() : endNanos;
+            return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+        }
+
+        /**
+         * @return the job's status line, pointing out output waiting for fg
+         */
+        public String summary() {
+            if (output.size() == 0 || state == State.RUNNING)
+                return toString();
+            return String.format("%s  (%d bytes of output, use fg %d)", this, output.size(), id);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%d] %-9s %8.1fs  %s", id, state, getElapsedMillis() / 1000.0, command);
+        }
+    }
+
+    private final Admin admin;
+    private final CommandMetrics metrics;
+    private final ConnectionFactory connections;
+    private final Map<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param admin the admin the jobs act as
+     * @param metrics where the jobs' commands are recorded
+     * @param connections opens each job's connection
+     */
+    public Jobs(Admin admin, CommandMetrics metrics, ConnectionFactory connections) {
+        this.admin = admin;
+        this.metrics = metrics;
+        this.connections = connections;
+        ThreadOutput.install();
+    }
+
+    /**
+     * Starts a command in the background
+     * @param timeoutSeconds how long its statements may run in total, 0 for no limit
+     */
+    public Job start(String command, int timeoutSeconds) {
+        Job job = new Job(nextId.getAndIncrement(), command);
+        jobs.put(job.id, job);
+        job.future = pool.submit(() -> run(job, timeoutSeconds));
+        return job;
+    }
+
+    private void run(Job job, int timeoutSeconds) {
+        job.started = true;
+        ThreadOutput.route(job.out);
+        try (Connection con = CancellableConnection.wrap(connections.connect())) {
+            job.control = CancellableConnection.of(con);
+            if (job.cancelRequested)
+                job.control.cancel();
+            CommandLine cli = CommandModels.build(admin.getType());
+            CommandService session = cli.getCommand();
+            session.setUser(admin.copyWith(con));
+            session.setMetrics(metrics);
+            session.setConnections(connections);
+            CommandDispatcher dispatcher = new CommandDispatcher(cli, metrics);
+            dispatcher.setControl(job.control);
+            dispatcher.setTimeout(timeoutSeconds);
+            dispatcher.dispatch(job.command);
+            if (job.control.isTimedOut())
+                job.finish(State.TIMED_OUT);
+            else if (job.cancelRequested)
+                job.finish(State.CANCELLED);
+            else
+                job.finish(State.DONE);
+        } catch (SQLException e) {
+            System.out.println("SQL Error. Cannot connect to database");
+            System.out.println(e.getMessage());
+            job.finish(State.FAILED);
+        } catch (RuntimeException e) {
+            System.out.println("Error running `" + job.command + "`: " + e);
+            job.finish(State.FAILED);
+        } finally {
+            ThreadOutput.route(null);
+        }
+    }
+
+    public Job get(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * @return every job still running or not yet brought to the foreground
+     */
+    public Collection<Job> list() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Cancels the statement a job is running and any it would run next
+     */
+    public void cancel(Job job) throws SQLException {
+        job.cancelRequested = true;
+        CancellableConnection control = job.control;
+        if (control != null)
+            control.cancel();
+        job.future.cancel(true);
+        // a job cancelled before its thread picked it up never runs at all
+        if (!job.started)
+            job.finish(State.CANCELLED);
+    }
+
+    /**
+     * Prints a job's output so far and then as it comes until the job ends,
+     * after which the job is forgotten
+     */
+    public void follow(Job job, PrintStream out) throws InterruptedException {
+        int printed = 0;
+        while (true) {
+            // read the state first so output written just before the end isn't missed
+            boolean finished = job.state != State.RUNNING;
+            printed = job.output.printFrom(printed, out);
+            if (finished)
+                break;
+            Thread.sleep(FOLLOW_INTERVAL_MS);
+        }
+        job.reported = true;
+        jobs.remove(job.id);
+    }
+
+    /**
+     * Prints a line for each job that ended since the last call. Jobs that
+     * printed nothing are forgotten, the rest are kept until fg shows them.
+     */
+    public void reportFinished(PrintStream out) {
+        for (Job job : jobs.values()) {
+            if (job.state == State.RUNNING || job.reported)
+                continue;
+            job.reported = true;
+            out.println(job.summary());
+            if (job.output.size() == 0)
+                jobs.remove(job.id);
+        }
+    }
+}
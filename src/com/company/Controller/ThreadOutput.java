@@ -0,0 +1,69 @@
+package com.company.Controller;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Lets each thread send what it prints to System.out somewhere else.
+ *
+ * The model prints its results straight to System.out, so to keep a
+ * background job's output off the prompt System.out is replaced by a
+ * stream that writes to the calling thread's target, or to the console
+ * when it has none. Threads started by a job print where the job does.
+ */
+public final class ThreadOutput {
+
+    private static final InheritableThreadLocal<PrintStream> TARGET = new InheritableThreadLocal<>();
+    private static PrintStream console;
+
+    private ThreadOutput() {
+    }
+
+    /**
+     * Puts the routing stream in place of System.out, once
+     */
+    public static synchronized void install() {
+        if (console != null)
+            return;
+        console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                target().write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                target().write(b, off, len);
+            }
+
+            @Override
+            public void flush() {
+                target().flush();
+            }
+        }, true));
+    }
+
+    /**
+     * Sends the calling thread's output to a stream
+     * @param target where to print, or null for the console
+     */
+    public static void route(PrintStream target) {
+        if (target == null)
+            TARGET.remove();
+        else
+            TARGET.set(target);
+    }
+
+    /**
+     * @return where the calling thread's output goes, or null for the console
+     */
+    public static PrintStream current() {
+        return TARGET.get();
+    }
+
+    private static PrintStream target() {
+        PrintStream target = TARGET.get();
+        return target != null ? target : console;
+    }
+}
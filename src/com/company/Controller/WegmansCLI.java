@@ -1,19 +1,37 @@
 package com.company.Controller;
 
+import com.company.Database.CancellableConnection;
+import com.company.Database.ChangeListener;
+import com.company.Database.ConnectionFactory;
+import com.company.Database.InstrumentedConnection;
+import com.company.Database.OfflineConnection;
+import com.company.Database.Pipeline;
+import com.company.Database.QueryCache;
+import com.company.Database.QueryStats;
+import com.company.Database.ReadRouting;
+import com.company.Database.ReplicationFeed;
+import com.company.Database.Sharding;
+import com.company.Database.SlowQueryLog;
+import com.company.Metrics.CommandMetrics;
+import com.company.Metrics.FlightRecording;
 import com.company.Model.Admin;
 import com.company.Model.Customer;
+import com.company.Model.ReadModel;
+import com.company.Model.Snapshot;
+import com.company.Model.StoreCatalog;
 import com.company.Model.User;
 import com.company.Model.User.UserType;
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
-import picocli.CommandLine.MissingParameterException;
-import picocli.CommandLine.Model.ArgSpec;
-import picocli.CommandLine.ParameterException;
-import picocli.CommandLine.RunAll;
-import picocli.CommandLine.UnmatchedArgumentException;
-import org.apache.tools.ant.types.Commandline;
+import java.util.concurrent.CompletableFuture;
 
 public class WegmansCLI {
     private static Scanner scanner = new Scanner(System.in);
@@ -22,57 +40,221 @@ public class WegmansCLI {
     private static final String ADMIN_PROMPT_PASSWORD = "Enter Admin password: ";
     private static final String CUSTOMER_PROMPT = "Enter customer phone number: ";
     private static final String WELCOME = "Welcome! ";
+    private static final String OFFLINE = "The database can't be reached (%s), so you are browsing the snapshot " +
+        "offline as a guest; anything that needs the database will fail.";
     private static final String PROMPT = "> ";
+    private static final String TRANSACTION_PROMPT = "(tx)> ";
 
+    private final String url;
+    private final String user;
+    private final String password;
     private Connection dataBaseConnection;
+    private CancellableConnection control;
+    private ConnectionFactory connections;
+    private CommandMetrics metrics = new CommandMetrics();
+    private boolean traceSql = false;
 
     public WegmansCLI(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        connections = () -> QueryCache.wrap(Sharding.wrap(ReadRouting.wrap(
+            InstrumentedConnection.wrap(DriverManager.getConnection(url, user, password)))));
+        StoreCatalog.setConnections(connections);
+    }
+
+    /**
+     * Opens the session's connection
+     * @return why it couldn't be opened, or null if it was
+     */
+    private String connect() {
         try {
-            dataBaseConnection = DriverManager.getConnection(url, user, password);
+            use(connections.connect());
+            return null;
         } catch (SQLException e) {
-            System.out.println("SQL Error. Cannot connect to database");
+            return e.getMessage();
+        }
+    }
+
+    private void use(Connection con) {
+        con = CancellableConnection.wrap(con);
+        control = CancellableConnection.of(con);
+        dataBaseConnection = Pipeline.wrap(con);
+    }
+
+    /**
+     * Answers store searches, price checks and store catalogs from a
+     * snapshot file, from startup until something is written, and keeps
+     * the CLI usable for browsing if the database can't be reached
+     * @param path the snapshot file
+     */
+    public void openSnapshot(String path) {
+        try {
+            Snapshot.open(new File(path));
+        } catch (IOException e) {
+            System.out.println("Could not open snapshot " + path);
             System.out.println(e.getMessage());
-            System.exit(1);
         }
     }
 
+    /**
+     * Rewrites the command metrics to a file while the CLI runs
+     * @param path the file to write
+     * @param seconds how often to rewrite it
+     */
+    public void dumpMetricsTo(String path, long seconds) {
+        metrics.dumpPeriodically(path, seconds);
+    }
+
+    /**
+     * Answers repeated queries, from every session, out of memory
+     * @param entries how many results to keep
+     */
+    public void cacheQueries(int entries) {
+        QueryCache.enable(entries);
+    }
+
+    /**
+     * Keeps the query cache and store catalogs in step with writes made by
+     * other programs, as the database reports them
+     */
+    public void listenForChanges() {
+        ChangeListener.onChange(QueryCache::changed);
+        ChangeListener.onChange(StoreCatalog::changed);
+        ChangeListener.start(connections);
+    }
+
+    /**
+     * Serves store searches, catalogs and statistics from a copy of the
+     * tables kept in memory from the replication stream
+     * @param schema the schema of the tables
+     * @param maxStalenessMs how far behind the database those reads may be
+     */
+    public void serveReadsLocally(String schema, long maxStalenessMs) {
+        ReadModel.start(new ReplicationFeed(url, user, password, schema, ReadModel.TABLES), maxStalenessMs);
+    }
+
+    /**
+     * Sends the reads that only show data to streaming replicas of the
+     * database, and everything else to it
+     * @param hosts the replicas, each as host:port
+     * @param schema the schema of the tables
+     * @param maxLagMs how far behind a replica may be and still be read
+     */
+    public void routeReadsTo(List<String> hosts, String schema, long maxLagMs) {
+        List<ReadRouting.Replica> replicas = new ArrayList<>();
+        for (String host : hosts) {
+            String replicaUrl = String.format("jdbc:postgresql://%s/?currentSchema=%s", host, schema);
+            replicas.add(new ReadRouting.Replica(host,
+                () -> InstrumentedConnection.wrap(DriverManager.getConnection(replicaUrl, user, password))));
+        }
+        ReadRouting.enable(replicas, maxLagMs);
+    }
+
+    /**
+     * Keeps the stock, orders and reorders of the stores in some states in
+     * other databases
+     * @param specs the shards, each as host:port=STATE[,STATE...]
+     * @param schema the schema of the tables
+     */
+    public void shardByState(List<String> specs, String schema) {
+        List<Sharding.Shard> shards = new ArrayList<>();
+        for (String spec : specs) {
+            String[] parts = spec.split("=", 2);
+            if (parts.length != 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+                System.out.println("A shard is given as <host:port>=<state_abbr>[,<state_abbr>...], not " + spec);
+                System.exit(1);
+            }
+            String shardUrl = String.format("jdbc:postgresql://%s/?currentSchema=%s", parts[0], schema);
+            shards.add(new Sharding.Shard(parts[0],
+                () -> InstrumentedConnection.wrap(DriverManager.getConnection(shardUrl, user, password)),
+                Arrays.asList(parts[1].split(","))));
+        }
+        Sharding.enable(shards);
+    }
+
+    /**
+     * Prints a statement breakdown after every command and flags N+1 query patterns
+     */
+    public void setTraceSql(boolean traceSql) {
+        this.traceSql = traceSql;
+        QueryStats.setTracing(traceSql);
+    }
+
+    /**
+     * Logs statements slower than a threshold, and their plans, to a rotating file
+     * @param thresholdMs the threshold in milliseconds
+     * @param path the log file
+     */
+    public void logSlowQueries(long thresholdMs, String path) {
+        try {
+            SlowQueryLog.enable(thresholdMs, path);
+        } catch (IOException e) {
+            System.out.println("Could not open slow query log " + path);
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a Flight Recorder recording, including the Wegmans2 command,
+     * SQL, materialization and cache events, written to a file on exit
+     * @param path the .jfr file
+     */
+    public void recordFlight(String path) {
+        try {
+            FlightRecording.start(path);
+        } catch (IOException | ParseException e) {
+            System.out.println("Could not start flight recording");
+            System.out.println(e.getMessage());
+        }
+    }
 
     public void run() {
+        // with a snapshot to answer from, the user logs in while the connection opens
+        CompletableFuture<String> connecting = Snapshot.isOpen() ? CompletableFuture.supplyAsync(this::connect)
+            : CompletableFuture.completedFuture(connect());
+        if (!Snapshot.isOpen() && connecting.join() != null) {
+            System.out.println("SQL Error. Cannot connect to database");
+            System.out.println(connecting.join());
+            System.exit(1);
+        }
         splashScreen();
-        User user = chooseUser();
-        String input = null;
-        String[] args = null;
-        picocli.CommandLine cmdLine = user.initCLI();
+        UserType type = chooseUserType();
+        String failure = connecting.join();
+        User user;
+        if (failure == null) {
+            Snapshot.refreshInBackground(connections);
+            user = logIn(type);
+        } else {
+            use(OfflineConnection.create(failure));
+            System.out.println(String.format(OFFLINE, failure));
+            user = new Customer(dataBaseConnection, "");
+        }
+        picocli.CommandLine cmdLine = CommandModels.forUser(user);
+        CommandService session = cmdLine.getCommand();
+        session.setMetrics(metrics);
+        session.setConnections(connections);
+        CommandDispatcher dispatcher = new CommandDispatcher(cmdLine, metrics);
+        dispatcher.setTraceSql(traceSql);
+        dispatcher.setPipeline(Pipeline.of(dataBaseConnection));
+        dispatcher.setControl(control);
+        Jobs jobs = null;
+        if (user instanceof Admin) {
+            jobs = new Jobs((Admin) user, metrics, connections);
+            dispatcher.setJobs(jobs);
+        }
 
         // main running loo
-        loop : while(true) {
+        while(true) {
             // Get the next command the user enters
-            System.out.print(PROMPT);
-            input = scanner.nextLine();
-            args = Commandline.translateCommandline(input);
-
-            // parse the commands
-            try {
-                cmdLine.parse(args);
-                if (cmdLine.isUsageHelpRequested()) {
-                    cmdLine.usage(System.out);
-                } else {
-                    cmdLine.parseWithHandler(new RunAll(), args);
-                }
-            } catch (UnmatchedArgumentException e) {
-                System.out.println("Unrecognized Command. Use `help` for help.");
-            } catch (MissingParameterException e) {
-                for(ArgSpec s : e.getMissing()) {
-                    System.out.println(e.getCommandLine().getUsageMessage());
-                    System.out.println("Missing following parameters: " + s.paramLabel());
-                }
-            } catch (ParameterException e) {
-                System.out.println("Incorrect Parameters. \n" + e.getCommandLine().getUsageMessage());
-            }
+            if (jobs != null)
+                jobs.reportFinished(System.out);
+            System.out.print(dispatcher.inTransaction() ? TRANSACTION_PROMPT : PROMPT);
+            dispatcher.dispatch(scanner.nextLine());
         }
     }
 
-    private User chooseUser() {
+    private UserType chooseUserType() {
         UserType result;
         String user;
         while(true) {
@@ -80,12 +262,17 @@ public class WegmansCLI {
             user = scanner.nextLine().toLowerCase();
             try {
                 result = UserType.valueOf(user);
+                // build the commands while the credentials are typed in
+                CommandModels.prebuild(result);
                 break;
             } catch (IllegalArgumentException e) {
                 continue;
             }
         }
+        return result;
+    }
 
+    private User logIn(UserType result) {
         User userObject = null;
         switch (result) {
             case admin:
@@ -0,0 +1,67 @@
+package com.company.DataGen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Streams a partition straight into a table with COPY ... FROM STDIN, in
+ * 64KB chunks, over a connection of its own
+ */
+public class CopySink implements RowSink {
+
+    private static final int CHUNK = 1 << 16;
+
+    private final Connection con;
+    private final CopyIn copy;
+    private final StringBuilder buffer = new StringBuilder(CHUNK + 1024);
+
+    /**
+     * @param con a connection used only by this sink, closed with it
+     * @param table the table, i.e "orders"
+     * @param columns its columns in the order rows are given
+     */
+    public CopySink(Connection con, String table, String columns) throws SQLException {
+        this.con = con;
+        this.copy = con.unwrap(PGConnection.class).getCopyAPI()
+            .copyIn("COPY " + table + " (" + columns + ") FROM STDIN WITH (FORMAT csv)");
+    }
+
+    @Override
+    public void row(Object... values) throws IOException {
+        RowSink.appendCsv(buffer, values);
+        if (buffer.length() >= CHUNK)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+        try {
+            copy.writeToCopy(bytes, 0, bytes.length);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            copy.endCopy();
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            try {
+                if (copy.isActive())
+                    copy.cancelCopy();
+                con.close();
+            } catch (SQLException e) {
+                // the partition already failed or finished
+            }
+        }
+    }
+}
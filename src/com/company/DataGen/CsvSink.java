@@ -0,0 +1,33 @@
+package com.company.DataGen;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a partition to its own CSV file so partitions can be written in parallel
+ */
+public class CsvSink implements RowSink {
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder();
+
+    public CsvSink(Path file) throws IOException {
+        this.out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public void row(Object... values) throws IOException {
+        line.setLength(0);
+        RowSink.appendCsv(line, values);
+        out.append(line);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,323 @@
+package com.company.DataGen;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes a wegmans2 dataset at a chosen scale factor, one table at a time
+ * in foreign key order, each table split into fixed size partitions that
+ * are generated in parallel.
+ *
+ * Customers and orders grow linearly with the scale factor, stores and
+ * products with its square root (a chain gains customers faster than it
+ * opens stores or widens its catalogue), which keeps soldBy growing in
+ * step with orders as in the sample. Partitions are fixed by row counts,
+ * not by the number of threads, so a seed always produces the same rows.
+ */
+public class DatasetGenerator {
+
+    private static final int STORES_PER_PARTITION = 50;
+    private static final int PRODUCTS_PER_PARTITION = 50_000;
+    private static final int CUSTOMERS_PER_PARTITION = 50_000;
+
+    static final String VENDOR = "vendor";
+    static final String BRAND = "brand";
+    static final String DISTRIBUTED_BY = "distributedby";
+    static final String ADMIN = "admin";
+    static final String STORE = "store";
+    static final String PRODUCT = "product";
+    static final String CUSTOMER = "customer";
+    static final String SOLD_BY = "soldby";
+    static final String CARRIED_BY = "carriedby";
+    static final String ORDERS = "orders";
+    static final String REORDER = "reorder";
+
+    /**
+     * Every table in the order it must be loaded, with its columns
+     */
+    static final Map<String, String> TABLES = new LinkedHashMap<>();
+
+    static {
+        TABLES.put(VENDOR, "name, homestate");
+        TABLES.put(BRAND, "name, numberofproducts, vendor");
+        TABLES.put(DISTRIBUTED_BY, "vendor, brand");
+        TABLES.put(ADMIN, "username, password");
+        TABLES.put(STORE, "id, address, state, opentime, closetime");
+        TABLES.put(PRODUCT, "upc, brand, name, type, size, price");
+        TABLES.put(CUSTOMER, "phonenumber, firstname, lastname");
+        TABLES.put(SOLD_BY, "storeid, productid, numberinstock");
+        TABLES.put(CARRIED_BY, "storeid, brand");
+        TABLES.put(ORDERS, "customer, ordernumber, product, store, numbersold");
+        TABLES.put(REORDER, "ordernumber, product, store, deliverydate, stockrequested, fulfilledby");
+    }
+
+    /**
+     * Opens a sink for one partition of a table
+     */
+    public interface Target {
+        RowSink open(String table, int partition) throws IOException, SQLException;
+    }
+
+    private final SampleData sample;
+    private final DatasetProfile profile;
+    private final long seed;
+    private final int stores;
+    private final int products;
+    private final long customers;
+    private final PrintStream log;
+    private final Map<String, AtomicLong> written = new LinkedHashMap<>();
+
+    /**
+     * @param scale the scale factor, 1 being the size of the sample
+     * @param stores the number of stores, or 0 to scale them
+     * @param products the number of products, or 0 to scale them
+     * @param customers the number of customers, or 0 to scale them
+     * @param log where progress is reported
+     */
+    public DatasetGenerator(SampleData sample, double scale, long seed, int stores, int products, long customers,
+                            PrintStream log) {
+        this.sample = sample;
+        this.profile = new DatasetProfile(sample);
+        this.seed = seed;
+        this.stores = stores > 0 ? stores : (int) Math.round(profile.getSampleStores() * Math.sqrt(scale));
+        this.products = products > 0 ? products : (int) Math.round(profile.getSampleProducts() * Math.sqrt(scale));
+        this.customers = customers > 0 ? customers : Math.round(profile.getSampleCustomers() * scale);
+        this.log = log;
+        if (this.stores < profile.getSampleStores() || this.products < profile.getSampleProducts()
+            || this.customers < profile.getSampleCustomers())
+            throw new IllegalArgumentException("The dataset can't be smaller than the sample it includes");
+        for (String table : TABLES.keySet()) {
+            written.put(table, new AtomicLong());
+        }
+    }
+
+    /**
+     * @return the number of orders the customers will place, before anything is written
+     */
+    public long estimatedOrders() {
+        return Math.round(customers * profile.getOrdersPerCustomer());
+    }
+
+    /**
+     * @return the approximate number of soldBy rows
+     */
+    public long estimatedSoldBy() {
+        return Math.round((double) stores * products * profile.getMeanAssortment());
+    }
+
+    /**
+     * Generates every table into the target
+     * @param threads how many partitions to generate at once
+     * @return rows written per table
+     */
+    public Map<String, Long> generate(Target target, int threads) throws IOException, SQLException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            copySample(target, VENDOR);
+            writeBrands(target);
+            copySample(target, DISTRIBUTED_BY);
+            copySample(target, ADMIN);
+            run(pool, STORE, partitions(stores, STORES_PER_PARTITION), (part, from, to) -> {
+                try (RowSink sink = target.open(STORE, part)) {
+                    for (int i = (int) from; i < to; i++) {
+                        row(sink, STORE, profile.store(seed, i));
+                    }
+                }
+            });
+            run(pool, PRODUCT, partitions(products, PRODUCTS_PER_PARTITION), (part, from, to) -> {
+                try (RowSink sink = target.open(PRODUCT, part)) {
+                    for (int i = (int) from; i < to; i++) {
+                        row(sink, PRODUCT, profile.product(seed, i));
+                    }
+                }
+            });
+            run(pool, CUSTOMER, partitions(customers, CUSTOMERS_PER_PARTITION), (part, from, to) -> {
+                try (RowSink sink = target.open(CUSTOMER, part)) {
+                    for (long i = from; i < to; i++) {
+                        row(sink, CUSTOMER, profile.customer(seed, i));
+                    }
+                }
+            });
+            run(pool, SOLD_BY, partitions(stores, STORES_PER_PARTITION), (part, from, to) -> {
+                try (RowSink soldBy = target.open(SOLD_BY, part); RowSink carriedBy = target.open(CARRIED_BY, part)) {
+                    for (int store = (int) from; store < to; store++) {
+                        writeAssortment(soldBy, carriedBy, store);
+                    }
+                }
+            });
+            writeOrders(pool, target);
+            copySample(target, REORDER);
+        } finally {
+            pool.shutdownNow();
+        }
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, AtomicLong> e : written.entrySet()) {
+            counts.put(e.getKey(), e.getValue().get());
+        }
+        return counts;
+    }
+
+    private void writeAssortment(RowSink soldBy, RowSink carriedBy, int store) throws IOException {
+        String storeId = profile.storeId(store);
+        int[] stock = profile.soldBy(seed, store, products);
+        Set<String> brands = new LinkedHashSet<>();
+        List<String> sampled = profile.sampleCarriedBy(store);
+        if (sampled != null)
+            brands.addAll(sampled);
+        for (int p = 0; p < stock.length; p++) {
+            if (stock[p] < 0)
+                continue;
+            row(soldBy, SOLD_BY, storeId, profile.upc(p), stock[p]);
+            brands.add(profile.brandOf(p));
+        }
+        for (String brand : brands) {
+            row(carriedBy, CARRIED_BY, storeId, brand);
+        }
+    }
+
+    /**
+     * Orders are numbered across the whole table, so the first pass counts
+     * each partition's orders to know where its numbering starts
+     */
+    private void writeOrders(ExecutorService pool, Target target) throws IOException, SQLException, InterruptedException {
+        List<long[]> parts = partitions(customers, CUSTOMERS_PER_PARTITION);
+        List<Callable<Long>> counting = new ArrayList<>();
+        for (long[] part : parts) {
+            counting.add(() -> {
+                long count = 0;
+                for (long c = part[1]; c < part[2]; c++) {
+                    count += profile.orderCount(seed, c);
+                }
+                return count;
+            });
+        }
+        long[] firstOrder = new long[parts.size()];
+        long total = 0;
+        List<Future<Long>> counts = pool.invokeAll(counting);
+        for (int i = 0; i < counts.size(); i++) {
+            firstOrder[i] = total;
+            total += await(counts.get(i));
+        }
+        if (total > DatasetProfile.maxOrders())
+            throw new IllegalArgumentException(String.format("%d orders won't fit in 8 digit order numbers (at most %d)",
+                total, DatasetProfile.maxOrders()));
+
+        run(pool, ORDERS, parts, (part, from, to) -> {
+            long next = firstOrder[part];
+            try (RowSink sink = target.open(ORDERS, part)) {
+                for (long c = from; c < to; c++) {
+                    int count = profile.orderCount(seed, c);
+                    for (Object[] order : profile.orders(seed, c, next, count, products, stores)) {
+                        row(sink, ORDERS, order);
+                    }
+                    next += count;
+                }
+            }
+        });
+    }
+
+    private void writeBrands(Target target) throws IOException, SQLException {
+        Map<String, Integer> productsByBrand = new LinkedHashMap<>();
+        for (int p = 0; p < products; p++) {
+            productsByBrand.merge(profile.brandOf(p), 1, Integer::sum);
+        }
+        try (RowSink sink = target.open(BRAND, 0)) {
+            for (String[] brand : sample.rows(BRAND)) {
+                row(sink, BRAND, brand[0], productsByBrand.getOrDefault(brand[0], 0), brand[2]);
+            }
+        }
+    }
+
+    private void copySample(Target target, String table) throws IOException, SQLException {
+        try (RowSink sink = target.open(table, 0)) {
+            for (String[] values : sample.rows(table)) {
+                Object[] row = new Object[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    row[i] = values[i] == null ? null : values[i].trim();
+                }
+                row(sink, table, row);
+            }
+        }
+    }
+
+    private void row(RowSink sink, String table, Object... values) throws IOException {
+        sink.row(values);
+        written.get(table).incrementAndGet();
+    }
+
+    /**
+     * Work on the rows [from, to) of one partition
+     */
+    private interface PartitionWork {
+        void write(int partition, long from, long to) throws IOException, SQLException;
+    }
+
+    private void run(ExecutorService pool, String table, List<long[]> parts, PartitionWork work)
+        throws IOException, SQLException, InterruptedException {
+        long start = System.nanoTime();
+        long before = written.get(table).get();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (long[] part : parts) {
+            tasks.add(() -> {
+                work.write((int) part[0], part[1], part[2]);
+                return null;
+            });
+        }
+        for (Future<Void> done : pool.invokeAll(tasks)) {
+            await(done);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long rows = written.get(table).get() - before;
+        log.println(String.format("%-14s %,12d rows in %3d partitions %8.1f s %,12.0f rows/s", table, rows,
+            parts.size(), seconds, rows / Math.max(seconds, 1e-9)));
+    }
+
+    // {partition, from, to} for each slice of count rows
+    private static List<long[]> partitions(long count, long size) {
+        List<long[]> parts = new ArrayList<>();
+        for (long from = 0, part = 0; from < count; from += size, part++) {
+            parts.add(new long[]{part, from, Math.min(count, from + size)});
+        }
+        return parts;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, SQLException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    public int getStores() {
+        return stores;
+    }
+
+    public int getProducts() {
+        return products;
+    }
+
+    public long getCustomers() {
+        return customers;
+    }
+}
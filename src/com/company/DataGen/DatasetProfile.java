@@ -0,0 +1,372 @@
+package com.company.DataGen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * What the generator learns from the sample data, and the rules it uses to
+ * make any generated row from nothing but its index and the seed.
+ *
+ * Every generated product copies a sample product's brand, type and size
+ * and prices within 20% of it, so the brand, vendor and type mix and the
+ * brands' skew are those of the sample. Stores copy a sample store's hours
+ * and how much of the catalogue it carries; states follow the sample's
+ * spread. Customers draw their number of orders from the sample's orders
+ * per customer, place most of them at one home store, and buy products
+ * with the sample's popularity. Stock and quantities sold come straight
+ * from the observed values.
+ *
+ * The sample's own stores, products, customers and soldBy rows are kept as
+ * the first of each, so existing logins, reorders and examples still work.
+ */
+public class DatasetProfile {
+
+    private static final long ORDER_NUMBER_BASE = 10_000_000L;
+    private static final long ORDER_NUMBER_SPACE = 90_000_000L;
+    private static final long PHONE_BASE = 1_000_000_000L;
+    private static final long PHONE_SPACE = 9_000_000_000L;
+    private static final long UPC_BASE = 100_000_000_000L;
+    private static final long UPC_SPACE = 900_000_000_000L;
+    private static final long STRIDE = 7_919;
+    private static final double PRICE_SPREAD = 0.2;
+
+    // random streams, so each table draws independently of the others
+    static final int PRODUCTS = 1;
+    static final int STORES = 2;
+    static final int CUSTOMERS = 3;
+    static final int SOLD_BY = 4;
+    static final int ORDER_COUNTS = 5;
+    static final int ORDERS = 6;
+
+    private final List<String[]> products;
+    private final List<String[]> stores;
+    private final List<String[]> customers;
+    private final Map<String, Integer> productIndex = new HashMap<>();
+    private final Map<String, Integer> storeIndex = new HashMap<>();
+    private final Map<String, Integer> sampleStock = new HashMap<>();
+    private final Map<String, List<String>> sampleCarriedBy = new HashMap<>();
+    private final Set<String> sampleUpcs = new HashSet<>();
+    private final Set<String> samplePhones = new HashSet<>();
+    private int lastSampleStoreId = 0;
+
+    private final double[] carriedFraction;
+    private final double[] assortment;
+    private final double meanAssortment;
+    private final double[] productPopularity;
+    private final double[] storePopularity;
+    private final int[] stock;
+    private final int[] ordersPerCustomer;
+    private final int[] numberSold;
+    private final double homeStoreShare;
+    private final List<String> streets = new ArrayList<>();
+    private final List<String> states = new ArrayList<>();
+    private final List<String> firstNames = new ArrayList<>();
+    private final List<String> lastNames = new ArrayList<>();
+
+    public DatasetProfile(SampleData sample) {
+        products = sample.rows("product");
+        stores = sample.rows("store");
+        customers = sample.rows("customer");
+        if (products.isEmpty() || stores.isEmpty() || customers.isEmpty())
+            throw new IllegalArgumentException("The sample has no products, stores or customers");
+
+        for (int i = 0; i < products.size(); i++) {
+            productIndex.put(products.get(i)[0].trim(), i);
+            sampleUpcs.add(products.get(i)[0].trim());
+        }
+        for (int i = 0; i < stores.size(); i++) {
+            String[] store = stores.get(i);
+            storeIndex.put(store[0].trim(), i);
+            lastSampleStoreId = Math.max(lastSampleStoreId, Integer.parseInt(store[0].trim()));
+            states.add(store[2].trim());
+            int space = store[1].indexOf(' ');
+            streets.add(space > 0 ? store[1].substring(space + 1) : store[1]);
+        }
+        for (String[] customer : customers) {
+            samplePhones.add(customer[0].trim());
+            firstNames.add(customer[1]);
+            if (customer[2] != null)
+                lastNames.add(customer[2]);
+        }
+
+        int[] carriers = new int[products.size()];
+        int[] carried = new int[stores.size()];
+        List<String[]> soldBy = sample.rows("soldby");
+        stock = new int[soldBy.size()];
+        for (int i = 0; i < soldBy.size(); i++) {
+            String[] row = soldBy.get(i);
+            Integer p = productIndex.get(row[1].trim());
+            Integer s = storeIndex.get(row[0].trim());
+            stock[i] = row[2] == null ? 0 : Integer.parseInt(row[2].trim());
+            if (p == null || s == null)
+                continue;
+            carriers[p]++;
+            carried[s]++;
+            sampleStock.put(row[0].trim() + "|" + row[1].trim(), stock[i]);
+        }
+        carriedFraction = new double[products.size()];
+        for (int i = 0; i < carriers.length; i++) {
+            carriedFraction[i] = (double) carriers[i] / stores.size();
+        }
+        assortment = new double[stores.size()];
+        double total = 0;
+        for (int i = 0; i < carried.length; i++) {
+            assortment[i] = (double) carried[i] / products.size();
+            total += assortment[i];
+        }
+        meanAssortment = total / stores.size();
+        for (String[] row : sample.rows("carriedby")) {
+            sampleCarriedBy.computeIfAbsent(row[0].trim(), k -> new ArrayList<>()).add(row[1]);
+        }
+
+        List<String[]> orders = sample.rows("orders");
+        productPopularity = new double[products.size()];
+        storePopularity = new double[stores.size()];
+        Arrays.fill(productPopularity, 1);
+        Arrays.fill(storePopularity, 1);
+        numberSold = new int[orders.size()];
+        Map<String, Integer> orderCount = new HashMap<>();
+        Map<String, Map<String, Integer>> storesByCustomer = new HashMap<>();
+        for (int i = 0; i < orders.size(); i++) {
+            String[] row = orders.get(i);
+            Integer p = productIndex.get(row[2].trim());
+            Integer s = storeIndex.get(row[3] == null ? "" : row[3].trim());
+            if (p != null)
+                productPopularity[p]++;
+            if (s != null)
+                storePopularity[s]++;
+            numberSold[i] = row[4] == null ? 1 : Integer.parseInt(row[4].trim());
+            orderCount.merge(row[0], 1, Integer::sum);
+            storesByCustomer.computeIfAbsent(row[0], k -> new HashMap<>()).merge(String.valueOf(row[3]), 1, Integer::sum);
+        }
+        cumulate(productPopularity);
+        cumulate(storePopularity);
+        ordersPerCustomer = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            ordersPerCustomer[i] = orderCount.getOrDefault(customers.get(i)[0], 0);
+        }
+        long atHome = 0;
+        for (Map<String, Integer> byStore : storesByCustomer.values()) {
+            atHome += byStore.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+        homeStoreShare = orders.isEmpty() ? 1 : (double) atHome / orders.size();
+    }
+
+    public int getSampleProducts() {
+        return products.size();
+    }
+
+    public int getSampleStores() {
+        return stores.size();
+    }
+
+    public int getSampleCustomers() {
+        return customers.size();
+    }
+
+    /**
+     * @return the average number of orders a sample customer placed
+     */
+    public double getOrdersPerCustomer() {
+        return Arrays.stream(ordersPerCustomer).average().orElse(0);
+    }
+
+    /**
+     * @return the share of the catalogue an average sample store carries
+     */
+    public double getMeanAssortment() {
+        return meanAssortment;
+    }
+
+    // Rows by index. Every method below depends only on seed and index.
+
+    /**
+     * @return upc, brand, name, type, size, price of product i
+     */
+    public Object[] product(long seed, int i) {
+        if (i < products.size()) {
+            String[] p = products.get(i);
+            return new Object[]{p[0].trim(), p[1], p[2], p[3], p[4], p[5]};
+        }
+        SplittableRandom random = random(seed, PRODUCTS, i);
+        String[] template = products.get(template(i, products.size()));
+        double price = Double.parseDouble(template[5]) * (1 - PRICE_SPREAD + 2 * PRICE_SPREAD * random.nextDouble());
+        String name = template[2] + " " + (i / products.size() + 1);
+        return new Object[]{upc(i), template[1], name, template[3], template[4], Math.round(price * 100) / 100.0};
+    }
+
+    /**
+     * @return the brand of product i, without building the rest of the row
+     */
+    public String brandOf(int i) {
+        return products.get(template(i, products.size()))[1];
+    }
+
+    public String upc(int i) {
+        if (i < products.size())
+            return products.get(i)[0].trim();
+        String upc = Long.toString(UPC_BASE + scatter(i, UPC_SPACE));
+        // a generated upc that happens to equal a sample one moves to the upper half of the space
+        return sampleUpcs.contains(upc) ? Long.toString(UPC_BASE + scatter(UPC_SPACE / 2 + i, UPC_SPACE)) : upc;
+    }
+
+    /**
+     * @return id, address, state, opentime, closetime of store i
+     */
+    public Object[] store(long seed, int i) {
+        if (i < stores.size()) {
+            String[] s = stores.get(i);
+            return new Object[]{s[0].trim(), s[1], s[2], s[3], s[4]};
+        }
+        SplittableRandom random = random(seed, STORES, i);
+        String[] template = stores.get(template(i, stores.size()));
+        String address = (1 + random.nextInt(99_999)) + " " + streets.get(random.nextInt(streets.size()));
+        return new Object[]{storeId(i), address, states.get(random.nextInt(states.size())), template[3], template[4]};
+    }
+
+    public String storeId(int i) {
+        return i < stores.size() ? stores.get(i)[0].trim() : Integer.toString(lastSampleStoreId + i - stores.size() + 1);
+    }
+
+    /**
+     * @return phonenumber, firstname, lastname of customer i
+     */
+    public Object[] customer(long seed, long i) {
+        if (i < customers.size()) {
+            String[] c = customers.get((int) i);
+            return new Object[]{c[0].trim(), c[1], c[2]};
+        }
+        SplittableRandom random = random(seed, CUSTOMERS, i);
+        return new Object[]{phone(i), firstNames.get(random.nextInt(firstNames.size())),
+            lastNames.get(random.nextInt(lastNames.size()))};
+    }
+
+    public String phone(long i) {
+        if (i < customers.size())
+            return customers.get((int) i)[0].trim();
+        String phone = Long.toString(PHONE_BASE + scatter(i, PHONE_SPACE));
+        return samplePhones.contains(phone) ? Long.toString(PHONE_BASE + scatter(PHONE_SPACE / 2 + i, PHONE_SPACE)) : phone;
+    }
+
+    /**
+     * Decides which products store i carries and how many are in stock
+     * @param productCount the number of products in the dataset
+     * @return the stock of each carried product, -1 for products it doesn't carry
+     */
+    public int[] soldBy(long seed, int store, int productCount) {
+        int[] result = new int[productCount];
+        SplittableRandom random = random(seed, SOLD_BY, store);
+        String storeId = storeId(store);
+        double scale = assortment[template(store, stores.size())] / meanAssortment;
+        for (int p = 0; p < productCount; p++) {
+            if (store < stores.size() && p < products.size()) {
+                Integer sampled = sampleStock.get(storeId + "|" + upc(p));
+                result[p] = sampled == null ? -1 : sampled;
+                continue;
+            }
+            double chance = carriedFraction[template(p, products.size())] * scale;
+            result[p] = random.nextDouble() < chance ? stock[random.nextInt(stock.length)] : -1;
+        }
+        return result;
+    }
+
+    /**
+     * @return the brands sample store i was recorded as carrying, or null for generated stores,
+     * which carry exactly the brands of their products
+     */
+    public List<String> sampleCarriedBy(int store) {
+        return store < stores.size() ? sampleCarriedBy.getOrDefault(storeId(store), new ArrayList<>()) : null;
+    }
+
+    /**
+     * @return how many orders customer i places, before scaling
+     */
+    public int orderCount(long seed, long customer) {
+        return ordersPerCustomer[random(seed, ORDER_COUNTS, customer).nextInt(ordersPerCustomer.length)];
+    }
+
+    /**
+     * Generates the orders of one customer
+     * @param first the dataset wide index of the customer's first order
+     * @param count how many orders the customer places
+     * @return customer, ordernumber, product, store, numbersold for each order
+     */
+    public List<Object[]> orders(long seed, long customer, long first, int count, int productCount, int storeCount) {
+        List<Object[]> rows = new ArrayList<>(count);
+        SplittableRandom random = random(seed, ORDERS, customer);
+        String phone = phone(customer);
+        int home = scaledChoice(storePopularity, storeCount, stores.size(), random);
+        for (int i = 0; i < count; i++) {
+            int store = random.nextDouble() < homeStoreShare ? home : scaledChoice(storePopularity, storeCount, stores.size(), random);
+            int product = scaledChoice(productPopularity, productCount, products.size(), random);
+            rows.add(new Object[]{phone, orderNumber(first + i), upc(product), storeId(store),
+                numberSold[random.nextInt(numberSold.length)]});
+        }
+        return rows;
+    }
+
+    /**
+     * @return the most orders a dataset can hold, ordernumber being 8 digits
+     */
+    public static long maxOrders() {
+        return ORDER_NUMBER_SPACE;
+    }
+
+    private static String orderNumber(long i) {
+        return Long.toString(ORDER_NUMBER_BASE + scatter(i, ORDER_NUMBER_SPACE));
+    }
+
+    // Picks a sample row by popularity, then one of its copies in the scaled dataset
+    private static int scaledChoice(double[] cumulative, int count, int sampleCount, SplittableRandom random) {
+        int template = choose(cumulative, random.nextDouble());
+        int copies = (count - template + sampleCount - 1) / sampleCount;
+        return template + sampleCount * random.nextInt(Math.max(copies, 1));
+    }
+
+    // Generated row i is a copy of sample row i mod size
+    private static int template(long i, int size) {
+        return (int) (i % size);
+    }
+
+    private static void cumulate(double[] weights) {
+        double total = 0;
+        for (double w : weights) {
+            total += w;
+        }
+        double running = 0;
+        for (int i = 0; i < weights.length; i++) {
+            running += weights[i] / total;
+            weights[i] = running;
+        }
+    }
+
+    private static int choose(double[] cumulative, double u) {
+        int i = Arrays.binarySearch(cumulative, u);
+        i = i < 0 ? -i - 1 : i;
+        return Math.min(i, cumulative.length - 1);
+    }
+
+    /**
+     * Spreads index i over [0, space) without repeats, as long as i < space;
+     * STRIDE is prime and divides none of the spaces used
+     */
+    private static long scatter(long i, long space) {
+        return (i * STRIDE + space / 3) % space;
+    }
+
+    private static SplittableRandom random(long seed, int stream, long index) {
+        return new SplittableRandom(mix(seed * 31 + stream) ^ mix(index + 0x9E3779B97F4A7C15L * stream));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb3f98f9d04b5L;
+        return z ^ (z >>> 33);
+    }
+}
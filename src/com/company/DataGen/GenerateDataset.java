@@ -0,0 +1,137 @@
+package com.company.DataGen;
+
+import com.company.Database.ConnectionFactory;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(name = "generate-dataset", description = "write a scaled up wegmans2 dataset as CSV files or straight into Postgres")
+public class GenerateDataset implements Callable<Void> {
+
+    private static final String URL_TEMPLATE = "jdbc:postgresql://%s:%s/?currentSchema=%s";
+
+    @Option(names = {"-s", "--scale"}, defaultValue = "10", description = "scale factor, 1 is the size of the sample")
+    double scale;
+    @Option(names = {"--seed"}, defaultValue = "42", description = "the same seed always gives the same dataset")
+    long seed;
+    @Option(names = {"-t", "--threads"}, paramLabel = "<n>", description = "partitions generated at once, default one per core")
+    int threads = Runtime.getRuntime().availableProcessors();
+    @Option(names = {"--sample"}, paramLabel = "<file>", defaultValue = "etc/wegmans2.sql", description = "the dump to learn distributions from")
+    String sample;
+    @Option(names = {"--stores"}, defaultValue = "0", description = "number of stores instead of scaling the sample's")
+    int stores;
+    @Option(names = {"--products"}, defaultValue = "0", description = "number of products instead of scaling the sample's")
+    int products;
+    @Option(names = {"--customers"}, defaultValue = "0", description = "number of customers instead of scaling the sample's")
+    long customers;
+    @Option(names = {"-o", "--csv"}, paramLabel = "<dir>", description = "write one CSV file per partition and a load.sql for psql")
+    String csv;
+    @Option(names = {"--host"}, description = "COPY straight into the database on this host")
+    String host;
+    @Option(names = {"--port"}, defaultValue = "5432")
+    String port;
+    @Option(names = {"-u", "--user"})
+    String user;
+    @Option(names = {"-p", "--password"})
+    String password;
+    @Option(names = {"--schema"}, defaultValue = "wegmans2")
+    String schema;
+    @Option(names = {"--truncate"}, description = "empty every table before copying")
+    boolean truncate;
+    @Option(names = {"-h", "--help"}, usageHelp = true)
+    boolean help;
+
+    public static void main(String[] args) {
+        CommandLine.call(new GenerateDataset(), args);
+    }
+
+    @Override
+    public Void call() {
+        if ((csv == null) == (host == null)) {
+            System.out.println("Give either --csv <dir> or --host to copy into");
+            return null;
+        }
+        DatasetGenerator generator;
+        try {
+            generator = new DatasetGenerator(SampleData.read(sample), scale, seed, stores, products, customers, System.out);
+        } catch (IOException e) {
+            System.out.println("Could not read sample data from " + sample);
+            System.out.println(e.getMessage());
+            return null;
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
+        System.out.println(String.format("Generating %,d stores, %,d products, %,d customers, ~%,d soldBy rows and ~%,d orders " +
+                "with seed %d on %d threads", generator.getStores(), generator.getProducts(), generator.getCustomers(),
+            generator.estimatedSoldBy(), generator.estimatedOrders(), seed, threads));
+
+        long start = System.nanoTime();
+        try {
+            Map<String, Long> rows;
+            if (csv != null) {
+                Path dir = Paths.get(csv);
+                Files.createDirectories(dir);
+                rows = generator.generate((table, part) -> new CsvSink(dir.resolve(fileName(table, part))), threads);
+                writeLoadScript(dir);
+            } else {
+                String url = String.format(URL_TEMPLATE, host, port, schema);
+                ConnectionFactory connections = () -> DriverManager.getConnection(url, user, password);
+                if (truncate)
+                    truncate(connections);
+                rows = generator.generate((table, part) ->
+                    new CopySink(connections.connect(), table, DatasetGenerator.TABLES.get(table)), threads);
+            }
+            long total = rows.values().stream().mapToLong(Long::longValue).sum();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("Wrote %,d rows in %.1f s (%,.0f rows/s)", total, seconds, total / seconds));
+        } catch (IOException e) {
+            System.out.println("Error writing dataset");
+            System.out.println(e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("SQL Error copying dataset");
+            System.out.println(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static String fileName(String table, int partition) {
+        return String.format("%s.%05d.csv", table, partition);
+    }
+
+    /**
+     * Writes load.sql, which \copy's every partition file in foreign key order
+     */
+    private static void writeLoadScript(Path dir) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(dir.resolve("load.sql"), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, String> table : DatasetGenerator.TABLES.entrySet()) {
+                for (int part = 0; Files.exists(dir.resolve(fileName(table.getKey(), part))); part++) {
+                    out.println(String.format("\\copy %s (%s) FROM '%s' WITH (FORMAT csv)", table.getKey(),
+                        table.getValue(), fileName(table.getKey(), part)));
+                }
+            }
+        }
+    }
+
+    private static void truncate(ConnectionFactory connections) throws SQLException {
+        try (Connection con = connections.connect(); Statement stmt = con.createStatement()) {
+            stmt.execute("TRUNCATE " + String.join(", ", DatasetGenerator.TABLES.keySet()) + " CASCADE");
+        }
+    }
+}
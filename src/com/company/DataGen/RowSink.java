@@ -0,0 +1,38 @@
+package com.company.DataGen;
+
+import java.io.IOException;
+
+/**
+ * Where one partition of generated rows goes: a CSV file or a COPY stream
+ */
+public interface RowSink extends AutoCloseable {
+
+    /**
+     * @param values the row's column values in table order, null for SQL NULL
+     */
+    void row(Object... values) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Appends a row in PostgreSQL's CSV format: empty unquoted for NULL,
+     * quotes only around values that need them
+     */
+    static void appendCsv(StringBuilder line, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                line.append(',');
+            Object value = values[i];
+            if (value == null)
+                continue;
+            String text = value.toString();
+            if (text.isEmpty() || text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0) {
+                line.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(text);
+            }
+        }
+        line.append('\n');
+    }
+}
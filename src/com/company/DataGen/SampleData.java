@@ -0,0 +1,70 @@
+package com.company.DataGen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rows of every table in a pg_dump file, read from its COPY blocks
+ * (i.e etc/wegmans2.sql). Values are kept exactly as dumped, padding
+ * included, with \N turned into null.
+ */
+public class SampleData {
+
+    private static final String COPY_PREFIX = "COPY ";
+    private static final String END_OF_DATA = "\\.";
+    private static final String NULL = "\\N";
+
+    private final Map<String, List<String[]>> tables = new HashMap<>();
+
+    private SampleData() {
+    }
+
+    /**
+     * @param path the dump file
+     * @return its rows by unqualified, lower case table name
+     */
+    public static SampleData read(String path) throws IOException {
+        SampleData data = new SampleData();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            List<String[]> rows = null;
+            while ((line = in.readLine()) != null) {
+                if (rows == null) {
+                    if (line.startsWith(COPY_PREFIX))
+                        rows = data.tables.computeIfAbsent(tableName(line), k -> new ArrayList<>());
+                } else if (line.equals(END_OF_DATA)) {
+                    rows = null;
+                } else {
+                    String[] values = line.split("\t", -1);
+                    for (int i = 0; i < values.length; i++) {
+                        if (values[i].equals(NULL))
+                            values[i] = null;
+                    }
+                    rows.add(values);
+                }
+            }
+        }
+        return data;
+    }
+
+    // "COPY wegmans2.orders (customer, ...) FROM stdin;" -> "orders"
+    private static String tableName(String copy) {
+        String qualified = copy.substring(COPY_PREFIX.length(), copy.indexOf(' ', COPY_PREFIX.length()));
+        return qualified.substring(qualified.lastIndexOf('.') + 1).toLowerCase();
+    }
+
+    /**
+     * @return the table's rows, or none if the dump has no data for it
+     */
+    public List<String[]> rows(String table) {
+        return tables.getOrDefault(table, Collections.emptyList());
+    }
+}
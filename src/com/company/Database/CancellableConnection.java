@@ -0,0 +1,183 @@
+package com.company.Database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps a connection so the command using it can be stopped from another
+ * thread, and so it can be given a time limit.
+ *
+ * The statement currently executing is tracked, and cancel() asks the
+ * server to stop it with Statement.cancel() and refuses every later
+ * statement on the connection. The time limit covers the whole
+ * command: before each execution the statement's query timeout is set to
+ * the time left, so the server cancels whichever statement runs past it.
+ */
+public final class CancellableConnection {
+
+    // what Postgres reports for a statement stopped by cancel or a timeout
+    private static final String QUERY_CANCELED = "57014";
+
+    private final Connection con;
+    private volatile Statement running;
+    private volatile boolean cancelled = false;
+    private volatile boolean timedOut = false;
+    private volatile long deadline = 0;
+
+    private CancellableConnection(Connection con) {
+        this.con = con;
+    }
+
+    /**
+     * @return a connection whose statements can be cancelled and timed out
+     */
+    public static Connection wrap(Connection con) {
+        CancellableConnection control = new CancellableConnection(con);
+        return (Connection) Proxy.newProxyInstance(CancellableConnection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler(control));
+    }
+
+    /**
+     * @return the control behind a wrapped connection, or null if con wasn't wrapped
+     */
+    public static CancellableConnection of(Connection con) {
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof ConnectionHandler)
+            return ((ConnectionHandler) Proxy.getInvocationHandler(con)).control;
+        return null;
+    }
+
+    /**
+     * Starts a command
+     * @param timeoutSeconds how long its statements may run in total, 0 for no limit
+     */
+    public void start(int timeoutSeconds) {
+        timedOut = false;
+        deadline = timeoutSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) : 0;
+    }
+
+    /**
+     * Stops the statement running now, if any, and every one after it
+     */
+    public void cancel() throws SQLException {
+        cancelled = true;
+        Statement statement = running;
+        if (statement != null)
+            statement.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return whether the current command ran out of time
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    private void beforeExecute(Statement statement) throws SQLException {
+        if (cancelled)
+            throw new SQLException("Canceled", QUERY_CANCELED);
+        if (deadline != 0) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                timedOut = true;
+                throw new SQLException("Timed out", QUERY_CANCELED);
+            }
+            statement.setQueryTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(left + 999_999_999L)));
+        }
+        running = statement;
+        // cancel() may have missed the statement if it ran in between
+        if (cancelled) {
+            running = null;
+            throw new SQLException("Canceled", QUERY_CANCELED);
+        }
+    }
+
+    private void afterExecute(SQLException failure) {
+        running = null;
+        if (failure != null && QUERY_CANCELED.equals(failure.getSQLState()) && !cancelled && deadline != 0)
+            timedOut = true;
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        final CancellableConnection control;
+
+        ConnectionHandler(CancellableConnection control) {
+            this.control = control;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy))
+                return proxy;
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy))
+                return true;
+            Object result = forward(control.con, method, args);
+            switch (name) {
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, (Statement) result, (Connection) proxy);
+                case "prepareCall":
+                    return statement(CallableStatement.class, (Statement) result, (Connection) proxy);
+                case "createStatement":
+                    return statement(Statement.class, (Statement) result, (Connection) proxy);
+                default:
+                    return result;
+            }
+        }
+
+        private Object statement(Class<?> iface, Statement target, Connection connection) {
+            return Proxy.newProxyInstance(CancellableConnection.class.getClassLoader(), new Class<?>[]{iface},
+                new StatementHandler(control, target, connection));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        final CancellableConnection control;
+        final Statement target;
+        final Connection connection;
+
+        StatementHandler(CancellableConnection control, Statement target, Connection connection) {
+            this.control = control;
+            this.target = target;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection"))
+                return connection;
+            if (!name.startsWith("execute"))
+                return forward(target, method, args);
+            control.beforeExecute(target);
+            SQLException failure = null;
+            try {
+                return forward(target, method, args);
+            } catch (SQLException e) {
+                failure = e;
+                throw e;
+            } finally {
+                control.afterExecute(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.company.Database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Listens for the changes the database reports on the wegmans2_changes
+ * channel and hands them to the in-process caches, so they follow writes
+ * made by other programs and other CLIs too.
+ *
+ * The notifications come from the triggers of migration 6 on product,
+ * soldby, store and orders: each changed row sends its table and key, as
+ * in "soldby:10:000000000042", and a truncate sends the table with "*".
+ * They are delivered once the writing transaction commits. The listener
+ * runs on a thread of its own, with a connection of its own kept in LISTEN.
+ * If that connection is lost, changes made until it is back are never
+ * reported, so every listener is told that everything changed when it
+ * reconnects.
+ */
+public final class ChangeListener {
+
+    public static final String CHANNEL = "wegmans2_changes";
+    private static final int POLL_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    /**
+     * A changed row: its table and key columns, or the whole table when the
+     * key is empty
+     */
+    public static final class Change {
+        private final String table;
+        private final List<String> key;
+
+        private Change(String table, List<String> key) {
+            this.table = table;
+            this.key = key;
+        }
+
+        /**
+         * @return the change a payload describes, or null if it isn't one
+         */
+        static Change parse(String payload) {
+            if (payload == null || payload.isEmpty())
+                return null;
+            String[] parts = payload.split(":", -1);
+            if (parts.length == 2 && parts[1].equals("*"))
+                return new Change(parts[0], Collections.emptyList());
+            return new Change(parts[0], Collections.unmodifiableList(Arrays.asList(parts).subList(1, parts.length)));
+        }
+
+        /**
+         * A change to everything, for when changes may have been missed
+         */
+        static Change everything() {
+            return new Change(null, Collections.emptyList());
+        }
+
+        /**
+         * @return the table changed, or null if any table may have
+         */
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * @return the changed row's key columns, in trigger order, or empty for the whole table
+         */
+        public List<String> getKey() {
+            return key;
+        }
+
+        public boolean isWholeTable() {
+            return key.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return table == null ? "*" : table + (key.isEmpty() ? ":*" : ":" + String.join(":", key));
+        }
+    }
+
+    private static final List<Consumer<Change>> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final LongAdder RECEIVED = new LongAdder();
+    private static final LongAdder RECONNECTS = new LongAdder();
+    private static volatile Thread thread;
+    private static volatile boolean listening = false;
+    private static volatile String lastError;
+
+    private ChangeListener() {
+    }
+
+    /**
+     * Has every change reported to a cache
+     */
+    public static void onChange(Consumer<Change> listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Starts listening in the background, unless it already is
+     * @param connections opens the connection listened on, which must be a Postgres one
+     */
+    public static synchronized void start(ConnectionFactory connections) {
+        if (thread != null)
+            return;
+        thread = new Thread(() -> listen(connections), "change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static boolean isStarted() {
+        return thread != null;
+    }
+
+    /**
+     * @return a line on whether it is listening and what it has received
+     */
+    public static String summary() {
+        String state = listening ? "listening" : "not connected" + (lastError == null ? "" : " (" + lastError + ")");
+        return String.format("Change notifications: %s, %d received, %d reconnects", state, RECEIVED.sum(),
+            RECONNECTS.sum());
+    }
+
+    private static void listen(ConnectionFactory connections) {
+        long backoff = POLL_MS;
+        boolean missed = false;
+        while (true) {
+            try (Connection con = connections.connect()) {
+                PGConnection pg = con.unwrap(PGConnection.class);
+                try (Statement stmt = con.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                listening = true;
+                lastError = null;
+                backoff = POLL_MS;
+                if (missed) {
+                    RECONNECTS.increment();
+                    dispatch(Change.everything());
+                    missed = false;
+                }
+                while (true) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MS);
+                    if (notifications == null)
+                        continue;
+                    for (PGNotification notification : notifications) {
+                        Change change = Change.parse(notification.getParameter());
+                        if (change != null) {
+                            RECEIVED.increment();
+                            dispatch(change);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                listening = false;
+                lastError = e.getMessage();
+                missed = true;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    private static void dispatch(Change change) {
+        for (Consumer<Change> listener : LISTENERS) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                // one cache failing to apply a change mustn't stop the others hearing of it
+                lastError = e.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.company.Database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens new database connections, for work that needs its own session
+ * alongside the CLI's main connection
+ */
+public interface ConnectionFactory {
+
+    Connection connect() throws SQLException;
+}
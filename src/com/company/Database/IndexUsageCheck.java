@@ -0,0 +1,160 @@
+package com.company.Database;
+
+import com.company.Model.Admin;
+import com.company.Model.Money;
+import com.company.Model.ShoppingCart;
+import com.company.Model.Store;
+import com.company.Model.User;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs EXPLAIN on every selective query the model issues and reports
+ * whether Postgres would answer it with an index. The full table
+ * aggregations (customer-mvp, store-sales) read all of orders anyway
+ * and are not checked.
+ */
+public class IndexUsageCheck {
+
+    private static final String SAMPLE_ROW = "SELECT soldBy.storeId, product.name, product.upc, product.brand, " +
+        "product.type, store.state FROM soldBy JOIN product ON product.upc = soldBy.productId JOIN store ON " +
+        "store.id = soldBy.storeId LIMIT 1";
+    private static final String EXPLAIN = "EXPLAIN ";
+    private static final String[] INDEX_NODES = {"Index Scan", "Index Only Scan", "Bitmap Index Scan"};
+
+    /**
+     * The kinds of values bound into the checked queries
+     */
+    private enum Sample {
+        STORE, NAME, UPC, BRAND, TYPE, STATE, PRICE_LOW, PRICE_HIGH
+    }
+
+    private static final Object[][] CHECKS = {
+        {User.class, "STORE_BY_ID_QUERY", new Sample[]{Sample.STORE}},
+        {User.class, "STORE_BY_STATE_QUERY", new Sample[]{Sample.STATE}},
+        {User.class, "GET_PRODUCT_FROM_NAME", new Sample[]{Sample.NAME}},
+        {User.class, "GET_PRODUCT_FROM_UPC", new Sample[]{Sample.UPC}},
+        {User.class, "STORE_BY_PRODUCT_QUERY", new Sample[]{Sample.NAME}},
+        {User.class, "PRODUCT_BY_NAME_QUERY", new Sample[]{Sample.STORE, Sample.NAME}},
+        {User.class, "PRODUCT_BY_PRICE_RANGE", new Sample[]{Sample.STORE, Sample.PRICE_LOW, Sample.PRICE_HIGH}},
+        {User.class, "PRODUCT_BY_PRICE_AND_TYPE", new Sample[]{Sample.STORE, Sample.PRICE_LOW, Sample.PRICE_HIGH, Sample.TYPE}},
+        {User.class, "PRODUCT_BY_BRAND_QUERY", new Sample[]{Sample.STORE, Sample.BRAND}},
+        {User.class, "PRODUCT_BY_TYPE", new Sample[]{Sample.STORE, Sample.TYPE}},
+        {User.class, "ALL_PRODUCTS_IN_STORE", new Sample[]{Sample.STORE}},
+        {Admin.class, "GET_BRANDS_FROM_STORE", new Sample[]{Sample.STORE}},
+        {Admin.class, "GET_VENDOR_FROM_STORE", new Sample[]{Sample.STORE}},
+        {Admin.class, "GET_STORE_INVENTORY", new Sample[]{Sample.STORE}},
+        {Admin.class, "GET_PRODUCT_RANKING_BY_STORE_ASC", new Sample[]{Sample.STORE}},
+        {Admin.class, "GET_PRODUCT_SALES_RANKING_BY_STORE_ASC", new Sample[]{Sample.STORE}},
+        {Admin.class, "GET_STORE_TOTAL_SALES_STATE_ASC", new Sample[]{Sample.STATE}},
+        {ShoppingCart.class, "TOTAL_QUERY", new Sample[]{Sample.NAME}},
+        {ShoppingCart.class, "GET_UPC_FROM_NAME", new Sample[]{Sample.NAME}},
+        {ShoppingCart.class, "GET_CURR_STOCK", new Sample[]{Sample.NAME, Sample.STORE}},
+        {Store.class, "GET_STOCK", new Sample[]{Sample.STORE, Sample.UPC}},
+    };
+
+    /**
+     * The outcome of explaining one query
+     */
+    public static class Result {
+        private final String query;
+        private final boolean usesIndex;
+        private final String topNode;
+
+        Result(String query, boolean usesIndex, String topNode) {
+            this.query = query;
+            this.usesIndex = usesIndex;
+            this.topNode = topNode;
+        }
+
+        public boolean usesIndex() {
+            return usesIndex;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("| %-45s | %-8s | %-40s |", query, usesIndex ? "index" : "SEQ SCAN", topNode);
+        }
+    }
+
+    private Connection con;
+
+    public IndexUsageCheck(Connection con) {
+        this.con = con;
+    }
+
+    /**
+     * Explains every checked query using values sampled from the database
+     * @return one result per query, in catalog order
+     */
+    public List<Result> run() throws SQLException {
+        String[] samples = sampleValues();
+        List<Result> results = new ArrayList<>();
+        for (Object[] check : CHECKS) {
+            Class<?> owner = (Class<?>) check[0];
+            String constant = (String) check[1];
+            Sample[] binds = (Sample[]) check[2];
+            String sql = QueryCatalog.sqlOf(owner, constant);
+            try (PreparedStatement stmt = con.prepareStatement(EXPLAIN + sql)) {
+                for (int i = 0; i < binds.length; i++) {
+                    bind(stmt, i + 1, binds[i], samples);
+                }
+                results.add(explain(owner.getSimpleName() + "." + constant, stmt));
+            }
+        }
+        return results;
+    }
+
+    private Result explain(String name, PreparedStatement stmt) throws SQLException {
+        boolean usesIndex = false;
+        String topNode = null;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String line = rs.getString(1);
+                if (topNode == null)
+                    topNode = line.replaceAll("\\s+\\(cost.*", "").trim();
+                for (String node : INDEX_NODES) {
+                    usesIndex |= line.contains(node);
+                }
+            }
+        }
+        return new Result(name, usesIndex, topNode);
+    }
+
+    private static void bind(PreparedStatement stmt, int index, Sample sample, String[] samples) throws SQLException {
+        switch (sample) {
+            // bound as the model binds them, so the plans checked are the ones it gets
+            case PRICE_LOW:
+                stmt.setBigDecimal(index, Money.toBigDecimal(100));
+                break;
+            case PRICE_HIGH:
+                stmt.setBigDecimal(index, Money.toBigDecimal(200));
+                break;
+            default:
+                stmt.setString(index, samples[sample.ordinal()]);
+        }
+    }
+
+    /**
+     * @return one real value per Sample kind, indexed by ordinal
+     */
+    private String[] sampleValues() throws SQLException {
+        String[] samples = new String[Sample.values().length];
+        try (PreparedStatement stmt = con.prepareStatement(SAMPLE_ROW);
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                samples[Sample.STORE.ordinal()] = rs.getString(1);
+                samples[Sample.NAME.ordinal()] = rs.getString(2);
+                samples[Sample.UPC.ordinal()] = rs.getString(3);
+                samples[Sample.BRAND.ordinal()] = rs.getString(4);
+                samples[Sample.TYPE.ordinal()] = rs.getString(5);
+                samples[Sample.STATE.ordinal()] = rs.getString(6);
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,242 @@
+package com.company.Database;
+
+import com.company.Metrics.SqlEvent;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wraps a JDBC connection so that every statement executed through it,
+ * and every row read back, is counted in the calling thread's QueryStats.
+ * Time spent inside the driver is measured too, and when tracing or the
+ * slow query log is on the bind values of each execution are captured so
+ * repeated statements can be told apart and slow ones replayed.
+ *
+ * The wrappers are dynamic proxies, so the model classes keep using the
+ * plain java.sql interfaces and never know they are being measured.
+ */
+public final class InstrumentedConnection {
+
+    private InstrumentedConnection() {
+    }
+
+    /**
+     * @param con the driver's connection
+     * @return a connection that records its work in QueryStats
+     */
+    public static Connection wrap(Connection con) {
+        return proxy(Connection.class, new ConnectionHandler(con));
+    }
+
+    /**
+     * @return the driver's connection behind a wrapped one, or con itself
+     */
+    public static Connection unwrap(Connection con) {
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof ConnectionHandler) {
+            return ((ConnectionHandler) Proxy.getInvocationHandler(con)).target;
+        }
+        return con;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> iface, Handler handler) {
+        handler.self = Proxy.newProxyInstance(InstrumentedConnection.class.getClassLoader(),
+            new Class<?>[]{iface}, handler);
+        return (T) handler.self;
+    }
+
+    /**
+     * Forwards every call to the wrapped object and lets subclasses
+     * observe the calls they care about
+     */
+    private abstract static class Handler implements InvocationHandler {
+        final Object target;
+        Object self;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy))
+                return proxy;
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy))
+                return true;
+            try {
+                return handle(method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        Object forward(Method method, Object[] args) throws InvocationTargetException, IllegalAccessException {
+            return method.invoke(target, args);
+        }
+
+        abstract Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private static final class ConnectionHandler extends Handler {
+        final Connection target;
+
+        ConnectionHandler(Connection target) {
+            super(target);
+            this.target = target;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            Object result = forward(method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                    return proxy(PreparedStatement.class,
+                        new StatementHandler((Statement) result, (Connection) self, target, (String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler((Statement) result, (Connection) self, target, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private static final class StatementHandler extends Handler {
+        final Connection connection;
+        final Connection rawConnection;
+        final String preparedSql;
+        final List<Object> binds = new ArrayList<>();
+
+        StatementHandler(Statement target, Connection connection, Connection rawConnection, String preparedSql) {
+            super(target);
+            this.connection = connection;
+            this.rawConnection = rawConnection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection"))
+                return connection;
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                if (QueryStats.isTracing() || SlowQueryLog.isEnabled())
+                    bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return forward(method, args);
+            }
+            if (name.equals("clearParameters"))
+                binds.clear();
+            if (!name.startsWith("execute"))
+                return wrapResult(forward(method, args));
+
+            String sql = preparedSql != null ? preparedSql : (args != null && args.length > 0 ? (String) args[0] : null);
+            QueryStats stats = QueryStats.current();
+            StatementShape shape = QueryStats.isTracing() && sql != null ? stats.shape(sql) : null;
+            stats.roundTrip();
+            SqlEvent event = new SqlEvent();
+            event.begin();
+            long start = System.nanoTime();
+            Object result = null;
+            long elapsed;
+            try {
+                result = forward(method, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException)
+                    stats.error();
+                throw e;
+            } finally {
+                elapsed = System.nanoTime() - start;
+                stats.databaseTime(elapsed);
+                if (shape != null)
+                    shape.executed(binds.toString(), elapsed);
+                if (event.shouldCommit()) {
+                    event.query = sql != null ? QueryCatalog.labelOf(sql) : null;
+                    event.method = name;
+                    event.updateCount = updateCount(result);
+                    event.commit();
+                }
+            }
+            SlowQueryLog.Entry slow = null;
+            if (SlowQueryLog.isSlow(elapsed) && sql != null)
+                slow = SlowQueryLog.slow(rawConnection, sql, binds, elapsed, updateCount(result));
+            if (result instanceof ResultSet)
+                return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, self, shape, slow));
+            return result;
+        }
+
+        private static long updateCount(Object result) {
+            if (result instanceof Integer)
+                return (Integer) result;
+            if (result instanceof int[]) {
+                long total = 0;
+                for (int count : (int[]) result) {
+                    total += Math.max(count, 0);
+                }
+                return total;
+            }
+            return -1;
+        }
+
+        private void bind(int index, Object value) {
+            while (binds.size() < index) {
+                binds.add(null);
+            }
+            binds.set(index - 1, value instanceof byte[] ? Arrays.toString((byte[]) value) : value);
+        }
+
+        private Object wrapResult(Object result) {
+            if (result instanceof ResultSet)
+                return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, self, null, null));
+            return result;
+        }
+    }
+
+    private static final class ResultSetHandler extends Handler {
+        final Object statement;
+        final StatementShape shape;
+        final SlowQueryLog.Entry slow;
+
+        ResultSetHandler(ResultSet target, Object statement, StatementShape shape, SlowQueryLog.Entry slow) {
+            super(target);
+            this.statement = statement;
+            this.shape = shape;
+            this.slow = slow;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getStatement"))
+                return statement;
+            if (method.getName().equals("close") && slow != null)
+                slow.finish();
+            if (!method.getName().equals("next"))
+                return forward(method, args);
+
+            QueryStats stats = QueryStats.current();
+            long start = System.nanoTime();
+            Object result = forward(method, args);
+            long elapsed = System.nanoTime() - start;
+            stats.databaseTime(elapsed);
+            if (Boolean.TRUE.equals(result)) {
+                stats.rowRead();
+                if (shape != null)
+                    shape.fetched(elapsed);
+                if (slow != null)
+                    slow.rowRead();
+            } else if (slow != null) {
+                slow.finish();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.company.Database;
+
+/**
+ * A single versioned change to the wegmans2 schema.
+ *
+ * Index migrations are built with CREATE INDEX CONCURRENTLY so they can be
+ * applied to a live database without blocking checkouts. Postgres refuses to
+ * run those inside a transaction block, so they are executed in autocommit.
+ */
+public class Migration {
+
+    private static final String CREATE_INDEX = "CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON %s (%s)";
+
+    private final int version;
+    private final String description;
+    private final String indexName;
+    private final String[] statements;
+
+    private Migration(int version, String description, String indexName, String... statements) {
+        this.version = version;
+        this.description = description;
+        this.indexName = indexName;
+        this.statements = statements;
+    }
+
+    /**
+     * Creates a migration that builds one index without locking out writes
+     * @param version the schema version this migration brings the database to
+     * @param name the name of the index
+     * @param table the indexed table
+     * @param columns the comma separated column list
+     */
+    public static Migration createIndex(int version, String name, String table, String columns) {
+        return new Migration(version, "index " + table + " (" + columns + ")", name,
+            String.format(CREATE_INDEX, name, table, columns));
+    }
+
+    /**
+     * Creates a migration out of plain DDL statements, run in order
+     */
+    public static Migration of(int version, String description, String... statements) {
+        return new Migration(version, description, null, statements);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the index this migration builds, or null if it is not an index migration
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public String[] getStatements() {
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("| %-7d | %-60s |", version, description);
+    }
+}
@@ -0,0 +1,165 @@
+package com.company.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Applies the versioned schema migrations and records which ones have
+ * been applied in the schema_version table.
+ */
+public class Migrator {
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version (" +
+        "version integer PRIMARY KEY, description character varying(100) NOT NULL, " +
+        "appliedOn timestamp NOT NULL DEFAULT now())";
+    private static final String APPLIED_VERSIONS = "SELECT version FROM schema_version ORDER BY version";
+    private static final String RECORD_VERSION = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+    private static final String INVALID_INDEX = "SELECT 1 FROM pg_index JOIN pg_class ON " +
+        "pg_class.oid = pg_index.indexrelid WHERE pg_class.relname = ? AND NOT pg_index.indisvalid";
+    private static final String DROP_INDEX = "DROP INDEX CONCURRENTLY IF EXISTS %s";
+
+    /**
+     * Every migration in version order. New migrations are only ever appended.
+     */
+    public static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+        Migration.createIndex(1, "product_name_index", "product", "name"),
+        Migration.createIndex(2, "soldby_store_index", "soldby", "storeid, productid"),
+        Migration.createIndex(3, "orders_store_index", "orders", "store, product"),
+        Migration.createIndex(4, "orders_product_index", "orders", "product"),
+        Migration.createIndex(5, "store_state_index", "store", "state"),
+        Migration.of(6, "notify " + ChangeListener.CHANNEL + " of changes to product, soldby, store and orders",
+            "CREATE OR REPLACE FUNCTION change_key(tbl text, changed jsonb, cols text[]) RETURNS text AS $$ " +
+                "SELECT tbl || ':' || string_agg(trim(changed ->> col), ':' ORDER BY n) " +
+                "FROM unnest(cols) WITH ORDINALITY AS k(col, n) $$ LANGUAGE sql IMMUTABLE",
+            // the trigger's arguments are the key columns; an update sends the old key and the new one,
+            // which Postgres folds into one notification when they are the same
+            "CREATE OR REPLACE FUNCTION notify_change() RETURNS trigger AS $$ BEGIN " +
+                "IF TG_OP = 'TRUNCATE' THEN " +
+                "PERFORM pg_notify('" + ChangeListener.CHANNEL + "', TG_TABLE_NAME || ':*'); RETURN NULL; END IF; " +
+                "IF TG_OP IN ('UPDATE', 'DELETE') THEN " +
+                "PERFORM pg_notify('" + ChangeListener.CHANNEL + "', change_key(TG_TABLE_NAME, to_jsonb(OLD), TG_ARGV)); " +
+                "END IF; " +
+                "IF TG_OP IN ('INSERT', 'UPDATE') THEN " +
+                "PERFORM pg_notify('" + ChangeListener.CHANNEL + "', change_key(TG_TABLE_NAME, to_jsonb(NEW), TG_ARGV)); " +
+                "END IF; " +
+                "RETURN NULL; END $$ LANGUAGE plpgsql",
+            notifyTrigger("product", "'upc'"),
+            truncateTrigger("product"),
+            notifyTrigger("soldby", "'storeid', 'productid'"),
+            truncateTrigger("soldby"),
+            notifyTrigger("store", "'id'"),
+            truncateTrigger("store"),
+            notifyTrigger("orders", "'store', 'product'"),
+            truncateTrigger("orders")),
+        // the replication stream only names a deleted or updated row by its replica identity, and these have no key
+        Migration.of(7, "replicate whole rows of soldby and distributedby",
+            "ALTER TABLE soldby REPLICA IDENTITY FULL",
+            "ALTER TABLE distributedby REPLICA IDENTITY FULL"),
+        // older orders get -infinity, a constant default that needs no table rewrite and sorts before every
+        // real date, so the column can be NOT NULL and order history pages can use a plain row comparison
+        Migration.of(8, "record when each order was placed",
+            "ALTER TABLE orders ADD COLUMN IF NOT EXISTS orderdate timestamp NOT NULL DEFAULT '-infinity'",
+            "ALTER TABLE orders ALTER COLUMN orderdate SET DEFAULT now()"),
+        Migration.createIndex(9, "orders_customer_history_index", "orders", "customer, orderdate, ordernumber")
+    ));
+
+    private Connection con;
+
+    public Migrator(Connection con) {
+        this.con = con;
+    }
+
+    /**
+     * @return the versions already recorded in schema_version
+     */
+    public Set<Integer> appliedVersions() throws SQLException {
+        createVersionTable();
+        Set<Integer> applied = new TreeSet<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery(APPLIED_VERSIONS)) {
+            while (rs.next()) {
+                applied.add(rs.getInt(1));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * @return the migrations that have not been applied yet, in order
+     */
+    public List<Migration> pending() throws SQLException {
+        Set<Integer> applied = appliedVersions();
+        List<Migration> pending = new ArrayList<>();
+        for (Migration m : MIGRATIONS) {
+            if (!applied.contains(m.getVersion()))
+                pending.add(m);
+        }
+        return pending;
+    }
+
+    /**
+     * Runs a migration and records its version. A concurrent index build
+     * that failed part way leaves an INVALID index behind, so that is dropped
+     * first; otherwise IF NOT EXISTS would silently keep the broken index.
+     * @param m the migration to apply
+     */
+    public void apply(Migration m) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(true);
+        try {
+            if (m.getIndexName() != null && isInvalidIndex(m.getIndexName())) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.execute(String.format(DROP_INDEX, m.getIndexName()));
+                }
+            }
+            for (String sql : m.getStatements()) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.execute(sql);
+                }
+            }
+            try (PreparedStatement stmt = con.prepareStatement(RECORD_VERSION)) {
+                stmt.setInt(1, m.getVersion());
+                stmt.setString(2, m.getDescription());
+                stmt.executeUpdate();
+            }
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private boolean isInvalidIndex(String name) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(INVALID_INDEX)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void createVersionTable() throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(CREATE_VERSION_TABLE);
+        }
+    }
+
+    private static String notifyTrigger(String table, String keyColumns) {
+        return String.format("DROP TRIGGER IF EXISTS %1$s_notify ON %1$s; CREATE TRIGGER %1$s_notify " +
+            "AFTER INSERT OR UPDATE OR DELETE ON %1$s FOR EACH ROW EXECUTE PROCEDURE notify_change(%2$s)",
+            table, keyColumns);
+    }
+
+    private static String truncateTrigger(String table) {
+        return String.format("DROP TRIGGER IF EXISTS %1$s_notify_truncate ON %1$s; CREATE TRIGGER " +
+            "%1$s_notify_truncate AFTER TRUNCATE ON %1$s FOR EACH STATEMENT EXECUTE PROCEDURE notify_change()",
+            table);
+    }
+}
@@ -0,0 +1,43 @@
+package com.company.Database;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A Connection standing in for a database that can't be reached, so the
+ * CLI can still answer what it holds without one (a snapshot file). Every
+ * statement fails with an SQLException, which the model reports as it
+ * would any other failed query.
+ */
+public final class OfflineConnection {
+
+    private OfflineConnection() {
+    }
+
+    /**
+     * @param reason why there is no database, given with every failure
+     */
+    public static Connection create(String reason) {
+        return (Connection) Proxy.newProxyInstance(OfflineConnection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAutoCommit":
+                        return true;
+                    case "isClosed":
+                    case "isValid":
+                        return false;
+                    case "close":
+                        return null;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "offline (" + reason + ")";
+                    default:
+                        throw new SQLException("Not connected to the database: " + reason);
+                }
+            });
+    }
+}
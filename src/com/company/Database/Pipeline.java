@@ -0,0 +1,286 @@
+package com.company.Database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs a block of commands in one transaction with one commit at the end,
+ * between begin() and commit() on a connection returned by wrap().
+ *
+ * While a block is open, executeUpdate on a prepared statement is not sent
+ * right away. It is added to a JDBC batch, and consecutive updates of the
+ * same SQL share that batch, so a run of price updates costs one round trip
+ * rather than one per command. The batch is sent before anything else runs
+ * on the connection, so reads still see the block's own writes, and when
+ * the SQL changes. Because of that a deferred write reports success (an
+ * update count of 1) and its failure surfaces when the batch is sent,
+ * after which the block can only be rolled back. A deferred write takes
+ * the values bound since the one before it, so each must bind all of its
+ * parameters, as the model does.
+ *
+ * Outside a block every call goes straight through to the connection.
+ */
+public final class Pipeline {
+
+    private final Connection con;
+    private boolean active = false;
+    private boolean failed = false;
+    private String batchSql;
+    private PreparedStatement batch;
+    private int pending;
+    private int writes;
+    private int roundTrips;
+
+    private Pipeline(Connection con) {
+        this.con = con;
+    }
+
+    /**
+     * @param con the connection to run blocks on, usually instrumented
+     * @return a connection that can defer and batch its writes
+     */
+    public static Connection wrap(Connection con) {
+        Pipeline pipeline = new Pipeline(con);
+        return (Connection) Proxy.newProxyInstance(Pipeline.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler(pipeline));
+    }
+
+    /**
+     * @return the pipeline behind a wrapped connection, or null if con wasn't wrapped
+     */
+    public static Pipeline of(Connection con) {
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof ConnectionHandler)
+            return ((ConnectionHandler) Proxy.getInvocationHandler(con)).pipeline;
+        return null;
+    }
+
+    /**
+     * Opens a block, turning autocommit off until it is committed or rolled back
+     */
+    public void begin() throws SQLException {
+        if (active)
+            throw new SQLException("A transaction is already open");
+        con.setAutoCommit(false);
+        active = true;
+        failed = false;
+        writes = 0;
+        roundTrips = 0;
+    }
+
+    /**
+     * Sends any batched writes and commits the block
+     */
+    public void commit() throws SQLException {
+        if (!active)
+            throw new SQLException("No transaction is open");
+        try {
+            flush();
+            con.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        }
+        close();
+    }
+
+    /**
+     * Discards the block, including writes that were never sent
+     */
+    public void rollback() throws SQLException {
+        if (!active)
+            throw new SQLException("No transaction is open");
+        discard();
+        try {
+            con.rollback();
+        } finally {
+            close();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @return whether a statement failed since the block was opened, after
+     * which the database will refuse everything until it is rolled back
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the writes made in the current or last block
+     */
+    public int getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return the batches sent for those writes
+     */
+    public int getRoundTrips() {
+        return roundTrips;
+    }
+
+    private void close() throws SQLException {
+        active = false;
+        con.setAutoCommit(true);
+    }
+
+    private void add(String sql, Map<Integer, Object[]> binds) throws SQLException {
+        if (!sql.equals(batchSql)) {
+            flush();
+            batch = con.prepareStatement(sql);
+            batchSql = sql;
+        }
+        try {
+            for (Object[] bind : binds.values()) {
+                ((Method) bind[0]).invoke(batch, (Object[]) bind[1]);
+            }
+        } catch (IllegalAccessException e) {
+            throw new SQLException(e);
+        } catch (InvocationTargetException e) {
+            failed = true;
+            throw e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+        }
+        batch.addBatch();
+        pending++;
+        writes++;
+    }
+
+    /**
+     * Sends the batched writes, if any
+     */
+    private void flush() throws SQLException {
+        if (batch == null)
+            return;
+        try {
+            if (pending > 0) {
+                roundTrips++;
+                batch.executeBatch();
+            }
+        } catch (SQLException e) {
+            failed = true;
+            throw e.getNextException() != null ? e.getNextException() : e;
+        } finally {
+            discard();
+        }
+    }
+
+    private void discard() {
+        if (batch != null) {
+            try {
+                batch.close();
+            } catch (SQLException e) {
+                // the batch is gone either way
+            }
+        }
+        batch = null;
+        batchSql = null;
+        pending = 0;
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        final Pipeline pipeline;
+
+        ConnectionHandler(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy))
+                return proxy;
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy))
+                return true;
+            if (pipeline.active) {
+                // the block decides when to commit, so the model can't end it part way
+                switch (name) {
+                    case "setAutoCommit":
+                        if ((Boolean) args[0]) {
+                            pipeline.failed = true;
+                            throw new SQLException("This can't run inside a transaction, use rollback");
+                        }
+                        return null;
+                    case "getAutoCommit":
+                        return false;
+                    case "commit":
+                        pipeline.flush();
+                        return null;
+                    case "rollback":
+                        pipeline.failed = true;
+                        return null;
+                    default:
+                        break;
+                }
+            }
+            Object result = forward(pipeline.con, method, args);
+            switch (name) {
+                case "prepareStatement":
+                case "prepareCall":
+                    return Proxy.newProxyInstance(Pipeline.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler(pipeline, (Statement) result, (Connection) proxy, (String) args[0]));
+                case "createStatement":
+                    return Proxy.newProxyInstance(Pipeline.class.getClassLoader(), new Class<?>[]{Statement.class},
+                        new StatementHandler(pipeline, (Statement) result, (Connection) proxy, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        final Pipeline pipeline;
+        final Statement target;
+        final Connection connection;
+        final String preparedSql;
+        // the last set* call of each parameter while a block is open, replayed onto the batch
+        final Map<Integer, Object[]> binds = new TreeMap<>();
+
+        StatementHandler(Pipeline pipeline, Statement target, Connection connection, String preparedSql) {
+            this.pipeline = pipeline;
+            this.target = target;
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection"))
+                return connection;
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                if (pipeline.active)
+                    binds.put((Integer) args[0], new Object[]{method, args});
+            } else if (name.equals("clearParameters")) {
+                binds.clear();
+            } else if (pipeline.active && name.startsWith("execute")) {
+                if (name.equals("executeUpdate") && preparedSql != null && args == null) {
+                    pipeline.add(preparedSql, binds);
+                    binds.clear();
+                    return 1;
+                }
+                pipeline.flush();
+            }
+            return forward(target, method, args);
+        }
+    }
+}
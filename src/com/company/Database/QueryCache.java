@@ -0,0 +1,458 @@
+package com.company.Database;
+
+import com.company.Metrics.CacheEvent;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A cache of query results shared by every connection wrapped with it,
+ * keyed by the SQL text and its bind values and holding the rows already
+ * read, so a SELECT repeated by any session is answered from memory.
+ *
+ * Each statement is looked at once to find the tables it reads or writes.
+ * A write through any wrapped connection drops the cached results that
+ * read the table it wrote, when it is made or, inside a transaction, when
+ * the transaction commits; reads inside a transaction always go to the
+ * database so they see its writes. Statements whose effect can't be told
+ * (DDL, COPY and the like) drop everything. Each table also carries a
+ * version, bumped by every write, so a query that ran while a table was
+ * being written doesn't cache what it read.
+ *
+ * Writes made by other programs are not seen unless they are reported
+ * through invalidate() or changed(). It is off until enabled, the least
+ * recently used results being evicted past the given number of entries.
+ */
+public final class QueryCache {
+
+    private static final String CACHE = "query";
+    private static final int MAX_ROWS = 10_000;
+    private static final String WORD = "[A-Za-z_][\\w.\"]*";
+    private static final Pattern READS = Pattern.compile("\\b(?:FROM|JOIN)\\s+(" + WORD + ")", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WRITE = Pattern.compile(
+        "^(?:UPDATE|INSERT\\s+INTO|DELETE\\s+FROM|TRUNCATE(?:\\s+TABLE)?)\\s+(?:ONLY\\s+)?(" + WORD + ")",
+        Pattern.CASE_INSENSITIVE);
+    // results that can change without any table changing
+    private static final Pattern VOLATILE = Pattern.compile("\\b(?:now|random|nextval|currval|clock_timestamp|" +
+        "current_date|current_time|current_timestamp|localtime|localtimestamp)\\b|\\bFOR\\s+(?:UPDATE|SHARE)\\b",
+        Pattern.CASE_INSENSITIVE);
+    private static final Pattern NO_EFFECT = Pattern.compile("^(?:EXPLAIN|SHOW|SET|LISTEN|UNLISTEN|BEGIN|COMMIT|" +
+        "ROLLBACK)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static volatile int capacity = 0;
+    private static final Map<Key, Result> RESULTS = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+            return size() > capacity;
+        }
+    };
+    private static final Map<String, Shape> SHAPES = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+    // bumped by invalidateAll, so it invalidates queries in flight on every table
+    private static final AtomicLong EPOCH = new AtomicLong();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder INVALIDATIONS = new LongAdder();
+
+    private QueryCache() {
+    }
+
+    /**
+     * Starts caching query results
+     * @param entries how many results to keep before evicting the least recently used
+     */
+    public static void enable(int entries) {
+        synchronized (RESULTS) {
+            capacity = Math.max(0, entries);
+            RESULTS.clear();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * @param con the connection to cache the queries of, usually instrumented
+     * @return a connection answering repeated queries from the cache while it is enabled
+     */
+    public static Connection wrap(Connection con) {
+        return (Connection) Proxy.newProxyInstance(QueryCache.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler(con));
+    }
+
+    /**
+     * Drops the cached results that read a table, after it changed
+     */
+    public static void invalidate(String table) {
+        invalidate(Collections.singleton(normalize(table)));
+    }
+
+    /**
+     * Drops every cached result
+     */
+    public static void invalidateAll() {
+        synchronized (RESULTS) {
+            EPOCH.incrementAndGet();
+            INVALIDATIONS.add(RESULTS.size());
+            RESULTS.clear();
+        }
+    }
+
+    /**
+     * Applies a change reported by the database, which may have been made
+     * by another program; results are cached by query, not by row, so the
+     * whole table's results go
+     */
+    public static void changed(ChangeListener.Change change) {
+        if (change.getTable() == null)
+            invalidateAll();
+        else
+            invalidate(change.getTable());
+    }
+
+    /**
+     * @return a line on the cache's size and hit rate
+     */
+    public static String summary() {
+        long hits = HITS.sum();
+        long misses = MISSES.sum();
+        int size;
+        synchronized (RESULTS) {
+            size = RESULTS.size();
+        }
+        return String.format("Query cache: %d of %d entries, %d hits, %d misses (%.0f%% hit rate), %d invalidated",
+            size, capacity, hits, misses, hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses),
+            INVALIDATIONS.sum());
+    }
+
+    private static void invalidate(Set<String> tables) {
+        // under the lock, so a result can't be stored between the bump and the sweep
+        synchronized (RESULTS) {
+            for (String table : tables) {
+                version(table).incrementAndGet();
+            }
+            Iterator<Result> results = RESULTS.values().iterator();
+            while (results.hasNext()) {
+                if (results.next().readsAny(tables)) {
+                    results.remove();
+                    INVALIDATIONS.increment();
+                }
+            }
+        }
+    }
+
+    private static AtomicLong version(String table) {
+        return VERSIONS.computeIfAbsent(table, t -> new AtomicLong());
+    }
+
+    private static long[] versions(String[] tables) {
+        long[] versions = new long[tables.length + 1];
+        versions[0] = EPOCH.get();
+        for (int i = 0; i < tables.length; i++) {
+            versions[i + 1] = version(tables[i]).get();
+        }
+        return versions;
+    }
+
+    private static String normalize(String table) {
+        String name = table.replace("\"", "").toLowerCase(Locale.ROOT);
+        // schema qualified names are cached under the table name
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static Shape shape(String sql) {
+        return SHAPES.computeIfAbsent(sql, Shape::new);
+    }
+
+    /**
+     * What a statement does to the tables, worked out once per SQL text
+     */
+    private static final class Shape {
+        final String[] reads;
+        // the tables written, or null when it might write anything
+        final Set<String> writes;
+        final boolean cacheable;
+
+        Shape(String sql) {
+            String text = sql.trim();
+            Set<String> read = new HashSet<>();
+            Matcher matcher = READS.matcher(text);
+            while (matcher.find()) {
+                read.add(normalize(matcher.group(1)));
+            }
+            reads = read.toArray(new String[0]);
+
+            boolean select = text.regionMatches(true, 0, "SELECT", 0, 6);
+            boolean system = false;
+            for (String table : reads) {
+                system |= table.startsWith("pg_") || table.equals("information_schema");
+            }
+            cacheable = select && !system && !VOLATILE.matcher(text).find();
+
+            Matcher write = WRITE.matcher(text);
+            if (write.find())
+                writes = Collections.singleton(normalize(write.group(1)));
+            else if (select || NO_EFFECT.matcher(text).find())
+                writes = Collections.emptySet();
+            else
+                writes = null;
+        }
+    }
+
+    private static final class Key {
+        final String sql;
+        final List<Object> binds;
+        final int hash;
+
+        Key(String sql, List<Object> binds) {
+            this.sql = sql;
+            this.binds = binds;
+            this.hash = 31 * sql.hashCode() + binds.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash && sql.equals(other.sql) && binds.equals(other.binds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Result {
+        final String[] columns;
+        final List<Object[]> rows;
+        final String[] tables;
+
+        Result(String[] columns, List<Object[]> rows, String[] tables) {
+            this.columns = columns;
+            this.rows = rows;
+            this.tables = tables;
+        }
+
+        boolean readsAny(Set<String> written) {
+            for (String table : tables) {
+                if (written.contains(table))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        final Connection con;
+        // tables written by the open transaction, dropped from the cache when it commits
+        final Set<String> pending = new HashSet<>();
+        boolean pendingAll = false;
+
+        ConnectionHandler(Connection con) {
+            this.con = con;
+        }
+
+        boolean inTransaction() throws SQLException {
+            return !con.getAutoCommit();
+        }
+
+        void written(Shape shape) throws SQLException {
+            if (!isEnabled())
+                return;
+            if (inTransaction()) {
+                // queries running meanwhile read the old rows, which stay valid until the commit
+                if (shape.writes == null)
+                    pendingAll = true;
+                else
+                    pending.addAll(shape.writes);
+                return;
+            }
+            if (shape.writes == null)
+                invalidateAll();
+            else if (!shape.writes.isEmpty())
+                invalidate(shape.writes);
+        }
+
+        void committed() {
+            if (pendingAll)
+                invalidateAll();
+            else if (!pending.isEmpty())
+                invalidate(new HashSet<>(pending));
+            pending.clear();
+            pendingAll = false;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy))
+                return proxy;
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy))
+                return true;
+            if (name.equals("setAutoCommit") && (Boolean) args[0] && inTransaction()) {
+                // turning autocommit back on commits
+                forward(con, method, args);
+                committed();
+                return null;
+            }
+            Object result = forward(con, method, args);
+            switch (name) {
+                case "commit":
+                    committed();
+                    return null;
+                case "rollback":
+                    if (args == null) {
+                        pending.clear();
+                        pendingAll = false;
+                    }
+                    return null;
+                case "prepareStatement":
+                case "prepareCall":
+                    return Proxy.newProxyInstance(QueryCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler(this, (Statement) result, (Connection) proxy, (String) args[0]));
+                case "createStatement":
+                    return Proxy.newProxyInstance(QueryCache.class.getClassLoader(), new Class<?>[]{Statement.class},
+                        new StatementHandler(this, (Statement) result, (Connection) proxy, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        final ConnectionHandler connection;
+        final Statement target;
+        final Connection proxyConnection;
+        final String preparedSql;
+        final List<Object> binds = new ArrayList<>();
+        // the SQL of the batch being built on a plain statement, which may be anything
+        boolean batchedSql = false;
+
+        StatementHandler(ConnectionHandler connection, Statement target, Connection proxyConnection, String preparedSql) {
+            this.connection = connection;
+            this.target = target;
+            this.proxyConnection = proxyConnection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection"))
+                return proxyConnection;
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return forward(target, method, args);
+            }
+            if (name.equals("clearParameters"))
+                binds.clear();
+            if (name.equals("addBatch") && args != null)
+                batchedSql = true;
+            if (!name.startsWith("execute"))
+                return forward(target, method, args);
+
+            String sql = preparedSql != null && (args == null || args.length == 0) ? preparedSql
+                : args != null && args.length > 0 ? (String) args[0] : null;
+            if (name.equals("executeQuery") && sql != null && isEnabled() && !connection.inTransaction()) {
+                Shape shape = shape(sql);
+                if (shape.cacheable)
+                    return cached(method, args, sql, shape);
+            }
+            Object result = forward(target, method, args);
+            if (name.equals("executeBatch") && batchedSql) {
+                batchedSql = false;
+                connection.written(shape("DO"));
+            } else if (sql != null) {
+                connection.written(shape(sql));
+            }
+            return result;
+        }
+
+        private Object cached(Method method, Object[] args, String sql, Shape shape) throws Throwable {
+            Key key = new Key(sql, new ArrayList<>(binds));
+            Result result;
+            synchronized (RESULTS) {
+                result = RESULTS.get(key);
+            }
+            CacheEvent.lookup(CACHE, QueryCatalog.labelOf(sql), result != null);
+            if (result != null) {
+                HITS.increment();
+                return RowListResultSet.of(result.columns, result.rows);
+            }
+            MISSES.increment();
+
+            long[] before = versions(shape.reads);
+            List<Object[]> rows = new ArrayList<>();
+            String[] columns;
+            ResultSet rs = (ResultSet) forward(target, method, args);
+            boolean streaming = false;
+            try {
+                ResultSetMetaData meta = rs.getMetaData();
+                columns = new String[meta.getColumnCount()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = meta.getColumnLabel(i + 1);
+                }
+                while (rs.next()) {
+                    if (rows.size() == MAX_ROWS) {
+                        // too big to cache, so the rest isn't copied either
+                        streaming = true;
+                        return RowListResultSet.of(columns, rows, rs);
+                    }
+                    Object[] row = new Object[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rows.add(row);
+                }
+            } finally {
+                if (!streaming)
+                    rs.close();
+            }
+            synchronized (RESULTS) {
+                if (Arrays.equals(before, versions(shape.reads)))
+                    RESULTS.put(key, new Result(columns, rows, shape.reads));
+            }
+            return RowListResultSet.of(columns, rows);
+        }
+
+        private void bind(int index, Object value) {
+            while (binds.size() < index) {
+                binds.add(null);
+            }
+            binds.set(index - 1, value instanceof byte[] ? Arrays.toString((byte[]) value) : value);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.company.Database;
+
+import com.company.Model.Admin;
+import com.company.Model.AssortmentSync;
+import com.company.Model.Customer;
+import com.company.Model.CustomerImport;
+import com.company.Model.OrderHistory;
+import com.company.Model.PriceUpdate;
+import com.company.Model.ReadModel;
+import com.company.Model.ShoppingCart;
+import com.company.Model.Snapshot;
+import com.company.Model.Store;
+import com.company.Model.StoreCatalog;
+import com.company.Model.User;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of every SQL constant declared by the model classes so the
+ * database tooling can refer to a statement by name (i.e Admin.GET_CUSTOMER_MVP)
+ * instead of by its text.
+ */
+public final class QueryCatalog {
+
+    private static final Class<?>[] SOURCES = {User.class, Customer.class, Admin.class, ShoppingCart.class, Store.class,
+        StoreCatalog.class, ReadModel.class, Snapshot.class, PriceUpdate.class,
+        AssortmentSync.class, CustomerImport.class, OrderHistory.class};
+    private static final String DESC = " DESC";
+    /**
+     * The statements that only show data, and so may be answered by a
+     * replica a moment behind the primary. Reads whose results feed a write
+     * (picking an unused order number, the reorders to fulfill, the stock a
+     * cart is checked against, logging in) aren't here and stay on the primary.
+     * Neither are the snapshot's reads, since its rows mustn't come from a
+     * replica further behind than the primary its digests may have come from.
+     */
+    private static final String[] REPLICA_READS = {
+        "User.STORE_BY_ID_QUERY", "User.STORE_BY_TIME_QUERY", "User.STORE_BY_STATE_QUERY",
+        "User.STORE_BY_PRODUCT_QUERY", "User.GET_PRODUCT_FROM_NAME", "User.GET_PRODUCT_FROM_UPC",
+        "User.PRODUCT_BY_NAME_QUERY", "User.PRODUCT_BY_PRICE_RANGE", "User.PRODUCT_BY_PRICE_AND_TYPE",
+        "User.PRODUCT_BY_BRAND_QUERY", "User.PRODUCT_BY_TYPE", "User.ALL_PRODUCTS_IN_STORE",
+        "Customer.STORE_BY_ID_QUERY", "Store.SELECT_INVENTORY", "StoreCatalog.CATALOG_QUERY",
+        "StoreCatalog.VENDOR_QUERY", "Admin.GET_BRANDS_FROM_STORE", "Admin.GET_VENDOR_FROM_STORE",
+        "Admin.GET_STORE_INVENTORY", "Admin.GET_PRODUCT_RANKING_ASC", "Admin.GET_PRODUCT_RANKING_BY_STORE_ASC",
+        "Admin.GET_CUSTOMER_MVP", "Admin.GET_STORE_TOTAL_SALES_ASC", "Admin.GET_STORE_TOTAL_SALES_STATE_ASC",
+        "Admin.GET_PRODUCT_SALES_RANKING_BY_STORE_ASC", "Admin.GET_PRODUCT_SALES_RANKING_ASC",
+        "OrderHistory.FIRST_PAGE", "OrderHistory.NEXT_PAGE"};
+
+    private static final Map<String, String> NAME_BY_SQL = new HashMap<>();
+    private static final Map<String, String> SQL_BY_NAME = new HashMap<>();
+    private static final Set<String> REPLICA_READ_SQL = new HashSet<>();
+
+    static {
+        for (Class<?> source : SOURCES) {
+            for (Field field : source.getDeclaredFields()) {
+                int mods = field.getModifiers();
+                if (field.getType() != String.class || !Modifier.isStatic(mods) || !Modifier.isFinal(mods))
+                    continue;
+                try {
+                    field.setAccessible(true);
+                    String sql = ((String) field.get(null)).trim();
+                    String name = source.getSimpleName() + "." + field.getName();
+                    NAME_BY_SQL.putIfAbsent(sql, name);
+                    SQL_BY_NAME.put(name, sql);
+                } catch (IllegalAccessException e) {
+                    // constants we can't read simply go unlabelled
+                }
+            }
+        }
+        for (String name : REPLICA_READS) {
+            REPLICA_READ_SQL.add(SQL_BY_NAME.get(name));
+        }
+    }
+
+    private QueryCatalog() {
+    }
+
+    /**
+     * Looks up the SQL text of a constant
+     * @param owner the model class declaring the constant
+     * @param constant the field name (i.e GET_PRODUCT_FROM_NAME)
+     * @return the SQL text or null if there is no such constant
+     */
+    public static String sqlOf(Class<?> owner, String constant) {
+        return SQL_BY_NAME.get(owner.getSimpleName() + "." + constant);
+    }
+
+    /**
+     * Finds the name of the constant a statement was prepared from. The
+     * ranking queries append " DESC" at runtime so that suffix is ignored.
+     * @param sql the statement text
+     * @return the qualified constant name, or null for ad hoc statements
+     */
+    public static String nameOf(String sql) {
+        String key = sql.trim();
+        String name = NAME_BY_SQL.get(key);
+        if (name == null && key.endsWith(DESC)) {
+            name = NAME_BY_SQL.get(key.substring(0, key.length() - DESC.length()));
+        }
+        return name;
+    }
+
+    /**
+     * @return whether a statement only shows data, so a replica may answer it
+     */
+    public static boolean isReplicaRead(String sql) {
+        String key = sql.trim();
+        if (key.endsWith(DESC))
+            return REPLICA_READ_SQL.contains(key) || REPLICA_READ_SQL.contains(key.substring(0, key.length() - DESC.length()));
+        return REPLICA_READ_SQL.contains(key);
+    }
+
+    /**
+     * @return the constant name if known, otherwise the statement text itself
+     */
+    public static String labelOf(String sql) {
+        String name = nameOf(sql);
+        return name != null ? name : sql.trim();
+    }
+}
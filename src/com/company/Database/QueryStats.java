@@ -0,0 +1,130 @@
+package com.company.Database;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-thread counters of the database work done by the command currently
+ * running on that thread. The dispatch loop resets them before each command
+ * and reads them afterwards.
+ *
+ * When tracing is on, every statement shape (the SQL text) executed by the
+ * command is also kept along with its distinct bind values.
+ */
+public final class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = ThreadLocal.withInitial(QueryStats::new);
+    private static volatile boolean tracing = false;
+
+    private long roundTrips;
+    private long rowsRead;
+    private long dbNanos;
+    private long errors;
+    private final Map<String, StatementShape> shapes = new LinkedHashMap<>();
+
+    private QueryStats() {
+    }
+
+    /**
+     * @return the counters for the calling thread
+     */
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Zeroes the calling thread's counters, done at the start of each command
+     */
+    public static void reset() {
+        QueryStats stats = CURRENT.get();
+        stats.roundTrips = 0;
+        stats.rowsRead = 0;
+        stats.dbNanos = 0;
+        stats.errors = 0;
+        stats.shapes.clear();
+    }
+
+    /**
+     * Hands over the calling thread's counters, leaving it fresh ones. Used
+     * by pool threads running statements for another thread's command.
+     */
+    static QueryStats take() {
+        QueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    /**
+     * Counts the work taken from another thread as this thread's own
+     */
+    void add(QueryStats other) {
+        roundTrips += other.roundTrips;
+        rowsRead += other.rowsRead;
+        dbNanos += other.dbNanos;
+        errors += other.errors;
+        for (StatementShape shape : other.shapes.values()) {
+            shape(shape.getSql()).add(shape);
+        }
+    }
+
+    /**
+     * Turns on collection of statement shapes and bind values
+     */
+    public static void setTracing(boolean on) {
+        tracing = on;
+    }
+
+    public static boolean isTracing() {
+        return tracing;
+    }
+
+    void roundTrip() {
+        roundTrips++;
+    }
+
+    void rowRead() {
+        rowsRead++;
+    }
+
+    void error() {
+        errors++;
+    }
+
+    void databaseTime(long nanos) {
+        dbNanos += nanos;
+    }
+
+    StatementShape shape(String sql) {
+        return shapes.computeIfAbsent(sql, StatementShape::new);
+    }
+
+    public long getRoundTrips() {
+        return roundTrips;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * @return the time spent executing statements and fetching rows
+     */
+    public long getDbNanos() {
+        return dbNanos;
+    }
+
+    /**
+     * @return the number of statements that failed with an SQLException
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return every statement shape run by this command, empty unless tracing
+     */
+    public Collection<StatementShape> getShapes() {
+        return shapes.values();
+    }
+}
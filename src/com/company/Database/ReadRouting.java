@@ -0,0 +1,344 @@
+package com.company.Database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.postgresql.replication.LogSequenceNumber;
+
+/**
+ * Sends the statements that only show data (browsing, store searches,
+ * inventory listings, statistics; see QueryCatalog.isReplicaRead) to a
+ * streaming replica, and everything else to the primary.
+ *
+ * Each wrapped primary connection also opens a connection to one of the
+ * replicas the first time it has a read to send, spreading the sessions
+ * over the replicas in turn. Inside a transaction everything stays on the
+ * primary.
+ *
+ * Reads follow the writes of every routed connection in this process:
+ * after a write the primary's WAL position is noted, and a replica isn't
+ * read again until it has replayed up to it, so a session (or the catalog
+ * loader behind it) never reads a state older than something it wrote.
+ * Anything run on the primary counts as a write unless its SQL is a
+ * SELECT with no INSERT, UPDATE or DELETE in it, whichever JDBC method
+ * ran it, so an INSERT ... RETURNING read back through executeQuery is
+ * followed too.
+ *
+ * Each replica's replay lag is checked at most once a second; one further
+ * behind than the limit, or one that can't be reached, is passed over for
+ * the primary until it recovers.
+ */
+public final class ReadRouting {
+
+    private static final String PRIMARY_POSITION = "SELECT pg_current_wal_lsn()";
+    // no lag at all when everything received has been replayed, which is all an idle primary sends
+    private static final String REPLICA_POSITION = "SELECT pg_last_wal_replay_lsn(), CASE WHEN " +
+        "pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 ELSE " +
+        "(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint END";
+    private static final long CHECK_INTERVAL_MS = 1000;
+    private static final long DOWN_MS = 10_000;
+    private static final String WORD = "[A-Za-z_][\\w.\"]*";
+    // the target of a write anywhere in the statement, such as inside a WITH; FOR UPDATE has none
+    private static final Pattern WRITE = Pattern.compile("\\b(?:INSERT\\s+INTO|DELETE\\s+FROM|UPDATE\\s+" +
+        "(?:ONLY\\s+)?" + WORD + "(?:\\s+(?:AS\\s+)?" + WORD + ")?\\s+SET)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * A replica, and what was last seen of it
+     */
+    public static final class Replica {
+        private final String name;
+        private final ConnectionFactory connections;
+        private volatile long replayed = 0;
+        private volatile long lagMs = -1;
+        private volatile long checkedAt = 0;
+        private volatile long downUntil = 0;
+        private final LongAdder reads = new LongAdder();
+
+        /**
+         * @param name how it is shown, such as its host:port
+         */
+        public Replica(String name, ConnectionFactory connections) {
+            this.name = name;
+            this.connections = connections;
+        }
+
+        private boolean isDown() {
+            return System.currentTimeMillis() < downUntil;
+        }
+
+        private void check(Connection con) throws SQLException {
+            try (Statement stmt = con.createStatement();
+                 ResultSet rs = stmt.executeQuery(REPLICA_POSITION)) {
+                rs.next();
+                String position = rs.getString(1);
+                replayed = position == null ? 0 : LogSequenceNumber.valueOf(position).asLong();
+                lagMs = rs.getLong(2);
+                checkedAt = System.currentTimeMillis();
+            }
+        }
+
+        @Override
+        public String toString() {
+            String state = isDown() ? "down" : lagMs < 0 ? "unchecked" : lagMs + " ms behind";
+            return String.format("%s (%s, %d reads)", name, state, reads.sum());
+        }
+    }
+
+    private static volatile List<Replica> replicas = Collections.emptyList();
+    private static volatile long maxLagMs;
+    private static final AtomicInteger NEXT_REPLICA = new AtomicInteger();
+    // the primary's WAL position after the latest write, which a replica has to have replayed to be read
+    private static final AtomicLong MUST_REACH = new AtomicLong();
+    private static volatile boolean positionWanted = false;
+    private static final LongAdder REPLICA_READS = new LongAdder();
+    private static final LongAdder PRIMARY_READS = new LongAdder();
+    private static final LongAdder BEHIND_WRITES = new LongAdder();
+    private static final LongAdder LAGGING = new LongAdder();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Starts sending reads to replicas
+     * @param replicaList the replicas reads may go to
+     * @param maxLag how far behind, in milliseconds, a replica may be and still be read
+     */
+    public static void enable(List<Replica> replicaList, long maxLag) {
+        maxLagMs = maxLag;
+        replicas = Collections.unmodifiableList(new ArrayList<>(replicaList));
+    }
+
+    public static boolean isEnabled() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * @param con a connection to the primary
+     * @return a connection sending reads to the replicas while routing is enabled
+     */
+    public static Connection wrap(Connection con) {
+        if (!isEnabled())
+            return con;
+        return (Connection) Proxy.newProxyInstance(ReadRouting.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler(con));
+    }
+
+    /**
+     * @return lines on where the reads went and how each replica is doing
+     */
+    public static String summary() {
+        StringBuilder out = new StringBuilder(String.format("Read routing: %d reads on replicas, %d on the primary " +
+            "(%d waiting for a write to replicate, %d for lag)", REPLICA_READS.sum(), PRIMARY_READS.sum(),
+            BEHIND_WRITES.sum(), LAGGING.sum()));
+        for (Replica replica : replicas) {
+            out.append(System.lineSeparator()).append("  ").append(replica);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return whether the statement only reads, judged by its SQL rather
+     * than by the method that runs it
+     */
+    static boolean isRead(String sql) {
+        String text = sql.trim();
+        return text.regionMatches(true, 0, "SELECT", 0, 6) && !WRITE.matcher(text).find();
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        final Connection primaryCon;
+        Replica replica;
+        Connection replicaCon;
+        // whether the open transaction wrote, so its commit moves MUST_REACH
+        boolean wroteInTransaction = false;
+
+        ConnectionHandler(Connection primaryCon) {
+            this.primaryCon = primaryCon;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy))
+                return proxy;
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy))
+                return true;
+            switch (name) {
+                case "prepareStatement": {
+                    String sql = (String) args[0];
+                    if (QueryCatalog.isReplicaRead(sql) && primaryCon.getAutoCommit()) {
+                        Connection con = replicaFor();
+                        if (con != null)
+                            return statement(forward(con, method, args), proxy, null, false);
+                        PRIMARY_READS.increment();
+                        return statement(forward(primaryCon, method, args), proxy, null, false);
+                    }
+                    return statement(forward(primaryCon, method, args), proxy, sql, true);
+                }
+                case "prepareCall":
+                    return statement(forward(primaryCon, method, args), proxy, (String) args[0], true);
+                case "createStatement":
+                    return statement(forward(primaryCon, method, args), proxy, null, true);
+                case "setAutoCommit": {
+                    boolean committing = (Boolean) args[0] && !primaryCon.getAutoCommit();
+                    Object result = forward(primaryCon, method, args);
+                    if (committing)
+                        committed();
+                    return result;
+                }
+                case "commit": {
+                    Object result = forward(primaryCon, method, args);
+                    committed();
+                    return result;
+                }
+                case "rollback":
+                    if (args == null)
+                        wroteInTransaction = false;
+                    return forward(primaryCon, method, args);
+                case "close":
+                    closeReplica();
+                    return forward(primaryCon, method, args);
+                default:
+                    return forward(primaryCon, method, args);
+            }
+        }
+
+        private void committed() {
+            if (wroteInTransaction)
+                positionWanted = true;
+            wroteInTransaction = false;
+        }
+
+        private void wrote() throws SQLException {
+            if (primaryCon.getAutoCommit())
+                positionWanted = true;
+            else
+                wroteInTransaction = true;
+        }
+
+        /**
+         * @return a connection to a replica that is close enough behind to
+         * read, or null if the read has to go to the primary
+         */
+        private Connection replicaFor() throws SQLException {
+            List<Replica> replicas = ReadRouting.replicas;
+            if (positionWanted) {
+                // taken after the write committed, so at or past it
+                positionWanted = false;
+                try (Statement stmt = primaryCon.createStatement();
+                     ResultSet rs = stmt.executeQuery(PRIMARY_POSITION)) {
+                    rs.next();
+                    long position = LogSequenceNumber.valueOf(rs.getString(1)).asLong();
+                    MUST_REACH.accumulateAndGet(position, Math::max);
+                }
+            }
+            if (replica == null || replica.isDown()) {
+                closeReplica();
+                for (int i = 0; i < replicas.size() && replica == null; i++) {
+                    Replica candidate = replicas.get(Math.floorMod(NEXT_REPLICA.getAndIncrement(), replicas.size()));
+                    if (!candidate.isDown())
+                        replica = candidate;
+                }
+                if (replica == null)
+                    return null;
+            }
+            try {
+                if (replicaCon == null)
+                    replicaCon = replica.connections.connect();
+                long now = System.currentTimeMillis();
+                long target = MUST_REACH.get();
+                if (now - replica.checkedAt >= CHECK_INTERVAL_MS || replica.replayed < target)
+                    replica.check(replicaCon);
+                if (replica.replayed < target) {
+                    BEHIND_WRITES.increment();
+                    return null;
+                }
+                if (replica.lagMs > maxLagMs) {
+                    LAGGING.increment();
+                    return null;
+                }
+            } catch (SQLException e) {
+                replica.downUntil = System.currentTimeMillis() + DOWN_MS;
+                closeReplica();
+                return null;
+            }
+            replica.reads.increment();
+            REPLICA_READS.increment();
+            return replicaCon;
+        }
+
+        private void closeReplica() {
+            if (replicaCon != null) {
+                try {
+                    replicaCon.close();
+                } catch (SQLException e) {
+                    // it is being dropped anyway
+                }
+            }
+            replicaCon = null;
+            replica = null;
+        }
+
+        /**
+         * @param sql what a prepared statement runs, null for a plain one
+         */
+        private Object statement(Object target, Object connection, String sql, boolean primary) {
+            Class<?> iface = target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return Proxy.newProxyInstance(ReadRouting.class.getClassLoader(), new Class<?>[]{iface},
+                new StatementHandler(this, (Statement) target, (Connection) connection, sql, primary));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        final ConnectionHandler connection;
+        final Statement target;
+        final Connection proxyConnection;
+        final String sql;
+        final boolean primary;
+
+        StatementHandler(ConnectionHandler connection, Statement target, Connection proxyConnection, String sql,
+                         boolean primary) {
+            this.connection = connection;
+            this.target = target;
+            this.proxyConnection = proxyConnection;
+            this.sql = sql;
+            this.primary = primary;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection"))
+                return proxyConnection;
+            Object result = forward(target, method, args);
+            if (primary && name.startsWith("execute")) {
+                // a plain statement's SQL comes with the call; a batch of them can't be told apart
+                String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+                if (text == null || !isRead(text))
+                    connection.wrote();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.company.Database;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+/**
+ * Streams the committed changes to a few tables out of a logical
+ * replication slot, decoded by the test_decoding plugin that ships with
+ * Postgres, and hands them to a subscriber one transaction at a time.
+ *
+ * The slot is a temporary one, created when the feed connects and dropped
+ * by the server when it disconnects, so a feed that dies holds back no
+ * WAL. Its changes start from the moment the slot was created; the
+ * subscriber then loads the tables on an ordinary connection and the
+ * stream replays everything since the slot, which leaves whole rows in
+ * their latest state whether or not the load already saw them. After a
+ * lost connection it starts over with a new slot and a new load.
+ *
+ * To measure how far behind the stream is, the feed writes a heartbeat
+ * message into the WAL every second, and as soon as it is asked to. The
+ * heartbeat carries the time it was sent and reaches the subscriber after
+ * every transaction committed before it, so when a heartbeat arrives
+ * everything committed before its time has been applied.
+ *
+ * Needs wal_level = logical, Postgres 10 or later, and a user with the
+ * REPLICATION attribute.
+ */
+public final class ReplicationFeed {
+
+    private static final String CREATE_SLOT = "SELECT * FROM pg_create_logical_replication_slot(?, 'test_decoding', true)";
+    private static final String EMIT_HEARTBEAT = "SELECT pg_logical_emit_message(false, ?, ?)";
+    private static final String HEARTBEAT_PREFIX = "wegmans2_heartbeat";
+    private static final long HEARTBEAT_MS = 1000;
+    private static final long IDLE_MS = 10;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    /**
+     * One changed row. Values are the text Postgres prints for them, or
+     * null for SQL NULL.
+     */
+    public static final class RowChange {
+        public enum Kind {
+            INSERT, UPDATE, DELETE, TRUNCATE
+        }
+
+        private final String table;
+        private final Kind kind;
+        private final Map<String, String> before;
+        private final Map<String, String> after;
+
+        RowChange(String table, Kind kind, Map<String, String> before, Map<String, String> after) {
+            this.table = table;
+            this.kind = kind;
+            this.before = before;
+            this.after = after;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the old key, or the whole old row on a table with a full
+         * replica identity; null for inserts and for updates that kept the key
+         */
+        public Map<String, String> getBefore() {
+            return before;
+        }
+
+        /**
+         * @return the new row, null for deletes and truncates
+         */
+        public Map<String, String> getAfter() {
+            return after;
+        }
+    }
+
+    /**
+     * What the feed hands its changes to. Every call comes from the feed's thread.
+     */
+    public interface Subscriber {
+
+        /**
+         * Replaces everything with the tables as they are now, after a new
+         * slot was created
+         * @param con an ordinary connection, in a transaction the subscriber may commit
+         */
+        void load(Connection con) throws SQLException;
+
+        /**
+         * Applies a committed transaction's changes to the feed's tables, in order
+         */
+        void apply(List<RowChange> transaction);
+
+        /**
+         * Everything committed before this time has been applied
+         * @param sentMillis when the heartbeat was sent, by this process's clock
+         */
+        void caughtUp(long sentMillis);
+
+        /**
+         * The stream broke; nothing is applied until the next load
+         */
+        void lost(SQLException e);
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String schema;
+    private final Set<String> tables;
+    // tells this feed's heartbeats apart from other feeds' on the same database
+    private final String heartbeatPrefix = HEARTBEAT_PREFIX + "_" + UUID.randomUUID().toString().replace("-", "");
+    private volatile boolean heartbeatWanted = false;
+    private volatile String lastError;
+    private boolean streaming = false;
+    private Thread thread;
+
+    /**
+     * @param url the JDBC url of the primary
+     * @param schema the schema of the tables
+     * @param tables the tables to stream
+     */
+    public ReplicationFeed(String url, String user, String password, String schema, Set<String> tables) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.schema = schema.toLowerCase();
+        this.tables = new HashSet<>(tables);
+    }
+
+    /**
+     * Starts streaming to the subscriber on a thread of its own
+     */
+    public synchronized void start(Subscriber subscriber) {
+        if (thread != null)
+            return;
+        thread = new Thread(() -> run(subscriber), "replication-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sends a heartbeat right away rather than at the next second, so the
+     * subscriber learns sooner that it has caught up with a write
+     */
+    public void heartbeatSoon() {
+        heartbeatWanted = true;
+    }
+
+    /**
+     * @return why the stream last broke, or null if it hasn't
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    private void run(Subscriber subscriber) {
+        long backoff = HEARTBEAT_MS;
+        while (true) {
+            try {
+                stream(subscriber);
+            } catch (SQLException e) {
+                lastError = e.getMessage();
+                subscriber.lost(e);
+            }
+            // a stream that ran for a while is retried quickly, one that keeps failing less and less often
+            if (streaming)
+                backoff = HEARTBEAT_MS;
+            streaming = false;
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    private void stream(Subscriber subscriber) throws SQLException {
+        Properties props = new Properties();
+        PGProperty.USER.set(props, user);
+        PGProperty.PASSWORD.set(props, password);
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(props, "10");
+        PGProperty.REPLICATION.set(props, "database");
+        PGProperty.PREFER_QUERY_MODE.set(props, "simple");
+        String slot = "wegmans2_read_" + UUID.randomUUID().toString().replace("-", "");
+
+        try (Connection replication = DriverManager.getConnection(url, props);
+             Connection con = DriverManager.getConnection(url, user, password)) {
+            try (PreparedStatement stmt = replication.prepareStatement(CREATE_SLOT)) {
+                stmt.setString(1, slot);
+                stmt.executeQuery().close();
+            }
+            con.setAutoCommit(false);
+            con.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            subscriber.load(con);
+            con.rollback();
+            con.setAutoCommit(true);
+
+            try (PGReplicationStream stream = replication.unwrap(PGConnection.class).getReplicationAPI()
+                     .replicationStream().logical()
+                     .withSlotName(slot)
+                     .withSlotOption("include-xids", false)
+                     .withSlotOption("skip-empty-xacts", true)
+                     .withStatusInterval(10, TimeUnit.SECONDS)
+                     .start();
+                 PreparedStatement heartbeat = con.prepareStatement(EMIT_HEARTBEAT)) {
+                lastError = null;
+                streaming = true;
+                List<RowChange> transaction = new ArrayList<>();
+                long nextHeartbeat = 0;
+                while (true) {
+                    if (heartbeatWanted || System.currentTimeMillis() >= nextHeartbeat) {
+                        heartbeatWanted = false;
+                        heartbeat.setString(1, heartbeatPrefix);
+                        heartbeat.setString(2, Long.toString(System.currentTimeMillis()));
+                        heartbeat.executeQuery().close();
+                        nextHeartbeat = System.currentTimeMillis() + HEARTBEAT_MS;
+                    }
+                    ByteBuffer message = stream.readPending();
+                    if (message == null) {
+                        sleep();
+                        continue;
+                    }
+                    String line = new String(message.array(), message.arrayOffset() + message.position(),
+                        message.remaining(), StandardCharsets.UTF_8);
+                    if (line.startsWith("BEGIN")) {
+                        transaction.clear();
+                    } else if (line.startsWith("COMMIT")) {
+                        if (!transaction.isEmpty())
+                            subscriber.apply(new ArrayList<>(transaction));
+                        transaction.clear();
+                    } else if (line.startsWith("table ")) {
+                        decode(line, transaction);
+                    } else if (line.startsWith("message: ")) {
+                        Long sent = heartbeatTime(line);
+                        if (sent != null)
+                            subscriber.caughtUp(sent);
+                    }
+                    LogSequenceNumber lsn = stream.getLastReceiveLSN();
+                    stream.setAppliedLSN(lsn);
+                    stream.setFlushedLSN(lsn);
+                }
+            }
+        }
+    }
+
+    private static void sleep() throws SQLException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(IDLE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted");
+        }
+    }
+
+    /**
+     * Decodes a test_decoding change line, such as
+     * table wegmans2.soldby: UPDATE: old-key: storeid[character]:'1       ' ... new-tuple: storeid[character]:'1       ' ...
+     */
+    private void decode(String line, List<RowChange> transaction) throws SQLException {
+        int tableEnd = line.indexOf(": ", 6);
+        int kindEnd = line.indexOf(':', tableEnd + 2);
+        if (tableEnd < 0 || kindEnd < 0)
+            return;
+        RowChange.Kind kind;
+        try {
+            kind = RowChange.Kind.valueOf(line.substring(tableEnd + 2, kindEnd));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        // a truncate can name several tables
+        for (String qualified : line.substring(6, tableEnd).split(", ")) {
+            String table = tableOf(qualified);
+            if (table == null)
+                continue;
+            if (kind == RowChange.Kind.TRUNCATE) {
+                transaction.add(new RowChange(table, kind, null, null));
+                continue;
+            }
+            Map<String, String> before = null;
+            Map<String, String> row = new LinkedHashMap<>();
+            Cursor cursor = new Cursor(line, kindEnd + 1);
+            while (cursor.skipSpaces()) {
+                if (cursor.consume("old-key:")) {
+                    before = new LinkedHashMap<>();
+                    row = before;
+                } else if (cursor.consume("new-tuple:")) {
+                    row = new LinkedHashMap<>();
+                } else if (cursor.consume("(no-tuple-data)")) {
+                    row = Collections.emptyMap();
+                } else if (!cursor.column(row)) {
+                    throw new SQLException("Couldn't decode change: " + line);
+                }
+            }
+            if (kind == RowChange.Kind.DELETE) {
+                // without a key the deleted row can't be found, so start over from a new load
+                if (row.isEmpty())
+                    throw new SQLException("Delete from " + table + " carries no key; its replica identity must be set");
+                transaction.add(new RowChange(table, kind, row, null));
+            } else {
+                transaction.add(new RowChange(table, kind, before, row));
+            }
+        }
+    }
+
+    // the table's name if it is one of the feed's, otherwise null
+    private String tableOf(String qualified) {
+        String name = qualified.replace("\"", "").toLowerCase();
+        int dot = name.indexOf('.');
+        if (dot >= 0 && !name.substring(0, dot).equals(schema))
+            return null;
+        name = name.substring(dot + 1);
+        return tables.contains(name) ? name : null;
+    }
+
+    // message: transactional: 0 prefix: <prefix>, sz: <n> content:<millis>
+    private Long heartbeatTime(String line) {
+        int prefix = line.indexOf("prefix: ");
+        int content = line.indexOf("content:");
+        if (prefix < 0 || content < 0 || !line.startsWith(heartbeatPrefix + ",", prefix + 8))
+            return null;
+        try {
+            return Long.parseLong(line.substring(content + 8).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the name[type]:value columns of a change line
+     */
+    private static final class Cursor {
+        final String line;
+        int pos;
+
+        Cursor(String line, int pos) {
+            this.line = line;
+            this.pos = pos;
+        }
+
+        /**
+         * @return whether anything is left
+         */
+        boolean skipSpaces() {
+            while (pos < line.length() && line.charAt(pos) == ' ')
+                pos++;
+            return pos < line.length();
+        }
+
+        boolean consume(String word) {
+            if (!line.startsWith(word, pos))
+                return false;
+            pos += word.length();
+            return true;
+        }
+
+        /**
+         * Reads one column into row
+         * @return false if the line doesn't read as columns
+         */
+        boolean column(Map<String, String> row) {
+            int open = line.indexOf('[', pos);
+            // array types end in [], so the type ends at the first "]:"
+            int close = open < 0 ? -1 : line.indexOf("]:", open);
+            if (close < 0)
+                return false;
+            String name = line.substring(pos, open).replace("\"", "");
+            pos = close + 2;
+            if (pos < line.length() && line.charAt(pos) == '\'') {
+                StringBuilder value = new StringBuilder();
+                pos++;
+                while (pos < line.length()) {
+                    char c = line.charAt(pos++);
+                    if (c != '\'') {
+                        value.append(c);
+                    } else if (pos < line.length() && line.charAt(pos) == '\'') {
+                        value.append('\'');
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+                row.put(name, value.toString());
+            } else {
+                int end = line.indexOf(' ', pos);
+                if (end < 0)
+                    end = line.length();
+                String value = line.substring(pos, end);
+                row.put(name, value.equals("null") ? null : value);
+                pos = end;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.company.Database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A forward only ResultSet over rows already held in memory. Lets rows that
+ * did not come straight from the driver (cached, merged, generated) be handed
+ * to the model's existing ResultSet translation code unchanged.
+ *
+ * Only the getters the model uses are supported: getString, getInt, getLong,
+ * getDouble, getBigDecimal, getTimestamp and getObject, by index or by
+ * column label. Rows held in memory can also be followed by the rest of a
+ * driver's ResultSet, which is then read as it comes.
+ */
+public final class RowListResultSet implements InvocationHandler {
+
+    private final String[] columns;
+    private final List<Object[]> rows;
+    private final ResultSet rest;
+    private int cursor = -1;
+    private boolean wasNull;
+    private boolean closed;
+
+    private RowListResultSet(String[] columns, List<Object[]> rows, ResultSet rest) {
+        this.columns = columns;
+        this.rows = rows;
+        this.rest = rest;
+    }
+
+    /**
+     * @param columns the column labels, in order
+     * @param rows the rows, each with one value per column
+     * @return a ResultSet positioned before the first row
+     */
+    public static ResultSet of(String[] columns, List<Object[]> rows) {
+        return (ResultSet) Proxy.newProxyInstance(RowListResultSet.class.getClassLoader(),
+            new Class<?>[]{ResultSet.class}, new RowListResultSet(columns, rows, null));
+    }
+
+    /**
+     * @param rows the rows read so far
+     * @param rest the ResultSet they were read from, positioned on the row after them
+     * @return a ResultSet giving the rows, then the rest of the rows from rest,
+     * which it closes when closed
+     */
+    public static ResultSet of(String[] columns, List<Object[]> rows, ResultSet rest) {
+        return (ResultSet) Proxy.newProxyInstance(RowListResultSet.class.getClassLoader(),
+            new Class<?>[]{ResultSet.class}, new RowListResultSet(columns, rows, rest));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (rest != null && cursor >= rows.size() && method.getName().startsWith("get")
+            && !method.getName().equals("getStatement"))
+            return forward(method, args);
+        switch (method.getName()) {
+            case "next":
+                if (++cursor < rows.size())
+                    return true;
+                if (rest == null)
+                    return false;
+                // rest is already on the first row after the ones held
+                return cursor == rows.size() || rest.next();
+            case "close":
+                closed = true;
+                if (rest != null)
+                    rest.close();
+                return null;
+            case "isClosed":
+                return closed;
+            case "wasNull":
+                return rest != null && cursor >= rows.size() ? rest.wasNull() : wasNull;
+            case "getStatement":
+                return null;
+            case "findColumn":
+                return columnIndex((String) args[0]);
+            case "getMetaData":
+                return metaData();
+            case "getString":
+                Object value = value(args[0]);
+                return value == null ? null : value.toString();
+            case "getInt":
+                return number(args[0]).intValue();
+            case "getLong":
+                return number(args[0]).longValue();
+            case "getDouble":
+                return number(args[0]).doubleValue();
+            case "getBigDecimal":
+                Object decimal = value(args[0]);
+                return decimal == null ? null : new BigDecimal(decimal.toString());
+            case "getTimestamp":
+                Object time = value(args[0]);
+                return time == null || time instanceof Timestamp ? time : Timestamp.valueOf(time.toString());
+            case "getObject":
+                return value(args[0]);
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "RowListResultSet" + Arrays.toString(columns);
+            default:
+                throw new SQLFeatureNotSupportedException(method.getName());
+        }
+    }
+
+    private Object forward(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(rest, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Object value(Object column) throws SQLException {
+        if (cursor < 0 || cursor >= rows.size())
+            throw new SQLException("ResultSet not positioned on a row");
+        int index = column instanceof Integer ? (Integer) column : columnIndex((String) column);
+        Object value = rows.get(cursor)[index - 1];
+        wasNull = value == null;
+        return value;
+    }
+
+    private Number number(Object column) throws SQLException {
+        Object value = value(column);
+        if (value == null)
+            return 0;
+        if (value instanceof Number)
+            return (Number) value;
+        return new BigDecimal(value.toString().trim());
+    }
+
+    private int columnIndex(String label) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(label))
+                return i + 1;
+        }
+        throw new SQLException("No column " + label);
+    }
+
+    private ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(RowListResultSet.class.getClassLoader(),
+            new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getColumnCount":
+                        return columns.length;
+                    case "getColumnLabel":
+                    case "getColumnName":
+                        return columns[(Integer) args[0] - 1];
+                    default:
+                        throw new SQLFeatureNotSupportedException(method.getName());
+                }
+            });
+    }
+}
@@ -0,0 +1,671 @@
+package com.company.Database;
+
+import com.company.Model.Admin;
+import com.company.Model.AssortmentSync;
+import com.company.Model.CustomerImport;
+import com.company.Model.OrderHistory;
+import com.company.Model.PriceUpdate;
+import com.company.Model.ShoppingCart;
+import com.company.Model.Snapshot;
+import com.company.Model.Store;
+import com.company.Model.StoreCatalog;
+import com.company.Model.User;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads the store-scoped tables (soldby, orders and reorder) over several
+ * databases by the state each store is in. The database the CLI was started
+ * with is the home shard: it holds the stores of every state not given to
+ * another shard, and is where everything that isn't store-scoped is read.
+ * Every shard has its own copy of the other tables (product, store,
+ * customer, brand, vendor, distributedby), which the joins need.
+ *
+ * Which database a statement goes to is set per statement below, as
+ * QueryCatalog does for replica reads:
+ *  - by store: the statements that bind a store id go to that store's shard,
+ *    looking the store's state up in the store table (and again on a miss);
+ *  - by state: the statements that bind a state go to that state's shard;
+ *  - every shard: the statements that list rows from all stores (the order
+ *    numbers in use, unfulfilled reorders, the stores selling a product) run
+ *    on every shard at once and their rows are put together;
+ *  - summed: the chain-wide rankings run on every shard at once, each
+ *    summing its own stores' orders, and the partial sums are added up by
+ *    key and sorted again;
+ *  - broadcast: writes to the copied tables, and to reorders found by
+ *    order number alone, run on every shard. A write returning rows
+ *    returns the home shard's.
+ * Anything else goes to the home shard only, including schema changes,
+ * which migrate applies to each shard on a connection of its own.
+ *
+ * Transactions are begun, committed and rolled back on every shard the
+ * connection has used, one after another, so a transaction spanning shards
+ * isn't atomic if a commit fails partway.
+ */
+public final class Sharding {
+
+    private static final String STORE_STATES = "SELECT id, state FROM store";
+
+    /**
+     * A database other than the home one, and the states whose stores it holds
+     */
+    public static final class Shard {
+        private final String name;
+        private final ConnectionFactory connections;
+        private final List<String> states;
+        private final LongAdder statements = new LongAdder();
+
+        /**
+         * @param name how it is shown, such as its host:port
+         * @param states the abbreviations of the states it holds (i.e NY)
+         */
+        public Shard(String name, ConnectionFactory connections, List<String> states) {
+            this.name = name;
+            this.connections = connections;
+            this.states = new ArrayList<>(states);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return a connection of its own to this shard, for work every
+         * database needs, such as schema migrations
+         */
+        public Connection connect() throws SQLException {
+            return connections.connect();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s): %d statements", name, String.join(",", states), statements.sum());
+        }
+    }
+
+    private enum Kind {BY_STORE, BY_STATE, EVERY_SHARD, SUMMED, BROADCAST}
+
+    private static final class Rule {
+        final Kind kind;
+        // the store id or state parameter, or the summed column
+        final int index;
+
+        Rule(Kind kind, int index) {
+            this.kind = kind;
+            this.index = index;
+        }
+    }
+
+    private static final Map<String, Rule> RULES = new HashMap<>();
+
+    static {
+        rule(Kind.BY_STORE, 1, User.class, "PRODUCT_BY_NAME_QUERY", "PRODUCT_BY_PRICE_RANGE",
+            "PRODUCT_BY_PRICE_AND_TYPE", "PRODUCT_BY_BRAND_QUERY", "PRODUCT_BY_TYPE", "ALL_PRODUCTS_IN_STORE");
+        rule(Kind.BY_STORE, 1, Store.class, "SELECT_INVENTORY", "GET_STOCK");
+        rule(Kind.BY_STORE, 1, StoreCatalog.class, "CATALOG_QUERY", "VENDOR_QUERY");
+        rule(Kind.BY_STORE, 1, Admin.class, "ADD_TO_STORE", "REMOVE_FROM_STORE", "UPDATE_STOCK",
+            "GET_BRANDS_FROM_STORE", "GET_VENDOR_FROM_STORE", "GET_STORE_INVENTORY", "GET_PRODUCT_RANKING_BY_STORE_ASC",
+            "GET_PRODUCT_SALES_RANKING_BY_STORE_ASC");
+        rule(Kind.BY_STORE, 3, Admin.class, "CREATE_REORDER_REQUEST");
+        rule(Kind.BY_STORE, 1, AssortmentSync.class, "CURRENT_ROWS", "ADD_ROW", "REMOVE_ROW");
+        rule(Kind.BY_STORE, 2, AssortmentSync.class, "RESTOCK_ROW");
+        rule(Kind.BY_STORE, 2, ShoppingCart.class, "GET_CURR_STOCK", "UPDATE_STOCK");
+        rule(Kind.BY_STORE, 4, ShoppingCart.class, "ADD_ORDER");
+        rule(Kind.BY_STATE, 1, Admin.class, "GET_STORE_TOTAL_SALES_STATE_ASC");
+        rule(Kind.EVERY_SHARD, 0, Admin.class, "ORDER_NUMBERS", "GET_UNFULFILLED_ORDERS");
+        rule(Kind.EVERY_SHARD, 0, ShoppingCart.class, "ORDER_NUMBERS");
+        rule(Kind.EVERY_SHARD, 0, OrderHistory.class, "FIRST_PAGE", "NEXT_PAGE");
+        rule(Kind.EVERY_SHARD, 0, User.class, "STORE_BY_PRODUCT_QUERY");
+        rule(Kind.EVERY_SHARD, 0, Snapshot.class, "STOCK_QUERY", "STORE_STOCK_QUERY", "STOCK_DIGESTS");
+        rule(Kind.SUMMED, 2, Admin.class, "GET_PRODUCT_RANKING_ASC", "GET_PRODUCT_SALES_RANKING_ASC");
+        rule(Kind.SUMMED, 3, Admin.class, "GET_STORE_TOTAL_SALES_ASC");
+        rule(Kind.SUMMED, 4, Admin.class, "GET_CUSTOMER_MVP");
+        rule(Kind.BROADCAST, 0, Admin.class, "UPDATE_PRICE_BY_UPC_QUERY", "UPDATE_PRICE_BY_NAME_QUERY",
+            "CREATE_CUSTOMER", "REMOVE_CUSTOMER", "REMOVE_STORE", "UPDATE_REORDER_TABLE");
+        rule(Kind.BROADCAST, 0, PriceUpdate.class, "UPDATE_PRICE");
+        rule(Kind.BROADCAST, 0, CustomerImport.class, "UPSERT_CUSTOMER");
+    }
+
+    private static volatile List<Shard> shards = Collections.emptyList();
+    private static final Map<String, Integer> SHARD_OF_STATE = new ConcurrentHashMap<>();
+    private static final Map<String, String> STATE_OF_STORE = new ConcurrentHashMap<>();
+    private static final ExecutorService GATHER = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "shard-gather");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final LongAdder HOME = new LongAdder();
+    private static final LongAdder ROUTED = new LongAdder();
+    private static final LongAdder GATHERED = new LongAdder();
+    private static final LongAdder GATHER_NANOS = new LongAdder();
+    private static final LongAdder BROADCASTS = new LongAdder();
+
+    private Sharding() {
+    }
+
+    private static void rule(Kind kind, int index, Class<?> owner, String... constants) {
+        for (String constant : constants) {
+            RULES.put(QueryCatalog.sqlOf(owner, constant), new Rule(kind, index));
+        }
+    }
+
+    private static Rule ruleOf(String sql) {
+        String key = sql.trim();
+        Rule rule = RULES.get(key);
+        if (rule == null && key.endsWith(" DESC"))
+            rule = RULES.get(key.substring(0, key.length() - " DESC".length()));
+        return rule;
+    }
+
+    /**
+     * Starts spreading the store-scoped tables over the shards
+     * @param shardList the databases besides the home one, with their states
+     */
+    public static void enable(List<Shard> shardList) {
+        SHARD_OF_STATE.clear();
+        for (int i = 0; i < shardList.size(); i++) {
+            for (String state : shardList.get(i).states) {
+                SHARD_OF_STATE.put(state.trim().toUpperCase(), i + 1);
+            }
+        }
+        shards = Collections.unmodifiableList(new ArrayList<>(shardList));
+    }
+
+    public static boolean isEnabled() {
+        return !shards.isEmpty();
+    }
+
+    /**
+     * @return the databases besides the home one, empty while sharding is off
+     */
+    public static List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @param con a connection to the home shard
+     * @return a connection sending each statement to its shards while sharding is enabled
+     */
+    public static Connection wrap(Connection con) {
+        if (!isEnabled())
+            return con;
+        return (Connection) Proxy.newProxyInstance(Sharding.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler(con, shards));
+    }
+
+    /**
+     * @return lines on where statements went and what each shard ran
+     */
+    public static String summary() {
+        long gathered = GATHERED.sum();
+        StringBuilder out = new StringBuilder(String.format("Sharding: %d statements routed to a store's shard, " +
+            "%d gathered from every shard (%.2f ms mean), %d broadcast, %d on the home shard only", ROUTED.sum(),
+            gathered, gathered == 0 ? 0.0 : GATHER_NANOS.sum() / 1e6 / gathered, BROADCASTS.sum(), HOME.sum()));
+        for (Shard shard : shards) {
+            out.append(System.lineSeparator()).append("  ").append(shard);
+        }
+        return out.toString();
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        final List<Shard> shards;
+        // the home shard first, then each shard's once it has been used
+        final Connection[] nodes;
+        boolean autoCommit = true;
+
+        ConnectionHandler(Connection home, List<Shard> shards) {
+            this.shards = shards;
+            this.nodes = new Connection[shards.size() + 1];
+            this.nodes[0] = home;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy))
+                return proxy;
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy))
+                return true;
+            switch (name) {
+                case "prepareStatement": {
+                    Rule rule = ruleOf((String) args[0]);
+                    if (rule == null) {
+                        HOME.increment();
+                        return forward(nodes[0], method, args);
+                    }
+                    return Proxy.newProxyInstance(Sharding.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler(this, (Connection) proxy, rule, method, args));
+                }
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return onEveryOpen(method, args);
+                case "commit":
+                case "close":
+                    return onEveryOpen(method, args);
+                case "rollback":
+                    if (args == null)
+                        return onEveryOpen(method, args);
+                    return forward(nodes[0], method, args);
+                default:
+                    return forward(nodes[0], method, args);
+            }
+        }
+
+        /**
+         * Runs a call on every shard opened so far, home last so its result
+         * is the one returned, and throws the first failure after trying all
+         */
+        private Object onEveryOpen(Method method, Object[] args) throws Throwable {
+            Throwable failure = null;
+            for (int i = nodes.length - 1; i > 0; i--) {
+                if (nodes[i] == null)
+                    continue;
+                try {
+                    forward(nodes[i], method, args);
+                } catch (SQLException e) {
+                    if (failure == null)
+                        failure = e;
+                }
+            }
+            Object result = forward(nodes[0], method, args);
+            if (failure != null)
+                throw failure;
+            return result;
+        }
+
+        Connection node(int index) throws SQLException {
+            if (nodes[index] == null) {
+                Connection con = shards.get(index - 1).connections.connect();
+                con.setAutoCommit(autoCommit);
+                nodes[index] = con;
+            }
+            return nodes[index];
+        }
+
+        int shardOfState(Object state) {
+            if (state == null)
+                return 0;
+            return SHARD_OF_STATE.getOrDefault(state.toString().trim().toUpperCase(), 0);
+        }
+
+        int shardOfStore(Object store) throws SQLException {
+            if (store == null)
+                return 0;
+            String id = store.toString().trim();
+            String state = STATE_OF_STORE.get(id);
+            if (state == null) {
+                // a store this process hasn't seen yet, so the whole list is read again
+                try (Statement stmt = nodes[0].createStatement();
+                     ResultSet rs = stmt.executeQuery(STORE_STATES)) {
+                    while (rs.next()) {
+                        STATE_OF_STORE.put(rs.getString(1).trim(), rs.getString(2).trim());
+                    }
+                }
+                state = STATE_OF_STORE.get(id);
+            }
+            return shardOfState(state);
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        final ConnectionHandler connection;
+        final Connection proxyConnection;
+        final Rule rule;
+        final Method prepare;
+        final Object[] prepareArgs;
+        final String sql;
+        // parameters by index, each the setter and its arguments, replayed on the shard the statement runs on
+        Map<Integer, Object[]> params = new TreeMap<>();
+        final List<Map<Integer, Object[]>> batch = new ArrayList<>();
+        // statement settings such as the fetch size, replayed the same way
+        final Map<String, Object[]> settings = new LinkedHashMap<>();
+        final Map<Integer, PreparedStatement> prepared = new HashMap<>();
+        PreparedStatement last;
+        ResultSet gathered;
+        int updateCount = -1;
+        boolean closed = false;
+
+        StatementHandler(ConnectionHandler connection, Connection proxyConnection, Rule rule, Method prepare,
+                         Object[] prepareArgs) {
+            this.connection = connection;
+            this.proxyConnection = proxyConnection;
+            this.rule = rule;
+            this.prepare = prepare;
+            this.prepareArgs = prepareArgs;
+            this.sql = ((String) prepareArgs[0]).trim();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && method.getDeclaringClass() == PreparedStatement.class && args != null
+                && args.length >= 2 && args[0] instanceof Integer) {
+                params.put((Integer) args[0], new Object[]{method, args});
+                return null;
+            }
+            if (name.startsWith("set") && method.getDeclaringClass() == Statement.class) {
+                settings.put(name, new Object[]{method, args});
+                for (PreparedStatement stmt : prepared.values()) {
+                    forward(stmt, method, args);
+                }
+                return null;
+            }
+            switch (name) {
+                case "getConnection":
+                    return proxyConnection;
+                case "clearParameters":
+                    params.clear();
+                    return null;
+                case "addBatch":
+                    if (args != null)
+                        throw new SQLException("Sharded statements can't batch SQL text");
+                    batch.add(params);
+                    params = new TreeMap<>(params);
+                    return null;
+                case "clearBatch":
+                    batch.clear();
+                    return null;
+                case "executeQuery":
+                    if (args != null)
+                        throw new SQLException("Sharded statements can't run other SQL text");
+                    return query();
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    if (args != null)
+                        throw new SQLException("Sharded statements can't run other SQL text");
+                    return name.equals("executeUpdate") ? (Object) (int) update() : (Object) update();
+                case "execute":
+                    if (args != null)
+                        throw new SQLException("Sharded statements can't run other SQL text");
+                    return execute();
+                case "executeBatch":
+                    return executeBatch();
+                case "getResultSet":
+                    return gathered != null ? gathered : last == null ? null : last.getResultSet();
+                case "getUpdateCount":
+                    return gathered != null ? -1 : updateCount;
+                case "cancel":
+                    for (PreparedStatement stmt : prepared.values()) {
+                        stmt.cancel();
+                    }
+                    return null;
+                case "close":
+                    for (PreparedStatement stmt : prepared.values()) {
+                        stmt.close();
+                    }
+                    prepared.clear();
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Sharded[" + sql + "]";
+                default:
+                    return forward(last != null ? last : on(0, params), method, args);
+            }
+        }
+
+        /**
+         * @return the statement prepared on a shard, with the given parameters set
+         */
+        private PreparedStatement on(int node, Map<Integer, Object[]> values) throws Throwable {
+            PreparedStatement stmt = prepared.get(node);
+            if (stmt == null) {
+                stmt = (PreparedStatement) forward(connection.node(node), prepare, prepareArgs);
+                for (Object[] setting : settings.values()) {
+                    forward(stmt, (Method) setting[0], (Object[]) setting[1]);
+                }
+                prepared.put(node, stmt);
+            }
+            for (Object[] param : values.values()) {
+                forward(stmt, (Method) param[0], (Object[]) param[1]);
+            }
+            if (node > 0)
+                connection.shards.get(node - 1).statements.increment();
+            last = stmt;
+            return stmt;
+        }
+
+        private Object value(Map<Integer, Object[]> values, int index) {
+            Object[] param = values.get(index);
+            return param == null ? null : ((Object[]) param[1])[1];
+        }
+
+        private int target(Map<Integer, Object[]> values) throws SQLException {
+            ROUTED.increment();
+            if (rule.kind == Kind.BY_STATE)
+                return connection.shardOfState(value(values, rule.index));
+            return connection.shardOfStore(value(values, rule.index));
+        }
+
+        private boolean everyShard() {
+            return rule.kind == Kind.EVERY_SHARD || rule.kind == Kind.SUMMED || rule.kind == Kind.BROADCAST;
+        }
+
+        private ResultSet query() throws Throwable {
+            gathered = null;
+            if (!everyShard())
+                return on(target(params), params).executeQuery();
+            if (rule.kind == Kind.BROADCAST) {
+                BROADCASTS.increment();
+                for (int node = 1; node < connection.nodes.length; node++) {
+                    on(node, params).executeQuery().close();
+                }
+                return on(0, params).executeQuery();
+            }
+            gathered = gather();
+            return gathered;
+        }
+
+        private long update() throws Throwable {
+            gathered = null;
+            if (!everyShard())
+                return updateCount = on(target(params), params).executeUpdate();
+            BROADCASTS.increment();
+            long count = 0;
+            for (int node = 0; node < connection.nodes.length; node++) {
+                count += on(node, params).executeUpdate();
+            }
+            updateCount = (int) count;
+            return count;
+        }
+
+        private boolean execute() throws Throwable {
+            if (rule.kind == Kind.EVERY_SHARD || rule.kind == Kind.SUMMED) {
+                query();
+                return true;
+            }
+            if (rule.kind == Kind.BROADCAST) {
+                update();
+                return false;
+            }
+            gathered = null;
+            PreparedStatement stmt = on(target(params), params);
+            boolean rows = stmt.execute();
+            updateCount = stmt.getUpdateCount();
+            return rows;
+        }
+
+        private int[] executeBatch() throws Throwable {
+            int[] counts = new int[batch.size()];
+            Map<Integer, List<Integer>> byNode = new TreeMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (everyShard()) {
+                    for (int node = 0; node < connection.nodes.length; node++) {
+                        byNode.computeIfAbsent(node, n -> new ArrayList<>()).add(i);
+                    }
+                } else {
+                    byNode.computeIfAbsent(target(batch.get(i)), n -> new ArrayList<>()).add(i);
+                }
+            }
+            if (everyShard() && !batch.isEmpty())
+                BROADCASTS.increment();
+            for (Map.Entry<Integer, List<Integer>> entry : byNode.entrySet()) {
+                PreparedStatement stmt = null;
+                for (int i : entry.getValue()) {
+                    stmt = on(entry.getKey(), batch.get(i));
+                    stmt.addBatch();
+                }
+                int[] nodeCounts = stmt.executeBatch();
+                for (int j = 0; j < nodeCounts.length; j++) {
+                    counts[entry.getValue().get(j)] += nodeCounts[j];
+                }
+            }
+            batch.clear();
+            return counts;
+        }
+
+        /**
+         * Runs the query on every shard at once and puts the rows together
+         */
+        private ResultSet gather() throws Throwable {
+            long start = System.nanoTime();
+            List<Future<List<Object[]>>> parts = new ArrayList<>();
+            String[][] columns = new String[1][];
+            // what each shard's statement cost, counted on the pool thread that ran it
+            QueryStats[] costs = new QueryStats[connection.nodes.length];
+            for (int node = 0; node < connection.nodes.length; node++) {
+                PreparedStatement stmt = on(node, params);
+                int shard = node;
+                parts.add(GATHER.submit(() -> {
+                    List<Object[]> rows = new ArrayList<>();
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        ResultSetMetaData meta = rs.getMetaData();
+                        int count = meta.getColumnCount();
+                        synchronized (columns) {
+                            if (columns[0] == null) {
+                                columns[0] = new String[count];
+                                for (int i = 0; i < count; i++) {
+                                    columns[0][i] = meta.getColumnLabel(i + 1);
+                                }
+                            }
+                        }
+                        while (rs.next()) {
+                            Object[] row = new Object[count];
+                            for (int i = 0; i < count; i++) {
+                                row[i] = rs.getObject(i + 1);
+                            }
+                            rows.add(row);
+                        }
+                    } finally {
+                        costs[shard] = QueryStats.take();
+                    }
+                    return rows;
+                }));
+            }
+            List<List<Object[]>> results = new ArrayList<>();
+            Throwable failure = null;
+            for (Future<List<Object[]>> part : parts) {
+                try {
+                    results.add(part.get());
+                } catch (ExecutionException e) {
+                    // the other shards are still waited for, so their work is counted too
+                    if (failure == null)
+                        failure = e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while gathering from the shards");
+                }
+            }
+            QueryStats stats = QueryStats.current();
+            for (QueryStats cost : costs) {
+                if (cost != null)
+                    stats.add(cost);
+            }
+            if (failure != null)
+                throw failure;
+            List<Object[]> rows = rule.kind == Kind.SUMMED ? sum(results) : concat(results);
+            GATHERED.increment();
+            GATHER_NANOS.add(System.nanoTime() - start);
+            return RowListResultSet.of(columns[0], rows);
+        }
+
+        private List<Object[]> concat(List<List<Object[]>> results) {
+            List<Object[]> rows = new ArrayList<>();
+            for (List<Object[]> part : results) {
+                rows.addAll(part);
+            }
+            return rows;
+        }
+
+        /**
+         * Adds up each shard's sum for the same key (the other columns) and
+         * sorts by the total the way the statement did
+         */
+        private List<Object[]> sum(List<List<Object[]>> results) {
+            int column = rule.index - 1;
+            Map<List<Object>, Object[]> byKey = new LinkedHashMap<>();
+            for (List<Object[]> part : results) {
+                for (Object[] row : part) {
+                    List<Object> key = new ArrayList<>(Arrays.asList(row));
+                    key.remove(column);
+                    Object[] total = byKey.get(key);
+                    if (total == null)
+                        byKey.put(key, row.clone());
+                    else
+                        total[column] = add(total[column], row[column]);
+                }
+            }
+            List<Object[]> rows = new ArrayList<>(byKey.values());
+            boolean descending = sql.toUpperCase().endsWith("DESC");
+            rows.sort((a, b) -> {
+                int order = compare(a[column], b[column]);
+                return descending ? -order : order;
+            });
+            return rows;
+        }
+
+        private static Object add(Object a, Object b) {
+            if (a == null)
+                return b;
+            if (b == null)
+                return a;
+            if (a instanceof BigDecimal || b instanceof BigDecimal)
+                return new BigDecimal(a.toString()).add(new BigDecimal(b.toString()));
+            if (a instanceof Double || b instanceof Double || a instanceof Float || b instanceof Float)
+                return ((Number) a).doubleValue() + ((Number) b).doubleValue();
+            return ((Number) a).longValue() + ((Number) b).longValue();
+        }
+
+        private static int compare(Object a, Object b) {
+            if (a == null || b == null)
+                return a == null ? (b == null ? 0 : -1) : 1;
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+    }
+}
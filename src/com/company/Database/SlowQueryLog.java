@@ -0,0 +1,181 @@
+package com.company.Database;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Logs every statement slower than a threshold to a rotating file, with
+ * the name of the model constant it came from, its binds, duration and row
+ * count.
+ *
+ * The first time a statement shape is slow its plan is captured as well:
+ * SELECTs are re-run under EXPLAIN (ANALYZE, BUFFERS) with the same binds,
+ * while writes, and SELECTs that lock rows, only get a plain EXPLAIN so
+ * they are never applied twice. Inside a transaction the plan is taken
+ * under a savepoint that is rolled back, so an EXPLAIN that fails doesn't
+ * abort the user's transaction.
+ */
+public final class SlowQueryLog {
+
+    private static final Logger LOG = Logger.getLogger("com.company.Database.SlowQueryLog");
+    private static final int FILE_LIMIT = 5 * 1024 * 1024;
+    private static final int FILE_COUNT = 5;
+    private static final String EXPLAIN_ANALYZE = "EXPLAIN (ANALYZE, BUFFERS) ";
+    private static final String EXPLAIN = "EXPLAIN ";
+    private static final Pattern LOCKING = Pattern.compile("\\bFOR\\s+(NO\\s+KEY\\s+UPDATE|UPDATE|KEY\\s+SHARE|SHARE)\\b",
+        Pattern.CASE_INSENSITIVE);
+
+    private static volatile long thresholdNanos = -1;
+    private static final Set<String> EXPLAINED = ConcurrentHashMap.newKeySet();
+    private static final ThreadLocal<List<Entry>> PENDING = ThreadLocal.withInitial(ArrayList::new);
+
+    private SlowQueryLog() {
+    }
+
+    /**
+     * Starts logging slow statements
+     * @param thresholdMs statements taking at least this long are logged
+     * @param path the log file; the current file is path.0 and older ones path.1, path.2, ...
+     */
+    public static void enable(long thresholdMs, String path) throws IOException {
+        FileHandler handler = new FileHandler(path.replace("%", "%%") + ".%g", FILE_LIMIT, FILE_COUNT, true);
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+        LOG.setUseParentHandlers(false);
+        LOG.addHandler(handler);
+        thresholdNanos = thresholdMs * 1_000_000L;
+    }
+
+    public static boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    static boolean isSlow(long nanos) {
+        return thresholdNanos >= 0 && nanos >= thresholdNanos;
+    }
+
+    /**
+     * A slow statement whose rows may still be being read
+     */
+    static final class Entry {
+        private final Connection con;
+        private final String sql;
+        private final List<Object> binds;
+        private final long nanos;
+        private long rows;
+        private boolean finished;
+
+        private Entry(Connection con, String sql, List<Object> binds, long nanos, long rows) {
+            this.con = con;
+            this.sql = sql;
+            this.binds = binds;
+            this.nanos = nanos;
+            this.rows = rows;
+        }
+
+        void rowRead() {
+            rows++;
+        }
+
+        /**
+         * Writes the entry once its row count is known
+         */
+        void finish() {
+            if (finished)
+                return;
+            finished = true;
+            PENDING.get().remove(this);
+            write(this);
+        }
+    }
+
+    /**
+     * Records a slow statement. Queries are only written out once their
+     * result set has been read to the end, closed, or the command ends.
+     * @param con the unwrapped connection, used to capture the plan
+     * @param rows the update count for writes, or -1 for queries
+     */
+    static Entry slow(Connection con, String sql, List<Object> binds, long nanos, long rows) {
+        Entry entry = new Entry(con, sql, new ArrayList<>(binds), nanos, Math.max(rows, 0));
+        if (rows < 0)
+            PENDING.get().add(entry);
+        else
+            entry.finish();
+        return entry;
+    }
+
+    /**
+     * Writes out any slow queries of the calling thread whose results were
+     * never fully read, called at the end of each command
+     */
+    public static void flush() {
+        List<Entry> pending = PENDING.get();
+        while (!pending.isEmpty()) {
+            pending.get(0).finish();
+        }
+    }
+
+    private static void write(Entry entry) {
+        StringBuilder line = new StringBuilder();
+        line.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").format(new Date()))
+            .append(String.format(" %.2f ms rows=%d ", entry.nanos / 1e6, entry.rows))
+            .append(QueryCatalog.labelOf(entry.sql))
+            .append(" binds=").append(entry.binds);
+        if (EXPLAINED.add(entry.sql)) {
+            line.append(System.lineSeparator()).append(explain(entry));
+        }
+        LOG.log(Level.INFO, line.toString());
+    }
+
+    private static String explain(Entry entry) {
+        boolean query = entry.sql.trim().toUpperCase().startsWith("SELECT") && !LOCKING.matcher(entry.sql).find();
+        StringBuilder plan = new StringBuilder();
+        Savepoint savepoint = null;
+        try {
+            if (!entry.con.getAutoCommit())
+                savepoint = entry.con.setSavepoint();
+            try (PreparedStatement stmt = entry.con.prepareStatement((query ? EXPLAIN_ANALYZE : EXPLAIN) + entry.sql)) {
+                for (int i = 0; i < entry.binds.size(); i++) {
+                    stmt.setObject(i + 1, entry.binds.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append("    ").append(rs.getString(1)).append(System.lineSeparator());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plan.append("    plan unavailable: ").append(e.getMessage()).append(System.lineSeparator());
+        } finally {
+            if (savepoint != null) {
+                try {
+                    entry.con.rollback(savepoint);
+                    entry.con.releaseSavepoint(savepoint);
+                } catch (SQLException e) {
+                    plan.append("    savepoint not rolled back: ").append(e.getMessage()).append(System.lineSeparator());
+                }
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package com.company.Database;
+
+import java.io.PrintStream;
+
+/**
+ * Prints the end of command report for --trace-sql: where the time went
+ * (database vs client), each statement shape that ran, and any N+1 patterns,
+ * i.e. the same statement executed over and over with different binds
+ * where one set based query would do.
+ */
+public final class SqlTrace {
+
+    /**
+     * A statement run this many times with as many distinct binds is flagged
+     */
+    static final int N_PLUS_ONE_THRESHOLD = 3;
+    private static final int SQL_WIDTH = 60;
+
+    private SqlTrace() {
+    }
+
+    /**
+     * @param shape a statement shape from a single command
+     * @return whether it looks like a per-row lookup
+     */
+    public static boolean isNPlusOne(StatementShape shape) {
+        return shape.getExecutions() >= N_PLUS_ONE_THRESHOLD && shape.getDistinctBinds() >= N_PLUS_ONE_THRESHOLD;
+    }
+
+    /**
+     * @param out where to print the report
+     * @param command the command that just ran
+     * @param stats the command's counters
+     * @param nanos the command's wall clock time
+     */
+    public static void print(PrintStream out, String command, QueryStats stats, long nanos) {
+        long dbNanos = Math.min(stats.getDbNanos(), nanos);
+        out.println(String.format("-- sql trace [%s]: %d statements, %d rows, %.2f ms database, %.2f ms client",
+            command, stats.getRoundTrips(), stats.getRowsRead(), dbNanos / 1e6, (nanos - dbNanos) / 1e6));
+        for (StatementShape shape : stats.getShapes()) {
+            out.println(String.format("--   %4dx %4d binds %6d rows %8.2f ms  %s", shape.getExecutions(),
+                shape.getDistinctBinds(), shape.getRows(), shape.getNanos() / 1e6, abbreviate(QueryCatalog.labelOf(shape.getSql()))));
+        }
+        for (StatementShape shape : stats.getShapes()) {
+            if (isNPlusOne(shape)) {
+                out.println(String.format("-- N+1: %s ran %d times with %d different binds; fetch these rows in one query",
+                    abbreviate(QueryCatalog.labelOf(shape.getSql())), shape.getExecutions(), shape.getDistinctBinds()));
+            }
+        }
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= SQL_WIDTH ? sql : sql.substring(0, SQL_WIDTH - 3) + "...";
+    }
+}
@@ -0,0 +1,69 @@
+package com.company.Database;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * What one command did with one SQL statement: how often it ran, with how
+ * many different sets of bind values, and what that cost.
+ */
+public class StatementShape {
+
+    /**
+     * Distinct binds are only remembered up to this many per statement
+     */
+    private static final int MAX_DISTINCT_BINDS = 1000;
+
+    private final String sql;
+    private int executions;
+    private long nanos;
+    private long rows;
+    private final Set<String> binds = new HashSet<>();
+
+    StatementShape(String sql) {
+        this.sql = sql;
+    }
+
+    void executed(String bindValues, long nanos) {
+        executions++;
+        this.nanos += nanos;
+        if (binds.size() < MAX_DISTINCT_BINDS)
+            binds.add(bindValues);
+    }
+
+    void fetched(long nanos) {
+        rows++;
+        this.nanos += nanos;
+    }
+
+    void add(StatementShape other) {
+        executions += other.executions;
+        nanos += other.nanos;
+        rows += other.rows;
+        for (String bindValues : other.binds) {
+            if (binds.size() >= MAX_DISTINCT_BINDS)
+                break;
+            binds.add(bindValues);
+        }
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public int getExecutions() {
+        return executions;
+    }
+
+    public int getDistinctBinds() {
+        return binds.size();
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,187 @@
+package com.company.Database;
+
+import com.company.Model.Admin;
+import com.company.Model.AssortmentSync;
+import com.company.Model.OrderHistory;
+import com.company.Model.PriceUpdate;
+import com.company.Model.ShoppingCart;
+import com.company.Model.Snapshot;
+import com.company.Model.Store;
+import com.company.Model.StoreCatalog;
+import com.company.Model.User;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.postgresql.PGStatement;
+
+/**
+ * A Connection that never leaves the JVM. Every query returns the rows
+ * registered for its SQL text, or a single default row, so the model classes
+ * can be benchmarked and load tested without Postgres.
+ *
+ * Each statement execution can be made to take a fixed time to stand in for
+ * the round trip to a real server. Answers are registered up front and only
+ * read afterwards, so one stub may hand out connections to many threads.
+ */
+public class StubConnection {
+
+    // named after product's columns since createProductFromUPC reads them by label
+    private static final String[] COLUMNS = {"upc", "brand", "name", "type", "size", "price"};
+    private static final String DESC = " DESC";
+
+    private final Map<String, List<Object[]>> answers = new HashMap<>();
+    private final Object[] defaultRow;
+    private long latencyNanos = 0;
+
+    public StubConnection(Object... defaultRow) {
+        this.defaultRow = defaultRow;
+    }
+
+    /**
+     * @return a stub answering every statement of the customer and admin
+     * flows (store set, browse, cart, checkout, the store catalog, the
+     * statistics, bulk price updates, assortment syncs, building a snapshot
+     * and a page of order history) with plausible rows, with plenty of stock
+     * and no order numbers taken
+     */
+    public static StubConnection standard() {
+        Object[] store = {"1       ", "812 4th Parkway", "MA", 700, 2200};
+        List<Object[]> ranking = Arrays.asList(new Object[]{"877194198700", 30},
+            new Object[]{"877194198701", 20}, new Object[]{"877194198702", 10});
+        List<Object[]> sales = Collections.singletonList(new Object[]{"1       ", "812 4th Parkway", 182400L});
+        List<Object[]> prices = Collections.singletonList(new Object[]{"877194198700", "Potato", 2.49});
+        return new StubConnection("877194198700", "ACME", "Potato", "Vegetables", "Large", 2.49)
+            .answer(QueryCatalog.sqlOf(User.class, "STORE_BY_ID_QUERY"), Collections.singletonList(store))
+            .answer(QueryCatalog.sqlOf(Store.class, "GET_STOCK"), Collections.singletonList(new Object[]{1_000_000}))
+            .answer(QueryCatalog.sqlOf(ShoppingCart.class, "GET_CURR_STOCK"), Collections.singletonList(new Object[]{1_000_000}))
+            .answer(QueryCatalog.sqlOf(ShoppingCart.class, "TOTAL_QUERY"), Collections.singletonList(new Object[]{2.49}))
+            .answer(QueryCatalog.sqlOf(ShoppingCart.class, "GET_UPC_FROM_NAME"), Collections.singletonList(new Object[]{"877194198700"}))
+            .answer(QueryCatalog.sqlOf(ShoppingCart.class, "ORDER_NUMBERS"), new ArrayList<>())
+            .answer(QueryCatalog.sqlOf(Admin.class, "ORDER_NUMBERS"), new ArrayList<>())
+            .answer(QueryCatalog.sqlOf(Admin.class, "GET_CUSTOMER_MVP"),
+                Collections.singletonList(new Object[]{"5019312140", "Janine", "Ide", 123450L}))
+            .answer(QueryCatalog.sqlOf(Admin.class, "GET_PRODUCT_RANKING_ASC"), ranking)
+            .answer(QueryCatalog.sqlOf(Admin.class, "GET_PRODUCT_RANKING_BY_STORE_ASC"), ranking)
+            .answer(QueryCatalog.sqlOf(Admin.class, "GET_STORE_TOTAL_SALES_ASC"), sales)
+            .answer(QueryCatalog.sqlOf(Admin.class, "GET_STORE_TOTAL_SALES_STATE_ASC"), sales)
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "CATALOG_QUERY"), Collections.singletonList(
+                new Object[]{"877194198700", "ACME", "Potato", "Vegetables", "Large", 2.49, 1_000_000}))
+            .answer(QueryCatalog.sqlOf(StoreCatalog.class, "VENDOR_QUERY"),
+                Collections.singletonList(new Object[]{"Acme Distribution"}))
+            .answer(QueryCatalog.sqlOf(PriceUpdate.class, "PRICES_BY_UPC"), prices)
+            .answer(QueryCatalog.sqlOf(PriceUpdate.class, "PRICES_BY_BRAND"), prices)
+            .answer(QueryCatalog.sqlOf(PriceUpdate.class, "PRICES_BY_TYPE"), prices)
+            .answer(QueryCatalog.sqlOf(PriceUpdate.class, "PRICES_BY_BRAND_AND_TYPE"), prices)
+            .answer(QueryCatalog.sqlOf(AssortmentSync.class, "CURRENT_ROWS"), Arrays.asList(
+                new Object[]{"877194198700", 1_000_000}, new Object[]{"877194198701", 20}))
+            .answer(QueryCatalog.sqlOf(OrderHistory.class, "FIRST_PAGE"), Arrays.asList(
+                new Object[]{Timestamp.valueOf("2026-10-02 17:45:00"), "10000002", "1       ", "Potato", 4, 249L},
+                new Object[]{Timestamp.valueOf("2026-09-14 09:30:00"), "10000001", "1       ", "Potato", 2, 249L},
+                new Object[]{new Timestamp(PGStatement.DATE_NEGATIVE_INFINITY), "00004711", "1       ", "Potato", 1, 249L}))
+            .answer(QueryCatalog.sqlOf(OrderHistory.class, "NEXT_PAGE"), new ArrayList<>())
+            .answer(QueryCatalog.sqlOf(Snapshot.class, "STORES_QUERY"),
+                Collections.singletonList(new Object[]{"1       ", "MA", "812 4th Parkway", 700, 2200}))
+            .answer(QueryCatalog.sqlOf(Snapshot.class, "PRODUCTS_QUERY"), Collections.singletonList(
+                new Object[]{"877194198700", "ACME", "Potato", "Vegetables", 2.49, 87}))
+            .answer(QueryCatalog.sqlOf(Snapshot.class, "STOCK_QUERY"),
+                Collections.singletonList(new Object[]{"1       ", "877194198700", 1_000_000}))
+            .answer(QueryCatalog.sqlOf(Snapshot.class, "VENDORS_QUERY"),
+                Collections.singletonList(new Object[]{"ACME", "Acme Distribution"}))
+            .answer(QueryCatalog.sqlOf(Snapshot.class, "PRODUCT_DIGESTS"),
+                Collections.singletonList(new Object[]{87, "57f1c7a2b0a4e1d3c9f8e6b5a4d3c2b1"}))
+            .answer(QueryCatalog.sqlOf(Snapshot.class, "STOCK_DIGESTS"),
+                Collections.singletonList(new Object[]{"1       ", "0c1d2e3f4a5b6c7d8e9fa0b1c2d3e4f5"}));
+    }
+
+    /**
+     * Makes a statement return the given rows. The ranking queries are
+     * prepared with " DESC" appended at runtime, so that form answers too.
+     */
+    public StubConnection answer(String sql, List<Object[]> rows) {
+        answers.put(sql.trim(), rows);
+        answers.put(sql.trim() + DESC, rows);
+        return this;
+    }
+
+    /**
+     * Makes every statement execution take this long
+     */
+    public StubConnection latency(long micros) {
+        latencyNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+        return this;
+    }
+
+    public Connection connect() {
+        boolean[] autoCommit = {true};
+        return (Connection) Proxy.newProxyInstance(StubConnection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if (method.getName().equals("prepareStatement"))
+                    return statement((String) args[0]);
+                if (method.getName().equals("getAutoCommit"))
+                    return autoCommit[0];
+                if (method.getName().equals("setAutoCommit"))
+                    autoCommit[0] = (Boolean) args[0];
+                return defaultValue(method.getReturnType());
+            });
+    }
+
+    private PreparedStatement statement(String sql) {
+        List<Object[]> rows = answers.getOrDefault(sql.trim(), Collections.singletonList(defaultRow));
+        String[] columns = columnsFor(rows);
+        return (PreparedStatement) Proxy.newProxyInstance(StubConnection.class.getClassLoader(),
+            new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "executeQuery":
+                        roundTrip();
+                        return RowListResultSet.of(columns, rows);
+                    case "executeUpdate":
+                        roundTrip();
+                        return 1;
+                    case "execute":
+                        roundTrip();
+                        return true;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    /**
+     * @return product's column labels for the leading columns, placeholders for any after them,
+     * so the metadata matches the width of the rows
+     */
+    private static String[] columnsFor(List<Object[]> rows) {
+        int width = rows.isEmpty() ? COLUMNS.length : rows.get(0).length;
+        if (width == COLUMNS.length)
+            return COLUMNS;
+        String[] columns = new String[width];
+        for (int i = 0; i < width; i++) {
+            columns[i] = i < COLUMNS.length ? COLUMNS[i] : "column" + (i + 1);
+        }
+        return columns;
+    }
+
+    private void roundTrip() {
+        if (latencyNanos > 0)
+            LockSupport.parkNanos(latencyNanos);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+package com.company.LoadGen;
+
+import com.company.Database.ConnectionFactory;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples pg_stat_activity once a second while a load test measures, on a
+ * connection of its own, to show how many backends were busy and what they
+ * were waiting on. Backends waiting on heavyweight locks are the
+ * contention that makes checkout latency climb with concurrency.
+ */
+public class ContentionMonitor {
+
+    private static final String ACTIVITY = "SELECT wait_event_type, wait_event, count(*) FROM pg_stat_activity " +
+        "WHERE datname = current_database() AND state = 'active' AND pid <> pg_backend_pid() " +
+        "GROUP BY wait_event_type, wait_event";
+    private static final String LOCK = "Lock";
+    private static final String CPU = "CPU";
+    private static final int TOP_WAITS = 5;
+
+    private final ConnectionFactory connections;
+    private ScheduledExecutorService sampler;
+    private Connection con;
+    private long samples;
+    private long activeTotal;
+    private long activeMax;
+    private long lockTotal;
+    private long lockMax;
+    private final Map<String, Long> waits = new HashMap<>();
+    private String failure;
+
+    public ContentionMonitor(ConnectionFactory connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Starts sampling after a delay
+     * @param delayMillis how long to wait first, i.e the warm-up
+     */
+    public synchronized void start(long delayMillis) {
+        try {
+            con = connections.connect();
+        } catch (SQLException e) {
+            failure = e.getMessage();
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loadgen-contention");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(this::sample, delayMillis, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (sampler == null)
+            return;
+        sampler.shutdownNow();
+        try {
+            sampler.awaitTermination(5, TimeUnit.SECONDS);
+            con.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            // the sampler's connection is discarded either way
+        }
+        sampler = null;
+    }
+
+    private synchronized void sample() {
+        long active = 0;
+        long locked = 0;
+        try (PreparedStatement stmt = con.prepareStatement(ACTIVITY); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String type = rs.getString(1);
+                long count = rs.getLong(3);
+                active += count;
+                if (LOCK.equals(type))
+                    locked += count;
+                waits.merge(type == null ? CPU : type + ":" + rs.getString(2), count, Long::sum);
+            }
+        } catch (SQLException e) {
+            failure = e.getMessage();
+            return;
+        }
+        samples++;
+        activeTotal += active;
+        activeMax = Math.max(activeMax, active);
+        lockTotal += locked;
+        lockMax = Math.max(lockMax, locked);
+    }
+
+    /**
+     * @return the average number of backends waiting on locks per sample
+     */
+    public synchronized double getAverageLockWaiters() {
+        return samples == 0 ? 0 : (double) lockTotal / samples;
+    }
+
+    public synchronized void print(PrintStream out) {
+        if (samples == 0) {
+            out.println("Database contention: no samples" + (failure != null ? " (" + failure + ")" : ""));
+            return;
+        }
+        out.println(String.format("Database contention over %d samples: active backends avg %.1f max %d, " +
+            "waiting on locks avg %.1f max %d", samples, (double) activeTotal / samples, activeMax,
+            getAverageLockWaiters(), lockMax));
+        List<Map.Entry<String, Long>> top = new ArrayList<>(waits.entrySet());
+        top.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        for (int i = 0; i < Math.min(TOP_WAITS, top.size()); i++) {
+            out.println(String.format("    %-40s %5.1f%% of active backend samples", top.get(i).getKey(),
+                100.0 * top.get(i).getValue() / activeTotal));
+        }
+    }
+}
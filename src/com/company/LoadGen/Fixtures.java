@@ -0,0 +1,102 @@
+package com.company.LoadGen;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The stores, products and customers virtual users pick from. Against
+ * Postgres these are read from the database once before the run so every
+ * store set, cart add and checkout names rows that really exist.
+ */
+public class Fixtures {
+
+    private static final String STORES = "SELECT id FROM store ORDER BY id";
+    private static final String PRODUCTS_BY_STORE = "SELECT soldBy.storeId, product.name FROM soldBy JOIN product " +
+        "ON product.upc = soldBy.productId WHERE soldBy.numberInStock > 0";
+    private static final String CUSTOMERS = "SELECT phonenumber FROM customer ORDER BY phonenumber LIMIT ?";
+    private static final int STUB_STORES = 10;
+
+    private final List<String> stores;
+    private final Map<String, List<String>> productsByStore;
+    private final List<String> phones;
+
+    private Fixtures(List<String> stores, Map<String, List<String>> productsByStore, List<String> phones) {
+        this.stores = stores;
+        this.productsByStore = productsByStore;
+        this.phones = phones;
+    }
+
+    /**
+     * @param con a connection to the database under test
+     * @param customers how many customer phone numbers are needed
+     */
+    public static Fixtures load(Connection con, int customers) throws SQLException {
+        List<String> stores = new ArrayList<>();
+        Map<String, List<String>> products = new HashMap<>();
+        List<String> phones = new ArrayList<>();
+        try (PreparedStatement stmt = con.prepareStatement(STORES); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                stores.add(rs.getString(1).replace(" ", ""));
+            }
+        }
+        try (PreparedStatement stmt = con.prepareStatement(PRODUCTS_BY_STORE); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                products.computeIfAbsent(rs.getString(1).replace(" ", ""), k -> new ArrayList<>()).add(rs.getString(2));
+            }
+        }
+        try (PreparedStatement stmt = con.prepareStatement(CUSTOMERS)) {
+            stmt.setInt(1, Math.max(customers, 1));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    phones.add(rs.getString(1));
+                }
+            }
+        }
+        if (stores.isEmpty() || phones.isEmpty())
+            throw new SQLException("The database has no stores or no customers to load test with");
+        return new Fixtures(stores, products, phones);
+    }
+
+    /**
+     * @return fixtures matching the rows of StubConnection.standard()
+     */
+    public static Fixtures stub() {
+        List<String> stores = new ArrayList<>();
+        Map<String, List<String>> products = new HashMap<>();
+        for (int i = 1; i <= STUB_STORES; i++) {
+            stores.add(Integer.toString(i));
+            products.put(Integer.toString(i), Collections.singletonList("Potato"));
+        }
+        return new Fixtures(stores, products, Collections.singletonList("5019312140"));
+    }
+
+    public String store(Random random) {
+        return stores.get(random.nextInt(stores.size()));
+    }
+
+    /**
+     * @return a product in stock at the store, or null if it sells nothing
+     */
+    public String product(String storeId, Random random) {
+        List<String> names = productsByStore.get(storeId);
+        if (names == null || names.isEmpty())
+            return null;
+        return names.get(random.nextInt(names.size()));
+    }
+
+    /**
+     * @param user the number of the virtual customer
+     * @return its phone number; customers share numbers when there are too few
+     */
+    public String phone(int user) {
+        return phones.get(user % phones.size());
+    }
+}
@@ -0,0 +1,331 @@
+package com.company.LoadGen;
+
+import com.company.Controller.ThreadOutput;
+import com.company.Database.ConnectionFactory;
+import com.company.Database.QueryStats;
+import com.company.Model.Admin;
+import com.company.Model.Customer;
+import com.company.Model.User;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the real Customer and Admin model classes from many threads at
+ * once, each virtual user on its own connection, the way that many people
+ * at the CLI would.
+ *
+ * In the default closed loop every user runs an operation, thinks for an
+ * exponentially distributed time and goes again. With an arrival rate the
+ * loop is open: operations arrive on a Poisson schedule whether or not the
+ * users keep up, and latency is measured from when an operation was due to
+ * start rather than when a user got to it, so a backlog shows up in the
+ * percentiles instead of silently lowering the load.
+ *
+ * Everything the model prints on the users' threads is discarded.
+ */
+public class LoadGenerator {
+
+    private static final long POLL_MILLIS = 10;
+
+    private final ConnectionFactory connections;
+    private final Fixtures fixtures;
+    private final String adminName;
+    private ConnectionFactory monitorConnections;
+    private Workload workload = Workload.parse(Workload.DEFAULT_MIX);
+    private int customers = 10;
+    private int admins = 1;
+    private long warmupSeconds = 5;
+    private long durationSeconds = 30;
+    private long thinkMillis = 0;
+    private double rate = 0;
+    private long seed = 42;
+
+    /**
+     * @param connections opens one connection per virtual user
+     * @param fixtures the stores, products and customers to use
+     * @param adminName the username the virtual admins run as
+     */
+    public LoadGenerator(ConnectionFactory connections, Fixtures fixtures, String adminName) {
+        this.connections = connections;
+        this.fixtures = fixtures;
+        this.adminName = adminName;
+    }
+
+    public LoadGenerator workload(Workload workload) {
+        this.workload = workload;
+        return this;
+    }
+
+    public LoadGenerator customers(int customers) {
+        this.customers = customers;
+        return this;
+    }
+
+    public LoadGenerator admins(int admins) {
+        this.admins = admins;
+        return this;
+    }
+
+    public LoadGenerator warmup(long seconds) {
+        this.warmupSeconds = seconds;
+        return this;
+    }
+
+    public LoadGenerator duration(long seconds) {
+        this.durationSeconds = seconds;
+        return this;
+    }
+
+    /**
+     * @param millis the mean think time between a user's operations in the closed loop
+     */
+    public LoadGenerator think(long millis) {
+        this.thinkMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param perSecond operations per second across all users, or 0 for a closed loop
+     */
+    public LoadGenerator rate(double perSecond) {
+        this.rate = perSecond;
+        return this;
+    }
+
+    public LoadGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Samples Postgres for lock waits and busy backends during the run
+     * @param connections opens the sampler's connection
+     */
+    public LoadGenerator monitorContention(ConnectionFactory connections) {
+        this.monitorConnections = connections;
+        return this;
+    }
+
+    /**
+     * One simulated person with their own connection, model object and random source
+     */
+    private final class VirtualUser {
+        private final Connection con;
+        private final User user;
+        private final boolean admin;
+        private final Random random;
+
+        VirtualUser(int number, boolean admin) throws SQLException {
+            this.con = connections.connect();
+            this.admin = admin;
+            this.random = new Random(seed + number);
+            this.user = admin ? new Admin(con, adminName, null) : new Customer(con, fixtures.phone(number));
+            user.selectMainStore(fixtures.store(random));
+        }
+
+        Operation next() {
+            return workload.next(random, admin);
+        }
+
+        void execute(Operation op) {
+            switch (op) {
+                case STORE_SET:
+                    user.selectMainStore(fixtures.store(random));
+                    break;
+                case BROWSE:
+                    user.queryAllProducts();
+                    break;
+                case CART_ADD:
+                    String product = fixtures.product(user.getStore().getId(), random);
+                    if (product != null)
+                        ((Customer) user).addItemToCart(product, 1);
+                    break;
+                case CART_SHOW:
+                    ((Customer) user).printCartItems();
+                    ((Customer) user).getCartTotal();
+                    break;
+                case CHECKOUT:
+                    ((Customer) user).checkout();
+                    break;
+                case STATS:
+                    runStatistic((Admin) user);
+                    break;
+            }
+        }
+
+        private void runStatistic(Admin admin) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    admin.getCustomerMVP();
+                    break;
+                case 1:
+                    admin.getItemsRanked(random.nextBoolean());
+                    break;
+                case 2:
+                    admin.getItemsByStoreRanked(random.nextBoolean());
+                    break;
+                default:
+                    admin.getBestAndWorstStoreSales(random.nextBoolean());
+            }
+        }
+
+        /**
+         * Runs one operation and records it if it was due inside the measured window
+         * @param due when the operation was meant to start
+         */
+        void run(Operation op, long due, long measureFrom, LoadReport report) {
+            QueryStats.reset();
+            boolean error = false;
+            try {
+                execute(op);
+            } catch (RuntimeException e) {
+                error = true;
+            }
+            long finished = System.nanoTime();
+            QueryStats stats = QueryStats.current();
+            if (due >= measureFrom)
+                report.record(op, finished - due, stats.getRoundTrips(), error || stats.getErrors() > 0);
+        }
+
+        void think() throws InterruptedException {
+            if (thinkMillis <= 0)
+                return;
+            double pause = -Math.log(1 - random.nextDouble()) * thinkMillis;
+            Thread.sleep((long) pause);
+        }
+
+        void close() {
+            try {
+                con.close();
+            } catch (SQLException e) {
+                // nothing left to do with a connection that won't close
+            }
+        }
+    }
+
+    /**
+     * Runs one stage: sets up every user, warms up, then measures
+     * @return what was measured after the warm-up
+     * @throws SQLException if the users' connections can't be opened
+     */
+    public LoadReport run() throws SQLException, InterruptedException {
+        // the users' output is dropped on their threads only, so the prompt and other jobs still print
+        ThreadOutput.install();
+        PrintStream out = ThreadOutput.current();
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        List<VirtualUser> users = new ArrayList<>();
+        ExecutorService pool = null;
+        ContentionMonitor monitor = null;
+        ThreadOutput.route(discard);
+        try {
+            for (int i = 0; i < customers; i++) {
+                users.add(new VirtualUser(i, false));
+            }
+            for (int i = 0; i < admins; i++) {
+                users.add(new VirtualUser(customers + i, true));
+            }
+            LoadReport report = new LoadReport(customers, admins, TimeUnit.SECONDS.toNanos(durationSeconds));
+            if (monitorConnections != null) {
+                monitor = new ContentionMonitor(monitorConnections);
+                monitor.start(TimeUnit.SECONDS.toMillis(warmupSeconds));
+                report.setContention(monitor);
+            }
+            pool = Executors.newFixedThreadPool(Math.max(users.size(), 1), r -> {
+                Thread t = new Thread(r, "loadgen-user");
+                t.setDaemon(true);
+                return t;
+            });
+            long begin = System.nanoTime();
+            long measureFrom = begin + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+            if (rate > 0)
+                runOpenLoop(pool, users, begin, measureFrom, end, report);
+            else
+                runClosedLoop(pool, users, measureFrom, end, report);
+            return report;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS);
+            }
+            if (monitor != null)
+                monitor.stop();
+            for (VirtualUser user : users) {
+                user.close();
+            }
+            ThreadOutput.route(out);
+        }
+    }
+
+    private void runClosedLoop(ExecutorService pool, List<VirtualUser> users, long measureFrom, long end,
+                               LoadReport report) throws InterruptedException {
+        for (VirtualUser user : users) {
+            if (!workload.hasWorkFor(user.admin))
+                continue;
+            pool.execute(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        user.run(user.next(), System.nanoTime(), measureFrom, report);
+                        user.think();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    private void runOpenLoop(ExecutorService pool, List<VirtualUser> users, long begin, long measureFrom, long end,
+                             LoadReport report) throws InterruptedException {
+        BlockingQueue<Long> arrivals = new LinkedBlockingQueue<>();
+        for (VirtualUser user : users) {
+            if (!workload.hasWorkFor(user.admin))
+                continue;
+            pool.execute(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        Long due = arrivals.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        if (due != null)
+                            user.run(user.next(), due, measureFrom, report);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        pool.shutdown();
+
+        Random schedule = new Random(seed);
+        double meanGapNanos = 1e9 / rate;
+        long due = begin;
+        while (true) {
+            due += (long) (-Math.log(1 - schedule.nextDouble()) * meanGapNanos);
+            if (due >= end)
+                break;
+            long wait = due - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            arrivals.put(due);
+        }
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        // whatever is still queued at the end was never started
+        report.notStarted(arrivals.size());
+    }
+}
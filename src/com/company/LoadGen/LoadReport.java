@@ -0,0 +1,158 @@
+package com.company.LoadGen;
+
+import com.company.Metrics.LatencyHistogram;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What one load test stage measured: per operation latency, errors and SQL
+ * round trips over the measured window (warm-up excluded), plus database
+ * contention when it was sampled.
+ */
+public class LoadReport {
+
+    private static final String ROW_FORMAT = "| %-12s | %8s | %9s | %7s | %9s | %9s | %9s | %9s | %7s |";
+    private static final String DIVIDER = "+---------------------------------------------------------" +
+        "--------------------------------------------+";
+    private static final String STAGE_FORMAT = "| %9s | %6s | %9s | %7s | %12s | %12s | %12s |";
+    private static final String STAGE_DIVIDER = "+-------------------------------------------------------" +
+        "-----------------------------+";
+
+    /**
+     * Everything recorded for one operation
+     */
+    public static class Entry {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRoundTrips() {
+            return roundTrips.sum();
+        }
+    }
+
+    private final int customers;
+    private final int admins;
+    private final long measuredNanos;
+    private final Map<Operation, Entry> entries = new EnumMap<>(Operation.class);
+    private final LongAdder notStarted = new LongAdder();
+    private ContentionMonitor contention;
+
+    LoadReport(int customers, int admins, long measuredNanos) {
+        this.customers = customers;
+        this.admins = admins;
+        this.measuredNanos = measuredNanos;
+        for (Operation op : Operation.values()) {
+            entries.put(op, new Entry());
+        }
+    }
+
+    void record(Operation op, long nanos, long roundTrips, boolean error) {
+        Entry entry = entries.get(op);
+        entry.latency.recordNanos(nanos);
+        entry.roundTrips.add(roundTrips);
+        if (error)
+            entry.errors.increment();
+    }
+
+    void notStarted(long arrivals) {
+        notStarted.add(arrivals);
+    }
+
+    void setContention(ContentionMonitor contention) {
+        this.contention = contention;
+    }
+
+    public int getCustomers() {
+        return customers;
+    }
+
+    public Entry get(Operation op) {
+        return entries.get(op);
+    }
+
+    /**
+     * @return operations completed per second of the measured window
+     */
+    public double getThroughput() {
+        return total() / (measuredNanos / 1e9);
+    }
+
+    /**
+     * @return the fraction of all operations that failed
+     */
+    public double getErrorRate() {
+        long total = total();
+        long errors = 0;
+        for (Entry entry : entries.values()) {
+            errors += entry.getErrors();
+        }
+        return total == 0 ? 0 : (double) errors / total;
+    }
+
+    private long total() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.latency.getCount();
+        }
+        return total;
+    }
+
+    public void print(PrintStream out) {
+        out.println(String.format("%d customers, %d admins: %d operations in %.1f s, %.1f ops/s, %.2f%% errors",
+            customers, admins, total(), measuredNanos / 1e9, getThroughput(), getErrorRate() * 100));
+        out.println(DIVIDER);
+        out.println(String.format(ROW_FORMAT, "Operation", "Count", "ops/s", "errors", "p50 ms", "p90 ms",
+            "p99 ms", "max ms", "SQL/op"));
+        for (Map.Entry<Operation, Entry> e : entries.entrySet()) {
+            LatencyHistogram h = e.getValue().latency;
+            long count = h.getCount();
+            if (count == 0)
+                continue;
+            out.println(String.format(ROW_FORMAT, e.getKey().getLabel(), count,
+                String.format("%.1f", count / (measuredNanos / 1e9)),
+                String.format("%.2f%%", 100.0 * e.getValue().getErrors() / count),
+                millis(h.percentile(50)), millis(h.percentile(90)), millis(h.percentile(99)), millis(h.getMax()),
+                String.format("%.1f", (double) e.getValue().getRoundTrips() / count)));
+        }
+        out.println(DIVIDER);
+        if (notStarted.sum() > 0)
+            out.println(notStarted.sum() + " arrivals were still queued when the run ended; the target rate is " +
+                "beyond what this many users can serve");
+        if (contention != null)
+            contention.print(out);
+    }
+
+    /**
+     * Prints the header of the one row per stage summary used when ramping
+     */
+    public static void printStageHeader(PrintStream out) {
+        out.println(STAGE_DIVIDER);
+        out.println(String.format(STAGE_FORMAT, "customers", "ops/s", "errors", "locks", "checkout p50",
+            "checkout p99", "checkout max"));
+        out.println(STAGE_DIVIDER);
+    }
+
+    public void printStage(PrintStream out) {
+        LatencyHistogram checkout = entries.get(Operation.CHECKOUT).latency;
+        out.println(String.format(STAGE_FORMAT, customers, String.format("%.1f", getThroughput()),
+            String.format("%.2f%%", getErrorRate() * 100),
+            contention != null ? String.format("%.1f", contention.getAverageLockWaiters()) : "-",
+            millis(checkout.percentile(50)), millis(checkout.percentile(99)), millis(checkout.getMax())));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / (double) TimeUnit.MILLISECONDS.toMicros(1));
+    }
+}
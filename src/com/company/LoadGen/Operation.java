@@ -0,0 +1,49 @@
+package com.company.LoadGen;
+
+/**
+ * The commands a virtual user can run, named after the CLI command they
+ * stand for. Customers never run the statistics and admins have no cart.
+ */
+public enum Operation {
+    STORE_SET("store-set", true, true),
+    BROWSE("browse", true, true),
+    CART_ADD("cart-add", true, false),
+    CART_SHOW("cart-show", true, false),
+    CHECKOUT("checkout", true, false),
+    STATS("stats", false, true);
+
+    private final String label;
+    private final boolean customer;
+    private final boolean admin;
+
+    Operation(String label, boolean customer, boolean admin) {
+        this.label = label;
+        this.customer = customer;
+        this.admin = admin;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @param admin whether the virtual user is an admin
+     * @return whether that kind of user can run this operation
+     */
+    public boolean allowedFor(boolean admin) {
+        return admin ? this.admin : this.customer;
+    }
+
+    /**
+     * @param label an operation label as used in a mix, i.e "cart-add"
+     * @return the operation
+     * @throws IllegalArgumentException if there is no such operation
+     */
+    public static Operation of(String label) {
+        for (Operation op : values()) {
+            if (op.label.equalsIgnoreCase(label.trim()))
+                return op;
+        }
+        throw new IllegalArgumentException("Unknown operation " + label);
+    }
+}
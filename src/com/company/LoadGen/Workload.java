@@ -0,0 +1,95 @@
+package com.company.LoadGen;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A weighted mix of operations, written as "browse=40,cart-add=30,...".
+ * Each virtual user draws its next operation from the part of the mix its
+ * role is allowed to run, so the same mix drives customers and admins.
+ */
+public class Workload {
+
+    public static final String DEFAULT_MIX = "store-set=5,browse=35,cart-add=30,cart-show=15,checkout=10,stats=5";
+
+    private final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+
+    private Workload() {
+    }
+
+    /**
+     * @param mix comma separated operation=weight pairs
+     * @return the workload
+     * @throws IllegalArgumentException if an operation or weight is invalid
+     */
+    public static Workload parse(String mix) {
+        Workload workload = new Workload();
+        for (String part : mix.split(",")) {
+            if (part.trim().isEmpty())
+                continue;
+            String[] pair = part.split("=");
+            if (pair.length != 2)
+                throw new IllegalArgumentException("Expected operation=weight but got " + part);
+            int weight;
+            try {
+                weight = Integer.parseInt(pair[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Weight of " + pair[0] + " is not a number");
+            }
+            if (weight < 0)
+                throw new IllegalArgumentException("Weight of " + pair[0] + " is negative");
+            workload.weights.put(Operation.of(pair[0]), weight);
+        }
+        return workload;
+    }
+
+    /**
+     * @param admin whether the user is an admin
+     * @return whether the mix gives that kind of user anything to do
+     */
+    public boolean hasWorkFor(boolean admin) {
+        return total(admin) > 0;
+    }
+
+    /**
+     * Draws the next operation for a user
+     * @param random the user's own random source
+     * @param admin whether the user is an admin
+     * @return the operation, or null if the mix has nothing for the role
+     */
+    public Operation next(Random random, boolean admin) {
+        int total = total(admin);
+        if (total == 0)
+            return null;
+        int pick = random.nextInt(total);
+        for (Map.Entry<Operation, Integer> e : weights.entrySet()) {
+            if (!e.getKey().allowedFor(admin))
+                continue;
+            pick -= e.getValue();
+            if (pick < 0)
+                return e.getKey();
+        }
+        return null;
+    }
+
+    private int total(boolean admin) {
+        int total = 0;
+        for (Map.Entry<Operation, Integer> e : weights.entrySet()) {
+            if (e.getKey().allowedFor(admin))
+                total += e.getValue();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        for (Map.Entry<Operation, Integer> e : weights.entrySet()) {
+            if (mix.length() > 0)
+                mix.append(',');
+            mix.append(e.getKey().getLabel()).append('=').append(e.getValue());
+        }
+        return mix.toString();
+    }
+}
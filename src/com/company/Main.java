@@ -1,11 +1,13 @@
 package com.company;
 
 import com.company.Controller.WegmansCLI;
+import java.util.List;
 import java.util.concurrent.Callable;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Help;
 import picocli.CommandLine.Help.Visibility;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 @Command(name = "run", hidden = true)
@@ -23,6 +25,36 @@ public class Main implements Callable<Void> {
     String password;
     @Parameters(paramLabel = "<schemaname>", index = "4", showDefaultValue = Visibility.ALWAYS, defaultValue = "wegmans2", description = "the schema name")
     String schema;
+    @Option(names = {"--metrics-file"}, paramLabel = "<file>", description = "periodically write command metrics to this file")
+    String metricsFile;
+    @Option(names = {"--metrics-interval"}, paramLabel = "<seconds>", defaultValue = "60", description = "seconds between metrics file writes")
+    long metricsInterval;
+    @Option(names = {"--trace-sql"}, description = "after each command, print the statements it ran and flag N+1 query patterns")
+    boolean traceSql;
+    @Option(names = {"--slow-query-ms"}, paramLabel = "<ms>", defaultValue = "-1", description = "log statements taking at least this long, with their plans")
+    long slowQueryMs;
+    @Option(names = {"--slow-query-log"}, paramLabel = "<file>", defaultValue = "slow-queries.log", description = "the rotating slow query log file")
+    String slowQueryLog;
+    @Option(names = {"--query-cache"}, paramLabel = "<entries>", defaultValue = "0", description = "cache up to this many query results, invalidated by this CLI's writes")
+    int queryCache;
+    @Option(names = {"--listen-changes"}, description = "follow other programs' writes to products, stock and stores through database notifications (needs migration 6)")
+    boolean listenChanges;
+    @Option(names = {"--read-model"}, description = "answer store searches, browsing and statistics from a copy kept in memory from logical replication (needs wal_level=logical, a REPLICATION user and migration 7)")
+    boolean readModel;
+    @Option(names = {"--read-model-max-staleness"}, paramLabel = "<ms>", defaultValue = "5000", description = "go to the database while the copy may be further behind than this")
+    long readModelMaxStaleness;
+    @Option(names = {"--replica"}, paramLabel = "<host:port>", description = "send browsing, store searches, inventory and statistics to this streaming replica (repeatable)")
+    List<String> replicas;
+    @Option(names = {"--replica-max-lag"}, paramLabel = "<ms>", defaultValue = "2000", description = "read from the primary while a replica is further behind than this")
+    long replicaMaxLag;
+    @Option(names = {"--shard"}, paramLabel = "<host:port>=<state_abbr>[,<state_abbr>...]", description = "keep the stock, orders and reorders of these states' stores in this database (repeatable)")
+    List<String> shards;
+    @Option(names = {"--snapshot"}, paramLabel = "<file>", description = "answer store searches, browsing and price checks from this snapshot file from startup, and offline if the database can't be reached (see snapshot build)")
+    String snapshot;
+    @Option(names = {"--jfr"}, description = "record a flight recording, including command and SQL events")
+    boolean jfr;
+    @Option(names = {"--jfr-file"}, paramLabel = "<file>", defaultValue = "wegmans2.jfr", description = "where the flight recording is written on exit")
+    String jfrFile;
 
     public static void main(String[] args) {
         CommandLine.call(new Main(), args);
@@ -32,6 +64,27 @@ public class Main implements Callable<Void> {
     public Void call() {
         String url = String.format(URL_TEMPLATE, host, port, schema);
         WegmansCLI main = new WegmansCLI(url, username, password);
+        if (jfr)
+            main.recordFlight(jfrFile);
+        if (metricsFile != null)
+            main.dumpMetricsTo(metricsFile, metricsInterval);
+        main.setTraceSql(traceSql);
+        if (queryCache > 0)
+            main.cacheQueries(queryCache);
+        if (listenChanges)
+            main.listenForChanges();
+        if (shards != null && !shards.isEmpty())
+            main.shardByState(shards, schema);
+        if (readModel && shards != null && !shards.isEmpty())
+            System.out.println("The read model follows a single database, so it is not used with --shard");
+        else if (readModel)
+            main.serveReadsLocally(schema, readModelMaxStaleness);
+        if (replicas != null && !replicas.isEmpty())
+            main.routeReadsTo(replicas, schema, replicaMaxLag);
+        if (slowQueryMs >= 0)
+            main.logSlowQueries(slowQueryMs, slowQueryLog);
+        if (snapshot != null)
+            main.openSnapshot(snapshot);
         main.run();
         return null;
     }
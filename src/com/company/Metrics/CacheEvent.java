@@ -0,0 +1,41 @@
+package com.company.Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one lookup in an in-process cache
+ */
+@Name("wegmans2.Cache")
+@Label("Cache Lookup")
+@Category({"Wegmans2", "Cache"})
+@Description("A hit or miss in one of the CLI's local caches")
+@StackTrace(false)
+public class CacheEvent extends Event {
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Hit")
+    public boolean hit;
+
+    /**
+     * Commits a lookup event if cache events are being recorded
+     */
+    public static void lookup(String cache, Object key, boolean hit) {
+        CacheEvent event = new CacheEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.key = String.valueOf(key);
+            event.hit = hit;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.company.Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the execution of one CLI command
+ */
+@Name("wegmans2.Command")
+@Label("Command")
+@Category({"Wegmans2", "CLI"})
+@Description("Dispatch and execution of one command typed at the prompt")
+public class CommandEvent extends Event {
+
+    @Label("Command")
+    @Description("The full command name, i.e cart add")
+    public String command;
+
+    @Label("Round Trips")
+    public long roundTrips;
+
+    @Label("Rows Read")
+    public long rowsRead;
+
+    @Label("Failed")
+    @Description("The command threw or timed out")
+    public boolean failed;
+
+    @Label("Error")
+    @Description("What went wrong, null when the command succeeded")
+    public String error;
+}
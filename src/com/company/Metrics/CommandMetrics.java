@@ -0,0 +1,124 @@
+package com.company.Metrics;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, SQL round trips and rows read for every command the CLI has
+ * dispatched, keyed by the full command name (i.e "cart add", "stats store-sales").
+ */
+public class CommandMetrics {
+
+    private static final String ROW_FORMAT = "| %-28s | %7s | %9s | %9s | %9s | %9s | %7s | %8s |";
+    private static final String DIVIDER = "+--------------------------------------------------------" +
+        "---------------------------------------------------+";
+
+    /**
+     * Everything recorded for one command name
+     */
+    public static class Entry {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder roundTrips = new LongAdder();
+        private final LongAdder rowsRead = new LongAdder();
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getRoundTrips() {
+            return roundTrips.sum();
+        }
+
+        public long getRowsRead() {
+            return rowsRead.sum();
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Records one completed command
+     * @param command the full command name
+     * @param nanos how long it took to run
+     * @param roundTrips the number of statements it executed
+     * @param rowsRead the number of rows it read back
+     */
+    public void record(String command, long nanos, long roundTrips, long rowsRead) {
+        Entry entry = entries.computeIfAbsent(command, k -> new Entry());
+        entry.latency.recordNanos(nanos);
+        entry.roundTrips.add(roundTrips);
+        entry.rowsRead.add(rowsRead);
+    }
+
+    public Entry get(String command) {
+        return entries.get(command);
+    }
+
+    public void reset() {
+        entries.clear();
+    }
+
+    /**
+     * Prints one row per command with latencies in milliseconds and the
+     * average SQL work per execution
+     */
+    public void print(PrintStream out) {
+        out.println(DIVIDER);
+        out.println(String.format(ROW_FORMAT, "Command", "Count", "p50 ms", "p90 ms", "p99 ms", "max ms", "SQL/cmd", "rows/cmd"));
+        for (Map.Entry<String, Entry> e : new TreeMap<>(entries).entrySet()) {
+            LatencyHistogram h = e.getValue().latency;
+            long count = h.getCount();
+            out.println(String.format(ROW_FORMAT, e.getKey(), count,
+                millis(h.percentile(50)), millis(h.percentile(90)), millis(h.percentile(99)), millis(h.getMax()),
+                String.format("%.1f", (double) e.getValue().getRoundTrips() / count),
+                String.format("%.1f", (double) e.getValue().getRowsRead() / count)));
+        }
+        out.println(DIVIDER);
+    }
+
+    /**
+     * Overwrites a file with the current metrics
+     * @param path the file to write
+     */
+    public void dump(String path) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(path)) {
+            out.println("Wegmans2 CLI command metrics as of " + new Date());
+            print(out);
+        }
+    }
+
+    /**
+     * Rewrites the metrics file on a daemon thread every interval
+     * @param path the file to write
+     * @param seconds the time between dumps
+     */
+    public synchronized void dumpPeriodically(String path, long seconds) {
+        if (dumper != null)
+            dumper.shutdownNow();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                dump(path);
+            } catch (FileNotFoundException e) {
+                System.out.println("Could not write metrics to " + path);
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+}
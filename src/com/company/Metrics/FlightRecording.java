@@ -0,0 +1,36 @@
+package com.company.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Starts a JDK Flight Recorder recording for the whole session using the
+ * "profile" settings plus the Wegmans2 events, dumped to a file on exit so
+ * it can be opened in JDK Mission Control.
+ */
+public final class FlightRecording {
+
+    private static final String SETTINGS = "profile";
+
+    private FlightRecording() {
+    }
+
+    /**
+     * @param path the .jfr file written when the CLI exits
+     */
+    public static Recording start(String path) throws IOException, ParseException {
+        Recording recording = new Recording(Configuration.getConfiguration(SETTINGS));
+        recording.setName("wegmans2");
+        recording.enable(CommandEvent.class);
+        recording.enable(SqlEvent.class);
+        recording.enable(MaterializationEvent.class);
+        recording.enable(CacheEvent.class);
+        recording.setDestination(Paths.get(path));
+        recording.setDumpOnExit(true);
+        recording.start();
+        return recording;
+    }
+}
@@ -0,0 +1,23 @@
+package com.company.Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the translation of a result set into model objects
+ */
+@Name("wegmans2.Materialization")
+@Label("Result Materialization")
+@Category({"Wegmans2", "Model"})
+@Description("Reading a result set into Product or Store objects")
+public class MaterializationEvent extends Event {
+
+    @Label("Model Type")
+    public String type;
+
+    @Label("Rows")
+    public int rows;
+}
@@ -0,0 +1,29 @@
+package com.company.Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning one JDBC statement execution
+ */
+@Name("wegmans2.Sql")
+@Label("SQL Statement")
+@Category({"Wegmans2", "Database"})
+@Description("One execute call on a statement, labelled with the model constant it came from")
+public class SqlEvent extends Event {
+
+    @Label("Query")
+    @Description("The model constant, i.e Admin.GET_CUSTOMER_MVP, or the SQL text for ad hoc statements")
+    public String query;
+
+    @Label("Method")
+    @Description("The JDBC method, i.e executeQuery")
+    public String method;
+
+    @Label("Update Count")
+    @Description("Rows changed by a write, or -1 for queries")
+    public long updateCount;
+}
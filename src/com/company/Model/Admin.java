@@ -3,69 +3,81 @@ package com.company.Model;
 import com.company.Controller.CommandDefinitions.AdminStoreCommand;
 import com.company.Controller.CommandDefinitions.AdminSynopsis;
 import com.company.Controller.CommandDefinitions.BrowseCommand;
-import com.company.Controller.CommandDefinitions.CartCommand;
+import com.company.Controller.CommandDefinitions.LoadGenCommand;
+import com.company.Controller.CommandDefinitions.MetricsCommand;
+import com.company.Controller.CommandDefinitions.MigrateCommand;
+import com.company.Controller.CommandDefinitions.SnapshotCommand;
 import com.company.Controller.CommandDefinitions.StatisticsCommand;
 import com.company.Controller.CommandDefinitions.UpdateCommand;
 import com.company.Controller.CommandService;
 
+import com.company.Database.IndexUsageCheck;
+import com.company.Database.Migration;
+import com.company.Database.Migrator;
+import com.company.Database.Sharding;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import picocli.CommandLine;
 
 
 public class Admin extends User {
 
-    private final String UPDATE_PRICE_BY_UPC_QUERY = "UPDATE Product SET price = ? WHERE upc = ?";
-    private final String UPDATE_PRICE_BY_NAME_QUERY = "UPDATE Product SET price = ? WHERE name = ?";
-    private final String ORDER_NUMBERS = "SELECT orderNumber FROM Reorder";
-    private final String REMOVE_FROM_STORE = "DELETE FROM soldBy WHERE storeId = ? AND productId = ?";
-    private final String ADD_TO_STORE = "INSERT INTO soldBy (storeId, productId) VALUES (?, ?)";
-    private final String REMOVE_CUSTOMER = "DELETE FROM customer WHERE phonenumber = ?";
-    private final String REMOVE_STORE = "DELETE FROM store WHERE storeID = ?";
-    private final String CREATE_CUSTOMER = "INSERT INTO customer VALUES (?, ?, ?)";
-    private final String CHECK_CUSTOMER = "SELECT * FROM customer WHERE phonenumber = ?";
-    private final String GET_UNFULFILLED_ORDERS = "SELECT orderNumber, product, store, stockRequested FROM Reorder" +
+    private static final String UPDATE_PRICE_BY_UPC_QUERY = "UPDATE Product SET price = ? WHERE upc = ?";
+    private static final String UPDATE_PRICE_BY_NAME_QUERY = "UPDATE Product SET price = ? WHERE name = ?";
+    private static final String ORDER_NUMBERS = "SELECT orderNumber FROM Reorder";
+    private static final String REMOVE_FROM_STORE = "DELETE FROM soldBy WHERE storeId = ? AND productId = ?";
+    private static final String ADD_TO_STORE = "INSERT INTO soldBy (storeId, productId) VALUES (?, ?)";
+    private static final String REMOVE_CUSTOMER = "DELETE FROM customer WHERE phonenumber = ?";
+    private static final String REMOVE_STORE = "DELETE FROM store WHERE storeID = ?";
+    private static final String CREATE_CUSTOMER = "INSERT INTO customer VALUES (?, ?, ?) ON CONFLICT (phonenumber) " +
+            "DO NOTHING RETURNING phonenumber";
+    private static final String GET_UNFULFILLED_ORDERS = "SELECT orderNumber, product, store, stockRequested FROM Reorder" +
             " WHERE deliveryDate IS NULL";
-    private final String UPDATE_STOCK = "UPDATE soldBy SET numberInStock = ((SELECT stockRequested FROM " +
+    private static final String UPDATE_STOCK = "UPDATE soldBy SET numberInStock = ((SELECT stockRequested FROM " +
             "reorder WHERE store = ? AND product = ?) + (SELECT numberInStock FROM soldBy WHERE storeId = ? AND " +
             "productId = ?)) WHERE storeId = ? AND productId = ?";
-    private final String UPDATE_REORDER_TABLE = "UPDATE reorder SET deliveryDate = ?, fulfilledBy = (SELECT " +
+    private static final String UPDATE_REORDER_TABLE = "UPDATE reorder SET deliveryDate = ?, fulfilledBy = (SELECT " +
             "distributedBy.vendor FROM distributedBy JOIN Product ON distributedBy.brand = product.brand " +
             "WHERE product.upc = ?) WHERE orderNumber = ?";
-    private final String GET_BRANDS_FROM_STORE = "SELECT DISTINCT Product.brand FROM product JOIN soldBy ON " +
+    private static final String GET_BRANDS_FROM_STORE = "SELECT DISTINCT Product.brand FROM product JOIN soldBy ON " +
             "soldBy.productId = product.upc WHERE soldBy.storeId = ? ORDER BY Product.brand ASC";
-    private final String GET_VENDOR_FROM_STORE = "SELECT DISTINCT distributedBy.vendor FROM product JOIN soldBy " +
+    private static final String GET_VENDOR_FROM_STORE = "SELECT DISTINCT distributedBy.vendor FROM product JOIN soldBy " +
             "ON soldBy.productId = product.upc JOIN distributedBy ON product.brand = distributedBy.brand WHERE " +
             "soldBy.storeId = ? ORDER BY distributedBy.vendor";
-    private final String GET_STORE_INVENTORY = "SELECT product.name, product.upc, soldBy.numberInStock FROM " +
+    private static final String GET_STORE_INVENTORY = "SELECT product.name, product.upc, soldBy.numberInStock FROM " +
             "product JOIN soldby ON product.upc = soldBy.productId WHERE soldBy.storeId = ? ORDER BY product.name ASC";
-    private final String CREATE_REORDER_REQUEST = "INSERT INTO Reorder (orderNumber, product, store, stockRequested)" +
+    private static final String CREATE_REORDER_REQUEST = "INSERT INTO Reorder (orderNumber, product, store, stockRequested)" +
             "VALUES (?, ?, ?, ?)";
 
-    // Statistical Queries
-    private final String GET_PRODUCT_RANKING_ASC = " SELECT product, SUM(numbersold) FROM orders GROUP BY " +
+    // Statistical Queries, totalling sales in cents
+    private static final String GET_PRODUCT_RANKING_ASC = " SELECT product, SUM(numbersold) FROM orders GROUP BY " +
         "product ORDER BY sum";
-    private final String GET_PRODUCT_RANKING_BY_STORE_ASC = "SELECT product, SUM(numbersold) FROM orders " +
+    private static final String GET_PRODUCT_RANKING_BY_STORE_ASC = "SELECT product, SUM(numbersold) FROM orders " +
         "WHERE store = ? GROUP BY product ORDER BY sum";
-    private final String GET_CUSTOMER_MVP = "SELECT orders.customer, customer.firstname, customer.lastname, " +
-        "SUM(orders.numbersold * product.price) FROM orders JOIN product ON product.upc = orders.product" +
+    private static final String GET_CUSTOMER_MVP = "SELECT orders.customer, customer.firstname, customer.lastname, " +
+        "SUM(orders.numbersold * ROUND(product.price * 100)::bigint) FROM orders JOIN product ON product.upc = orders.product" +
         " JOIN customer ON orders.customer = customer.phonenumber GROUP BY orders.customer, " +
         "customer.firstname, customer.lastname ORDER BY sum DESC";
-    private final String GET_STORE_TOTAL_SALES_ASC = "SELECT orders.store, store.address, SUM(orders.numbersold * " +
-        "product.price) FROM orders JOIN product ON product.upc = orders.product JOIN store ON " +
+    private static final String GET_STORE_TOTAL_SALES_ASC = "SELECT orders.store, store.address, SUM(orders.numbersold * " +
+        "ROUND(product.price * 100)::bigint) FROM orders JOIN product ON product.upc = orders.product JOIN store ON " +
         "store.id = orders.store GROUP BY orders.store, store.address ORDER BY sum";
-    private final String GET_STORE_TOTAL_SALES_STATE_ASC = "SELECT orders.store, store.address, SUM(orders.numbersold * " +
-            "product.price) FROM orders JOIN product ON product.upc = orders.product JOIN store ON " +
+    private static final String GET_STORE_TOTAL_SALES_STATE_ASC = "SELECT orders.store, store.address, SUM(orders.numbersold * " +
+            "ROUND(product.price * 100)::bigint) FROM orders JOIN product ON product.upc = orders.product JOIN store ON " +
             "store.id = orders.store WHERE store.state = ? GROUP BY orders.store, store.address ORDER BY sum";
-    private final String GET_PRODUCT_SALES_RANKING_BY_STORE_ASC = "SELECT product, SUM(orders.numbersold * " +
-        "product.price) FROM orders JOIN product ON product.upc = orders.product WHERE store = ? " +
+    private static final String GET_PRODUCT_SALES_RANKING_BY_STORE_ASC = "SELECT product, SUM(orders.numbersold * " +
+        "ROUND(product.price * 100)::bigint) FROM orders JOIN product ON product.upc = orders.product WHERE store = ? " +
         "GROUP BY product ORDER BY sum DESC";
-    private final String GET_PRODUCT_SALES_RANKING_ASC = "SELECT product, SUM(orders.numbersold * " +
-        "product.price) FROM orders JOIN product ON product.upc = orders.product GROUP BY " +
+    private static final String GET_PRODUCT_SALES_RANKING_ASC = "SELECT product, SUM(orders.numbersold * " +
+        "ROUND(product.price * 100)::bigint) FROM orders JOIN product ON product.upc = orders.product GROUP BY " +
         "product ORDER BY sum DESC";
-    private final String VERIFY_ACCOUNT = "SELECT * FROM admin WHERE username = ? AND password = ?";
+    private static final String VERIFY_ACCOUNT = "SELECT * FROM admin WHERE username = ? AND password = ?";
 
     //
 
@@ -83,16 +95,46 @@ public class Admin extends User {
         return this.username;
     }
 
+    /**
+     * @return the same admin, with the same store, working over another connection
+     */
+    public Admin copyWith(Connection con) {
+        Admin copy = new Admin(con, username, password);
+        if (store != null)
+            copy.setStore(new Store(store.getId(), store.getState(), store.getAddress(), store.getOpenTime(),
+                store.getCloseTime()));
+        return copy;
+    }
+
     @Override
-    public CommandLine initCLI() {
-        return new picocli.CommandLine(new CommandService(this))
-            .addSubcommand("store", new AdminStoreCommand(this))
-            .addSubcommand("browse", new BrowseCommand(this))
-            .addSubcommand("statistics", new StatisticsCommand(this))
-            .addSubcommand("update", new UpdateCommand(this))
+    public UserType getType() {
+        return UserType.admin;
+    }
+
+    /**
+     * Builds the admin command tree. It holds no admin, the one it acts on
+     * is set on its CommandService, so the tree can be built ahead of login
+     */
+    public static CommandLine buildCLI() {
+        return new picocli.CommandLine(new CommandService())
+            .addSubcommand("store", new AdminStoreCommand())
+            .addSubcommand("browse", new BrowseCommand())
+            .addSubcommand("statistics", new StatisticsCommand())
+            .addSubcommand("update", new UpdateCommand())
+            .addSubcommand("migrate", new MigrateCommand())
+            .addSubcommand("metrics", new MetricsCommand())
+            .addSubcommand("loadgen", new LoadGenCommand())
+            .addSubcommand("snapshot", new SnapshotCommand())
             .addSubcommand("synopsis", new AdminSynopsis());
     }
 
+    @Override
+    public CommandLine initCLI() {
+        CommandLine cli = buildCLI();
+        ((CommandService) cli.getCommand()).setUser(this);
+        return cli;
+    }
+
     public void requestReorder(String storeid, String itemName, int quantity) {
         try {
             ArrayList<String> orderNumbers = new ArrayList<>();
@@ -155,17 +197,24 @@ public class Admin extends User {
         } catch (SQLException e){
             System.out.println("SQL Error while fulfilling reorder");
             System.out.println(e.getMessage());
+        } finally {
+            // restocks any number of stores
+            StoreCatalog.invalidateAll();
         }
     }
 
 
-    public void updatePriceByUPC(String upc, double price) {
+    /**
+     * @param cents the new price in cents
+     */
+    public void updatePriceByUPC(String upc, long cents) {
         try {
             PreparedStatement stmt = this.getCon().prepareStatement(UPDATE_PRICE_BY_UPC_QUERY);
-            stmt.setDouble(1, price);
+            stmt.setBigDecimal(1, Money.toBigDecimal(cents));
             stmt.setString(2, upc);
             int rs = stmt.executeUpdate();
-            System.out.println(String.format("%s now costs $%f.", upc, price));
+            StoreCatalog.invalidateAll();
+            System.out.println(upc + " now costs $" + Money.format(cents) + ".");
         } catch (SQLException e){
             System.out.println("SQL Error: updatingPrice for upc: " + upc);
             System.out.println(e.getMessage());
@@ -174,27 +223,99 @@ public class Admin extends User {
 
 
 
-    public void updatePriceByName(String name, double price) {
+    /**
+     * @param cents the new price in cents
+     */
+    public void updatePriceByName(String name, long cents) {
         try {
             PreparedStatement stmt = getCon().prepareStatement(UPDATE_PRICE_BY_NAME_QUERY);
-            stmt.setDouble(1, price);
+            stmt.setBigDecimal(1, Money.toBigDecimal(cents));
             stmt.setString(2, name);
             int rs = stmt.executeUpdate();
-            System.out.println(String.format("%s now costs $%f.", name, price));
+            StoreCatalog.invalidateAll();
+            System.out.println(name + " now costs $" + Money.format(cents) + ".");
         } catch (SQLException e){
             System.out.println("SQL Error: updatingPrice for " + name);
             System.out.println(e.getMessage());
         }
     }
 
+    /**
+     * Sets the prices listed in a file of {@code <upc>,<price>} lines
+     * @param dryRun print the changes without making them
+     */
+    public void updatePricesFromFile(String path, boolean dryRun) {
+        PriceUpdate update;
+        try {
+            update = PriceUpdate.fromFile(new File(path));
+        } catch (IOException e) {
+            System.out.println("Could not read prices: " + describe(e));
+            return;
+        }
+        updatePrices(update, dryRun);
+    }
+
+    /**
+     * Changes the price of every product of a brand, a type or both
+     * @param percent how much to raise the prices, negative to lower them, or null
+     * @param cents the price they all get, used when percent is null
+     * @param dryRun print the changes without making them
+     */
+    public void updatePricesByRule(String brand, String type, Double percent, long cents, boolean dryRun) {
+        updatePrices(percent != null ? PriceUpdate.byPercent(brand, type, percent)
+            : PriceUpdate.toPrice(brand, type, cents), dryRun);
+    }
+
+    private void updatePrices(PriceUpdate update, boolean dryRun) {
+        try {
+            int changed = update.apply(this.getCon(), dryRun);
+            if (dryRun) {
+                System.out.println(changed + " prices would change.");
+            } else {
+                if (changed > 0)
+                    StoreCatalog.invalidateAll();
+                System.out.println(changed + " prices changed.");
+            }
+        } catch (SQLException e){
+            System.out.println("SQL Error: updating prices, none were changed");
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Makes the products stores sell, and their stock, match a file
+     * @param storeId the store to sync, or null for every store in the file
+     * @param dryRun count the changes without keeping them
+     */
+    public void syncAssortment(String storeId, String path, boolean dryRun) {
+        try {
+            Set<String> changed = new AssortmentSync(new File(path), storeId).apply(this.getCon(), dryRun);
+            if (changed.size() == 1)
+                StoreCatalog.invalidate(changed.iterator().next());
+            else if (!changed.isEmpty())
+                StoreCatalog.invalidateAll();
+        } catch (IOException e) {
+            System.out.println("Could not sync the assortment, nothing was changed: " + describe(e));
+        } catch (SQLException e){
+            System.out.println("SQL Error: syncing the assortment, nothing was changed");
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static String describe(IOException e) {
+        return e instanceof NoSuchFileException ? "there is no file " + e.getMessage() : e.getMessage();
+    }
+
     public void removeProductFromStorebyName(String name){
         if (!checkStoreSet()) return;
         Product p = createProductFromName(name);
+        if (p == null) return;
         try {
             PreparedStatement stmt = this.getCon().prepareStatement(REMOVE_FROM_STORE);
             stmt.setString(1, store.getId());
             stmt.setString(2, p.getUpc());
             stmt.executeUpdate();
+            StoreCatalog.invalidate(store.getId());
             System.out.println("Store " + store.getId() + " no longer carries " + name);
         } catch (SQLException e){
             System.out.println("SQL Error while removing product from store.");
@@ -209,6 +330,7 @@ public class Admin extends User {
             stmt.setString(1, store.getId());
             stmt.setString(2, upc);
             stmt.executeUpdate();
+            StoreCatalog.invalidate(store.getId());
             System.out.println("Store " + store.getId() + " no longer carries " + upc);
         } catch (SQLException e){
             System.out.println("Error while removing product from store.");
@@ -220,11 +342,13 @@ public class Admin extends User {
     public void addProductToStoreByName(String name){
         if (!checkStoreSet()) return;
         Product p = createProductFromName(name);
+        if (p == null) return;
         try {
             PreparedStatement stmt = this.getCon().prepareStatement(ADD_TO_STORE);
             stmt.setString(1, store.getId());
             stmt.setString(2, p.getUpc());
             stmt.executeUpdate();
+            StoreCatalog.invalidate(store.getId());
             System.out.println("Store " + store.getId() + " now carries " + name);
         } catch (SQLException e){
             System.out.println("SQL Error while adding product to store.");
@@ -239,6 +363,7 @@ public class Admin extends User {
             stmt.setString(1, store.getId());
             stmt.setString(2, upc);
             stmt.executeUpdate();
+            StoreCatalog.invalidate(store.getId());
             System.out.println("Store " + store.getId() + " now carries " + upc);
         } catch (SQLException e) {
             System.out.println("SQL Error while removing product from store.");
@@ -251,6 +376,7 @@ public class Admin extends User {
             PreparedStatement stmt = this.getCon().prepareStatement(REMOVE_CUSTOMER);
             stmt.setString(1, phone);
             stmt.executeUpdate();
+            ReadModel.wrote();
             System.out.println("Customer " + phone + " removed from database.");
         } catch (SQLException e){
             System.out.println("SQL Error removing customer from database");
@@ -263,6 +389,7 @@ public class Admin extends User {
             PreparedStatement stmt = this.getCon().prepareStatement(REMOVE_STORE);
             stmt.setString(1, storeID);
             stmt.executeUpdate();
+            StoreCatalog.invalidate(storeID);
             System.out.println("Store " + storeID + " removed from database.");
         } catch (SQLException e){
             System.out.println("SQL Error removing Store from database");
@@ -272,17 +399,20 @@ public class Admin extends User {
 
     public void addCustomer(String phone, String firstName, String lastName){
         try {
-            PreparedStatement stmt =this.getCon().prepareStatement(CHECK_CUSTOMER);
+            // an existing phone number inserts nothing, so there is no need to look it up first. The
+            // row comes back as a query, which a begin block runs right away rather than deferring
+            PreparedStatement stmt = this.getCon().prepareStatement(CREATE_CUSTOMER);
             stmt.setString(1, phone);
-            ResultSet rs = stmt.executeQuery();
-            if(rs.next()){
+            stmt.setString(2, firstName);
+            stmt.setString(3, lastName);
+            boolean added;
+            try (ResultSet rs = stmt.executeQuery()) {
+                added = rs.next();
+            }
+            if (!added) {
                 System.out.println("Phone number already exists!");
             } else {
-                stmt = this.getCon().prepareStatement(CREATE_CUSTOMER);
-                stmt.setString(1, phone);
-                stmt.setString(2, firstName);
-                stmt.setString(3, lastName);
-                stmt.executeUpdate();
+                ReadModel.wrote();
                 System.out.println("Customer " + firstName + " " + lastName + " successfully added to database.");
             }
         } catch (SQLException e){
@@ -291,8 +421,44 @@ public class Admin extends User {
         }
     }
 
+    /**
+     * Adds the customers in a file, or updates their names if they are already customers
+     * @param rejectsPath where the rows that can't be imported are written
+     * @param copy load the rows with COPY rather than in batches of upserts
+     */
+    public void importCustomers(String path, String rejectsPath, boolean copy) {
+        if (copy && Sharding.isEnabled()) {
+            System.out.println("--copy loads a single database, so it can't be used with --shard");
+            return;
+        }
+        try {
+            CustomerImport.Result result = new CustomerImport(new File(path), new File(rejectsPath), copy)
+                .apply(this.getCon());
+            ReadModel.wrote();
+            System.out.println(result);
+            if (result.getRejected() > 0)
+                System.out.println("The rejected rows were written to " + rejectsPath + ".");
+        } catch (IOException e) {
+            System.out.println("Could not import customers, none were added: " + describe(e));
+        } catch (SQLException e){
+            System.out.println("SQL Error importing customers, none were added");
+            System.out.println(e.getMessage());
+        }
+    }
+
     public void getStoreInventory(){
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = getStore().catalog();
+        if (catalog != null) {
+            System.out.println("-------------------------------------------------");
+            System.out.println(String.format("| %-20s | %-12s | %-7s |", "Product Name", "UPC", "Stock"));
+            for (Product p : catalog.getProducts()) {
+                System.out.println(String.format("| %-20s | %-12s | %-7d |",
+                        p.getName(), p.getUpc(), catalog.stockOf(p.getUpc())));
+            }
+            System.out.println("-------------------------------------------------");
+            return;
+        }
         try{
             PreparedStatement stmt = this.getCon().prepareStatement(GET_STORE_INVENTORY);
             stmt.setString(1, getStore().getId());
@@ -312,6 +478,12 @@ public class Admin extends User {
 
     public void viewAllVendorNames() {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = getStore().catalog();
+        if (catalog != null) {
+            System.out.println("List of all vendors that supply to this store:");
+            catalog.getVendors().forEach(System.out::println);
+            return;
+        }
         try{
             PreparedStatement stmt = this.getCon().prepareStatement(GET_VENDOR_FROM_STORE);
             stmt.setString(1, this.getStore().getId());
@@ -328,6 +500,12 @@ public class Admin extends User {
 
     public void viewAllBrandNames() {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = getStore().catalog();
+        if (catalog != null) {
+            System.out.println("List of all brands carried by this store:");
+            catalog.getBrands().forEach(System.out::println);
+            return;
+        }
         try{
             PreparedStatement stmt = this.getCon().prepareStatement(GET_BRANDS_FROM_STORE);
             stmt.setString(1, this.getStore().getId());
@@ -347,6 +525,13 @@ public class Admin extends User {
     //
 
     public void getCustomerMVP(){
+        ReadModel model = ReadModel.serving(getCon());
+        if (model != null) {
+            ReadModel.Ranked<String[]> mvp = model.topCustomer();
+            if (mvp != null)
+                printCustomerMVP(mvp.getItem()[0], mvp.getItem()[1], mvp.getItem()[2], mvp.getTotal());
+            return;
+        }
         try{
             PreparedStatement stmt = this.getCon().prepareStatement(GET_CUSTOMER_MVP);
             ResultSet rs = stmt.executeQuery();
@@ -354,17 +539,41 @@ public class Admin extends User {
             String phone = rs.getString(1);
             String first = rs.getString(2);
             String last = rs.getString(3);
-            Double sold = rs.getDouble(4);
-            String formattedSold = String.format("%.2f", sold);
-            System.out.println("Customer " + phone + ", " + first + " " + last + " is the most valuable " +
-                    "customer, \nwith a total purchase amount of $" + formattedSold + ". Good job!" );
+            long sold = rs.getLong(4);
+            printCustomerMVP(phone, first, last, sold);
         } catch (SQLException e){
             System.out.println("SQL Error retrieving customer MVP");
             System.out.println(e.getMessage());
         }
     }
 
+    private void printCustomerMVP(String phone, String first, String last, long sold) {
+        String formattedSold = Money.format(sold);
+        System.out.println("Customer " + phone + ", " + first + " " + last + " is the most valuable " +
+                "customer, \nwith a total purchase amount of $" + formattedSold + ". Good job!" );
+    }
+
+    /**
+     * Prints the three products first in a ranking from the read model
+     */
+    private void printTopProducts(ReadModel model, List<ReadModel.Ranked<String>> ranking) {
+        for (int i = 0; i < 3 && i < ranking.size(); i++) {
+            Product p = model.product(ranking.get(i).getItem());
+            System.out.println(p != null ? p.toString() : ranking.get(i).getItem());
+        }
+    }
+
     public void getItemsRanked(boolean DESC){
+        ReadModel model = ReadModel.serving(getCon());
+        if (model != null) {
+            if (DESC){
+                System.out.println("The 3 most popular items across all stores are:");
+            } else {
+                System.out.println("The 3 least popular items across all stores are:");
+            }
+            printTopProducts(model, model.productsBySold(null, DESC));
+            return;
+        }
         try{
             PreparedStatement stmt;
             if (DESC){
@@ -393,6 +602,16 @@ public class Admin extends User {
     }
 
     public void getItemsByStoreRanked(boolean DESC){
+        ReadModel model = ReadModel.serving(getCon());
+        if (model != null) {
+            if(DESC){
+                System.out.println("The 3 most popular items at this store:");
+            }else{
+                System.out.println("The 3 least popular items at this store:");
+            }
+            printTopProducts(model, model.productsBySold(this.getStore().getId(), DESC));
+            return;
+        }
         try{
             PreparedStatement stmt;
             if(DESC){
@@ -422,6 +641,11 @@ public class Admin extends User {
     }
 
     public void getBestAndWorstStoreSales(boolean DESC){
+        ReadModel model = ReadModel.serving(getCon());
+        if (model != null) {
+            printBestOrWorstStore(model.storesBySales(null, DESC), DESC);
+            return;
+        }
         try{
             PreparedStatement stmt;
             if(DESC){
@@ -445,6 +669,11 @@ public class Admin extends User {
     }
 
     public void getBestAndWorstStoreSalesbyState(boolean DESC, String state){
+        ReadModel model = ReadModel.serving(getCon());
+        if (model != null) {
+            printBestOrWorstStore(model.storesBySales(state, DESC), DESC);
+            return;
+        }
         try{
             PreparedStatement stmt;
             if(DESC){
@@ -469,6 +698,170 @@ public class Admin extends User {
         }
     }
 
+    private void printBestOrWorstStore(List<ReadModel.Ranked<Store>> ranking, boolean DESC) {
+        if (ranking.isEmpty())
+            return;
+        Store store = ranking.get(0).getItem();
+        if(DESC){
+            System.out.println("The top selling store is store number " + store.getId() + ", at " + store.getAddress() + ".");
+        }else{
+            System.out.println("The worst selling store is store number " + store.getId() + ", at " + store.getAddress() + ".");
+        }
+    }
+
+    //
+    // Schema Maintenance Methods
+    //
+
+    /**
+     * Lists the pending migrations of the home database, and of each shard,
+     * which has a schema of its own
+     */
+    public void printMigrationStatus() {
+        if (Sharding.isEnabled())
+            System.out.println("Home database:");
+        printMigrationStatus(this.getCon());
+        for (Sharding.Shard shard : Sharding.getShards()) {
+            System.out.println("Shard " + shard.getName() + ":");
+            try (Connection con = shard.connect()) {
+                printMigrationStatus(con);
+            } catch (SQLException e) {
+                System.out.println("SQL Error connecting to shard " + shard.getName());
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    private void printMigrationStatus(Connection con) {
+        try {
+            Migrator migrator = new Migrator(con);
+            System.out.println("+-------------------------------------------------------------------------------+");
+            System.out.println(String.format("| %-7s | %-60s |", "Version", "Pending Migration"));
+            for (Migration m : migrator.pending()) {
+                System.out.println(m.toString());
+            }
+            System.out.println("+-------------------------------------------------------------------------------+");
+            System.out.println("Applied versions: " + migrator.appliedVersions());
+        } catch (SQLException e) {
+            System.out.println("SQL Error reading schema version");
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the pending migrations to the home database, then to each
+     * shard, stopping at the first that fails
+     */
+    public void migrate(boolean dryRun) {
+        if (Sharding.isEnabled())
+            System.out.println("Home database:");
+        if (!migrate(this.getCon(), dryRun))
+            return;
+        for (Sharding.Shard shard : Sharding.getShards()) {
+            System.out.println("Shard " + shard.getName() + ":");
+            try (Connection con = shard.connect()) {
+                if (!migrate(con, dryRun))
+                    return;
+            } catch (SQLException e) {
+                System.out.println("SQL Error connecting to shard " + shard.getName() + ", stopping.");
+                System.out.println(e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether every pending migration was applied
+     */
+    private boolean migrate(Connection con, boolean dryRun) {
+        Migrator migrator = new Migrator(con);
+        List<Migration> pending;
+        try {
+            pending = migrator.pending();
+        } catch (SQLException e) {
+            System.out.println("SQL Error reading schema version");
+            System.out.println(e.getMessage());
+            return false;
+        }
+        if (pending.isEmpty()) {
+            System.out.println("Schema is up to date.");
+            return true;
+        }
+        for (Migration m : pending) {
+            if (dryRun) {
+                for (String sql : m.getStatements()) {
+                    System.out.println(m.getVersion() + ": " + sql);
+                }
+                continue;
+            }
+            try {
+                migrator.apply(m);
+                System.out.println("Applied version " + m.getVersion() + ": " + m.getDescription());
+            } catch (SQLException e) {
+                System.out.println("SQL Error applying version " + m.getVersion() + ", stopping.");
+                System.out.println(e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void checkIndexUsage() {
+        try {
+            List<IndexUsageCheck.Result> results = new IndexUsageCheck(this.getCon()).run();
+            int misses = 0;
+            System.out.println("+--------------------------------------------------------------------------------------------------------+");
+            System.out.println(String.format("| %-45s | %-8s | %-40s |", "Query", "Access", "Plan"));
+            for (IndexUsageCheck.Result r : results) {
+                System.out.println(r.toString());
+                if (!r.usesIndex())
+                    misses++;
+            }
+            System.out.println("+--------------------------------------------------------------------------------------------------------+");
+            System.out.println(misses + " of " + results.size() + " queries are not using an index.");
+        } catch (SQLException e) {
+            System.out.println("SQL Error explaining queries");
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the stores, products and stock to a snapshot file, for CLIs to
+     * start from
+     * @param path the file to write
+     */
+    public void buildSnapshot(String path) {
+        try {
+            System.out.println("Wrote " + Snapshot.build(this.getCon(), new File(path)));
+        } catch (SQLException e) {
+            System.out.println("SQL Error reading the snapshot");
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Could not write snapshot " + path);
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Brings the open snapshot file up to date with the database
+     */
+    public void refreshSnapshot() {
+        if (!Snapshot.isOpen()) {
+            System.out.println("No snapshot is open. Start the CLI with --snapshot <file> to use one.");
+            return;
+        }
+        try {
+            Snapshot.refresh(this.getCon());
+            System.out.println(Snapshot.summary());
+        } catch (SQLException e) {
+            System.out.println("SQL Error refreshing the snapshot");
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Could not write the snapshot");
+            System.out.println(e.getMessage());
+        }
+    }
+
     public boolean verifyAccount(){
         try{
             PreparedStatement stmt = this.getCon().prepareStatement(VERIFY_ACCOUNT);
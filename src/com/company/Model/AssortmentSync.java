@@ -0,0 +1,282 @@
+package com.company.Model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Makes the soldBy rows of one or more stores match a file of the products
+ * each should sell and their stock, with as few writes as possible.
+ *
+ * The file is read a store at a time, so each store's rows must be
+ * together in it (as in soldBy_info.csv). A store's wanted products are
+ * sorted by upc and merge joined against its current rows, read in the
+ * same order: a product only wanted is added, one only sold is removed,
+ * and one in both is restocked if its stock differs. The writes are sent
+ * in batches, all in one transaction. Stores not in the file are left as
+ * they are, and products that don't exist aren't added.
+ */
+public class AssortmentSync {
+
+    // byte order, the same order String.compareTo sorts the wanted upcs in
+    private static final String CURRENT_ROWS = "SELECT productId, numberInStock FROM soldBy WHERE storeId = ? " +
+        "ORDER BY productId COLLATE \"C\"";
+    private static final String ADD_ROW = "INSERT INTO soldBy (storeId, productId, numberInStock) " +
+        "SELECT ?, upc, ? FROM product WHERE upc = ?";
+    private static final String REMOVE_ROW = "DELETE FROM soldBy WHERE storeId = ? AND productId = ?";
+    private static final String RESTOCK_ROW = "UPDATE soldBy SET numberInStock = ? WHERE storeId = ? AND productId = ?";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int FETCH_SIZE = 1000;
+
+    private final File file;
+    // the store synced when set, otherwise every store in the file
+    private final String onlyStore;
+
+    private PreparedStatement add;
+    private PreparedStatement remove;
+    private PreparedStatement restock;
+    // the upc of each add in the batch, to name the products that don't exist
+    private final List<String> pendingAdds = new ArrayList<>();
+    private int pendingRemoves;
+    private int pendingRestocks;
+
+    private int added;
+    private int removed;
+    private int restocked;
+    private final Set<String> unknown = new LinkedHashSet<>();
+    private final Set<String> changedStores = new HashSet<>();
+
+    /**
+     * @param file lines of {@code <store>,<upc>,<stock>}, or of
+     * {@code <upc>,<stock>} when a store is given
+     * @param onlyStore the store to sync, or null for every store in the file
+     */
+    public AssortmentSync(File file, String onlyStore) {
+        this.file = file;
+        this.onlyStore = onlyStore == null ? null : onlyStore.trim();
+    }
+
+    /**
+     * Syncs the stores, printing what changed in each. On a connection
+     * already in a transaction the writes become part of it, otherwise they
+     * are committed, or rolled back if anything fails.
+     * @param dryRun make the writes to count them, then roll them back
+     * @return the stores whose rows changed
+     * @throws IOException if the file can't be read or a line is malformed,
+     * after which nothing has been changed
+     */
+    public Set<String> apply(Connection con, boolean dryRun) throws SQLException, IOException {
+        boolean autoCommit = con.getAutoCommit();
+        if (dryRun && !autoCommit)
+            throw new SQLException("A dry run can't be part of a transaction");
+        con.setAutoCommit(false);
+        try (PreparedStatement add = con.prepareStatement(ADD_ROW);
+             PreparedStatement remove = con.prepareStatement(REMOVE_ROW);
+             PreparedStatement restock = con.prepareStatement(RESTOCK_ROW)) {
+            this.add = add;
+            this.remove = remove;
+            this.restock = restock;
+            read(con);
+            flush();
+            if (!unknown.isEmpty()) {
+                List<String> some = new ArrayList<>(unknown).subList(0, Math.min(unknown.size(), 10));
+                System.out.println(String.format("%d upcs aren't products and weren't added: %s%s", unknown.size(),
+                    String.join(", ", some), unknown.size() > some.size() ? ", ..." : ""));
+            }
+            System.out.println(String.format("%d added, %d removed, %d restocked in %d stores%s.", added, removed,
+                restocked, changedStores.size(), dryRun ? ", then rolled back" : ""));
+            if (autoCommit) {
+                if (dryRun)
+                    con.rollback();
+                else
+                    con.commit();
+            }
+            return dryRun ? new HashSet<>() : changedStores;
+        } catch (SQLException | IOException e) {
+            if (autoCommit)
+                con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Streams the file, syncing each store once its last row has been read
+     */
+    private void read(Connection con) throws SQLException, IOException {
+        Set<String> seen = new HashSet<>();
+        String store = null;
+        TreeMap<String, Integer> wanted = new TreeMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split(",");
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i].trim();
+                }
+                boolean withStore = fields.length == 3;
+                boolean wellFormed = true;
+                int stock = 0;
+                try {
+                    stock = Integer.parseInt(fields[fields.length - 1]);
+                } catch (NumberFormatException e) {
+                    if (number == 1)
+                        continue;
+                    wellFormed = false;
+                }
+                if (!wellFormed || (!withStore && (fields.length != 2 || onlyStore == null)))
+                    throw new IOException(file + " line " + number + ": expected " +
+                        (onlyStore != null ? "[<store>,]" : "<store>,") + "<upc>,<stock> but found " + line);
+                if (stock < 0)
+                    throw new IOException(file + " line " + number + ": stock can't be negative");
+                String rowStore = withStore ? fields[0] : onlyStore;
+                if (onlyStore != null && !rowStore.equals(onlyStore))
+                    continue;
+                if (!rowStore.equals(store)) {
+                    if (store != null)
+                        sync(con, store, wanted);
+                    if (!seen.add(rowStore))
+                        throw new IOException(file + " line " + number + ": the rows of store " + rowStore +
+                            " must be together");
+                    store = rowStore;
+                    wanted.clear();
+                }
+                wanted.put(fields[fields.length - 2], stock);
+            }
+        }
+        if (store != null)
+            sync(con, store, wanted);
+        else if (onlyStore != null)
+            System.out.println("The file has no products for store " + onlyStore + ", it was left as it is.");
+    }
+
+    /**
+     * Merge joins a store's wanted products with the ones it sells
+     */
+    private void sync(Connection con, String store, TreeMap<String, Integer> wanted) throws SQLException {
+        int added = this.added, removed = this.removed, restocked = this.restocked;
+        Iterator<Map.Entry<String, Integer>> want = wanted.entrySet().iterator();
+        Map.Entry<String, Integer> next = want.hasNext() ? want.next() : null;
+        try (PreparedStatement stmt = con.prepareStatement(CURRENT_ROWS)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            stmt.setString(1, store);
+            try (ResultSet rs = stmt.executeQuery()) {
+                String previous = null;
+                while (rs.next()) {
+                    String upc = rs.getString(1).trim();
+                    // soldBy has no key, and a write to one copy of a row changes them all
+                    if (upc.equals(previous))
+                        continue;
+                    previous = upc;
+                    while (next != null && next.getKey().compareTo(upc) < 0) {
+                        add(store, next.getKey(), next.getValue());
+                        next = want.hasNext() ? want.next() : null;
+                    }
+                    if (next != null && next.getKey().equals(upc)) {
+                        if (next.getValue() != rs.getInt(2))
+                            restock(store, upc, next.getValue());
+                        next = want.hasNext() ? want.next() : null;
+                    } else {
+                        remove(store, upc);
+                    }
+                }
+            }
+        }
+        while (next != null) {
+            add(store, next.getKey(), next.getValue());
+            next = want.hasNext() ? want.next() : null;
+        }
+        flush();
+        int storeAdded = this.added - added, storeRemoved = this.removed - removed;
+        int storeRestocked = this.restocked - restocked;
+        if (storeAdded + storeRemoved + storeRestocked > 0) {
+            changedStores.add(store);
+            System.out.println(String.format("Store %s: %d added, %d removed, %d restocked", store, storeAdded,
+                storeRemoved, storeRestocked));
+        }
+    }
+
+    private void add(String store, String upc, int stock) throws SQLException {
+        add.setString(1, store);
+        add.setInt(2, stock);
+        add.setString(3, upc);
+        add.addBatch();
+        pendingAdds.add(upc);
+        if (pendingAdds.size() >= BATCH_SIZE)
+            flushAdds();
+    }
+
+    private void remove(String store, String upc) throws SQLException {
+        remove.setString(1, store);
+        remove.setString(2, upc);
+        remove.addBatch();
+        removed++;
+        if (++pendingRemoves >= BATCH_SIZE)
+            flushRemoves();
+    }
+
+    private void restock(String store, String upc, int stock) throws SQLException {
+        restock.setInt(1, stock);
+        restock.setString(2, store);
+        restock.setString(3, upc);
+        restock.addBatch();
+        restocked++;
+        if (++pendingRestocks >= BATCH_SIZE)
+            flushRestocks();
+    }
+
+    private void flush() throws SQLException {
+        flushAdds();
+        flushRemoves();
+        flushRestocks();
+    }
+
+    /**
+     * Sends the adds, counting the ones that inserted nothing as unknown products
+     */
+    private void flushAdds() throws SQLException {
+        if (pendingAdds.isEmpty())
+            return;
+        int[] counts = add.executeBatch();
+        for (int i = 0; i < pendingAdds.size(); i++) {
+            if (counts != null && i < counts.length && counts[i] == 0)
+                unknown.add(pendingAdds.get(i));
+            else
+                added++;
+        }
+        pendingAdds.clear();
+    }
+
+    private void flushRemoves() throws SQLException {
+        if (pendingRemoves > 0)
+            remove.executeBatch();
+        pendingRemoves = 0;
+    }
+
+    private void flushRestocks() throws SQLException {
+        if (pendingRestocks > 0)
+            restock.executeBatch();
+        pendingRestocks = 0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.company.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiPredicate;
+
+/**
+ * Browses several stores at once, printing each product once with the
+ * stores that sell it and their stock.
+ *
+ * Every store's matching products are sorted by the same order and then
+ * merged k ways: the products are read off the heads of the stores' lists
+ * through a priority queue, so equal products (same upc) come out next to
+ * each other and are printed as soon as the last store selling them has
+ * been read, rather than after collecting and sorting everything.
+ */
+public class CrossStoreBrowse {
+
+    public enum Order {
+        name(Comparator.comparing(Product::getName)),
+        price(Comparator.comparingLong(Product::getPriceCents).thenComparing(Product::getName));
+
+        // ties go by upc so the same product sorts to the same place in every store
+        private final Comparator<Product> comparator;
+
+        Order(Comparator<Product> comparator) {
+            this.comparator = comparator.thenComparing(Product::getUpc);
+        }
+    }
+
+    /**
+     * One store's matching products, read from the front
+     */
+    private static class Cursor {
+        final int store;
+        final List<Product> products;
+        int next = 0;
+
+        Cursor(int store, List<Product> products) {
+            this.store = store;
+            this.products = products;
+        }
+
+        Product head() {
+            return products.get(next);
+        }
+    }
+
+    private final List<String> storeIds;
+    private final List<StoreCatalog> catalogs;
+    private final Order order;
+
+    /**
+     * @param storeIds the stores browsed, in the order their stock is shown
+     * @param catalogs their catalogs, null for any that couldn't be read
+     */
+    public CrossStoreBrowse(List<String> storeIds, List<StoreCatalog> catalogs, Order order) {
+        this.storeIds = storeIds;
+        this.catalogs = catalogs;
+        this.order = order;
+    }
+
+    /**
+     * Prints the products matching the filter in any of the stores
+     * @return the number of distinct products printed
+     */
+    public int print(BiPredicate<StoreCatalog, Product> filter) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, catalogs.size()),
+            (a, b) -> order.comparator.compare(a.head(), b.head()));
+        for (int i = 0; i < catalogs.size(); i++) {
+            StoreCatalog catalog = catalogs.get(i);
+            if (catalog == null) {
+                System.out.println("Couldn't read the products of store " + storeIds.get(i).trim() + ".");
+                continue;
+            }
+            List<Product> products = catalog.find(p -> filter.test(catalog, p));
+            // the catalog is in name order, so this is only a merge pass for that order
+            products.sort(order.comparator);
+            if (!products.isEmpty())
+                heads.add(new Cursor(i, products));
+        }
+        if (heads.isEmpty()) {
+            System.out.println("No products found under specified parameters!");
+            return 0;
+        }
+
+        printHeader();
+        int printed = 0;
+        Product current = null;
+        int[] stock = new int[catalogs.size()];
+        while (!heads.isEmpty()) {
+            Cursor cursor = heads.poll();
+            Product product = cursor.head();
+            if (current == null || !current.getUpc().equals(product.getUpc())) {
+                if (current != null) {
+                    printRow(current, stock);
+                    printed++;
+                }
+                current = product;
+                Arrays.fill(stock, -1);
+            }
+            stock[cursor.store] = catalogs.get(cursor.store).stockOf(product.getUpc());
+            if (++cursor.next < cursor.products.size())
+                heads.add(cursor);
+        }
+        printRow(current, stock);
+        System.out.println("--------------------------------------------------------------------------");
+        return printed + 1;
+    }
+
+    private void printHeader() {
+        System.out.println("--------------------------------------------------------------------------");
+        System.out.println(String.format("| %-21s | %-12s | %-21s | %-7s | %-6s | %s", "Name", "UPC", "Brand", "Price",
+            "Stores", "Stock by store"));
+    }
+
+    private void printRow(Product product, int[] stock) {
+        List<String> availability = new ArrayList<>();
+        for (int i = 0; i < stock.length; i++) {
+            if (stock[i] >= 0)
+                availability.add(storeIds.get(i).trim() + ": " + stock[i]);
+        }
+        System.out.println(String.format("%s %-6s | %s", product, availability.size() + "/" + stock.length,
+            String.join(", ", availability)));
+    }
+}
@@ -4,6 +4,8 @@ import com.company.Controller.CommandDefinitions.BrowseCommand;
 import com.company.Controller.CommandDefinitions.CartCommand;
 import com.company.Controller.CommandDefinitions.CustomerStoreCommand;
 import com.company.Controller.CommandDefinitions.CustomerSynopsis;
+import com.company.Controller.CommandDefinitions.MetricsCommand;
+import com.company.Controller.CommandDefinitions.OrdersCommand;
 import com.company.Controller.CommandService;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -18,12 +20,14 @@ public class Customer extends User {
     private String firstname;
     private String phone;
     private ShoppingCart shoppingCart;
+    // the order history being paged through, if any
+    private OrderHistory history;
     private final int PHONE = 1;
     private final int FIRST = 1;
     private final int LAST = 2;
-    private final String STORE_BY_ID_QUERY = "SELECT * FROM Store WHERE id = ?";
-    private final String PHONE_NUMBER_CHECK = "SELECT phonenumber FROM customer WHERE phonenumber = ?";
-    private final String GET_NAME_BY_PHONE = "SELECT firstname, lastname FROM customer WHERE phonenumber = ?";
+    private static final String STORE_BY_ID_QUERY = "SELECT * FROM Store WHERE id = ?";
+    private static final String PHONE_NUMBER_CHECK = "SELECT phonenumber FROM customer WHERE phonenumber = ?";
+    private static final String GET_NAME_BY_PHONE = "SELECT firstname, lastname FROM customer WHERE phonenumber = ?";
 
 
 
@@ -37,6 +41,10 @@ public class Customer extends User {
 
     @Override
     public void selectMainStore(String storeId) {
+        if (selectLocalStore(storeId)) {
+            this.shoppingCart = new ShoppingCart(this.getStore(), this.getCon(), this.phone);
+            return;
+        }
         ResultSet rs = null;
         PreparedStatement stmt = null;
         try {
@@ -56,6 +64,7 @@ public class Customer extends User {
 
         // set the connection to the store
         store.setCon(this.getCon());
+        store.warmUp();
         this.shoppingCart = new ShoppingCart(this.getStore(), this.getCon(), this.phone);
     }
 
@@ -122,19 +131,39 @@ public class Customer extends User {
 
     public boolean addItemToCart(String itemName, int number) {
         verifyCart();
-        Product p = createProductFromName(itemName);
+        StoreCatalog catalog = getStore() != null ? getStore().catalog() : null;
+        Product p = catalog != null ? catalog.byName(itemName) : null;
+        if (p == null)
+            p = createProductFromName(itemName);
         return shoppingCart.addItem(p, number);
     }
 
     @Override
-    public CommandLine initCLI() {
-        return new picocli.CommandLine(new CommandService(this))
-            .addSubcommand("cart", new CartCommand(this))
-            .addSubcommand("store", new CustomerStoreCommand(this))
-            .addSubcommand("browse", new BrowseCommand(this))
+    public UserType getType() {
+        return UserType.customer;
+    }
+
+    /**
+     * Builds the customer command tree. It holds no customer, the one it acts
+     * on is set on its CommandService, so the tree can be built ahead of login
+     */
+    public static CommandLine buildCLI() {
+        return new picocli.CommandLine(new CommandService())
+            .addSubcommand("cart", new CartCommand())
+            .addSubcommand("store", new CustomerStoreCommand())
+            .addSubcommand("browse", new BrowseCommand())
+            .addSubcommand("orders", new OrdersCommand())
+            .addSubcommand("metrics", new MetricsCommand())
             .addSubcommand("synopsis", new CustomerSynopsis());
     }
 
+    @Override
+    public CommandLine initCLI() {
+        CommandLine cli = buildCLI();
+        ((CommandService) cli.getCommand()).setUser(this);
+        return cli;
+    }
+
     public void removeItemFromCart(String itemName, int number) {
         if (!checkStoreSet()) return;
         shoppingCart.removeItem(itemName, number);
@@ -142,9 +171,8 @@ public class Customer extends User {
 
     public void getCartTotal(){
         if (!checkStoreSet()) return;
-        double total = shoppingCart.getTotal();
-        String tot = String.format("$%.02f", total);
-        System.out.println(tot);
+        long total = shoppingCart.getTotal();
+        System.out.println("$" + Money.format(total));
     }
 
     public void printCartItems() {
@@ -157,4 +185,43 @@ public class Customer extends User {
         this.shoppingCart.checkout();
         System.out.println("Thank you for your purchase!");
     }
+
+    /**
+     * Shows the first page of this customer's orders, newest first
+     * @param all show every page at once rather than waiting for orders next
+     */
+    public void showOrderHistory(int pageSize, OrderHistory.Period period, boolean all) {
+        if (pageSize < 1) {
+            System.out.println("A page must show at least one order.");
+            return;
+        }
+        history = new OrderHistory(phone, pageSize, period);
+        printOrders(all);
+    }
+
+    /**
+     * Shows the next page of the order history being paged through
+     */
+    public void showMoreOrders() {
+        if (history == null)
+            System.out.println("Use orders history first.");
+        else if (history.isDone())
+            System.out.println("That was all of your orders.");
+        else
+            printOrders(false);
+    }
+
+    private void printOrders(boolean all) {
+        try {
+            boolean more;
+            do {
+                more = history.printPage(getCon());
+            } while (more && all);
+            if (more)
+                System.out.println(history.getShown() + " orders shown, use orders next for more.");
+        } catch (SQLException e) {
+            System.out.println("SQL Error reading your orders");
+            System.out.println(e.getMessage());
+        }
+    }
 }
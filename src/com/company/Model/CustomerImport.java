@@ -0,0 +1,315 @@
+package com.company.Model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Adds the customers in a file, or updates the names of those already
+ * there, in one transaction.
+ *
+ * The file is streamed, and each row is checked before it is sent: the
+ * phone number must have 10 digits (spaces, dashes, dots and parentheses
+ * are dropped) and the names must fit their columns. Rows that don't are
+ * written to a rejects file with the reason instead. Fields may be double
+ * quoted, so a name can hold a comma, with any quote inside one doubled. The rest go either as
+ * batches of INSERT ... ON CONFLICT statements, or with COPY into a
+ * temporary table that is then merged into customer in one statement,
+ * which is several times faster but loads a single database.
+ */
+public class CustomerImport {
+
+    private static final String UPSERT_CUSTOMER = "INSERT INTO customer (phonenumber, firstname, lastname) " +
+        "VALUES (?, ?, ?) ON CONFLICT (phonenumber) DO UPDATE SET firstname = EXCLUDED.firstname, " +
+        "lastname = EXCLUDED.lastname WHERE (customer.firstname, customer.lastname) IS DISTINCT FROM " +
+        "(EXCLUDED.firstname, EXCLUDED.lastname)";
+    private static final String CREATE_STAGING = "CREATE TEMPORARY TABLE customer_import (line integer, " +
+        "phonenumber character(10), firstname character varying(50), lastname character varying(50))";
+    private static final String COPY_STAGING = "COPY customer_import (line, phonenumber, firstname, lastname) " +
+        "FROM STDIN WITH (FORMAT csv)";
+    // a phone number listed twice keeps its last row, as it would if the rows were upserted in turn
+    private static final String MERGE_STAGING = "WITH merged AS (INSERT INTO customer (phonenumber, firstname, " +
+        "lastname) SELECT phonenumber, firstname, lastname FROM (SELECT DISTINCT ON (phonenumber) * FROM " +
+        "customer_import ORDER BY phonenumber, line DESC) latest ON CONFLICT (phonenumber) DO UPDATE SET " +
+        "firstname = EXCLUDED.firstname, lastname = EXCLUDED.lastname WHERE (customer.firstname, " +
+        "customer.lastname) IS DISTINCT FROM (EXCLUDED.firstname, EXCLUDED.lastname) RETURNING xmax = 0 AS added) " +
+        "SELECT count(*) FILTER (WHERE added), count(*) FILTER (WHERE NOT added) FROM merged";
+    private static final String DROP_STAGING = "DROP TABLE customer_import";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int CHUNK = 1 << 16;
+    private static final int NAME_LENGTH = 50;
+
+    /**
+     * What an import did, and how long it took
+     */
+    public static class Result {
+        int rows;
+        // without --copy the added and updated rows can't be told apart, and are all counted as changed
+        int added;
+        int updated;
+        int changed;
+        int rejected;
+        long nanos;
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            String changes = changed > 0 || (added == 0 && updated == 0)
+                ? String.format("%d added or updated", changed) : String.format("%d added, %d updated", added, updated);
+            return String.format("Imported %d rows in %.1f s (%.0f rows/s): %s, %d already up to date, %d rejected.",
+                rows, seconds, seconds > 0 ? rows / seconds : 0.0, changes, rows - added - updated - changed, rejected);
+        }
+    }
+
+    private final File file;
+    private final File rejects;
+    private final boolean copy;
+
+    // the columns of the names and phone number, taken from the header if there is one
+    private int firstColumn = 0;
+    private int lastColumn = 1;
+    private int phoneColumn = 2;
+    private int lineNumber = 0;
+    private BufferedWriter rejectWriter;
+
+    /**
+     * @param file the customers, one {@code <firstname>,<lastname>,<phonenumber>} per line,
+     * or in any order named by a header line
+     * @param rejects where the rows that can't be imported are written, if there are any
+     * @param copy load the rows with COPY and merge them, rather than upsert them in batches
+     */
+    public CustomerImport(File file, File rejects, boolean copy) {
+        this.file = file;
+        this.rejects = rejects;
+        this.copy = copy;
+    }
+
+    /**
+     * Imports the file. On a connection already in a transaction the
+     * customers become part of it, otherwise they are committed, or rolled
+     * back if anything fails.
+     */
+    public Result apply(Connection con) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (copy)
+                copy(con, in, result);
+            else
+                upsert(con, in, result);
+            if (autoCommit)
+                con.commit();
+        } catch (SQLException | IOException e) {
+            if (autoCommit)
+                con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+            if (rejectWriter != null)
+                rejectWriter.close();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void upsert(Connection con, BufferedReader in, Result result) throws SQLException, IOException {
+        try (PreparedStatement stmt = con.prepareStatement(UPSERT_CUSTOMER)) {
+            int pending = 0;
+            String[] row;
+            while ((row = next(in, result)) != null) {
+                stmt.setString(1, row[2]);
+                stmt.setString(2, row[0]);
+                stmt.setString(3, row[1]);
+                stmt.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    result.changed += changed(stmt.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0)
+                result.changed += changed(stmt.executeBatch());
+        }
+    }
+
+    private static int changed(int[] counts) {
+        int changed = 0;
+        if (counts != null) {
+            for (int count : counts) {
+                // a row copied to every shard counts once per database
+                if (count > 0)
+                    changed++;
+            }
+        }
+        return changed;
+    }
+
+    private void copy(Connection con, BufferedReader in, Result result) throws SQLException, IOException {
+        if (!con.isWrapperFor(PGConnection.class))
+            throw new SQLException("COPY needs a PostgreSQL connection");
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(CREATE_STAGING);
+        }
+        CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING);
+        try {
+            StringBuilder buffer = new StringBuilder(CHUNK + 1024);
+            String[] row;
+            while ((row = next(in, result)) != null) {
+                buffer.append(result.rows).append(',');
+                appendCsv(buffer, row[2]).append(',');
+                appendCsv(buffer, row[0]).append(',');
+                appendCsv(buffer, row[1]).append('\n');
+                if (buffer.length() >= CHUNK)
+                    write(copyIn, buffer);
+            }
+            write(copyIn, buffer);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive())
+                copyIn.cancelCopy();
+        }
+        try (Statement stmt = con.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(MERGE_STAGING)) {
+                rs.next();
+                result.added = rs.getInt(1);
+                result.updated = rs.getInt(2);
+            }
+            stmt.execute(DROP_STAGING);
+        }
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+    }
+
+    private static StringBuilder appendCsv(StringBuilder out, String value) {
+        // an unquoted empty field is NULL, as a missing last name should be
+        if (value == null)
+            return out;
+        return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Reads up to the next row that can be imported, rejecting the ones before it
+     * @return the first name, last name (or null) and phone number, or null at the end of the file
+     */
+    private String[] next(BufferedReader in, Result result) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty())
+                continue;
+            String[] fields = fields(line);
+            if (fields != null && lineNumber == 1 && header(fields))
+                continue;
+            String reason = null;
+            String first = null, last = null, phone = null;
+            if (fields == null) {
+                reason = "a quoted field isn't closed";
+            } else if (fields.length != 3) {
+                reason = "expected 3 columns";
+            } else {
+                first = fields[firstColumn].trim();
+                last = fields[lastColumn].trim();
+                phone = fields[phoneColumn].replaceAll("[\\s\\-.()]", "");
+                if (!phone.matches("\\d{10}"))
+                    reason = "the phone number must have 10 digits";
+                else if (first.isEmpty())
+                    reason = "the first name is missing";
+                else if (first.length() > NAME_LENGTH || last.length() > NAME_LENGTH)
+                    reason = "names can't be longer than " + NAME_LENGTH + " characters";
+            }
+            if (reason != null) {
+                reject(line, reason, result);
+                continue;
+            }
+            result.rows++;
+            return new String[]{first, last.isEmpty() ? null : last, phone};
+        }
+        return null;
+    }
+
+    /**
+     * Splits a line on its commas, except those inside double quotes
+     * @return the fields, or null if a quote is left open
+     */
+    static String[] fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"')
+                    field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    field.append(line.charAt(++i));
+                else
+                    quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted)
+            return null;
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Takes the columns from the first line if it names them
+     * @return whether it was a header
+     */
+    private boolean header(String[] fields) {
+        int first = -1, last = -1, phone = -1;
+        for (int i = 0; i < fields.length; i++) {
+            String name = fields[i].trim().toLowerCase(Locale.ROOT);
+            if (name.contains("first"))
+                first = i;
+            else if (name.contains("last"))
+                last = i;
+            else if (name.contains("phone"))
+                phone = i;
+        }
+        if (first < 0 || last < 0 || phone < 0)
+            return false;
+        firstColumn = first;
+        lastColumn = last;
+        phoneColumn = phone;
+        return true;
+    }
+
+    private void reject(String line, String reason, Result result) throws IOException {
+        if (rejectWriter == null)
+            rejectWriter = Files.newBufferedWriter(rejects.toPath(), StandardCharsets.UTF_8);
+        result.rejected++;
+        rejectWriter.write("line " + lineNumber + ", " + reason + ": " + line);
+        rejectWriter.newLine();
+    }
+}
@@ -0,0 +1,56 @@
+package com.company.Model;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * Store searches, price checks and store catalogs answered from memory
+ * rather than by a query: from the read model while it is fresh enough,
+ * otherwise from the snapshot file while it is open and nothing has
+ * written since it was read.
+ */
+interface LocalReads {
+
+    /**
+     * @return where reads on con may be answered right now, or null if they
+     * have to go to the database
+     */
+    static LocalReads serving(Connection con) {
+        if (StoreCatalog.isolated())
+            return null;
+        ReadModel model = ReadModel.serving(con);
+        if (model != null)
+            return model;
+        return Snapshot.serving(con);
+    }
+
+    /**
+     * @return the store with that id, or null if there is none
+     */
+    Store store(String id);
+
+    /**
+     * @return the stores in a state, by id
+     */
+    List<Store> storesInState(String state);
+
+    /**
+     * @return the stores open from at least start until at most end, by id
+     */
+    List<Store> storesOpen(int start, int end);
+
+    /**
+     * @return the stores selling a product of that name, by id
+     */
+    List<Store> storesSelling(String productName);
+
+    /**
+     * @return the product with that upc, or null if there is none
+     */
+    Product product(String upc);
+
+    /**
+     * @return a store's catalog, or null if it isn't held here
+     */
+    StoreCatalog catalog(String storeId);
+}
@@ -0,0 +1,60 @@
+package com.company.Model;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Amounts of money as a long number of cents, so prices, cart totals and
+ * sales add up exactly and without boxing. Prices are stored as double
+ * precision, so they are rounded to the cent once, where they are read;
+ * the sales statistics have the database total cents instead.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * @return an amount typed or stored in dollars, to the nearest cent
+     */
+    public static long of(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    /**
+     * @return a price column of the current row, in cents
+     */
+    static long read(ResultSet rs, int column) throws SQLException {
+        return of(rs.getDouble(column));
+    }
+
+    /**
+     * @return the exact amount, for binding to a statement
+     */
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * @return the amount in dollars with two decimals, such as 12.05 or -0.40
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(12), cents).toString();
+    }
+
+    /**
+     * Writes the amount in dollars with two decimals
+     */
+    public static StringBuilder appendTo(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+            // dollars and cents are negated separately, as negating Long.MIN_VALUE overflows
+            long dollars = -(cents / 100);
+            int rest = (int) -(cents % 100);
+            return out.append(dollars).append('.').append((char) ('0' + rest / 10)).append((char) ('0' + rest % 10));
+        }
+        int rest = (int) (cents % 100);
+        return out.append(cents / 100).append('.').append((char) ('0' + rest / 10)).append((char) ('0' + rest % 10));
+    }
+}
@@ -0,0 +1,201 @@
+package com.company.Model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.postgresql.PGStatement;
+
+/**
+ * A customer's past orders, newest first, read a page at a time as they
+ * ask for more.
+ *
+ * Pages are found by keyset rather than OFFSET: each one asks for the
+ * orders before the last one shown, by (orderdate, ordernumber), so the
+ * index on (customer, orderdate, ordernumber) is read backward from that
+ * point and a page deep into a long history costs what the first does.
+ * The products come in the same query, and what was spent per store and
+ * per period is added up as the pages are shown, then printed after the
+ * last one. Totals are at today's prices, as in the statistics, since
+ * orders don't record what was paid.
+ */
+public class OrderHistory {
+
+    public enum Period {
+        day("yyyy-MM-dd"),
+        month("yyyy-MM"),
+        year("yyyy");
+
+        private final String pattern;
+
+        Period(String pattern) {
+            this.pattern = pattern;
+        }
+    }
+
+    private static final String COLUMNS = "SELECT orders.orderdate, orders.ordernumber, orders.store, product.name, " +
+        "orders.numbersold, ROUND(product.price * 100)::bigint FROM orders JOIN product ON product.upc = " +
+        "orders.product WHERE orders.customer = ? ";
+    private static final String NEWEST_FIRST = "ORDER BY orders.orderdate DESC, orders.ordernumber DESC LIMIT ?";
+    private static final String FIRST_PAGE = COLUMNS + NEWEST_FIRST;
+    private static final String NEXT_PAGE = COLUMNS + "AND (orders.orderdate, orders.ordernumber) < (?, ?) " +
+        NEWEST_FIRST;
+
+    // orders placed before their dates were recorded
+    private static final String UNDATED = "undated";
+    private static final String LINE = "--------------------------------------------------------------------------------------";
+    private static final Comparator<Line> NEWEST = Comparator.comparing((Line line) -> line.date)
+        .thenComparing(line -> line.orderNumber).reversed();
+
+    /**
+     * One order, with its product
+     */
+    private static class Line {
+        final Timestamp date;
+        final String orderNumber;
+        final String store;
+        final String product;
+        final int quantity;
+        final long cents;
+
+        Line(ResultSet rs) throws SQLException {
+            date = rs.getTimestamp(1);
+            orderNumber = rs.getString(2).trim();
+            store = rs.getString(3) == null ? "" : rs.getString(3).trim();
+            product = rs.getString(4);
+            quantity = rs.getInt(5);
+            cents = rs.getLong(6) * quantity;
+        }
+    }
+
+    private final String phone;
+    private final int pageSize;
+    private final Period period;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    private final SimpleDateFormat periodFormat;
+
+    // the last order shown, which the next page starts after
+    private Timestamp lastDate;
+    private String lastOrderNumber;
+    private boolean done = false;
+    private int shown = 0;
+    private final Map<String, Long> byStore = new TreeMap<>();
+    private final Map<String, Long> byPeriod = new TreeMap<>();
+
+    /**
+     * @param phone the customer whose orders these are
+     * @param pageSize the orders shown at a time
+     * @param period the periods spending is totalled over
+     */
+    public OrderHistory(String phone, int pageSize, Period period) {
+        this.phone = phone;
+        this.pageSize = pageSize;
+        this.period = period;
+        this.periodFormat = new SimpleDateFormat(period.pattern);
+    }
+
+    /**
+     * @return whether every order has been shown
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the number of orders shown so far
+     */
+    public int getShown() {
+        return shown;
+    }
+
+    /**
+     * Shows the next page of orders, and the totals after the last one
+     * @return whether there are more orders to show
+     */
+    public boolean printPage(Connection con) throws SQLException {
+        if (done)
+            return false;
+        List<Line> page = read(con);
+        // with the orders sharded, each database sends a page of its own
+        page.sort(NEWEST);
+        boolean more = page.size() > pageSize;
+        if (more)
+            page = page.subList(0, pageSize);
+
+        if (shown == 0 && page.isEmpty()) {
+            System.out.println("You haven't ordered anything yet.");
+        } else if (!page.isEmpty()) {
+            System.out.println(LINE);
+            System.out.println(String.format("| %-16s | %-8s | %-8s | %-21s | %-5s | %-9s |", "Date", "Order", "Store",
+                "Product", "Qty", "Total"));
+            for (Line line : page) {
+                System.out.println(String.format("| %-16s | %-8s | %-8s | %-21s | %5d | %9s |", format(line.date),
+                    line.orderNumber, line.store, line.product, line.quantity, Money.format(line.cents)));
+                byStore.merge(line.store, line.cents, Long::sum);
+                byPeriod.merge(periodOf(line.date), line.cents, Long::sum);
+            }
+            System.out.println(LINE);
+            Line last = page.get(page.size() - 1);
+            lastDate = last.date;
+            lastOrderNumber = last.orderNumber;
+            shown += page.size();
+        }
+
+        if (!more) {
+            done = true;
+            if (shown > 0)
+                printTotals();
+        }
+        return more;
+    }
+
+    private List<Line> read(Connection con) throws SQLException {
+        List<Line> page = new ArrayList<>(pageSize + 1);
+        try (PreparedStatement stmt = con.prepareStatement(lastDate == null ? FIRST_PAGE : NEXT_PAGE)) {
+            int i = 1;
+            stmt.setString(i++, phone);
+            if (lastDate != null) {
+                stmt.setTimestamp(i++, lastDate);
+                stmt.setString(i++, lastOrderNumber);
+            }
+            // one more than a page, to know whether there is another
+            stmt.setInt(i, pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new Line(rs));
+                }
+            }
+        }
+        return page;
+    }
+
+    private void printTotals() {
+        System.out.println(String.format("All %d orders, by store:", shown));
+        for (Map.Entry<String, Long> store : byStore.entrySet()) {
+            System.out.println(String.format("  %-10s $%s", store.getKey(), Money.format(store.getValue())));
+        }
+        System.out.println("By " + period + ":");
+        for (Map.Entry<String, Long> total : byPeriod.entrySet()) {
+            System.out.println(String.format("  %-10s $%s", total.getKey(), Money.format(total.getValue())));
+        }
+    }
+
+    private static boolean undated(Timestamp date) {
+        return date == null || date.getTime() == PGStatement.DATE_NEGATIVE_INFINITY;
+    }
+
+    private String format(Timestamp date) {
+        return undated(date) ? UNDATED : dateFormat.format(date);
+    }
+
+    private String periodOf(Timestamp date) {
+        return undated(date) ? UNDATED : periodFormat.format(date);
+    }
+}
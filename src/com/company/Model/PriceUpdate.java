@@ -0,0 +1,224 @@
+package com.company.Model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Changes the prices of many products at once: the prices listed in a
+ * file, or a rule (a percentage, or one new price) for every product of a
+ * brand and/or type.
+ *
+ * The products are read and locked first, so the changes printed are
+ * exactly the ones written, then every new price is sent as one batch and
+ * committed together. Products already at their new price aren't written.
+ */
+public class PriceUpdate {
+
+    private static final String COLUMNS = "SELECT upc, name, price FROM product WHERE ";
+    // the rows are locked in upc order, so two bulk updates can't deadlock
+    private static final String LOCK = " ORDER BY upc FOR UPDATE";
+    private static final String PRICES_BY_UPC = COLUMNS + "upc = ANY(?)" + LOCK;
+    private static final String PRICES_BY_BRAND = COLUMNS + "brand = ?" + LOCK;
+    private static final String PRICES_BY_TYPE = COLUMNS + "type = ?" + LOCK;
+    private static final String PRICES_BY_BRAND_AND_TYPE = COLUMNS + "brand = ? AND type = ?" + LOCK;
+    private static final String UPDATE_PRICE = "UPDATE Product SET price = ? WHERE upc = ?";
+
+    private static final int UPC = 1;
+    private static final int NAME = 2;
+    private static final int PRICE = 3;
+
+    /**
+     * One product whose price changes
+     */
+    private static class Change {
+        final String upc;
+        final String name;
+        final long oldCents;
+        final long newCents;
+
+        Change(String upc, String name, long oldCents, long newCents) {
+            this.upc = upc;
+            this.name = name;
+            this.oldCents = oldCents;
+            this.newCents = newCents;
+        }
+    }
+
+    // the new price of each upc when they come from a file, otherwise null
+    private final Map<String, Long> listed;
+    private final String brand;
+    private final String type;
+    private final LongUnaryOperator rule;
+
+    private PriceUpdate(Map<String, Long> listed, String brand, String type, LongUnaryOperator rule) {
+        this.listed = listed;
+        this.brand = brand;
+        this.type = type;
+        this.rule = rule;
+    }
+
+    /**
+     * Reads a file of {@code <upc>,<price>} lines. Blank lines, lines
+     * starting with # and a header line are skipped, and a upc listed twice
+     * takes its last price.
+     * @throws IOException if the file can't be read or a line isn't a upc and a price
+     */
+    public static PriceUpdate fromFile(File file) throws IOException {
+        Map<String, Long> prices = new LinkedHashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split(",");
+                long cents;
+                try {
+                    if (fields.length != 2 || fields[0].trim().isEmpty())
+                        throw new NumberFormatException();
+                    // parseDouble takes NaN and Infinity too, which aren't prices
+                    double price = Double.parseDouble(fields[1].trim());
+                    if (!Double.isFinite(price))
+                        throw new NumberFormatException();
+                    cents = Money.of(price);
+                } catch (NumberFormatException e) {
+                    if (number == 1)
+                        continue;
+                    throw new IOException(file + " line " + number + ": expected <upc>,<price> but found " + line);
+                }
+                if (cents < 0)
+                    throw new IOException(file + " line " + number + ": a price can't be negative");
+                prices.put(fields[0].trim(), cents);
+            }
+        }
+        return new PriceUpdate(prices, null, null, null);
+    }
+
+    /**
+     * @param brand the brand whose products change, or null for any brand
+     * @param type the type whose products change, or null for any type
+     * @param percent how much to raise the prices, negative to lower them
+     */
+    public static PriceUpdate byPercent(String brand, String type, double percent) {
+        BigDecimal factor = BigDecimal.valueOf(100 + percent);
+        return new PriceUpdate(null, brand, type, cents -> BigDecimal.valueOf(cents).multiply(factor)
+            .divide(BigDecimal.valueOf(100), 0, RoundingMode.HALF_UP).longValue());
+    }
+
+    /**
+     * @param brand the brand whose products change, or null for any brand
+     * @param type the type whose products change, or null for any type
+     * @param cents the price they all get
+     */
+    public static PriceUpdate toPrice(String brand, String type, long cents) {
+        return new PriceUpdate(null, brand, type, old -> cents);
+    }
+
+    /**
+     * Prints the changes and, unless it is a dry run, makes them. On a
+     * connection already in a transaction they become part of it, otherwise
+     * they are committed, or rolled back if any fails.
+     * @return the number of prices changed, or that would be
+     */
+    public int apply(Connection con, boolean dryRun) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try {
+            List<Change> changes = read(con);
+            print(changes);
+            if (!dryRun && !changes.isEmpty())
+                write(con, changes);
+            if (autoCommit) {
+                if (dryRun)
+                    con.rollback();
+                else
+                    con.commit();
+            }
+            return changes.size();
+        } catch (SQLException e) {
+            if (autoCommit)
+                con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private List<Change> read(Connection con) throws SQLException {
+        List<Change> changes = new ArrayList<>();
+        Map<String, Long> unmatched = listed != null ? new LinkedHashMap<>(listed) : null;
+        try (PreparedStatement stmt = prepare(con); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String upc = rs.getString(UPC).trim();
+                long oldCents = Money.read(rs, PRICE);
+                Long newCents = listed != null ? unmatched.remove(upc) : (Long) rule.applyAsLong(oldCents);
+                if (newCents != null && newCents != oldCents)
+                    changes.add(new Change(upc, rs.getString(NAME), oldCents, newCents));
+            }
+        }
+        if (unmatched != null) {
+            for (String upc : unmatched.keySet()) {
+                System.out.println("No product has upc " + upc + ", skipped.");
+            }
+        }
+        return changes;
+    }
+
+    private PreparedStatement prepare(Connection con) throws SQLException {
+        PreparedStatement stmt;
+        if (listed != null) {
+            stmt = con.prepareStatement(PRICES_BY_UPC);
+            stmt.setArray(1, con.createArrayOf("varchar", listed.keySet().toArray()));
+        } else if (brand != null && type != null) {
+            stmt = con.prepareStatement(PRICES_BY_BRAND_AND_TYPE);
+            stmt.setString(1, brand);
+            stmt.setString(2, type);
+        } else if (brand != null) {
+            stmt = con.prepareStatement(PRICES_BY_BRAND);
+            stmt.setString(1, brand);
+        } else {
+            stmt = con.prepareStatement(PRICES_BY_TYPE);
+            stmt.setString(1, type);
+        }
+        return stmt;
+    }
+
+    private static void write(Connection con, List<Change> changes) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(UPDATE_PRICE)) {
+            for (Change change : changes) {
+                stmt.setBigDecimal(1, Money.toBigDecimal(change.newCents));
+                stmt.setString(2, change.upc);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void print(List<Change> changes) {
+        if (changes.isEmpty())
+            return;
+        System.out.println("-----------------------------------------------------------------");
+        System.out.println(String.format("| %-21s | %-12s | %-9s | %-9s |", "Name", "UPC", "Old Price", "New Price"));
+        for (Change change : changes) {
+            System.out.println(String.format("| %-21s | %-12s | %9s | %9s |", change.name, change.upc,
+                Money.format(change.oldCents), Money.format(change.newCents)));
+        }
+        System.out.println("-----------------------------------------------------------------");
+    }
+}
@@ -1,9 +1,16 @@
 package com.company.Model;
 
+import com.company.Metrics.MaterializationEvent;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * A product as read from the database: a view of its row in the shared
+ * ProductCatalog, so results and catalogs mentioning the same product share
+ * one object instead of each holding copies of its strings.
+ */
 public class Product {
 
     static final int UPC = 1;
@@ -13,59 +20,109 @@ public class Product {
     static final int SIZE = 5;
     static final int PRICE = 6;
 
-    private String name;
-    private String brand;
-    private String upc;
-    private double price;
+    private final ProductCatalog catalog;
+    private final int row;
+    // the shared view a copy was made from, which keeps the row from being reused
+    private final Product shared;
 
-    public Product(String name, String brand, String upc, double price) {
-        this.name = name;
-        this.brand = brand;
-        this.upc = upc;
-        this.price = price;
+    /**
+     * @param cents the price in cents
+     */
+    public Product(String name, String brand, String upc, long cents) {
+        this(ProductCatalog.SHARED.intern(upc, brand, name, null, cents));
+    }
+
+    private Product(Product shared) {
+        this.catalog = shared.catalog;
+        this.row = shared.row;
+        this.shared = shared;
+    }
+
+    Product(ProductCatalog catalog, int row) {
+        this.catalog = catalog;
+        this.row = row;
+        this.shared = null;
+    }
+
+    /**
+     * @param type the product's type, or null if it wasn't read
+     * @param cents the price in cents
+     * @return the shared view of a product as read
+     */
+    static Product of(String upc, String brand, String name, String type, long cents) {
+        return ProductCatalog.SHARED.intern(upc, brand, name, type, cents);
     }
 
     public String getName() {
-        return name;
+        return catalog.name(row);
     }
 
     public String getBrand() {
-        return brand;
+        return catalog.brand(row);
     }
 
-    public double getPrice() {
-        return price;
+    /**
+     * @return the price in cents
+     */
+    public long getPriceCents() {
+        return catalog.cents(row);
     }
 
     public String getUpc() {
-        return upc;
+        return catalog.upc(row);
+    }
+
+    /**
+     * @return the type, or null if it was never read
+     */
+    String getType() {
+        return catalog.type(row);
+    }
+
+    /**
+     * @return a number standing for the upc, the same for every version of the product
+     */
+    long upcKey() {
+        return catalog.key(row);
     }
 
     @Override
     public String toString() {
-        return (String.format("| %-21s | %-12s | %-21s | %-7.2f |", getName(), getUpc(), getBrand(), getPrice()));
+        return (String.format("| %-21s | %-12s | %-21s | %-7s |", getName(), getUpc(), getBrand(),
+            Money.format(getPriceCents())));
     }
 
-    static final ArrayList<Product> returnDatabaseResults(ResultSet rs){
+    public static final ArrayList<Product> returnDatabaseResults(ResultSet rs){
         ArrayList<Product> products = new ArrayList<>();
+        MaterializationEvent event = new MaterializationEvent();
+        event.begin();
         try {
             if (!rs.next()) {
                 return null;
             } else {
                 do {
-                    products.add(new Product(rs.getString(NAME), rs.getString(BRAND),
-                            rs.getString(UPC), rs.getDouble(PRICE)));
+                    products.add(of(rs.getString(UPC), rs.getString(BRAND), rs.getString(NAME),
+                            rs.getString(TYPE), Money.read(rs, PRICE)));
             }while (rs.next()); }
         } catch (SQLException e){
             System.out.println("Error in product translation.");
             e.printStackTrace();
+        } finally {
+            if (event.shouldCommit()) {
+                event.type = "Product";
+                event.rows = products.size();
+                event.commit();
+            }
         }
         return products;
     }
 
     static final void printDatabaseResults(ResultSet rs) {
-        ArrayList<Product> products = returnDatabaseResults(rs);
-        if (products != null){
+        printProducts(returnDatabaseResults(rs));
+    }
+
+    static final void printProducts(List<Product> products) {
+        if (products != null && !products.isEmpty()){
             System.out.println("--------------------------------------------------------------------------");
             System.out.println(String.format("| %-21s | %-12s | %-21s | %-7s |", "Name", "UPC", "Brand", "Price"));
             for(Product product: products) {
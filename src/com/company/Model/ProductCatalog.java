@@ -0,0 +1,286 @@
+package com.company.Model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Every product this process has read, kept once in columns of primitives
+ * rather than as one object with its own strings per query row: the upc as
+ * a long, the price in cents, and the brand and type as numbers into
+ * dictionaries, since a few dozen brands and types repeat on every row.
+ * A Product is a view of one row, and each row has a single view that
+ * every query result and store catalog shares.
+ *
+ * A row never changes while its view can be reached. Reading a product
+ * that differs from its latest row (a new price, say) adds another row for
+ * it, so views already handed out keep showing what was read, as before.
+ * The catalog then holds the superseded row's view only weakly, and once
+ * every holder has let go of it the row is reused, so a long session's
+ * price changes don't pile up. Adding rows is synchronized; reading them
+ * isn't, since a row is only reached through a view or an index published
+ * after the row was written.
+ */
+final class ProductCatalog {
+
+    static final ProductCatalog SHARED = new ProductCatalog();
+
+    private static final int UPC_DIGITS = 12;
+    private static final long NO_KEY = Long.MIN_VALUE;
+
+    private volatile long[] upcs = new long[1024];
+    private volatile long[] cents = new long[1024];
+    private volatile int[] brands = new int[1024];
+    private volatile int[] types = new int[1024];
+    private volatile String[] names = new String[1024];
+    // the view of each latest row; a superseded row's is only weakly held, in superseded
+    private volatile Product[] views = new Product[1024];
+    private Superseded[] superseded = new Superseded[1024];
+    private final ReferenceQueue<Product> collected = new ReferenceQueue<>();
+    // rows whose views were collected, to be reused
+    private int[] free = new int[64];
+    private int freeCount = 0;
+    private int size = 0;
+    private final Dictionary brandNames = new Dictionary();
+    private final Dictionary typeNames = new Dictionary();
+    // upcs that aren't 12 digits, kept as typed and keyed by negative numbers
+    private final Dictionary oddUpcs = new Dictionary();
+    private final LongIntMap latest = new LongIntMap();
+
+    /**
+     * A superseded row's view, which frees the row once collected
+     */
+    private static final class Superseded extends WeakReference<Product> {
+        final int row;
+
+        Superseded(Product view, int row, ReferenceQueue<Product> queue) {
+            super(view, queue);
+            this.row = row;
+        }
+    }
+
+    private ProductCatalog() {
+    }
+
+    /**
+     * @param type the product's type, or null if the query didn't read it,
+     * in which case the latest row's type is kept
+     * @return the shared view of a product as read
+     */
+    synchronized Product intern(String upc, String brand, String name, String type, long price) {
+        long key = keyOf(upc, true);
+        int brandId = brandNames.idOf(brand, true);
+        int row = latest.get(key);
+        if (row >= 0 && cents[row] == price && brands[row] == brandId && Objects.equals(names[row], name)
+            && (type == null || types[row] == typeNames.idOf(type, true)))
+            return views[row];
+        if (row >= 0 && Objects.equals(names[row], name))
+            name = names[row];
+        int typeId = type == null && row >= 0 ? types[row] : typeNames.idOf(type, true);
+        return add(key, price, brandId, name, typeId);
+    }
+
+    private Product add(long key, long price, int brand, String name, int type) {
+        int previous = latest.get(key);
+        int row = reuse();
+        if (row < 0) {
+            if (size == views.length)
+                grow();
+            row = size++;
+        }
+        upcs[row] = key;
+        cents[row] = price;
+        brands[row] = brand;
+        types[row] = type;
+        names[row] = name;
+        Product view = new Product(this, row);
+        views[row] = view;
+        latest.put(key, row);
+        if (previous >= 0) {
+            superseded[previous] = new Superseded(views[previous], previous, collected);
+            views[previous] = null;
+        }
+        return view;
+    }
+
+    /**
+     * Frees the rows whose views have been collected since the last add
+     * @return one of them to write, or -1 if there are none
+     */
+    private int reuse() {
+        Reference<? extends Product> ref;
+        while ((ref = collected.poll()) != null) {
+            int row = ((Superseded) ref).row;
+            superseded[row] = null;
+            names[row] = null;
+            if (freeCount == free.length)
+                free = Arrays.copyOf(free, freeCount * 2);
+            free[freeCount++] = row;
+        }
+        return freeCount > 0 ? free[--freeCount] : -1;
+    }
+
+    private void grow() {
+        int capacity = views.length * 2;
+        upcs = Arrays.copyOf(upcs, capacity);
+        cents = Arrays.copyOf(cents, capacity);
+        brands = Arrays.copyOf(brands, capacity);
+        types = Arrays.copyOf(types, capacity);
+        names = Arrays.copyOf(names, capacity);
+        views = Arrays.copyOf(views, capacity);
+        superseded = Arrays.copyOf(superseded, capacity);
+    }
+
+    /**
+     * @return a number standing for the upc, the same for every row of that
+     * product, or Long.MIN_VALUE for a upc never seen
+     */
+    synchronized long keyOf(String upc) {
+        return keyOf(upc, false);
+    }
+
+    private long keyOf(String upc, boolean add) {
+        if (upc == null)
+            return NO_KEY;
+        String trimmed = upc.trim();
+        if (trimmed.length() == UPC_DIGITS) {
+            long value = 0;
+            int i = 0;
+            for (; i < UPC_DIGITS; i++) {
+                char c = trimmed.charAt(i);
+                if (c < '0' || c > '9')
+                    break;
+                value = value * 10 + (c - '0');
+            }
+            if (i == UPC_DIGITS)
+                return value;
+        }
+        int id = oddUpcs.idOf(trimmed, add);
+        return id < 0 ? NO_KEY : -(id + 1L);
+    }
+
+    long key(int row) {
+        return upcs[row];
+    }
+
+    String upc(int row) {
+        long key = upcs[row];
+        if (key < 0)
+            return oddUpcs.nameOf((int) (-key - 1));
+        char[] digits = new char[UPC_DIGITS];
+        for (int i = UPC_DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + key % 10);
+            key /= 10;
+        }
+        return new String(digits);
+    }
+
+    long cents(int row) {
+        return cents[row];
+    }
+
+    String brand(int row) {
+        return brandNames.nameOf(brands[row]);
+    }
+
+    String type(int row) {
+        return typeNames.nameOf(types[row]);
+    }
+
+    String name(int row) {
+        return names[row];
+    }
+
+    /**
+     * Numbers for the distinct values of a column, null being -1
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private volatile List<String> values = new ArrayList<>();
+
+        int idOf(String value, boolean add) {
+            if (value == null)
+                return -1;
+            Integer id = ids.get(value);
+            if (id != null)
+                return id;
+            if (!add)
+                return -1;
+            // copied so a reader never sees the list mid-resize
+            List<String> grown = new ArrayList<>(values);
+            grown.add(value);
+            ids.put(value, grown.size() - 1);
+            values = grown;
+            return grown.size() - 1;
+        }
+
+        String nameOf(int id) {
+            return id < 0 ? null : values.get(id);
+        }
+    }
+
+    /**
+     * The latest row of each upc key, without boxing either side
+     */
+    private static final class LongIntMap {
+        private long[] keys = new long[2048];
+        private int[] rows = new int[2048];
+        private int count = 0;
+
+        LongIntMap() {
+            Arrays.fill(rows, -1);
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (rows[i] < 0)
+                    return -1;
+                if (keys[i] == key)
+                    return rows[i];
+            }
+        }
+
+        void put(long key, int row) {
+            if ((count + 1) * 2 > keys.length)
+                rehash();
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (rows[i] < 0) {
+                    keys[i] = key;
+                    rows[i] = row;
+                    count++;
+                    return;
+                }
+                if (keys[i] == key) {
+                    rows[i] = row;
+                    return;
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = new long[oldKeys.length * 2];
+            rows = new int[oldRows.length * 2];
+            Arrays.fill(rows, -1);
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldRows[i] >= 0)
+                    put(oldKeys[i], oldRows[i]);
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,603 @@
+package com.company.Model;
+
+import com.company.Database.ReplicationFeed;
+import com.company.Database.ReplicationFeed.RowChange;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * A copy of the products, stock, stores, customers and orders kept in
+ * memory from the database's replication stream, so store searches,
+ * catalogs (and with them browsing and stock checks) and the statistics
+ * are answered without a query.
+ *
+ * Each committed transaction is applied whole, under a write lock, so a
+ * reader never sees half of one. How stale the copy may be is measured by
+ * the feed's heartbeats: everything committed before the last heartbeat
+ * received is in it. Reads are only served from it while that is within
+ * the limit, outside a transaction (whose own writes it can't see), and,
+ * after this process writes, once a heartbeat sent after the write has
+ * come back; the rest of the time callers ask the database as before.
+ */
+public class ReadModel implements LocalReads {
+
+    private static final String LOAD_PRODUCTS = "SELECT upc, brand, name, type, size, price FROM product";
+    private static final String LOAD_STOCK = "SELECT storeid, productid, numberinstock FROM soldby";
+    private static final String LOAD_STORES = "SELECT id, address, state, opentime, closetime FROM store";
+    private static final String LOAD_CUSTOMERS = "SELECT phonenumber, firstname, lastname FROM customer";
+    private static final String LOAD_ORDERS = "SELECT ordernumber, customer, product, store, numbersold FROM orders";
+    private static final String LOAD_VENDORS = "SELECT brand, vendor FROM distributedby";
+    private static final int FETCH_SIZE = 10_000;
+
+    /**
+     * The tables the model copies
+     */
+    public static final Set<String> TABLES = new HashSet<>(Arrays.asList("product", "soldby", "store", "customer",
+        "orders", "distributedby"));
+
+    private static volatile ReadModel instance;
+
+    private static final class OrderRow {
+        final String customer;
+        final String product;
+        final String store;
+        final int numberSold;
+
+        OrderRow(String customer, String product, String store, int numberSold) {
+            this.customer = customer;
+            this.product = product;
+            this.store = store;
+            this.numberSold = numberSold;
+        }
+    }
+
+    /**
+     * Something ranked by a total (a count, or cents), with the total
+     */
+    public static final class Ranked<T> {
+        private final T item;
+        private final long total;
+
+        Ranked(T item, long total) {
+            this.item = item;
+            this.total = total;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    private final ReplicationFeed feed;
+    private final long maxStalenessMs;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // keyed by the trimmed key columns
+    private final Map<String, Product> products = new HashMap<>();
+    private final Map<String, Map<String, Integer>> stockByStore = new HashMap<>();
+    private final Map<String, Store> stores = new HashMap<>();
+    private final Map<String, String[]> customers = new HashMap<>();
+    private final Map<String, OrderRow> orders = new HashMap<>();
+    private final Map<String, Set<String>> vendorsByBrand = new HashMap<>();
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder changes = new LongAdder();
+    private volatile boolean loaded = false;
+    private volatile long caughtUpTo = 0;
+    private volatile long writtenAt = 0;
+
+    private ReadModel(ReplicationFeed feed, long maxStalenessMs) {
+        this.feed = feed;
+        this.maxStalenessMs = maxStalenessMs;
+    }
+
+    /**
+     * Starts following the feed, and serving reads once it has loaded and caught up
+     * @param maxStalenessMs how far behind the database reads may be
+     */
+    public static synchronized void start(ReplicationFeed feed, long maxStalenessMs) {
+        if (instance != null)
+            return;
+        instance = new ReadModel(feed, maxStalenessMs);
+        feed.start(instance.new Subscriber());
+    }
+
+    public static boolean isStarted() {
+        return instance != null;
+    }
+
+    /**
+     * @return the model if reads on con may be served from it right now, otherwise null
+     */
+    public static ReadModel serving(Connection con) {
+        ReadModel model = instance;
+        if (model == null || !model.isFresh() || (con != null && StoreCatalog.inTransaction(con)))
+            return null;
+        return model;
+    }
+
+    /**
+     * Notes that this process wrote to the database, so reads go there
+     * until the model has caught up with the write
+     */
+    public static void wrote() {
+        ReadModel model = instance;
+        if (model == null)
+            return;
+        model.writtenAt = System.currentTimeMillis();
+        model.feed.heartbeatSoon();
+    }
+
+    /**
+     * @return a line on the model's state and staleness, or null if it isn't started
+     */
+    public static String summary() {
+        ReadModel model = instance;
+        if (model == null)
+            return null;
+        String state;
+        if (!model.loaded)
+            state = "loading" + (model.feed.getLastError() == null ? "" : " (" + model.feed.getLastError() + ")");
+        else
+            state = model.isFresh() ? "serving" : "behind, reads go to the database";
+        int rows;
+        model.lock.readLock().lock();
+        try {
+            rows = model.products.size() + model.stores.size() + model.customers.size() + model.orders.size();
+            for (Map<String, Integer> stock : model.stockByStore.values()) {
+                rows += stock.size();
+            }
+        } finally {
+            model.lock.readLock().unlock();
+        }
+        return String.format("Read model: %s, %s stale (limit %d ms), %d rows, %d transactions and %d changes applied",
+            state, model.caughtUpTo == 0 ? "unknown" : model.stalenessMs() + " ms", model.maxStalenessMs, rows,
+            model.transactions.sum(), model.changes.sum());
+    }
+
+    /**
+     * @return how long ago the newest change the model is sure to have was committed
+     */
+    public long stalenessMs() {
+        return System.currentTimeMillis() - caughtUpTo;
+    }
+
+    private boolean isFresh() {
+        long upTo = caughtUpTo;
+        return loaded && upTo > writtenAt && System.currentTimeMillis() - upTo <= maxStalenessMs;
+    }
+
+    //
+    // Reads
+    //
+
+    public Store store(String id) {
+        lock.readLock().lock();
+        try {
+            return stores.get(id.trim());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the stores in a state, by id
+     */
+    public List<Store> storesInState(String state) {
+        return findStores(s -> state.equals(s.getState()));
+    }
+
+    /**
+     * @return the stores open from at least start until at most end, by id
+     */
+    public List<Store> storesOpen(int start, int end) {
+        return findStores(s -> s.getOpenTime() >= start && s.getCloseTime() <= end);
+    }
+
+    /**
+     * @return the stores selling a product of that name, by id
+     */
+    public List<Store> storesSelling(String productName) {
+        lock.readLock().lock();
+        try {
+            Set<String> upcs = new HashSet<>();
+            for (Map.Entry<String, Product> entry : products.entrySet()) {
+                if (entry.getValue().getName().equals(productName))
+                    upcs.add(entry.getKey());
+            }
+            List<Store> found = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Integer>> entry : stockByStore.entrySet()) {
+                Store store = stores.get(entry.getKey());
+                if (store != null && !Collections.disjoint(entry.getValue().keySet(), upcs))
+                    found.add(store);
+            }
+            found.sort(Comparator.comparing(Store::getId));
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Store> findStores(Predicate<Store> filter) {
+        lock.readLock().lock();
+        try {
+            List<Store> found = new ArrayList<>();
+            for (Store store : stores.values()) {
+                if (filter.test(store))
+                    found.add(store);
+            }
+            found.sort(Comparator.comparing(Store::getId));
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the product with that upc, or null if there is none
+     */
+    public Product product(String upc) {
+        lock.readLock().lock();
+        try {
+            return products.get(upc.trim());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a store's catalog, built from the model
+     */
+    public StoreCatalog catalog(String storeId) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> stock = stockByStore.getOrDefault(storeId.trim(), new HashMap<>());
+            List<Product> rows = new ArrayList<>();
+            TreeSet<String> vendors = new TreeSet<>();
+            for (String upc : stock.keySet()) {
+                Product row = products.get(upc);
+                if (row == null)
+                    continue;
+                rows.add(row);
+                vendors.addAll(vendorsByBrand.getOrDefault(row.getBrand(), Collections.emptySet()));
+            }
+            rows.sort(Comparator.comparing(Product::getName));
+            StoreCatalog catalog = new StoreCatalog(storeId);
+            for (Product row : rows) {
+                catalog.add(row, stock.get(row.getUpc().trim()));
+            }
+            catalog.finish(new ArrayList<>(vendors));
+            return catalog;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the products by the number sold
+     * @param storeId only count this store's orders, or null for every store
+     * @return the upcs with the numbers sold, most sold first if descending
+     */
+    public List<Ranked<String>> productsBySold(String storeId, boolean descending) {
+        Map<String, long[]> sold = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (OrderRow order : orders.values()) {
+                if (storeId == null || storeId.trim().equals(order.store))
+                    total(sold, order.product)[0] += order.numberSold;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rank(sold, descending);
+    }
+
+    /**
+     * @return the customer who spent the most at today's prices, as their phone number,
+     * first and last name, or null if nobody has ordered
+     */
+    public Ranked<String[]> topCustomer() {
+        Map<String, long[]> spent = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (OrderRow order : orders.values()) {
+                Product product = products.get(order.product);
+                if (product != null && order.customer != null && customers.containsKey(order.customer))
+                    total(spent, order.customer)[0] += order.numberSold * product.getPriceCents();
+            }
+            List<Ranked<String>> ranked = rank(spent, true);
+            if (ranked.isEmpty())
+                return null;
+            String phone = ranked.get(0).getItem();
+            String[] names = customers.get(phone);
+            return new Ranked<>(new String[]{phone, names[0], names[1]}, ranked.get(0).getTotal());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the stores by their sales at today's prices
+     * @param state only rank the stores in this state, or null for every store
+     */
+    public List<Ranked<Store>> storesBySales(String state, boolean descending) {
+        Map<String, long[]> sales = new HashMap<>();
+        List<Ranked<Store>> ranked = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (OrderRow order : orders.values()) {
+                Product product = products.get(order.product);
+                Store store = order.store == null ? null : stores.get(order.store);
+                if (product != null && store != null && (state == null || state.equals(store.getState())))
+                    total(sales, order.store)[0] += order.numberSold * product.getPriceCents();
+            }
+            for (Ranked<String> store : rank(sales, descending)) {
+                ranked.add(new Ranked<>(stores.get(store.getItem()), store.getTotal()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ranked;
+    }
+
+    // one running total per key, added to in place rather than boxed anew for every order
+    private static long[] total(Map<String, long[]> totals, String key) {
+        long[] total = totals.get(key);
+        if (total == null) {
+            total = new long[1];
+            totals.put(key, total);
+        }
+        return total;
+    }
+
+    private static List<Ranked<String>> rank(Map<String, long[]> totals, boolean descending) {
+        List<Ranked<String>> ranked = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            ranked.add(new Ranked<>(entry.getKey(), entry.getValue()[0]));
+        }
+        Comparator<Ranked<String>> order = Comparator.comparingLong(Ranked::getTotal);
+        ranked.sort(descending ? order.reversed() : order);
+        return ranked;
+    }
+
+    //
+    // Writes, all from the feed's thread
+    //
+
+    private void load(Connection con) throws SQLException {
+        Map<String, Product> products = new HashMap<>();
+        Map<String, Map<String, Integer>> stockByStore = new HashMap<>();
+        Map<String, Store> stores = new HashMap<>();
+        Map<String, String[]> customers = new HashMap<>();
+        Map<String, OrderRow> orders = new HashMap<>();
+        Map<String, Set<String>> vendorsByBrand = new HashMap<>();
+        try (ResultSet rs = query(con, LOAD_PRODUCTS)) {
+            while (rs.next()) {
+                products.put(rs.getString(1).trim(), Product.of(rs.getString(1), rs.getString(2), rs.getString(3),
+                    rs.getString(4), Money.read(rs, 6)));
+            }
+        }
+        try (ResultSet rs = query(con, LOAD_STOCK)) {
+            while (rs.next()) {
+                if (rs.getString(1) != null && rs.getString(2) != null)
+                    stockByStore.computeIfAbsent(rs.getString(1).trim(), s -> new HashMap<>())
+                        .put(rs.getString(2).trim(), rs.getInt(3));
+            }
+        }
+        try (ResultSet rs = query(con, LOAD_STORES)) {
+            while (rs.next()) {
+                stores.put(rs.getString(1).trim(), new Store(rs.getString(1), rs.getString(3), rs.getString(2),
+                    rs.getInt(4), rs.getInt(5)));
+            }
+        }
+        try (ResultSet rs = query(con, LOAD_CUSTOMERS)) {
+            while (rs.next()) {
+                customers.put(rs.getString(1).trim(), new String[]{rs.getString(2), rs.getString(3)});
+            }
+        }
+        try (ResultSet rs = query(con, LOAD_ORDERS)) {
+            while (rs.next()) {
+                orders.put(rs.getString(1).trim(), new OrderRow(key(rs.getString(2)), key(rs.getString(3)),
+                    key(rs.getString(4)), rs.getInt(5)));
+            }
+        }
+        try (ResultSet rs = query(con, LOAD_VENDORS)) {
+            while (rs.next()) {
+                vendorsByBrand.computeIfAbsent(rs.getString(1), b -> new LinkedHashSet<>()).add(rs.getString(2));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            replace(this.products, products);
+            replace(this.stockByStore, stockByStore);
+            replace(this.stores, stores);
+            replace(this.customers, customers);
+            replace(this.orders, orders);
+            replace(this.vendorsByBrand, vendorsByBrand);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        StoreCatalog.dropAll();
+    }
+
+    private static ResultSet query(Connection con, String sql) throws SQLException {
+        PreparedStatement stmt = con.prepareStatement(sql);
+        // read in batches rather than all at once, as orders can be large
+        stmt.setFetchSize(FETCH_SIZE);
+        stmt.closeOnCompletion();
+        return stmt.executeQuery();
+    }
+
+    private static <K, V> void replace(Map<K, V> target, Map<K, V> rows) {
+        target.clear();
+        target.putAll(rows);
+    }
+
+    private void apply(List<RowChange> transaction) {
+        Set<String> storesChanged = new HashSet<>();
+        Set<String> productsChanged = new HashSet<>();
+        boolean everything = false;
+        lock.writeLock().lock();
+        try {
+            for (RowChange change : transaction) {
+                Map<String, String> before = change.getBefore();
+                Map<String, String> after = change.getAfter();
+                switch (change.getTable()) {
+                    case "product":
+                        if (change.getKind() == RowChange.Kind.TRUNCATE) {
+                            products.clear();
+                            everything = true;
+                        }
+                        if (before != null) {
+                            products.remove(key(before.get("upc")));
+                            productsChanged.add(key(before.get("upc")));
+                        }
+                        if (after != null) {
+                            products.put(key(after.get("upc")), Product.of(after.get("upc"), after.get("brand"),
+                                after.get("name"), after.get("type"), Money.of(toDouble(after.get("price")))));
+                            productsChanged.add(key(after.get("upc")));
+                        }
+                        break;
+                    case "soldby":
+                        if (change.getKind() == RowChange.Kind.TRUNCATE) {
+                            stockByStore.clear();
+                            everything = true;
+                        }
+                        if (before != null && before.get("storeid") != null) {
+                            Map<String, Integer> stock = stockByStore.get(key(before.get("storeid")));
+                            if (stock != null)
+                                stock.remove(key(before.get("productid")));
+                            storesChanged.add(key(before.get("storeid")));
+                        }
+                        if (after != null && after.get("storeid") != null && after.get("productid") != null) {
+                            stockByStore.computeIfAbsent(key(after.get("storeid")), s -> new HashMap<>())
+                                .put(key(after.get("productid")), toInt(after.get("numberinstock")));
+                            storesChanged.add(key(after.get("storeid")));
+                        }
+                        break;
+                    case "store":
+                        if (change.getKind() == RowChange.Kind.TRUNCATE) {
+                            stores.clear();
+                            everything = true;
+                        }
+                        if (before != null) {
+                            stores.remove(key(before.get("id")));
+                            storesChanged.add(key(before.get("id")));
+                        }
+                        if (after != null) {
+                            stores.put(key(after.get("id")), new Store(after.get("id"), after.get("state"),
+                                after.get("address"), toInt(after.get("opentime")), toInt(after.get("closetime"))));
+                            storesChanged.add(key(after.get("id")));
+                        }
+                        break;
+                    case "customer":
+                        if (change.getKind() == RowChange.Kind.TRUNCATE)
+                            customers.clear();
+                        if (before != null)
+                            customers.remove(key(before.get("phonenumber")));
+                        if (after != null)
+                            customers.put(key(after.get("phonenumber")),
+                                new String[]{after.get("firstname"), after.get("lastname")});
+                        break;
+                    case "orders":
+                        if (change.getKind() == RowChange.Kind.TRUNCATE)
+                            orders.clear();
+                        if (before != null)
+                            orders.remove(key(before.get("ordernumber")));
+                        if (after != null)
+                            orders.put(key(after.get("ordernumber")), new OrderRow(key(after.get("customer")),
+                                key(after.get("product")), key(after.get("store")), toInt(after.get("numbersold"))));
+                        break;
+                    case "distributedby":
+                        // which catalogs carry a brand isn't worth working out for a change this rare
+                        if (change.getKind() == RowChange.Kind.TRUNCATE)
+                            vendorsByBrand.clear();
+                        if (before != null) {
+                            // a set, so a change replayed twice leaves what applying it once did
+                            Set<String> vendors = vendorsByBrand.get(before.get("brand"));
+                            if (vendors != null)
+                                vendors.remove(before.get("vendor"));
+                        }
+                        if (after != null)
+                            vendorsByBrand.computeIfAbsent(after.get("brand"), b -> new LinkedHashSet<>())
+                                .add(after.get("vendor"));
+                        everything = true;
+                        break;
+                    default:
+                        break;
+                }
+                changes.increment();
+            }
+            transactions.increment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (everything) {
+            StoreCatalog.dropAll();
+            return;
+        }
+        for (String store : storesChanged) {
+            StoreCatalog.drop(store);
+        }
+        for (String upc : productsChanged) {
+            StoreCatalog.dropSelling(upc);
+        }
+    }
+
+    private static String key(String value) {
+        return value == null ? null : value.trim();
+    }
+
+    private static int toInt(String value) {
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    private static double toDouble(String value) {
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+    private final class Subscriber implements ReplicationFeed.Subscriber {
+
+        @Override
+        public void load(Connection con) throws SQLException {
+            ReadModel.this.load(con);
+        }
+
+        @Override
+        public void apply(List<RowChange> transaction) {
+            ReadModel.this.apply(transaction);
+        }
+
+        @Override
+        public void caughtUp(long sentMillis) {
+            caughtUpTo = Math.max(caughtUpTo, sentMillis);
+        }
+
+        @Override
+        public void lost(SQLException e) {
+            loaded = false;
+        }
+    }
+}
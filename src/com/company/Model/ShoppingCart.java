@@ -9,14 +9,14 @@ import java.util.Set;
 
 public class ShoppingCart {
 
-    private final String TOTAL_QUERY = "SELECT price FROM Product WHERE name = ?";
-    private final String ORDER_NUMBERS = "SELECT orderNumber FROM orders";
-    private final String ADD_ORDER = "INSERT INTO orders VALUES (?, ?, ?, ?, ?)";
-    private final String GET_UPC_FROM_NAME = "SELECT upc FROM product WHERE name = ?";
-    private final String GET_CURR_STOCK = "SELECT soldBy.numberInStock " +
+    private static final String TOTAL_QUERY = "SELECT price FROM Product WHERE name = ?";
+    private static final String ORDER_NUMBERS = "SELECT orderNumber FROM orders";
+    private static final String ADD_ORDER = "INSERT INTO orders VALUES (?, ?, ?, ?, ?)";
+    private static final String GET_UPC_FROM_NAME = "SELECT upc FROM product WHERE name = ?";
+    private static final String GET_CURR_STOCK = "SELECT soldBy.numberInStock " +
             "FROM soldBy JOIN product ON product.upc = soldBy.productId " +
             "WHERE product.name = ? AND soldBy.storeId = ?";
-    private final String UPDATE_STOCK = "UPDATE soldBy SET numberInStock = (SELECT (numberInStock - ?) FROM soldBy " +
+    private static final String UPDATE_STOCK = "UPDATE soldBy SET numberInStock = (SELECT (numberInStock - ?) FROM soldBy " +
             "WHERE storeId = ? AND productId = ?) WHERE storeId = ? AND productId = ?";
 
 
@@ -71,20 +71,29 @@ public class ShoppingCart {
         currentItems.replace(item, newAmt);
     }
 
-    public double getTotal() {
+    /**
+     * @return the cart's total in cents
+     */
+    public long getTotal() {
         ResultSet rs = null;
         PreparedStatement stmt = null;
-        double total = 0;
+        long total = 0;
         Set<String> productSet = currentItems.keySet();
         String[] productNames = productSet.toArray(new String[productSet.size()]);
+        StoreCatalog catalog = store.catalog();
         try {
             for (int i = 0; i < productNames.length; i++) {
-                double currTotal = 0;
+                long currTotal = 0;
+                Product p = catalog != null ? catalog.byName(productNames[i]) : null;
+                if (p != null) {
+                    total = total + (p.getPriceCents() * currentItems.get(productNames[i]));
+                    continue;
+                }
                 stmt = con.prepareStatement(TOTAL_QUERY);
                 stmt.setString(1, productNames[i]);
                 rs = stmt.executeQuery();
                 rs.next();
-                currTotal = rs.getDouble(1);
+                currTotal = Money.read(rs, 1);
                 total = total + (currTotal * currentItems.get(productNames[i]));
             }
         } catch (SQLException e){
@@ -102,6 +111,7 @@ public class ShoppingCart {
         ResultSet rs;
         String ONString;
         int numInStock = 0;
+        StoreCatalog catalog = store.catalog();
         try{
             stmt = con.prepareStatement(ORDER_NUMBERS);
             rs = stmt.executeQuery();
@@ -119,11 +129,16 @@ public class ShoppingCart {
                 orderNumbers.add(ONString);
                 String currUPC;
 
-                stmt = con.prepareStatement(GET_UPC_FROM_NAME);
-                stmt.setString(1, productNames[i]);
-                rs = stmt.executeQuery();
-                rs.next();
-                currUPC = rs.getString(1);
+                Product p = catalog != null ? catalog.byName(productNames[i]) : null;
+                if (p != null) {
+                    currUPC = p.getUpc();
+                } else {
+                    stmt = con.prepareStatement(GET_UPC_FROM_NAME);
+                    stmt.setString(1, productNames[i]);
+                    rs = stmt.executeQuery();
+                    rs.next();
+                    currUPC = rs.getString(1);
+                }
 
                 stmt = con.prepareStatement(ADD_ORDER);
                 stmt.setString(1, customerPhone);
@@ -145,6 +160,9 @@ public class ShoppingCart {
             currentItems.clear();
         } catch (SQLException e){
             e.printStackTrace();
+        } finally {
+            // the stock changed
+            StoreCatalog.invalidate(store.getId());
         }
     }
 
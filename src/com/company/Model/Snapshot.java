@@ -0,0 +1,809 @@
+package com.company.Model;
+
+import com.company.Database.ConnectionFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * The stores, products, assortments and stock written to one binary file,
+ * which the CLI maps into memory at startup so store searches, price checks
+ * and store catalogs are answered before it has connected, or when it
+ * can't connect at all.
+ *
+ * The file is a header followed by sections of fixed-width records, so a
+ * record is found from its number alone: the stores sorted by id and the
+ * products sorted by upc, both found by binary search; each store's stock
+ * as a run of (product number, stock) records in name order; each store's
+ * vendors as a run of string references; and every distinct string once,
+ * length-prefixed UTF-8, in a heap at the end. Nothing is read until it is
+ * asked for. A file of another version isn't opened.
+ *
+ * The file also keeps an md5 of each store's stock and of each of 256
+ * buckets of products, as the database computes them. Refreshing asks for
+ * those digests and reads again only the stores and buckets whose digest
+ * changed (and the stores and vendors, which are few), then writes a new
+ * file over the old and maps it. Digests are always read before the rows,
+ * so a write in between makes the next refresh read the rows again rather
+ * than miss them.
+ *
+ * A snapshot only knows what it read, so once this process writes, or the
+ * change notifications report another one writing, reads go to the
+ * database until the snapshot is next refreshed.
+ */
+public final class Snapshot implements LocalReads {
+
+    public static final int VERSION = 1;
+    public static final String DEFAULT_FILE = "wegmans2.snapshot";
+
+    private static final String BUCKET = "get_byte(decode(md5(trim(upc)), 'hex'), 0)";
+    private static final String STORES_QUERY = "SELECT id, state, address, opentime, closetime FROM store";
+    private static final String PRODUCTS_QUERY = "SELECT upc, brand, name, type, price, " + BUCKET + " FROM product";
+    private static final String BUCKET_PRODUCTS_QUERY = PRODUCTS_QUERY + " WHERE " + BUCKET + " = ANY(?)";
+    private static final String STOCK_QUERY = "SELECT storeid, productid, numberinstock FROM soldby";
+    private static final String STORE_STOCK_QUERY = STOCK_QUERY + " WHERE storeid = ANY(?)";
+    private static final String VENDORS_QUERY = "SELECT brand, vendor FROM distributedby";
+    private static final String PRODUCT_DIGESTS = "SELECT " + BUCKET + ", md5(string_agg(concat_ws(':', trim(upc), " +
+        "brand, name, type, price), ',' ORDER BY upc)) FROM product GROUP BY 1";
+    private static final String STOCK_DIGESTS = "SELECT storeid, md5(string_agg(trim(productid) || ':' || " +
+        "numberinstock, ',' ORDER BY productid)) FROM soldby GROUP BY storeid";
+
+    private static final byte[] MAGIC = "WEG2SNAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUCKETS = 256;
+    private static final int DIGEST_BYTES = 16;
+    private static final int NO_STRING = -1;
+
+    // the header: magic, version, then the counts and where each section starts
+    private static final int HEADER_BYTES = 128;
+    private static final int H_VERSION = 8;
+    private static final int H_STORES = 12;
+    private static final int H_BUILT_AT = 16;
+    private static final int H_PRODUCTS = 24;
+    private static final int H_STOCK = 28;
+    private static final int H_VENDORS = 32;
+    private static final int H_STRING_BYTES = 36;
+    private static final int H_STORES_AT = 40;
+    private static final int H_PRODUCTS_AT = 48;
+    private static final int H_STOCK_AT = 56;
+    private static final int H_VENDORS_AT = 64;
+    private static final int H_DIGESTS_AT = 72;
+    private static final int H_STRINGS_AT = 80;
+
+    // a store: id, state and address strings, hours, its run of stock and of vendors, and its stock's digest
+    private static final int STORE_BYTES = 56;
+    private static final int S_ID = 0;
+    private static final int S_STATE = 4;
+    private static final int S_ADDRESS = 8;
+    private static final int S_OPEN = 12;
+    private static final int S_CLOSE = 16;
+    private static final int S_FIRST_STOCK = 20;
+    private static final int S_STOCK_COUNT = 24;
+    private static final int S_FIRST_VENDOR = 28;
+    private static final int S_VENDOR_COUNT = 32;
+    private static final int S_DIGEST = 40;
+
+    // a product: upc, brand, name and type strings, price in cents, and its digest bucket
+    private static final int PRODUCT_BYTES = 32;
+    private static final int P_UPC = 0;
+    private static final int P_BRAND = 4;
+    private static final int P_NAME = 8;
+    private static final int P_TYPE = 12;
+    private static final int P_CENTS = 16;
+    private static final int P_BUCKET = 24;
+
+    // a stock record: the product's number and how many are in stock
+    private static final int STOCK_BYTES = 8;
+    private static final int REF_BYTES = 4;
+
+    private static volatile Snapshot current;
+    private static volatile boolean outdated = false;
+    // counts the writes noted, so a refresh knows whether one happened while it ran
+    private static final AtomicLong WRITES = new AtomicLong();
+    private static volatile String lastRefresh = "not refreshed";
+
+    private final File file;
+    private final ByteBuffer map;
+    private final long builtAt;
+    private final int storeCount;
+    private final int productCount;
+    private final int stockCount;
+    private final int storesAt;
+    private final int productsAt;
+    private final int stockAt;
+    private final int vendorsAt;
+    private final int digestsAt;
+    private final int stringsAt;
+
+    private Snapshot(File file, ByteBuffer map) throws IOException {
+        this.file = file;
+        this.map = map;
+        byte[] magic = new byte[MAGIC.length];
+        if (map.capacity() >= HEADER_BYTES)
+            map.duplicate().get(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException(file + " is not a snapshot");
+        int version = map.getInt(H_VERSION);
+        if (version != VERSION)
+            throw new IOException(file + " is a version " + version + " snapshot, and this CLI reads version "
+                + VERSION + "; build it again with snapshot build");
+        builtAt = map.getLong(H_BUILT_AT);
+        storeCount = map.getInt(H_STORES);
+        productCount = map.getInt(H_PRODUCTS);
+        stockCount = map.getInt(H_STOCK);
+        storesAt = section(H_STORES_AT, (long) storeCount * STORE_BYTES);
+        productsAt = section(H_PRODUCTS_AT, (long) productCount * PRODUCT_BYTES);
+        stockAt = section(H_STOCK_AT, (long) stockCount * STOCK_BYTES);
+        vendorsAt = section(H_VENDORS_AT, (long) map.getInt(H_VENDORS) * REF_BYTES);
+        digestsAt = section(H_DIGESTS_AT, (long) BUCKETS * DIGEST_BYTES);
+        stringsAt = section(H_STRINGS_AT, map.getInt(H_STRING_BYTES));
+    }
+
+    /**
+     * @return where a section starts, once it is known to lie inside the file
+     */
+    private int section(int header, long length) throws IOException {
+        long at = map.getLong(header);
+        if (at < HEADER_BYTES || length < 0 || at + length > map.capacity())
+            throw new IOException(file + " is cut short or damaged");
+        return (int) at;
+    }
+
+    private static Snapshot map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large to map");
+            // the mapping outlives the channel
+            return new Snapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Maps a snapshot file, to answer reads from until something is written
+     */
+    public static void open(File file) throws IOException {
+        current = map(file);
+        outdated = false;
+    }
+
+    public static boolean isOpen() {
+        return current != null;
+    }
+
+    /**
+     * @return the open snapshot if reads on con may be answered from it, otherwise null
+     */
+    static Snapshot serving(Connection con) {
+        Snapshot snapshot = current;
+        if (snapshot == null || outdated || (con != null && StoreCatalog.inTransaction(con)))
+            return null;
+        return snapshot;
+    }
+
+    /**
+     * Notes that the database changed since the snapshot was read, so reads
+     * go there until the snapshot is refreshed
+     */
+    static void outdated() {
+        WRITES.incrementAndGet();
+        if (current != null)
+            outdated = true;
+    }
+
+    /**
+     * @return a line on the open snapshot, or null if none is open
+     */
+    public static String summary() {
+        Snapshot snapshot = current;
+        if (snapshot == null)
+            return null;
+        return String.format("Snapshot: %s, %s, %s", snapshot, outdated ? "outdated, reads go to the database"
+            : "serving", lastRefresh);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s read %tF %<tT, %d stores, %d products, %d stock rows", file, builtAt,
+            storeCount, productCount, stockCount);
+    }
+
+    /**
+     * Reads the stores, products, stock and vendors and writes them to a
+     * snapshot file, which replaces the open snapshot if it is the same file
+     * @return the snapshot written
+     */
+    public static Snapshot build(Connection con, File file) throws SQLException, IOException {
+        long writes = WRITES.get();
+        Rows rows = new Rows(System.currentTimeMillis());
+        rows.productDigests.putAll(productDigests(con));
+        rows.stockDigests.putAll(stockDigests(con));
+        readStores(con, rows);
+        try (PreparedStatement stmt = con.prepareStatement(PRODUCTS_QUERY)) {
+            readProducts(stmt, rows);
+        }
+        try (PreparedStatement stmt = con.prepareStatement(STOCK_QUERY)) {
+            readStock(stmt, rows);
+        }
+        readVendors(con, rows);
+        rows.write(file);
+        Snapshot built = map(file);
+        Snapshot open = current;
+        if (open != null && open.file.getCanonicalFile().equals(file.getCanonicalFile()))
+            install(built, writes);
+        return built;
+    }
+
+    /**
+     * Brings the open snapshot up to date, reading again only what changed,
+     * and writes it back to its file
+     */
+    public static void refresh(Connection con) throws SQLException, IOException {
+        Snapshot old = current;
+        if (old == null)
+            return;
+        long writes = WRITES.get();
+        Rows rows = new Rows(System.currentTimeMillis());
+        rows.productDigests.putAll(productDigests(con));
+        rows.stockDigests.putAll(stockDigests(con));
+
+        BitSet changed = new BitSet(BUCKETS);
+        List<Integer> changedBuckets = new ArrayList<>();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (!Arrays.equals(old.productDigest(bucket), rows.productDigest(bucket))) {
+                changed.set(bucket);
+                changedBuckets.add(bucket);
+            }
+        }
+        for (int i = 0; i < old.productCount; i++) {
+            if (!changed.get(old.map.getInt(old.product(i) + P_BUCKET)))
+                rows.products.put(old.string(old.product(i) + P_UPC), old.productRow(i));
+        }
+        if (!changedBuckets.isEmpty()) {
+            try (PreparedStatement stmt = con.prepareStatement(BUCKET_PRODUCTS_QUERY)) {
+                stmt.setArray(1, con.createArrayOf("int4", changedBuckets.toArray()));
+                readProducts(stmt, rows);
+            }
+        }
+
+        readStores(con, rows);
+        List<String> changedStores = new ArrayList<>();
+        for (StoreRow store : rows.stores.values()) {
+            int at = old.find(store.id);
+            if (Arrays.equals(at < 0 ? null : old.storeDigest(at), rows.stockDigest(store.id))) {
+                if (at >= 0)
+                    old.copyStock(at, store);
+            } else {
+                changedStores.add(store.id);
+            }
+        }
+        if (!changedStores.isEmpty()) {
+            try (PreparedStatement stmt = con.prepareStatement(STORE_STOCK_QUERY)) {
+                stmt.setArray(1, con.createArrayOf("varchar", changedStores.toArray()));
+                readStock(stmt, rows);
+            }
+        }
+        readVendors(con, rows);
+
+        rows.write(old.file);
+        install(map(old.file), writes);
+        lastRefresh = String.format("refreshed %tT, %d of %d product buckets and %d of %d stores read again",
+            System.currentTimeMillis(), changedBuckets.size(), BUCKETS, changedStores.size(), rows.stores.size());
+    }
+
+    /**
+     * Refreshes the open snapshot on a connection of its own, in the background
+     */
+    public static void refreshInBackground(ConnectionFactory connections) {
+        if (current == null)
+            return;
+        Thread thread = new Thread(() -> {
+            try (Connection con = connections.connect()) {
+                refresh(con);
+            } catch (SQLException | IOException e) {
+                lastRefresh = "refresh failed (" + e.getMessage() + ")";
+            }
+        }, "snapshot-refresh");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Answers reads from a new snapshot, from now on, and catalogs built
+     * from the old one are dropped. It is only current if nothing was
+     * written since it started being read.
+     */
+    private static void install(Snapshot snapshot, long writesBefore) {
+        current = snapshot;
+        if (WRITES.get() == writesBefore)
+            outdated = false;
+        StoreCatalog.dropAll();
+    }
+
+    //
+    // Reads
+    //
+
+    @Override
+    public Store store(String id) {
+        int at = find(id.trim());
+        return at < 0 ? null : storeAt(at);
+    }
+
+    @Override
+    public List<Store> storesInState(String state) {
+        return findStores(at -> state.equals(string(store(at) + S_STATE)));
+    }
+
+    @Override
+    public List<Store> storesOpen(int start, int end) {
+        return findStores(at -> map.getInt(store(at) + S_OPEN) >= start && map.getInt(store(at) + S_CLOSE) <= end);
+    }
+
+    @Override
+    public List<Store> storesSelling(String productName) {
+        byte[] name = productName.getBytes(StandardCharsets.UTF_8);
+        BitSet named = new BitSet(productCount);
+        for (int i = 0; i < productCount; i++) {
+            if (stringEquals(map.getInt(product(i) + P_NAME), name))
+                named.set(i);
+        }
+        return findStores(at -> {
+            int first = map.getInt(store(at) + S_FIRST_STOCK);
+            int count = map.getInt(store(at) + S_STOCK_COUNT);
+            for (int i = first; i < first + count; i++) {
+                if (named.get(map.getInt(stockAt + i * STOCK_BYTES)))
+                    return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public Product product(String upc) {
+        String key = upc.trim();
+        int low = 0;
+        int high = productCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = string(product(mid) + P_UPC).compareTo(key);
+            if (cmp == 0)
+                return productAt(mid);
+            if (cmp < 0)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return null;
+    }
+
+    /**
+     * @return a store's catalog, or null if the store isn't in the snapshot
+     */
+    @Override
+    public StoreCatalog catalog(String storeId) {
+        int at = find(storeId.trim());
+        if (at < 0)
+            return null;
+        int record = store(at);
+        StoreCatalog catalog = new StoreCatalog(storeId);
+        int first = map.getInt(record + S_FIRST_STOCK);
+        int count = map.getInt(record + S_STOCK_COUNT);
+        for (int i = first; i < first + count; i++) {
+            int stock = stockAt + i * STOCK_BYTES;
+            catalog.add(productAt(map.getInt(stock)), map.getInt(stock + 4));
+        }
+        List<String> vendors = new ArrayList<>();
+        first = map.getInt(record + S_FIRST_VENDOR);
+        count = map.getInt(record + S_VENDOR_COUNT);
+        for (int i = first; i < first + count; i++) {
+            vendors.add(string(vendorsAt + i * REF_BYTES));
+        }
+        catalog.finish(vendors);
+        return catalog;
+    }
+
+    private List<Store> findStores(Predicate<Integer> filter) {
+        List<Store> found = new ArrayList<>();
+        for (int at = 0; at < storeCount; at++) {
+            if (filter.test(at))
+                found.add(storeAt(at));
+        }
+        return found;
+    }
+
+    /**
+     * @return the number of the store with that (trimmed) id, or -1
+     */
+    private int find(String id) {
+        int low = 0;
+        int high = storeCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = string(store(mid) + S_ID).compareTo(id);
+            if (cmp == 0)
+                return mid;
+            if (cmp < 0)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return -1;
+    }
+
+    private int store(int at) {
+        return storesAt + at * STORE_BYTES;
+    }
+
+    private int product(int at) {
+        return productsAt + at * PRODUCT_BYTES;
+    }
+
+    private Store storeAt(int at) {
+        int record = store(at);
+        return new Store(string(record + S_ID), string(record + S_STATE), string(record + S_ADDRESS),
+            map.getInt(record + S_OPEN), map.getInt(record + S_CLOSE));
+    }
+
+    private Product productAt(int at) {
+        int record = product(at);
+        return Product.of(string(record + P_UPC), string(record + P_BRAND), string(record + P_NAME),
+            string(record + P_TYPE), map.getLong(record + P_CENTS));
+    }
+
+    private ProductRow productRow(int at) {
+        int record = product(at);
+        return new ProductRow(string(record + P_UPC), string(record + P_BRAND), string(record + P_NAME),
+            string(record + P_TYPE), map.getLong(record + P_CENTS), map.getInt(record + P_BUCKET));
+    }
+
+    private void copyStock(int at, StoreRow into) {
+        int first = map.getInt(store(at) + S_FIRST_STOCK);
+        int count = map.getInt(store(at) + S_STOCK_COUNT);
+        for (int i = first; i < first + count; i++) {
+            int stock = stockAt + i * STOCK_BYTES;
+            into.stock.put(string(product(map.getInt(stock)) + P_UPC), map.getInt(stock + 4));
+        }
+    }
+
+    private byte[] storeDigest(int at) {
+        return digest(store(at) + S_DIGEST);
+    }
+
+    private byte[] productDigest(int bucket) {
+        return digest(digestsAt + bucket * DIGEST_BYTES);
+    }
+
+    private byte[] digest(int at) {
+        byte[] digest = new byte[DIGEST_BYTES];
+        ByteBuffer view = map.duplicate();
+        view.position(at);
+        view.get(digest);
+        return digest;
+    }
+
+    /**
+     * @param ref where the string's reference is, in a record
+     */
+    private String string(int ref) {
+        int offset = map.getInt(ref);
+        if (offset == NO_STRING)
+            return null;
+        byte[] bytes = new byte[map.getShort(stringsAt + offset) & 0xFFFF];
+        ByteBuffer view = map.duplicate();
+        view.position(stringsAt + offset + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(int offset, byte[] value) {
+        if (offset == NO_STRING || (map.getShort(stringsAt + offset) & 0xFFFF) != value.length)
+            return false;
+        for (int i = 0; i < value.length; i++) {
+            if (map.get(stringsAt + offset + 2 + i) != value[i])
+                return false;
+        }
+        return true;
+    }
+
+    //
+    // Reading the database and writing the file
+    //
+
+    private static final class StoreRow {
+        final String id;
+        final String state;
+        final String address;
+        final int openTime;
+        final int closeTime;
+        final Map<String, Integer> stock = new HashMap<>();
+
+        StoreRow(String id, String state, String address, int openTime, int closeTime) {
+            this.id = id;
+            this.state = state;
+            this.address = address;
+            this.openTime = openTime;
+            this.closeTime = closeTime;
+        }
+    }
+
+    private static final class ProductRow {
+        final String upc;
+        final String brand;
+        final String name;
+        final String type;
+        final long cents;
+        final int bucket;
+
+        ProductRow(String upc, String brand, String name, String type, long cents, int bucket) {
+            this.upc = upc;
+            this.brand = brand;
+            this.name = name;
+            this.type = type;
+            this.cents = cents;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Everything a snapshot file holds, keyed by the trimmed keys
+     */
+    private static final class Rows {
+        final long readAt;
+        final Map<String, StoreRow> stores = new HashMap<>();
+        final Map<String, ProductRow> products = new HashMap<>();
+        final Map<String, TreeSet<String>> vendorsByBrand = new HashMap<>();
+        final Map<Integer, byte[]> productDigests = new HashMap<>();
+        final Map<String, byte[]> stockDigests = new HashMap<>();
+
+        Rows(long readAt) {
+            this.readAt = readAt;
+        }
+
+        // no rows at all is all zeros, on both sides
+        byte[] productDigest(int bucket) {
+            return productDigests.getOrDefault(bucket, new byte[DIGEST_BYTES]);
+        }
+
+        byte[] stockDigest(String storeId) {
+            return stockDigests.getOrDefault(storeId, new byte[DIGEST_BYTES]);
+        }
+
+        /**
+         * Writes the rows beside the file, then moves them over it, so a
+         * reader never maps half a file
+         */
+        void write(File file) throws IOException {
+            List<ProductRow> products = new ArrayList<>(this.products.values());
+            products.sort(Comparator.comparing((ProductRow p) -> p.upc));
+            Map<String, Integer> numbers = new HashMap<>();
+            for (int i = 0; i < products.size(); i++) {
+                numbers.put(products.get(i).upc, i);
+            }
+            List<StoreRow> stores = new ArrayList<>(this.stores.values());
+            stores.sort(Comparator.comparing((StoreRow s) -> s.id));
+
+            Strings strings = new Strings();
+            ByteArrayOutputStream storeBytes = new ByteArrayOutputStream();
+            ByteBuffer stock = ByteBuffer.allocate(totalStock(stores, numbers) * STOCK_BYTES);
+            List<Integer> vendorRefs = new ArrayList<>();
+            ByteBuffer store = ByteBuffer.allocate(STORE_BYTES);
+            for (StoreRow row : stores) {
+                List<Integer> sold = new ArrayList<>();
+                Set<String> brands = new HashSet<>();
+                for (String upc : row.stock.keySet()) {
+                    Integer number = numbers.get(upc);
+                    if (number != null) {
+                        sold.add(number);
+                        brands.add(products.get(number).brand);
+                    }
+                }
+                sold.sort(Comparator.comparing((Integer i) -> products.get(i).name,
+                    Comparator.nullsFirst(Comparator.naturalOrder())).thenComparingInt(i -> i));
+                TreeSet<String> vendors = new TreeSet<>();
+                for (String brand : brands) {
+                    vendors.addAll(vendorsByBrand.getOrDefault(brand, new TreeSet<>()));
+                }
+                store.clear();
+                store.putInt(S_ID, strings.ref(row.id));
+                store.putInt(S_STATE, strings.ref(row.state));
+                store.putInt(S_ADDRESS, strings.ref(row.address));
+                store.putInt(S_OPEN, row.openTime);
+                store.putInt(S_CLOSE, row.closeTime);
+                store.putInt(S_FIRST_STOCK, stock.position() / STOCK_BYTES);
+                store.putInt(S_STOCK_COUNT, sold.size());
+                store.putInt(S_FIRST_VENDOR, vendorRefs.size());
+                store.putInt(S_VENDOR_COUNT, vendors.size());
+                store.position(S_DIGEST);
+                store.put(stockDigest(row.id));
+                storeBytes.write(store.array(), 0, STORE_BYTES);
+                for (int number : sold) {
+                    stock.putInt(number).putInt(row.stock.get(products.get(number).upc));
+                }
+                for (String vendor : vendors) {
+                    vendorRefs.add(strings.ref(vendor));
+                }
+            }
+            ByteBuffer product = ByteBuffer.allocate(products.size() * PRODUCT_BYTES);
+            for (ProductRow row : products) {
+                product.putInt(strings.ref(row.upc)).putInt(strings.ref(row.brand)).putInt(strings.ref(row.name))
+                    .putInt(strings.ref(row.type)).putLong(row.cents).putInt(row.bucket).putInt(0);
+            }
+            ByteBuffer digests = ByteBuffer.allocate(BUCKETS * DIGEST_BYTES);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                digests.put(productDigest(bucket));
+            }
+            ByteBuffer vendors = ByteBuffer.allocate(vendorRefs.size() * REF_BYTES);
+            for (int ref : vendorRefs) {
+                vendors.putInt(ref);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC);
+            header.putInt(H_VERSION, VERSION);
+            header.putInt(H_STORES, stores.size());
+            header.putLong(H_BUILT_AT, readAt);
+            header.putInt(H_PRODUCTS, products.size());
+            header.putInt(H_STOCK, stock.capacity() / STOCK_BYTES);
+            header.putInt(H_VENDORS, vendorRefs.size());
+            header.putInt(H_STRING_BYTES, strings.heap.size());
+            long at = HEADER_BYTES;
+            header.putLong(H_STORES_AT, at);
+            at += storeBytes.size();
+            header.putLong(H_PRODUCTS_AT, at);
+            at += product.capacity();
+            header.putLong(H_STOCK_AT, at);
+            at += stock.capacity();
+            header.putLong(H_VENDORS_AT, at);
+            at += vendors.capacity();
+            header.putLong(H_DIGESTS_AT, at);
+            at += digests.capacity();
+            header.putLong(H_STRINGS_AT, at);
+
+            File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (ByteBuffer section : new ByteBuffer[]{header, ByteBuffer.wrap(storeBytes.toByteArray()), product,
+                    stock, vendors, digests, ByteBuffer.wrap(strings.heap.toByteArray())}) {
+                    section.rewind();
+                    while (section.hasRemaining()) {
+                        channel.write(section);
+                    }
+                }
+                channel.force(true);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp.toPath());
+                throw e;
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static int totalStock(List<StoreRow> stores, Map<String, Integer> numbers) {
+            int total = 0;
+            for (StoreRow row : stores) {
+                for (String upc : row.stock.keySet()) {
+                    if (numbers.containsKey(upc))
+                        total++;
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The string heap, each distinct string once
+     */
+    private static final class Strings {
+        final ByteArrayOutputStream heap = new ByteArrayOutputStream();
+        final Map<String, Integer> refs = new HashMap<>();
+
+        int ref(String value) {
+            if (value == null)
+                return NO_STRING;
+            Integer ref = refs.get(value);
+            if (ref != null)
+                return ref;
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF)
+                throw new IllegalArgumentException("A value too long for a snapshot: " + value.substring(0, 40));
+            ref = heap.size();
+            heap.write(bytes.length >>> 8);
+            heap.write(bytes.length);
+            heap.write(bytes, 0, bytes.length);
+            refs.put(value, ref);
+            return ref;
+        }
+    }
+
+    private static Map<Integer, byte[]> productDigests(Connection con) throws SQLException {
+        Map<Integer, byte[]> digests = new HashMap<>();
+        try (PreparedStatement stmt = con.prepareStatement(PRODUCT_DIGESTS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                digests.put(rs.getInt(1), hex(rs.getString(2)));
+            }
+        }
+        return digests;
+    }
+
+    private static Map<String, byte[]> stockDigests(Connection con) throws SQLException {
+        Map<String, byte[]> digests = new HashMap<>();
+        try (PreparedStatement stmt = con.prepareStatement(STOCK_DIGESTS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (rs.getString(1) != null)
+                    digests.put(rs.getString(1).trim(), hex(rs.getString(2)));
+            }
+        }
+        return digests;
+    }
+
+    private static byte[] hex(String md5) {
+        byte[] digest = new byte[DIGEST_BYTES];
+        for (int i = 0; md5 != null && i < DIGEST_BYTES; i++) {
+            digest[i] = (byte) Integer.parseInt(md5.substring(2 * i, 2 * i + 2), 16);
+        }
+        return digest;
+    }
+
+    private static void readStores(Connection con, Rows rows) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(STORES_QUERY);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String id = rs.getString(1).trim();
+                rows.stores.put(id, new StoreRow(id, rs.getString(2), rs.getString(3), rs.getInt(4), rs.getInt(5)));
+            }
+        }
+    }
+
+    private static void readProducts(PreparedStatement stmt, Rows rows) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String upc = rs.getString(1).trim();
+                rows.products.put(upc, new ProductRow(upc, rs.getString(2), rs.getString(3), rs.getString(4),
+                    Money.read(rs, 5), rs.getInt(6)));
+            }
+        }
+    }
+
+    private static void readStock(PreparedStatement stmt, Rows rows) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                StoreRow store = rs.getString(1) == null ? null : rows.stores.get(rs.getString(1).trim());
+                if (store != null && rs.getString(2) != null)
+                    store.stock.put(rs.getString(2).trim(), rs.getInt(3));
+            }
+        }
+    }
+
+    private static void readVendors(Connection con, Rows rows) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(VENDORS_QUERY);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (rs.getString(2) != null)
+                    rows.vendorsByBrand.computeIfAbsent(rs.getString(1), b -> new TreeSet<>()).add(rs.getString(2));
+            }
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.company.Model;
 
+import com.company.Metrics.MaterializationEvent;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
 public class Store {
 
@@ -13,8 +15,9 @@ public class Store {
     private static final int STATE = 3;
     private static final int OPEN_TIME = 4;
     private static final int CLOSE_TIME = 5;
-    private final String SELECT_INVENTORY = "SELECT productId FROM soldBy WHERE storeid = ?";
-    private final String GET_STOCK = "SELECT numberInStock FROM soldBy where storeid = ? AND productid = ?";
+    private static final String SELECT_INVENTORY = "SELECT product.* FROM Product JOIN soldBy ON " +
+            "soldBy.productId = product.upc WHERE soldBy.storeId = ? ORDER BY product.name ASC";
+    private static final String GET_STOCK = "SELECT numberInStock FROM soldBy where storeid = ? AND productid = ?";
 
 
     private String id;
@@ -52,7 +55,7 @@ public class Store {
         return closeTime;
     }
     public ArrayList<Product> getInventory() {
-        // select from store join soldby where store.id = this.id
+        setInventory();
         return inventory;
     }
 
@@ -60,16 +63,41 @@ public class Store {
         this.con = con;
     }
 
+    /**
+     * Starts loading this store's catalog in the background
+     */
+    public void warmUp() {
+        StoreCatalog.prefetch(id);
+    }
+
+    /**
+     * @return this store's catalog, waiting for it if it is still loading,
+     * or null when the database has to be asked instead: while a
+     * transaction is open (the catalog can't see its writes) or if the
+     * catalog couldn't be loaded
+     */
+    public StoreCatalog catalog() {
+        if (con == null || StoreCatalog.inTransaction(con))
+            return null;
+        return StoreCatalog.get(id, con);
+    }
+
 
     //SQL queries
     public void setInventory(){
+        StoreCatalog catalog = catalog();
+        if (catalog != null) {
+            inventory = new ArrayList<>(catalog.getProducts());
+            return;
+        }
         ResultSet rs = null;
         PreparedStatement stmt = null;
         try {
             stmt = con.prepareStatement(SELECT_INVENTORY);
             stmt.setString(1, this.id);
             rs = stmt.executeQuery();
-            inventory = Product.returnDatabaseResults(rs);
+            ArrayList<Product> products = Product.returnDatabaseResults(rs);
+            inventory = products != null ? products : new ArrayList<>();
         } catch (SQLException e){
             System.out.println("SQL Error in Store.setInventory()");
             e.printStackTrace();
@@ -78,6 +106,14 @@ public class Store {
 
 
     public int getStock(Product item) {
+        StoreCatalog catalog = item != null ? catalog() : null;
+        if (catalog != null) {
+            Integer stock = catalog.stockOf(item.getUpc());
+            if (stock != null)
+                return stock;
+            System.out.println("Item not in stock.");
+            return -1;
+        }
         if(isInStock(item)) {
             ResultSet rs = null;
             PreparedStatement stmt = null;
@@ -101,8 +137,8 @@ public class Store {
     }
 
 
-    public double priceOf(Product item) {
-        return item.getPrice();
+    public long priceOf(Product item) {
+        return item.getPriceCents();
     }
 
     public boolean isInStock(Product item) {
@@ -112,6 +148,9 @@ public class Store {
         if(item == null){
             return inStock;
         }
+        StoreCatalog catalog = catalog();
+        if (catalog != null)
+            return catalog.stockOf(item.getUpc()) != null;
         try {
             stmt = con.prepareStatement(GET_STOCK);
             stmt.setString(1, this.id);
@@ -132,6 +171,8 @@ public class Store {
      */
     public static ArrayList<Store> returnListOfStores(ResultSet rs){
         ArrayList<Store> stores = new ArrayList<>();
+        MaterializationEvent event = new MaterializationEvent();
+        event.begin();
         try {
             while (rs.next()){
                 stores.add(new Store(rs.getString(ID), rs.getString(STATE),
@@ -141,12 +182,21 @@ public class Store {
         } catch (SQLException e){
             System.out.println("Error in store translation.");
             e.printStackTrace();
+        } finally {
+            if (event.shouldCommit()) {
+                event.type = "Store";
+                event.rows = stores.size();
+                event.commit();
+            }
         }
         return stores;
     }
 
     public static void printDatabaseResults(ResultSet rs) {
-        ArrayList<Store> stores = returnListOfStores(rs);
+        printStores(returnListOfStores(rs));
+    }
+
+    public static void printStores(List<Store> stores) {
         System.out.println("+------------------------------------------------------------------------+");
         System.out.println(String.format("| %-7s | %-12s | %-25s | %-7s | %-7s |", "ID", "State", "Address", "Opening", "Closing"));
         for (Store s: stores) {
@@ -0,0 +1,497 @@
+package com.company.Model;
+
+import com.company.Database.ChangeListener;
+import com.company.Database.ConnectionFactory;
+import com.company.Metrics.CacheEvent;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Everything a store sells, with prices and stock, and the brands and
+ * vendors behind it, read in two queries and kept in memory so browsing,
+ * carts and the inventory views don't go back to the database.
+ *
+ * Selecting a store starts loading its catalog in the background, on a
+ * connection of its own, so it is usually ready by the time the first
+ * command needs it; commands only wait for it when they use it. A few
+ * catalogs load at once, each loader thread having its own connection, so
+ * a browse across many stores fetches them concurrently. Catalogs are
+ * shared by every user of the process and dropped whenever this process
+ * writes to the products, assortment or stock they hold. Writes made by
+ * other processes aren't seen until then, unless the database's change
+ * notifications are listened to, which drop just the catalogs a change
+ * touches. The products are the shared views of ProductCatalog, so one
+ * sold by many stores is held once, and each store adds only its stock and
+ * two lookup indexes. A fresh read model, or else an open snapshot file,
+ * builds catalogs without a query at all.
+ */
+public class StoreCatalog {
+
+    private static final String CACHE = "store-catalog";
+    private static final String CATALOG_QUERY = "SELECT product.*, soldBy.numberInStock FROM Product JOIN soldBy ON " +
+        "soldBy.productId = product.upc WHERE soldBy.storeId = ? ORDER BY product.name ASC";
+    private static final String VENDOR_QUERY = "SELECT DISTINCT distributedBy.vendor FROM product JOIN soldBy " +
+        "ON soldBy.productId = product.upc JOIN distributedBy ON product.brand = distributedBy.brand WHERE " +
+        "soldBy.storeId = ? ORDER BY distributedBy.vendor";
+    private static final int STOCK = 7;
+    private static final int LOADER_THREADS = 4;
+
+    private static final Map<String, Future<StoreCatalog>> CATALOGS = new ConcurrentHashMap<>();
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+        Thread thread = new Thread(r, "store-warmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile ConnectionFactory connections;
+    // catalogs of their own for the threads given one, and the threads they start
+    private static final InheritableThreadLocal<Scope> SCOPE = new InheritableThreadLocal<>();
+    // each loader thread's own connection, and the factory it came from
+    private static final ThreadLocal<Connection> LOADER_CONNECTION = new ThreadLocal<>();
+    private static final ThreadLocal<ConnectionFactory> LOADER_SOURCE = new ThreadLocal<>();
+
+    /**
+     * Catalogs loaded from a source other than the process's, such as
+     * loadgen's in-memory stand-in, kept apart from the shared ones
+     */
+    private static final class Scope {
+        final ConnectionFactory connections;
+        final Map<String, Future<StoreCatalog>> catalogs = new ConcurrentHashMap<>();
+
+        Scope(ConnectionFactory connections) {
+            this.connections = connections;
+        }
+    }
+
+    private final String storeId;
+    // the shared product views, in name order, and each one's stock
+    private Product[] products = new Product[64];
+    private int[] stock = new int[64];
+    private int size = 0;
+    // positions in upc key order and in name order, for the lookups
+    private long[] keys;
+    private int[] byKey;
+    private int[] byName;
+    private final List<String> brands = new ArrayList<>();
+    private final List<String> vendors = new ArrayList<>();
+
+    private StoreCatalog(String storeId, Connection con) throws SQLException {
+        this(storeId);
+        try (PreparedStatement stmt = con.prepareStatement(CATALOG_QUERY)) {
+            stmt.setString(1, storeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    add(Product.of(rs.getString(Product.UPC), rs.getString(Product.BRAND), rs.getString(Product.NAME),
+                        rs.getString(Product.TYPE), Money.read(rs, Product.PRICE)), rs.getInt(STOCK));
+                }
+            }
+        }
+        List<String> vendors = new ArrayList<>();
+        try (PreparedStatement stmt = con.prepareStatement(VENDOR_QUERY)) {
+            stmt.setString(1, storeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    vendors.add(rs.getString(1));
+                }
+            }
+        }
+        finish(vendors);
+    }
+
+    /**
+     * An empty catalog, for the read model to fill with add() and finish()
+     */
+    StoreCatalog(String storeId) {
+        this.storeId = key(storeId);
+    }
+
+    /**
+     * Adds a product, in name order
+     */
+    void add(Product product, int numberInStock) {
+        if (size == products.length) {
+            products = Arrays.copyOf(products, size * 2);
+            stock = Arrays.copyOf(stock, size * 2);
+        }
+        products[size] = product;
+        stock[size] = numberInStock;
+        size++;
+    }
+
+    /**
+     * Completes the catalog once every product is added
+     * @param vendors the store's vendors, in order
+     */
+    void finish(List<String> vendors) {
+        products = Arrays.copyOf(products, size);
+        stock = Arrays.copyOf(stock, size);
+        Integer[] positions = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, Comparator.comparingLong((Integer i) -> products[i].upcKey()));
+        keys = new long[size];
+        byKey = new int[size];
+        for (int i = 0; i < size; i++) {
+            byKey[i] = positions[i];
+            keys[i] = products[positions[i]].upcKey();
+        }
+        // ties stay in name order, so a lookup finds the first product of a name
+        Arrays.sort(positions, Comparator.comparing((Integer i) -> products[i].getName()).thenComparingInt(i -> i));
+        byName = new int[size];
+        for (int i = 0; i < size; i++) {
+            byName[i] = positions[i];
+        }
+        TreeSet<String> distinct = new TreeSet<>();
+        for (Product product : products) {
+            // product.brand may be null, and there is no brand to list for it
+            if (product.getBrand() != null)
+                distinct.add(product.getBrand());
+        }
+        brands.addAll(distinct);
+        this.vendors.addAll(vendors);
+    }
+
+    /**
+     * Has catalogs loaded on their own connection, in the background.
+     * Without it a catalog is loaded on the connection of the first user
+     * that needs it, while they wait.
+     */
+    public static void setConnections(ConnectionFactory factory) {
+        connections = factory;
+    }
+
+    public static ConnectionFactory getConnections() {
+        return connections;
+    }
+
+    /**
+     * Gives the calling thread, and the threads it starts, catalogs of their
+     * own loaded from factory. They aren't served by the read model or a
+     * snapshot, and writes that drop them don't fence the read model or
+     * outdate the snapshot, so a stand-in leaves the session's reads alone.
+     * @param factory where the catalogs are loaded from, or null to go back to the shared ones
+     */
+    public static void isolate(ConnectionFactory factory) {
+        if (factory == null)
+            SCOPE.remove();
+        else
+            SCOPE.set(new Scope(factory));
+    }
+
+    /**
+     * @return whether the calling thread has catalogs of its own, and so
+     * must not be served from the read model or a snapshot
+     */
+    static boolean isolated() {
+        return SCOPE.get() != null;
+    }
+
+    private static Map<String, Future<StoreCatalog>> catalogs() {
+        Scope scope = SCOPE.get();
+        return scope != null ? scope.catalogs : CATALOGS;
+    }
+
+    private static ConnectionFactory source() {
+        Scope scope = SCOPE.get();
+        return scope != null ? scope.connections : connections;
+    }
+
+    /**
+     * Starts loading a store's catalog, unless it is loaded or loading
+     */
+    public static void prefetch(String storeId) {
+        Map<String, Future<StoreCatalog>> catalogs = catalogs();
+        LocalReads local = LocalReads.serving(null);
+        StoreCatalog held = local != null ? local.catalog(storeId) : null;
+        if (held != null) {
+            catalogs.putIfAbsent(key(storeId), CompletableFuture.completedFuture(held));
+            return;
+        }
+        ConnectionFactory source = source();
+        if (source == null)
+            return;
+        catalogs.computeIfAbsent(key(storeId), id -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return new StoreCatalog(id, loaderConnection(source));
+            } catch (SQLException e) {
+                closeLoaderConnection();
+                throw new IllegalStateException(e);
+            }
+        }, LOADER));
+    }
+
+    /**
+     * @return a store's catalog, waiting for it if it is still loading, or
+     * null if it couldn't be loaded and the database should be asked instead
+     */
+    public static StoreCatalog get(String storeId, Connection con) {
+        storeId = key(storeId);
+        Map<String, Future<StoreCatalog>> catalogs = catalogs();
+        Future<StoreCatalog> future = catalogs.get(storeId);
+        CacheEvent.lookup(CACHE, storeId, future != null && future.isDone());
+        if (future == null) {
+            LocalReads local = LocalReads.serving(con);
+            StoreCatalog held = local != null ? local.catalog(storeId) : null;
+            if (held != null) {
+                catalogs.putIfAbsent(storeId, CompletableFuture.completedFuture(held));
+                return held;
+            }
+            if (source() != null) {
+                prefetch(storeId);
+                future = catalogs.get(storeId);
+            } else {
+                try {
+                    StoreCatalog catalog = new StoreCatalog(storeId, con);
+                    catalogs.putIfAbsent(storeId, CompletableFuture.completedFuture(catalog));
+                    return catalog;
+                } catch (SQLException e) {
+                    return null;
+                }
+            }
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            catalogs.remove(storeId, future);
+            return null;
+        }
+    }
+
+    /**
+     * Catalogs for several stores, loaded concurrently. Inside a transaction
+     * they are read on con instead, one store after the other, and not kept.
+     * @return the catalogs in the order of the ids, null for any that couldn't be read
+     */
+    public static List<StoreCatalog> getAll(List<String> storeIds, Connection con) {
+        List<StoreCatalog> catalogs = new ArrayList<>(storeIds.size());
+        if (inTransaction(con)) {
+            for (String id : storeIds) {
+                try {
+                    catalogs.add(new StoreCatalog(id, con));
+                } catch (SQLException e) {
+                    catalogs.add(null);
+                }
+            }
+            return catalogs;
+        }
+        for (String id : storeIds) {
+            prefetch(id);
+        }
+        for (String id : storeIds) {
+            catalogs.add(get(id, con));
+        }
+        return catalogs;
+    }
+
+    /**
+     * Drops a store's catalog after its assortment or stock changed
+     */
+    public static void invalidate(String storeId) {
+        Scope scope = SCOPE.get();
+        if (scope != null) {
+            scope.catalogs.remove(key(storeId));
+            return;
+        }
+        ReadModel.wrote();
+        Snapshot.outdated();
+        drop(storeId);
+    }
+
+    /**
+     * Drops every catalog, after a price change or a change to many stores
+     */
+    public static void invalidateAll() {
+        Scope scope = SCOPE.get();
+        if (scope != null) {
+            scope.catalogs.clear();
+            return;
+        }
+        ReadModel.wrote();
+        Snapshot.outdated();
+        dropAll();
+    }
+
+    /**
+     * Drops a store's catalog after a change this process didn't make
+     */
+    static void drop(String storeId) {
+        CATALOGS.remove(key(storeId));
+    }
+
+    static void dropAll() {
+        CATALOGS.clear();
+    }
+
+    /**
+     * Applies a change reported by the database: a change to a store or its
+     * stock drops that store's catalog, a product change drops the catalogs
+     * of the stores selling it, and orders don't touch catalogs at all
+     */
+    public static void changed(ChangeListener.Change change) {
+        String table = change.getTable();
+        if (!"orders".equals(table))
+            Snapshot.outdated();
+        if (table == null) {
+            dropAll();
+            return;
+        }
+        switch (table) {
+            case "soldby":
+            case "store":
+                if (change.isWholeTable())
+                    dropAll();
+                else
+                    drop(change.getKey().get(0));
+                break;
+            case "product":
+                if (change.isWholeTable())
+                    dropAll();
+                else
+                    dropSelling(change.getKey().get(0));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Drops the catalogs of the stores selling a product. One still loading
+     * may have read the product before the change, so it goes too.
+     */
+    static void dropSelling(String upc) {
+        for (Map.Entry<String, Future<StoreCatalog>> entry : CATALOGS.entrySet()) {
+            Future<StoreCatalog> future = entry.getValue();
+            if (!future.isDone()) {
+                CATALOGS.remove(entry.getKey(), future);
+                continue;
+            }
+            try {
+                if (future.get().stockOf(upc) != null)
+                    CATALOGS.remove(entry.getKey(), future);
+            } catch (InterruptedException | ExecutionException e) {
+                CATALOGS.remove(entry.getKey(), future);
+            }
+        }
+    }
+
+    /**
+     * @return whether con has a transaction open, whose writes a shared
+     * catalog can't see
+     */
+    static boolean inTransaction(Connection con) {
+        try {
+            return !con.getAutoCommit();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    // store ids are blank padded in the database, and typed without the padding
+    private static String key(String storeId) {
+        return storeId.trim();
+    }
+
+    private static Connection loaderConnection(ConnectionFactory source) throws SQLException {
+        if (LOADER_SOURCE.get() != source)
+            closeLoaderConnection();
+        Connection con = LOADER_CONNECTION.get();
+        if (con == null) {
+            con = source.connect();
+            LOADER_CONNECTION.set(con);
+            LOADER_SOURCE.set(source);
+        }
+        return con;
+    }
+
+    private static void closeLoaderConnection() {
+        try {
+            Connection con = LOADER_CONNECTION.get();
+            if (con != null)
+                con.close();
+        } catch (SQLException e) {
+            // it is being replaced anyway
+        }
+        LOADER_CONNECTION.remove();
+        LOADER_SOURCE.remove();
+    }
+
+    public String getStoreId() {
+        return storeId;
+    }
+
+    /**
+     * @return every product the store sells, by name
+     */
+    public List<Product> getProducts() {
+        return Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    /**
+     * @return the product of that name if the store sells it, otherwise null
+     */
+    public Product byName(String name) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (products[byName[mid]].getName().compareTo(name) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        if (low < size && products[byName[low]].getName().equals(name))
+            return products[byName[low]];
+        return null;
+    }
+
+    /**
+     * @return the number in stock, or null if the store doesn't sell the product
+     */
+    public Integer stockOf(String upc) {
+        int found = Arrays.binarySearch(keys, ProductCatalog.SHARED.keyOf(upc));
+        return found < 0 ? null : stock[byKey[found]];
+    }
+
+    public String typeOf(Product product) {
+        return product.getType();
+    }
+
+    public List<String> getBrands() {
+        return Collections.unmodifiableList(brands);
+    }
+
+    public List<String> getVendors() {
+        return Collections.unmodifiableList(vendors);
+    }
+
+    /**
+     * @return the store's products that match, in name order
+     */
+    public List<Product> find(Predicate<Product> filter) {
+        List<Product> found = new ArrayList<>();
+        for (Product product : products) {
+            if (filter.test(product))
+                found.add(product);
+        }
+        return found;
+    }
+}
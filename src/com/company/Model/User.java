@@ -6,32 +6,35 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiPredicate;
 
 public abstract class User {
 
     public enum UserType {
         admin, customer
     }
-    private final String STORE_BY_ID_QUERY = "SELECT * FROM Store WHERE id = ?";
-    private final String STORE_BY_TIME_QUERY = "SELECT * FROM Store WHERE openTime >= ? AND closeTime <= ?";
-    private final String STORE_BY_STATE_QUERY = "SELECT * FROM Store WHERE state = ?";
-    private final String GET_PRODUCT_FROM_NAME = "SELECT * FROM Product WHERE name = ?";
-    private final String GET_PRODUCT_FROM_UPC= "SELECT * FROM Product WHERE upc = ?";
-    private final String STORE_BY_PRODUCT_QUERY = "SELECT * FROM Store WHERE id IN (SELECT storeID FROM " +
+    private static final String STORE_BY_ID_QUERY = "SELECT * FROM Store WHERE id = ?";
+    private static final String STORE_BY_TIME_QUERY = "SELECT * FROM Store WHERE openTime >= ? AND closeTime <= ?";
+    private static final String STORE_BY_STATE_QUERY = "SELECT * FROM Store WHERE state = ?";
+    private static final String GET_PRODUCT_FROM_NAME = "SELECT * FROM Product WHERE name = ?";
+    private static final String GET_PRODUCT_FROM_UPC= "SELECT * FROM Product WHERE upc = ?";
+    private static final String STORE_BY_PRODUCT_QUERY = "SELECT * FROM Store WHERE id IN (SELECT storeID FROM " +
             "soldBy WHERE productid IN (SELECT upc FROM Product WHERE name = ?))";
-    private final String PRODUCT_BY_NAME_QUERY = "SELECT product.* FROM Product JOIN soldBy ON " +
+    private static final String PRODUCT_BY_NAME_QUERY = "SELECT product.* FROM Product JOIN soldBy ON " +
             "soldBy.productId = product.upc WHERE soldBy.storeId = ? AND product.name = ? ORDER BY product.name ASC";
-    private final String PRODUCT_BY_PRICE_RANGE = "SELECT product.* FROM Product JOIN soldBy ON " +
+    private static final String PRODUCT_BY_PRICE_RANGE = "SELECT product.* FROM Product JOIN soldBy ON " +
             "soldBy.productId = product.upc WHERE soldBy.storeId = ? AND product.price > ? AND price < ? ORDER BY " +
             "product.name ASC";
-    private final String PRODUCT_BY_PRICE_AND_TYPE = "SELECT product.* FROM Product JOIN soldBy ON" +
+    private static final String PRODUCT_BY_PRICE_AND_TYPE = "SELECT product.* FROM Product JOIN soldBy ON" +
             " soldBy.productId = product.upc WHERE soldBy.storeId = ? AND product.price > ? AND price < ? AND " +
             "type = ? ORDER BY product.name ASC";
-    private final String PRODUCT_BY_BRAND_QUERY = "SELECT product.* FROM Product JOIN soldBy ON " +
+    private static final String PRODUCT_BY_BRAND_QUERY = "SELECT product.* FROM Product JOIN soldBy ON " +
             "soldBy.productId = product.upc WHERE soldBy.storeId = ? AND brand = ?";
-    private final String PRODUCT_BY_TYPE = "SELECT product.* FROM Product JOIN soldBy ON" +
+    private static final String PRODUCT_BY_TYPE = "SELECT product.* FROM Product JOIN soldBy ON" +
             " soldBy.productId = product.upc WHERE soldBy.storeId = ? AND type = ? ORDER BY product.name ASC";
-    private final String ALL_PRODUCTS_IN_STORE = "SELECT product.* FROM Product JOIN soldBy ON" +
+    private static final String ALL_PRODUCTS_IN_STORE = "SELECT product.* FROM Product JOIN soldBy ON" +
             " soldBy.productId = product.upc WHERE soldBy.storeId = ? ORDER BY product.name ASC";
 
     private Connection con;
@@ -75,6 +78,8 @@ public abstract class User {
      * @param storeId  the id of the store
      */
     public void selectMainStore(String storeId){
+        if (selectLocalStore(storeId))
+            return;
         ResultSet rs = null;
         PreparedStatement stmt = null;
         try {
@@ -94,8 +99,30 @@ public abstract class User {
 
         // set the connection to the store
         store.setCon(this.con);
+        store.warmUp();
     }
 
+    /**
+     * Sets the main store from memory, if it is held there
+     * @return whether it was, or the database has to be asked
+     */
+    boolean selectLocalStore(String storeId) {
+        LocalReads local = LocalReads.serving(con);
+        Store found = local != null ? local.store(storeId) : null;
+        if (found == null)
+            return false;
+        // a copy, since the user's store carries their connection
+        setStore(new Store(found.getId(), found.getState(), found.getAddress(), found.getOpenTime(),
+            found.getCloseTime()));
+        store.warmUp();
+        return true;
+    }
+
+    /**
+     * @return which kind of user this is, and so which command tree it gets
+     */
+    public abstract UserType getType();
+
     /**
      * This method should be overridden by each subclass so that
      * each user returns their propper command lines with their
@@ -114,6 +141,11 @@ public abstract class User {
      * @param state the state abbreviation (i.e MA, WA, OR, NY, CA)
      */
     public void queryStoreByState(String state) {
+        LocalReads local = LocalReads.serving(con);
+        if (local != null) {
+            Store.printStores(local.storesInState(state));
+            return;
+        }
         ResultSet rs = null;
         PreparedStatement stmt = null;
         try {
@@ -127,12 +159,44 @@ public abstract class User {
         Store.printDatabaseResults(rs);
     }
 
+    /**
+     * @param state the state abbreviation (i.e MA, WA, OR, NY, CA)
+     * @return the ids of the stores in the state, empty if there are none
+     */
+    public List<String> queryStoreIdsByState(String state) {
+        List<String> ids = new ArrayList<>();
+        LocalReads local = LocalReads.serving(con);
+        if (local != null) {
+            for (Store s : local.storesInState(state)) {
+                ids.add(s.getId());
+            }
+            return ids;
+        }
+        try {
+            PreparedStatement stmt = con.prepareStatement(STORE_BY_STATE_QUERY);
+            stmt.setString(1, state);
+            for (Store s : Store.returnListOfStores(stmt.executeQuery())) {
+                ids.add(s.getId().trim());
+            }
+        } catch (SQLException e){
+            System.out.println("SQL Error in trying to query by state");
+            System.out.println(e.getMessage());
+        }
+        return ids;
+    }
+
     /**
      * this will query the database to find a single store
      * by a given id and print it
      * @param id the id number of the store as a string
      */
     public void queryStorebyID(String id) {
+        LocalReads local = LocalReads.serving(con);
+        if (local != null) {
+            Store store = local.store(id);
+            Store.printStores(store != null ? Collections.singletonList(store) : Collections.emptyList());
+            return;
+        }
         ResultSet rs = null;
         PreparedStatement stmt = null;
         try {
@@ -152,6 +216,11 @@ public abstract class User {
      * @param productName the name of the proudct
      */
     public void queryStoreByProduct(String productName) {
+        LocalReads local = LocalReads.serving(con);
+        if (local != null) {
+            Store.printStores(local.storesSelling(productName));
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(STORE_BY_PRODUCT_QUERY);
@@ -165,6 +234,11 @@ public abstract class User {
     }
 
     public void queryStoreByTime(int start, int end) {
+        LocalReads local = LocalReads.serving(con);
+        if (local != null) {
+            Store.printStores(local.storesOpen(start, end));
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(STORE_BY_TIME_QUERY);
@@ -189,7 +263,7 @@ public abstract class User {
             stmt.setString(1, name);
             ResultSet rs = stmt.executeQuery();
             if(rs.next()){
-                return new Product(name, rs.getString(2), rs.getString(1), rs.getDouble(6));
+                return Product.of(rs.getString(1), rs.getString(2), name, rs.getString(4), Money.read(rs, 6));
             }else{
                 System.out.println("That product does not exist!");
                 return null;
@@ -208,7 +282,8 @@ public abstract class User {
             stmt.setString(1, upc);
             ResultSet rs = stmt.executeQuery();
             if(rs.next()){
-                return new Product(rs.getString("name"), rs.getString("brand"), rs.getString("upc"), rs.getDouble(6));
+                return Product.of(rs.getString("upc"), rs.getString("brand"), rs.getString("name"), rs.getString("type"),
+                    Money.read(rs, 6));
             }else{
                 System.out.println("That product does not exist!");
                 return null;
@@ -228,6 +303,11 @@ public abstract class User {
      */
     public void queryProductByName(String name) {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = store.catalog();
+        if (catalog != null) {
+            Product.printProducts(catalog.find(p -> p.getName().equals(name)));
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(PRODUCT_BY_NAME_QUERY);
@@ -241,20 +321,49 @@ public abstract class User {
         Product.printDatabaseResults(rs);
     }
 
+    /**
+     * Prints the product with the given upc, and so its price, which is
+     * the same at every store
+     * @param upc the product's upc
+     */
+    public void queryProductByUPC(String upc) {
+        LocalReads local = LocalReads.serving(con);
+        if (local != null) {
+            Product product = local.product(upc);
+            Product.printProducts(product != null ? Collections.singletonList(product) : Collections.emptyList());
+            return;
+        }
+        ResultSet rs = null;
+        try {
+            PreparedStatement stmt = con.prepareStatement(GET_PRODUCT_FROM_UPC);
+            stmt.setString(1, upc);
+            rs = stmt.executeQuery();
+        } catch (SQLException e){
+            System.out.println("SQL Error in trying to query product by upc");
+            System.out.println(e.getMessage());
+        }
+        Product.printDatabaseResults(rs);
+    }
+
     /**
      * Will query the database and print a list of products
      * for a given price range
-     * @param start the lower bound of the item as a double
-     * @param end the upper bound of the item as a double
+     * @param start the lower bound of the item in cents
+     * @param end the upper bound of the item in cents
      */
-    public void queryProductByPriceRange(double start, double end) {
+    public void queryProductByPriceRange(long start, long end) {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = store.catalog();
+        if (catalog != null) {
+            Product.printProducts(catalog.find(p -> p.getPriceCents() > start && p.getPriceCents() < end));
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(PRODUCT_BY_PRICE_RANGE);
             stmt.setString(1, store.getId());
-            stmt.setDouble(2, start);
-            stmt.setDouble(3, end);
+            stmt.setBigDecimal(2, Money.toBigDecimal(start));
+            stmt.setBigDecimal(3, Money.toBigDecimal(end));
             rs = stmt.executeQuery();
         } catch (SQLException e){
             System.out.println("SQL Error in trying to query product by price range");
@@ -267,17 +376,23 @@ public abstract class User {
      * Queries the database and prints all items of a given price range
      * that are of a certain type (i.e snacks)
      * @param type
-     * @param start
-     * @param end
+     * @param start the lower bound in cents
+     * @param end the upper bound in cents
      */
-    public void queryProductByTypeAndRange(String type, double start, double end) {
+    public void queryProductByTypeAndRange(String type, long start, long end) {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = store.catalog();
+        if (catalog != null) {
+            Product.printProducts(catalog.find(p -> p.getPriceCents() > start && p.getPriceCents() < end
+                && type.equals(catalog.typeOf(p))));
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(PRODUCT_BY_PRICE_AND_TYPE);
             stmt.setString(1, store.getId());
-            stmt.setDouble(2, start);
-            stmt.setDouble(3, end);
+            stmt.setBigDecimal(2, Money.toBigDecimal(start));
+            stmt.setBigDecimal(3, Money.toBigDecimal(end));
             stmt.setString(4, type);
             rs = stmt.executeQuery();
         } catch (SQLException e){
@@ -293,6 +408,11 @@ public abstract class User {
      */
     public void queryProductByBrand(String brand) {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = store.catalog();
+        if (catalog != null) {
+            Product.printProducts(catalog.find(p -> brand.equals(p.getBrand())));
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(PRODUCT_BY_BRAND_QUERY);
@@ -308,6 +428,11 @@ public abstract class User {
 
     public void queryProductByType(String type) {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = store.catalog();
+        if (catalog != null) {
+            Product.printProducts(catalog.find(p -> type.equals(catalog.typeOf(p))));
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(PRODUCT_BY_TYPE);
@@ -323,6 +448,11 @@ public abstract class User {
 
     public void queryAllProducts() {
         if (!checkStoreSet()) return;
+        StoreCatalog catalog = store.catalog();
+        if (catalog != null) {
+            Product.printProducts(catalog.getProducts());
+            return;
+        }
         ResultSet rs = null;
         try {
             PreparedStatement stmt = con.prepareStatement(ALL_PRODUCTS_IN_STORE);
@@ -335,6 +465,19 @@ public abstract class User {
         Product.printDatabaseResults(rs);
     }
 
+    /**
+     * Prints the products of several stores that match a filter, each
+     * product once with the stores that sell it and their stock. The
+     * stores' catalogs are fetched concurrently.
+     * @param storeIds the stores to browse
+     * @param filter tests a product of a store, whose catalog gives its type
+     * @param order the order to print the products in
+     */
+    public void browseStores(List<String> storeIds, BiPredicate<StoreCatalog, Product> filter,
+                             CrossStoreBrowse.Order order) {
+        new CrossStoreBrowse(storeIds, StoreCatalog.getAll(storeIds, con), order).print(filter);
+    }
+
     public boolean checkStoreSet() {
         if (getStore() == null) {
             System.out.println("Please use \"store set <id>\" to use this command.");